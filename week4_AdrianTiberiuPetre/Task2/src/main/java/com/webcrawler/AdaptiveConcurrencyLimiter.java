@@ -0,0 +1,210 @@
+package com.webcrawler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of URLs crawled at once and adapts the limit to how
+ * the servers respond (additive increase, multiplicative decrease).
+ *
+ * The limit starts at the floor and doubles per round trip until the first
+ * sign of overload, then grows by one per round trip. It is cut by
+ * {@link #BACKOFF_FACTOR} when a fetch fails, is answered with 429 or a 5xx,
+ * or when the smoothed latency exceeds {@link #LATENCY_TOLERANCE} times a
+ * baseline, at most once per round trip. The baseline is a much slower
+ * average that drops at once when latency does, so it tracks the usual
+ * latency rather than the fastest response, and a lasting slowdown becomes
+ * the new baseline instead of pinning the limit to the floor.
+ *
+ * Latency is compared across all hosts, so a crawl that moves from fast to
+ * slow hosts backs off once before the baseline catches up.
+ */
+public class AdaptiveConcurrencyLimiter {
+    static final double BACKOFF_FACTOR = 0.7;
+    static final double LATENCY_TOLERANCE = 2.0;
+    private static final double SMOOTHING = 0.1;
+    private static final double BASELINE_SMOOTHING = 1.0 / 256;
+
+    private final int floor;
+    private final int ceiling;
+    private final ReentrantLock lock;
+    private final Condition belowLimit;
+
+    private double limit;
+    private int inFlight;
+    private boolean slowStart;
+    private double smoothedNanos;
+    private double baselineNanos;
+    private long lastDecreaseNanos;
+    private int maxLimit;
+    private long decreaseCount;
+
+    /**
+     * Constructs a limiter starting at the floor.
+     *
+     * @param floor The lowest the limit goes
+     * @param ceiling The highest the limit goes
+     */
+    public AdaptiveConcurrencyLimiter(int floor, int ceiling) {
+        if (floor < 1 || ceiling < floor) {
+            throw new IllegalArgumentException("Concurrency floor must be at least 1 and not above the ceiling");
+        }
+        this.floor = floor;
+        this.ceiling = ceiling;
+        this.lock = new ReentrantLock();
+        this.belowLimit = lock.newCondition();
+        this.limit = floor;
+        this.slowStart = true;
+        this.maxLimit = floor;
+    }
+
+    /**
+     * Waits until fewer URLs than the limit are in flight and takes a slot.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= (int) limit) {
+                belowLimit.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a slot taken with {@link #acquire()} and adapts the limit to
+     * how the fetch went.
+     *
+     * @param statusCode The HTTP status code, or 0 if the fetch failed
+     * @param latencyNanos Time until the response arrived
+     */
+    public void release(int statusCode, long latencyNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            long now = System.nanoTime();
+            if (isOverloaded(statusCode)) {
+                decrease(now);
+            } else {
+                smoothedNanos = smoothedNanos == 0
+                    ? latencyNanos
+                    : smoothedNanos + SMOOTHING * (latencyNanos - smoothedNanos);
+                baselineNanos = baselineNanos == 0
+                    ? latencyNanos
+                    : Math.min(smoothedNanos, baselineNanos + BASELINE_SMOOTHING * (latencyNanos - baselineNanos));
+                if (smoothedNanos > LATENCY_TOLERANCE * baselineNanos) {
+                    decrease(now);
+                } else {
+                    // Slow start adds one per completion, doubling per round trip; after it, one per round trip
+                    limit = Math.min(ceiling, limit + (slowStart ? 1 : 1 / limit));
+                }
+            }
+            maxLimit = Math.max(maxLimit, (int) limit);
+            belowLimit.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a slot without adapting the limit, e.g. when the URL was
+     * never fetched.
+     */
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            belowLimit.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isOverloaded(int statusCode) {
+        return statusCode == 0 || statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * Cuts the limit, unless it was already cut within the last round trip:
+     * the fetches that were in flight then reflect the old limit.
+     */
+    private void decrease(long now) {
+        slowStart = false;
+        if (lastDecreaseNanos != 0 && now - lastDecreaseNanos < smoothedNanos) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        limit = Math.max(floor, limit * BACKOFF_FACTOR);
+        decreaseCount++;
+    }
+
+    /**
+     * Gets the number of URLs allowed in flight right now.
+     *
+     * @return Current limit
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the highest limit reached.
+     *
+     * @return Highest limit
+     */
+    public int getMaxLimit() {
+        lock.lock();
+        try {
+            return maxLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of times the limit was cut.
+     *
+     * @return Decrease count
+     */
+    public long getDecreaseCount() {
+        lock.lock();
+        try {
+            return decreaseCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the smoothed latency the limit is adapted to.
+     *
+     * @return Latency in milliseconds
+     */
+    public double getSmoothedLatencyMillis() {
+        lock.lock();
+        try {
+            return smoothedNanos / TimeUnit.MILLISECONDS.toNanos(1);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.webcrawler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scalable Bloom filter over URL fingerprints.
+ *
+ * The filter is a series of layers. When the newest layer reaches its
+ * capacity a layer twice as large is added with half the false-positive
+ * rate, so the combined rate stays below the configured one however many
+ * URLs are added (Almeida et al., "Scalable Bloom Filters"). Adds of the same
+ * URL are serialized by a lock stripe chosen from its fingerprint, so a URL
+ * is never reported as new twice.
+ */
+public class BloomFilterUrlDeduplicator implements UrlDeduplicator {
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+    private static final int LOCK_STRIPES = 64;
+
+    private final double falsePositiveRate;
+    private final Object[] locks;
+    private final AtomicLong size;
+    private volatile Layer[] layers;
+
+    /**
+     * Constructs a BloomFilterUrlDeduplicator sized for one million URLs per first layer.
+     * 
+     * @param falsePositiveRate Upper bound on the probability that a new URL is reported as seen
+     */
+    public BloomFilterUrlDeduplicator(double falsePositiveRate) {
+        this(falsePositiveRate, 1 << 20);
+    }
+
+    /**
+     * Constructs a BloomFilterUrlDeduplicator.
+     * 
+     * @param falsePositiveRate Upper bound on the probability that a new URL is reported as seen
+     * @param initialCapacity Number of URLs the first layer holds before a new layer is added
+     */
+    public BloomFilterUrlDeduplicator(double falsePositiveRate, long initialCapacity) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("Initial capacity must be at least 1");
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        this.size = new AtomicLong();
+        this.locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        this.layers = new Layer[] {
+            new Layer(initialCapacity, falsePositiveRate * (1 - TIGHTENING_RATIO))
+        };
+    }
+
+    @Override
+    public boolean add(String url) {
+        long h1 = UrlFingerprint.of(url);
+        // Odd second hash so probes cycle through the whole bit array
+        long h2 = UrlFingerprint.mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+
+        synchronized (locks[(int) (h1 >>> 58)]) {
+            Layer[] current = layers;
+            for (Layer layer : current) {
+                if (layer.mightContain(h1, h2)) {
+                    return false;
+                }
+            }
+
+            Layer newest = current[current.length - 1];
+            if (newest.isFull()) {
+                newest = grow(newest);
+            }
+            newest.put(h1, h2);
+            size.incrementAndGet();
+            return true;
+        }
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public long estimatedMemoryBytes() {
+        long bytes = 0;
+        for (Layer layer : layers) {
+            bytes += layer.words.length() * 8L;
+        }
+        return bytes;
+    }
+
+    /**
+     * Gets the configured false-positive rate bound.
+     * 
+     * @return The false-positive rate
+     */
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * Gets the number of layers allocated so far.
+     * 
+     * @return Layer count
+     */
+    public int getLayerCount() {
+        return layers.length;
+    }
+
+    /**
+     * Appends a new layer unless another thread already did.
+     */
+    private synchronized Layer grow(Layer full) {
+        Layer[] current = layers;
+        Layer newest = current[current.length - 1];
+        if (newest != full) {
+            return newest;
+        }
+
+        Layer next = new Layer(full.capacity * GROWTH_FACTOR, full.falsePositiveRate * TIGHTENING_RATIO);
+        Layer[] grown = new Layer[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = next;
+        layers = grown;
+        return next;
+    }
+
+    /**
+     * A classic Bloom filter using double hashing over an atomic bit array.
+     */
+    private static final class Layer {
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+        private final AtomicLong count;
+
+        Layer(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+            this.words = new AtomicLongArray(wordCount);
+            this.bitCount = wordCount * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+            this.count = new AtomicLong();
+        }
+
+        boolean isFull() {
+            return count.get() >= capacity;
+        }
+
+        boolean mightContain(long h1, long h2) {
+            long combined = h1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Long.remainderUnsigned(combined, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+                combined += h2;
+            }
+            return true;
+        }
+
+        void put(long h1, long h2) {
+            long combined = h1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Long.remainderUnsigned(combined, bitCount);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word;
+                do {
+                    word = words.get(index);
+                    if ((word & mask) != 0) {
+                        break;
+                    }
+                } while (!words.compareAndSet(index, word, word | mask));
+                combined += h2;
+            }
+            count.incrementAndGet();
+        }
+    }
+}
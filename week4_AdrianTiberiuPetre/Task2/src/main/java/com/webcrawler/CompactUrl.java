@@ -0,0 +1,131 @@
+package com.webcrawler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A URL held as an interned origin plus the UTF-8 bytes of its path and
+ * query, for sets and queues that keep millions of URLs.
+ *
+ * URLs made with the same {@link OriginInterner} share one copy of
+ * "scheme://host:port", so a URL costs its path and query at one byte per
+ * ASCII character, plus two small object headers, instead of a String of the
+ * whole URL; a crawl sees far fewer hosts than URLs. Equal URLs have equal
+ * instances, whether or not they share their origin, so they can be used as
+ * set and map keys.
+ */
+public final class CompactUrl {
+    // Object header, two references and the hash, plus the byte[] header, with compressed oops
+    private static final int OVERHEAD_BYTES = 24 + 16;
+
+    private final String origin;
+    private final byte[] pathAndQuery;
+    private final int hash;
+
+    private CompactUrl(String origin, byte[] pathAndQuery) {
+        this.origin = origin;
+        this.pathAndQuery = pathAndQuery;
+        this.hash = 31 * origin.hashCode() + Arrays.hashCode(pathAndQuery);
+    }
+
+    /**
+     * Converts a URL with an origin of its own, for lookups and URLs that
+     * are not kept.
+     *
+     * @param url An absolute URL
+     * @return The compact form
+     */
+    public static CompactUrl of(String url) {
+        int originEnd = originEnd(url);
+        return new CompactUrl(url.substring(0, originEnd), encode(url, originEnd));
+    }
+
+    /**
+     * Converts a URL, sharing its origin with the other URLs made with the
+     * same interner.
+     *
+     * @param url An absolute URL
+     * @param origins The interner of the structure that keeps the URL
+     * @return The compact form
+     */
+    public static CompactUrl of(String url, OriginInterner origins) {
+        int originEnd = originEnd(url);
+        return new CompactUrl(origins.intern(url.substring(0, originEnd)), encode(url, originEnd));
+    }
+
+    /**
+     * Finds where the origin of a URL ends.
+     *
+     * @param url An absolute URL
+     * @return The index of the first '/', '?' or '#' after "scheme://", or the URL length
+     */
+    static int originEnd(String url) {
+        int start = url.indexOf("://");
+        int from = start < 0 ? 0 : start + 3;
+        for (int i = from; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return url.length();
+    }
+
+    /**
+     * Gets the scheme, host and port, shared by every URL of the host.
+     *
+     * @return The origin, e.g. "https://example.com:8443"
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Estimates the heap this URL takes, excluding the shared origin.
+     *
+     * @return Approximate size in bytes
+     */
+    public int estimatedBytes() {
+        return OVERHEAD_BYTES + ((pathAndQuery.length + 7) & ~7);
+    }
+
+    private static byte[] encode(String url, int from) {
+        byte[] bytes = new byte[url.length() - from];
+        for (int i = from; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c >= 0x80) {
+                return url.substring(from).getBytes(StandardCharsets.UTF_8);
+            }
+            bytes[i - from] = (byte) c;
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CompactUrl)) {
+            return false;
+        }
+        CompactUrl other = (CompactUrl) obj;
+        // Usually interned, so comparing the origins stops at the identity check
+        return hash == other.hash && origin.equals(other.origin) && Arrays.equals(pathAndQuery, other.pathAndQuery);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Rebuilds the URL as a String.
+     *
+     * @return The URL
+     */
+    @Override
+    public String toString() {
+        return origin.concat(new String(pathAndQuery, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,17 @@
+package com.webcrawler;
+
+/**
+ * How stored pages and the crawl summary are compressed.
+ */
+public enum Compression {
+    /**
+     * Stored as written.
+     */
+    NONE,
+
+    /**
+     * Gzip from the JDK, at the fastest level. Page files get a {@code .gz}
+     * suffix and WARC records become gzip members.
+     */
+    GZIP
+}
@@ -0,0 +1,89 @@
+package com.webcrawler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts what compression saved and what it cost. CPU time is that of the
+ * compressing threads, where the JVM can measure it, and wall time otherwise.
+ */
+public class CompressionStats {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private final AtomicLong count;
+    private final AtomicLong rawBytes;
+    private final AtomicLong compressedBytes;
+    private final AtomicLong cpuNanos;
+
+    /**
+     * Constructs an empty CompressionStats.
+     */
+    public CompressionStats() {
+        this.count = new AtomicLong();
+        this.rawBytes = new AtomicLong();
+        this.compressedBytes = new AtomicLong();
+        this.cpuNanos = new AtomicLong();
+    }
+
+    /**
+     * Reads the clock compression cost is measured with.
+     *
+     * @return CPU time of the current thread in nanoseconds
+     */
+    static long threadCpuNanos() {
+        return CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Records one compressed page or record.
+     *
+     * @param raw Bytes before compression
+     * @param compressed Bytes after compression
+     * @param nanos CPU time spent compressing, measured with {@link #threadCpuNanos()}
+     */
+    public void record(long raw, long compressed, long nanos) {
+        count.incrementAndGet();
+        rawBytes.addAndGet(raw);
+        compressedBytes.addAndGet(compressed);
+        cpuNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Gets the number of compressed pages or records.
+     *
+     * @return Count
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getRawBytes() {
+        return rawBytes.get();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * Gets how many times smaller the data became.
+     *
+     * @return Raw bytes divided by compressed bytes, or 0 if nothing was compressed
+     */
+    public double getRatio() {
+        long compressed = compressedBytes.get();
+        return compressed == 0 ? 0 : (double) rawBytes.get() / compressed;
+    }
+
+    /**
+     * Gets the mean CPU time spent per page or record.
+     *
+     * @return Microseconds per item, or 0 if nothing was compressed
+     */
+    public double getMicrosPerItem() {
+        long items = count.get();
+        return items == 0 ? 0 : cpuNanos.get() / 1e3 / items;
+    }
+}
@@ -0,0 +1,129 @@
+package com.webcrawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects page bodies that were already saved under another URL.
+ *
+ * Bodies are identified by the SHA-256 of their bytes. The first URL seen
+ * with a body is its original; later URLs with the same body are aliases,
+ * which are not stored or parsed again but listed in an alias file as
+ * {@code alias<TAB>original} lines.
+ */
+public class ContentDeduplicator implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ContentDeduplicator.class);
+
+    private final Path aliasFile;
+    private final Map<String, String> originals;
+    private final AtomicLong duplicateCount;
+    private final AtomicLong duplicateBytes;
+    private Writer aliasWriter;
+
+    /**
+     * Constructs a ContentDeduplicator, replacing any earlier alias file.
+     *
+     * @param aliasFile File the aliases are written to
+     */
+    public ContentDeduplicator(Path aliasFile) {
+        this.aliasFile = aliasFile;
+        this.originals = new ConcurrentHashMap<>();
+        this.duplicateCount = new AtomicLong();
+        this.duplicateBytes = new AtomicLong();
+        try {
+            this.aliasWriter = Files.newBufferedWriter(aliasFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create alias file " + aliasFile, e);
+        }
+    }
+
+    /**
+     * Registers the body of a page, unless an identical body was registered first.
+     *
+     * @param contentHash Hex SHA-256 of the body
+     * @param url The page URL
+     * @return The URL the body was first seen under, or null if it is new
+     */
+    public String register(String contentHash, String url) {
+        String original = originals.putIfAbsent(contentHash, url);
+        return url.equals(original) ? null : original;
+    }
+
+    /**
+     * Records a page whose body duplicates an earlier one.
+     *
+     * @param url The duplicate page URL
+     * @param originalUrl The URL the body was first seen under
+     * @param bodyBytes Size of the body that was not stored
+     */
+    public void recordAlias(String url, String originalUrl, long bodyBytes) {
+        duplicateCount.incrementAndGet();
+        duplicateBytes.addAndGet(bodyBytes);
+        synchronized (this) {
+            if (aliasWriter == null) {
+                return;
+            }
+            try {
+                aliasWriter.write(url);
+                aliasWriter.write('\t');
+                aliasWriter.write(originalUrl);
+                aliasWriter.write('\n');
+            } catch (IOException e) {
+                logger.error("Failed to record alias {}: {}", url, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the number of distinct bodies seen.
+     *
+     * @return Unique body count
+     */
+    public int getUniqueCount() {
+        return originals.size();
+    }
+
+    /**
+     * Gets the number of pages recorded as aliases.
+     *
+     * @return Duplicate page count
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    /**
+     * Gets the total body size of the pages recorded as aliases.
+     *
+     * @return Bytes not stored
+     */
+    public long getDuplicateBytes() {
+        return duplicateBytes.get();
+    }
+
+    /**
+     * Flushes and closes the alias file.
+     */
+    @Override
+    public synchronized void close() {
+        if (aliasWriter == null) {
+            return;
+        }
+        try {
+            aliasWriter.close();
+        } catch (IOException e) {
+            logger.error("Failed to close alias file {}: {}", aliasFile, e.getMessage());
+        }
+        aliasWriter = null;
+    }
+}
@@ -3,28 +3,99 @@ package com.webcrawler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Handles saving crawled content to local files.
+ *
+ * Pages are saved as one file each, or as records in a {@link WarcStore},
+ * depending on the {@link OutputFormat}. Links saved for reuse follow the
+ * same format.
+ *
+ * With a write queue, {@link #saveContent} only queues the page for a
+ * {@link WriteBehindQueue} and returns; the page is written by the queue's
+ * writer threads, which also sync what they wrote at the fsync interval.
+ * Streamed pages and saved links are still written by the calling thread.
+ *
+ * With compression, page files and the summary are gzipped and get a
+ * {@code .gz} suffix, and WARC records become gzip members. Pages are
+ * compressed by whichever thread writes them, so with a write queue the
+ * crawler threads do not pay for it. Saved pages are found whether or not
+ * they were compressed. {@link StoredPageReader} prints stored pages.
  */
-public class ContentSaver {
+public class ContentSaver implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(ContentSaver.class);
+    private static final String HEADER_END = "<!-- ================================================ -->\n\n";
+    private static final byte[] HEADER_END_BYTES = HEADER_END.getBytes(StandardCharsets.UTF_8);
+    private static final String CHARSET_PREFIX = "<!-- Charset: ";
+    private static final String GZIP_SUFFIX = ".gz";
     private final File outputDirectory;
     private final DateTimeFormatter dateFormatter;
+    private final WarcStore warcStore;
+    private final boolean compress;
+    private final CompressionStats compressionStats;
+    private final WriteBehindQueue writeBehind;
+    private final List<Path> unsyncedFiles;
 
     /**
-     * Constructs a ContentSaver.
+     * Constructs a ContentSaver that saves one file per page.
      * 
      * @param outputPath The directory path where files will be saved
      */
     public ContentSaver(String outputPath) {
+        this(outputPath, OutputFormat.FILES);
+    }
+
+    /**
+     * Constructs a ContentSaver.
+     * 
+     * @param outputPath The directory path where files will be saved
+     * @param format How pages are stored
+     */
+    public ContentSaver(String outputPath, OutputFormat format) {
+        this(outputPath, format, Compression.NONE, 0, 1, 0);
+    }
+
+    /**
+     * Constructs a ContentSaver.
+     * 
+     * @param outputPath The directory path where files will be saved
+     * @param format How pages are stored
+     * @param compression How pages and the summary are compressed
+     * @param writeQueueCapacity Pages queued for the writer threads, or 0 to write on the calling thread
+     * @param writerThreads Number of writer threads
+     * @param fsyncIntervalMillis Milliseconds between syncs of queued writes, or 0 to leave it to the OS
+     */
+    public ContentSaver(String outputPath, OutputFormat format, Compression compression,
+                        int writeQueueCapacity, int writerThreads, long fsyncIntervalMillis) {
         this.outputDirectory = new File(outputPath);
         this.dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         
@@ -36,6 +107,26 @@ public class ContentSaver {
                 logger.error("Failed to create output directory: {}", outputDirectory.getAbsolutePath());
             }
         }
+        this.compress = compression == Compression.GZIP || format == OutputFormat.WARC_GZIP;
+        this.warcStore = format == OutputFormat.FILES ? null : new WarcStore(outputDirectory.toPath(), compress);
+        this.compressionStats = warcStore != null ? warcStore.getCompressionStats() : new CompressionStats();
+        this.unsyncedFiles = new ArrayList<>();
+        if (writeQueueCapacity > 0) {
+            boolean trackFiles = warcStore == null && fsyncIntervalMillis > 0;
+            this.writeBehind = new WriteBehindQueue(new WriteBehindQueue.Sink() {
+                @Override
+                public void write(String url, PageBody body, int depth, String title) throws IOException {
+                    writeContent(url, body, depth, title, trackFiles);
+                }
+
+                @Override
+                public void sync() throws IOException {
+                    syncWritten();
+                }
+            }, writeQueueCapacity, writerThreads, fsyncIntervalMillis);
+        } else {
+            this.writeBehind = null;
+        }
     }
 
     /**
@@ -48,28 +139,531 @@ public class ContentSaver {
      * @return true if saved successfully
      */
     public boolean saveContent(String url, String content, int depth, String title) {
+        try (PageBody body = PageBody.of(content)) {
+            return saveContent(url, body, depth, title);
+        }
+    }
+
+    /**
+     * Saves a page body as fetched, in its own charset, with metadata. The
+     * caller keeps its reference to the body; a write queue takes its own.
+     *
+     * @param url The URL of the page
+     * @param body The page body
+     * @param depth The crawl depth
+     * @param title The page title
+     * @return true if saved successfully
+     */
+    public boolean saveContent(String url, PageBody body, int depth, String title) {
+        if (writeBehind != null) {
+            return writeBehind.submit(url, body, depth, title);
+        }
         try {
-            String filename = generateFilename(url);
-            File outputFile = new File(outputDirectory, filename);
+            writeContent(url, body, depth, title, false);
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to save content from {}: {}", url, e.getMessage());
+            return false;
+        }
+    }
 
-            try (FileWriter writer = new FileWriter(outputFile, StandardCharsets.UTF_8)) {
+    /**
+     * Writes a page to its file or the WARC store.
+     * 
+     * @param url The URL of the page
+     * @param body The page body
+     * @param depth The crawl depth
+     * @param title The page title
+     * @param trackFile Whether to remember the file for the next sync
+     * @throws IOException if writing fails
+     */
+    private void writeContent(String url, PageBody body, int depth, String title,
+                              boolean trackFile) throws IOException {
+        if (warcStore != null) {
+            warcStore.writePage(url, depth, title, body);
+            logger.debug("Saved: {} (depth: {}) -> WARC", url, depth);
+            return;
+        }
+        String filename = generateFilename(url) + (compress ? GZIP_SUFFIX : "");
+        File outputFile = new File(outputDirectory, filename);
+
+        if (compress) {
+            byte[] header = formatHeader(url, depth, title, body.getCharset()).getBytes(StandardCharsets.UTF_8);
+            long rawBytes = header.length + body.size();
+            long start = CompressionStats.threadCpuNanos();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream((int) (rawBytes / 4) + 64);
+            try (FastGzipOutputStream gzip = new FastGzipOutputStream(compressed)) {
+                gzip.write(header);
+                body.writeTo(gzip);
+            }
+            compressionStats.record(rawBytes, compressed.size(), CompressionStats.threadCpuNanos() - start);
+            try (FileOutputStream out = new FileOutputStream(outputFile)) {
+                compressed.writeTo(out);
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE,
+                                                        StandardOpenOption.WRITE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING)) {
                 // Write metadata header
-                writer.write("<!-- Crawled URL: " + url + " -->\n");
-                writer.write("<!-- Crawl Time: " + LocalDateTime.now().format(dateFormatter) + " -->\n");
-                writer.write("<!-- Depth Level: " + depth + " -->\n");
-                writer.write("<!-- Page Title: " + escapeHtml(title) + " -->\n");
-                writer.write("<!-- ================================================ -->\n\n");
-                
-                // Write actual content
-                writer.write(content);
+                ByteBuffer header = ByteBuffer.wrap(formatHeader(url, depth, title, body.getCharset())
+                                                    .getBytes(StandardCharsets.UTF_8));
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+
+                // Write the body straight from its buffer
+                body.writeTo(channel);
+            }
+        }
+        if (trackFile) {
+            synchronized (unsyncedFiles) {
+                unsyncedFiles.add(outputFile.toPath());
             }
+        }
 
-            logger.info("Saved: {} (depth: {}) -> {}", url, depth, filename);
-            return true;
+        logger.debug("Saved: {} (depth: {}) -> {}", url, depth, filename);
+    }
+
+    /**
+     * Forces pages written by the write queue since the last sync to disk.
+     * 
+     * @throws IOException if a file cannot be synced
+     */
+    private void syncWritten() throws IOException {
+        if (warcStore != null) {
+            warcStore.sync();
+            return;
+        }
+        List<Path> files;
+        synchronized (unsyncedFiles) {
+            files = new ArrayList<>(unsyncedFiles);
+            unsyncedFiles.clear();
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        for (Path file : files) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (NoSuchFileException e) {
+                logger.debug("Saved page was removed before it was synced: {}", file);
+            }
+        }
+        // New files are only durable once their directory entries are
+        try (FileChannel directory = FileChannel.open(outputDirectory.toPath(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            logger.debug("Cannot sync output directory: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Opens a file for a page whose body is written as it arrives.
+     * 
+     * @param url The URL of the page
+     * @param depth The crawl depth
+     * @return Writer for the page body
+     * @throws IOException if the file cannot be created
+     */
+    public PageWriter openPage(String url, int depth) throws IOException {
+        return openPage(url, depth, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Opens a file for a page whose body is written as it arrives. With WARC
+     * output the body is spooled to a temporary file and appended to the
+     * current segment in one piece when the writer is closed, so concurrent
+     * downloads do not interleave in the segment.
+     * 
+     * @param url The URL of the page
+     * @param depth The crawl depth
+     * @param charset Charset the body is encoded in
+     * @return Writer for the page body
+     * @throws IOException if the file cannot be created
+     */
+    public PageWriter openPage(String url, int depth, Charset charset) throws IOException {
+        if (warcStore != null) {
+            Path spool = Files.createTempFile(outputDirectory.toPath(), ".spool-", ".tmp");
+            FileChannel channel = FileChannel.open(spool, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                                   StandardOpenOption.DELETE_ON_CLOSE);
+            return new PageWriter(url, depth, charset, "WARC", channel);
+        }
+        String filename = generateFilename(url) + (compress ? GZIP_SUFFIX : "");
+        File outputFile = new File(outputDirectory, filename);
+        FileChannel channel = FileChannel.open(outputFile.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new PageWriter(url, depth, charset, filename, channel);
+    }
+
+    /**
+     * Checks if a page has been saved to the output directory.
+     * 
+     * @param url The URL of the page
+     * @return true if the page's file or record exists
+     */
+    public boolean hasPage(String url) {
+        if (warcStore != null) {
+            return warcStore.containsPage(url);
+        }
+        return savedFile(url).isFile();
+    }
+
+    /**
+     * Opens the body of a saved page, skipping its metadata header.
+     * 
+     * @param url The URL of the page
+     * @return Stream of the body bytes as they were saved
+     * @throws IOException if the file cannot be read or has no header
+     */
+    public InputStream openSavedBody(String url) throws IOException {
+        return openSavedBody(url, null);
+    }
 
+    /**
+     * Gets the charset a saved page body is encoded in. Page files written
+     * before the header recorded it were saved as UTF-8.
+     * 
+     * @param url The URL of the page
+     * @return The charset of the body as it was saved
+     * @throws IOException if the page cannot be read
+     */
+    public Charset readSavedCharset(String url) throws IOException {
+        if (warcStore != null) {
+            Charset charset = warcStore.readPageCharset(url);
+            if (charset == null) {
+                throw new IOException("No WARC record for " + url);
+            }
+            return charset;
+        }
+        ByteArrayOutputStream header = new ByteArrayOutputStream(256);
+        openSavedBody(url, header).close();
+        String name = null;
+        for (String line : header.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (line.startsWith(CHARSET_PREFIX) && line.endsWith(" -->")) {
+                name = line.substring(CHARSET_PREFIX.length(), line.length() - " -->".length());
+            }
+        }
+        if (name == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown charset " + name + " in the header of " + url, e);
+        }
+    }
+
+    /**
+     * Opens the body of a saved page, optionally keeping its header.
+     *
+     * @param header Receives the metadata header of a page file, or null
+     */
+    private InputStream openSavedBody(String url, ByteArrayOutputStream header) throws IOException {
+        if (warcStore != null) {
+            InputStream body = warcStore.openPage(url);
+            if (body == null) {
+                throw new IOException("No WARC record for " + url);
+            }
+            return body;
+        }
+        File file = savedFile(url);
+        InputStream raw = new FileInputStream(file);
+        InputStream in;
+        try {
+            in = new BufferedInputStream(file.getName().endsWith(GZIP_SUFFIX) ? new GZIPInputStream(raw) : raw);
         } catch (IOException e) {
-            logger.error("Failed to save content from {}: {}", url, e.getMessage());
-            return false;
+            raw.close();
+            throw e;
+        }
+        try {
+            // The title is escaped, so the separator cannot occur before the end of the header
+            int matched = 0;
+            while (matched < HEADER_END_BYTES.length) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new IOException("No metadata header in " + file);
+                }
+                if (header != null) {
+                    header.write(b);
+                }
+                if (b == HEADER_END_BYTES[matched]) {
+                    matched++;
+                } else {
+                    matched = b == HEADER_END_BYTES[0] ? 1 : 0;
+                }
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Removes the saved copy of a page and its saved links, if any. WARC
+     * records are only removed from the index.
+     * 
+     * @param url The URL of the page
+     */
+    public void deletePage(String url) {
+        if (warcStore != null) {
+            warcStore.removePage(url);
+            return;
+        }
+        try {
+            String filename = generateFilename(url);
+            Files.deleteIfExists(new File(outputDirectory, filename).toPath());
+            Files.deleteIfExists(new File(outputDirectory, filename + GZIP_SUFFIX).toPath());
+            Files.deleteIfExists(linksFile(url));
+        } catch (IOException e) {
+            logger.error("Failed to delete saved copy of {}: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the links extracted from a page next to the page, so they can be
+     * reused without parsing it again.
+     * 
+     * @param url The URL of the page
+     * @param links The links, or null to remove any saved links
+     */
+    public void saveLinks(String url, Set<String> links) {
+        Path file = linksFile(url);
+        try {
+            if (warcStore != null) {
+                if (links == null) {
+                    warcStore.removeLinks(url);
+                } else {
+                    warcStore.writeLinks(url, links);
+                }
+            } else if (links == null) {
+                Files.deleteIfExists(file);
+            } else {
+                Files.write(file, links, StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to save links of {}: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the links saved for a page.
+     * 
+     * @param url The URL of the page
+     * @return The links, or null if none were saved or they cannot be read
+     */
+    public Set<String> readLinks(String url) {
+        Path file = linksFile(url);
+        if (warcStore == null && !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            if (warcStore != null) {
+                return warcStore.readLinks(url);
+            }
+            return new LinkedHashSet<>(Files.readAllLines(file, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.warn("Failed to read links of {}: {}", url, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Finds the file of a saved page, preferring the current compression
+     * when a page was saved both with and without it.
+     */
+    private File savedFile(String url) {
+        String filename = generateFilename(url);
+        File plain = new File(outputDirectory, filename);
+        File compressed = new File(outputDirectory, filename + GZIP_SUFFIX);
+        File preferred = compress ? compressed : plain;
+        File other = compress ? plain : compressed;
+        return preferred.isFile() || !other.isFile() ? preferred : other;
+    }
+
+    private Path linksFile(String url) {
+        String filename = generateFilename(url);
+        String base = filename.substring(0, filename.length() - ".html".length());
+        return new File(outputDirectory, base + ".links").toPath();
+    }
+
+    /**
+     * Formats the metadata comment written before a page body.
+     * 
+     * @param url The URL of the page
+     * @param depth The crawl depth
+     * @param title The page title
+     * @param charset Charset the body is encoded in
+     * @return The header text
+     */
+    private String formatHeader(String url, int depth, String title, Charset charset) {
+        return "<!-- Crawled URL: " + url + " -->\n"
+            + "<!-- Crawl Time: " + LocalDateTime.now().format(dateFormatter) + " -->\n"
+            + "<!-- Depth Level: " + depth + " -->\n"
+            + "<!-- Page Title: " + escapeHtml(title) + " -->\n"
+            + CHARSET_PREFIX + charset.name() + " -->\n"
+            + HEADER_END;
+    }
+
+    /**
+     * Writes a page body to its file as raw bytes, in the chunks it arrives in.
+     *
+     * The metadata header carries the page title, so body bytes are held back
+     * until {@link #setTitle(String)} is called. If the title is still unknown
+     * after {@link #MAX_HELD_BYTES}, the header is written with the title
+     * found so far. Apart from that the writer keeps no body bytes on the heap.
+     * With WARC output the title goes into the record header when the writer
+     * is closed, so nothing is held back. A compressed file is written as one
+     * gzip stream of the header and body.
+     */
+    public class PageWriter implements Closeable {
+        /** Body bytes held back while waiting for the title. */
+        public static final int MAX_HELD_BYTES = 64 * 1024;
+
+        private final String url;
+        private final int depth;
+        private final Charset charset;
+        private final String filename;
+        private final FileChannel channel;
+        private final FastGzipOutputStream gzip;
+        private long compressNanos;
+        private ByteBuffer held;
+        private boolean headerWritten;
+        private String title = "";
+        private long bytesWritten;
+
+        private PageWriter(String url, int depth, Charset charset, String filename,
+                           FileChannel channel) throws IOException {
+            this.url = url;
+            this.depth = depth;
+            this.charset = charset;
+            this.filename = filename;
+            this.channel = channel;
+            if (warcStore == null) {
+                this.held = ByteBuffer.allocate(8192);
+                this.gzip = compress ? new FastGzipOutputStream(Channels.newOutputStream(channel)) : null;
+            } else {
+                this.headerWritten = true;
+                this.gzip = null;
+            }
+        }
+
+        /**
+         * Sets the page title and writes the header if it is still pending.
+         *
+         * @param title The page title
+         * @throws IOException if writing fails
+         */
+        public void setTitle(String title) throws IOException {
+            this.title = title;
+            if (!headerWritten) {
+                writeHeader();
+            }
+        }
+
+        /**
+         * Checks if the header, and with it the title, has been written.
+         *
+         * @return true once body bytes go straight to the file
+         */
+        public boolean isHeaderWritten() {
+            return headerWritten;
+        }
+
+        /**
+         * Appends body bytes. The buffer's remaining bytes are consumed.
+         *
+         * @param bytes The next chunk of the body
+         * @throws IOException if writing fails
+         */
+        public void write(ByteBuffer bytes) throws IOException {
+            if (headerWritten) {
+                writeFully(bytes);
+                return;
+            }
+            if (held.position() + bytes.remaining() > MAX_HELD_BYTES) {
+                writeHeader();
+                writeFully(bytes);
+                return;
+            }
+            if (held.remaining() < bytes.remaining()) {
+                int capacity = Math.min(MAX_HELD_BYTES, Math.max(held.capacity() * 2, held.position() + bytes.remaining()));
+                ByteBuffer larger = ByteBuffer.allocate(capacity);
+                held.flip();
+                larger.put(held);
+                held = larger;
+            }
+            held.put(bytes);
+        }
+
+        /**
+         * Gets the number of body bytes written to the file so far.
+         *
+         * @return Body size in bytes, excluding the header
+         */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * Writes the header if still pending and closes the file. With WARC
+         * output the spooled body is appended to the store.
+         *
+         * @throws IOException if writing fails
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (warcStore != null) {
+                    warcStore.writePage(url, depth, title, charset, channel, bytesWritten);
+                } else if (!headerWritten) {
+                    writeHeader();
+                }
+                if (gzip != null) {
+                    long start = CompressionStats.threadCpuNanos();
+                    gzip.finish();
+                    compressNanos += CompressionStats.threadCpuNanos() - start;
+                    compressionStats.record(gzip.getRawBytes(), channel.position(), compressNanos);
+                }
+            } finally {
+                if (gzip != null) {
+                    gzip.close();
+                }
+                channel.close();
+            }
+            logger.debug("Saved: {} (depth: {}) -> {}", url, depth, filename);
+        }
+
+        private void writeHeader() throws IOException {
+            headerWritten = true;
+            writeRaw(ByteBuffer.wrap(formatHeader(url, depth, title, charset).getBytes(StandardCharsets.UTF_8)));
+            held.flip();
+            writeFully(held);
+            held = null;
+        }
+
+        private void writeFully(ByteBuffer bytes) throws IOException {
+            bytesWritten += bytes.remaining();
+            writeRaw(bytes);
+        }
+
+        private void writeRaw(ByteBuffer bytes) throws IOException {
+            if (gzip == null) {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                return;
+            }
+            long start = CompressionStats.threadCpuNanos();
+            if (bytes.hasArray()) {
+                gzip.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                bytes.position(bytes.limit());
+            } else {
+                byte[] copy = new byte[bytes.remaining()];
+                bytes.get(copy);
+                gzip.write(copy);
+            }
+            compressNanos += CompressionStats.threadCpuNanos() - start;
         }
     }
 
@@ -79,7 +673,7 @@ public class ContentSaver {
      * @param url The URL
      * @return A safe filename
      */
-    private String generateFilename(String url) {
+    String generateFilename(String url) {
         try {
             // Use MD5 hash of URL to create unique, safe filename
             MessageDigest md = MessageDigest.getInstance("MD5");
@@ -126,10 +720,26 @@ public class ContentSaver {
      * @param rootUrl The starting URL
      */
     public void createSummary(int totalCrawled, int totalDiscovered, String rootUrl) {
+        createSummary(totalCrawled, totalDiscovered, rootUrl, null);
+    }
+
+    /**
+     * Creates a summary file with crawl statistics, including the totals
+     * computed from the crawl journal.
+     * 
+     * @param totalCrawled Total pages crawled
+     * @param totalDiscovered Total URLs discovered
+     * @param rootUrl The starting URL
+     * @param journal Totals from the crawl journal, or null if there is none
+     */
+    public void createSummary(int totalCrawled, int totalDiscovered, String rootUrl,
+                              CrawlJournal.Summary journal) {
         try {
-            File summaryFile = new File(outputDirectory, "crawl_summary.txt");
+            File summaryFile = new File(outputDirectory, "crawl_summary.txt" + (compress ? GZIP_SUFFIX : ""));
+            OutputStream file = new FileOutputStream(summaryFile);
             
-            try (FileWriter writer = new FileWriter(summaryFile, StandardCharsets.UTF_8)) {
+            try (Writer writer = new OutputStreamWriter(compress ? new GZIPOutputStream(file) : file,
+                                                        StandardCharsets.UTF_8)) {
                 writer.write("Web Crawler Summary\n");
                 writer.write("===================\n\n");
                 writer.write("Crawl Time: " + LocalDateTime.now().format(dateFormatter) + "\n");
@@ -137,6 +747,27 @@ public class ContentSaver {
                 writer.write("Total Pages Crawled: " + totalCrawled + "\n");
                 writer.write("Total URLs Discovered: " + totalDiscovered + "\n");
                 writer.write("Output Directory: " + outputDirectory.getAbsolutePath() + "\n");
+                if (journal != null) {
+                    writer.write(String.format("Pages: %d fetched, %d not modified, %d duplicates, %d failed%n",
+                        journal.getCount(CrawlJournal.Outcome.FETCHED),
+                        journal.getCount(CrawlJournal.Outcome.NOT_MODIFIED),
+                        journal.getCount(CrawlJournal.Outcome.DUPLICATE),
+                        journal.getCount(CrawlJournal.Outcome.FAILED)));
+                    writer.write("Responses by Status: " + journal.getStatusCounts() + "\n");
+                    writer.write("Bytes Downloaded: " + journal.getBytes() + "\n");
+                    writer.write("Links Found: " + journal.getLinksFound()
+                                 + ", New: " + journal.getLinksAdded() + "\n");
+                    LatencyHistogram.Snapshot fetch = journal.getFetchLatency();
+                    writer.write(String.format("Fetch Latency: %.1f ms avg, %.1f ms p50, %.1f ms p99%n",
+                        fetch.getMeanMillis(), fetch.getP50Millis(), fetch.getP99Millis()));
+                }
+                if (compressionStats.getCount() > 0) {
+                    writer.write(String.format("Compression Ratio: %.2fx (%d KB -> %d KB)%n",
+                        compressionStats.getRatio(), compressionStats.getRawBytes() / 1024,
+                        compressionStats.getCompressedBytes() / 1024));
+                    writer.write(String.format("Compression CPU: %.0f us per page%n",
+                        compressionStats.getMicrosPerItem()));
+                }
             }
 
             logger.info("Created crawl summary: {}", summaryFile.getAbsolutePath());
@@ -145,6 +776,70 @@ public class ContentSaver {
         }
     }
 
+    /**
+     * Creates a summary file with the totals of every node of a cluster.
+     * 
+     * @param rootUrl The starting URL
+     * @param cluster Totals merged by the cluster's coordinator
+     */
+    public void createClusterSummary(String rootUrl, CrawlCluster.Summary cluster) {
+        try {
+            File summaryFile = new File(outputDirectory, "cluster_summary.txt" + (compress ? GZIP_SUFFIX : ""));
+            OutputStream file = new FileOutputStream(summaryFile);
+
+            try (Writer writer = new OutputStreamWriter(compress ? new GZIPOutputStream(file) : file,
+                                                        StandardCharsets.UTF_8)) {
+                writer.write("Web Crawler Cluster Summary\n");
+                writer.write("===========================\n\n");
+                writer.write("Crawl Time: " + LocalDateTime.now().format(dateFormatter) + "\n");
+                writer.write("Root URL: " + rootUrl + "\n");
+                writer.write("Nodes: " + cluster.getNodes().size() + "\n");
+                writer.write("Total Pages Crawled: " + cluster.getPagesCrawled() + "\n");
+                writer.write("Total URLs Discovered: " + cluster.getUrlsDiscovered() + "\n");
+                writer.write("URLs Forwarded Between Nodes: " + cluster.getUrlsForwarded() + "\n");
+                for (CrawlCluster.NodeStats node : cluster.getNodes()) {
+                    writer.write(node + "\n");
+                }
+            }
+
+            logger.info("Created cluster summary: {}", summaryFile.getAbsolutePath());
+        } catch (IOException e) {
+            logger.error("Failed to create cluster summary file: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the pages still queued and closes the WARC store, if any,
+     * writing its index.
+     */
+    @Override
+    public void close() {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+        if (warcStore != null) {
+            warcStore.close();
+        }
+    }
+
+    /**
+     * Gets what compressing stored pages saved and cost.
+     * 
+     * @return Compression statistics, empty if pages are not compressed
+     */
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    /**
+     * Gets the write queue, for its metrics.
+     * 
+     * @return The write queue, or null if pages are written on the calling thread
+     */
+    public WriteBehindQueue getWriteBehind() {
+        return writeBehind;
+    }
+
     /**
      * Gets the output directory.
      * 
@@ -0,0 +1,529 @@
+package com.webcrawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Persists UrlManager state so an interrupted crawl can be resumed.
+ *
+ * Crawl threads only append small records to a lock-free queue. A background
+ * thread writes them to an append-only journal, and at every checkpoint
+ * interval it seals the journal, starts a new one, and merges the sealed
+ * journals with the previous snapshot into a new compacted snapshot. The
+ * merge reads files only, never live crawler state, so workers are not
+ * paused while a checkpoint is taken.
+ *
+ * The snapshot holds the discovered URLs that have been completed, the
+ * queued URLs in discovery order, and the crawled page count. URLs that were
+ * in progress when the crawler stopped are restored as queued and crawled
+ * again, so they may be counted twice against the page budget.
+ */
+public class CrawlCheckpoint implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CrawlCheckpoint.class);
+
+    static final String SNAPSHOT_FILE = "snapshot.bin";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".bin";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // writeUTF takes at most 65535 bytes, which is 21845 characters in the worst case
+    private static final int MAX_URL_LENGTH = 65535 / 3;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private static final byte QUEUED = 1;
+    private static final byte COMPLETED = 2;
+    private static final byte CRAWLED = 3;
+    private static final byte VISITED = 4;
+    private static final byte CRAWLED_COUNT = 5;
+    private static final byte HEADER = 6;
+
+    private final Path directory;
+    private final long intervalNanos;
+    private final ConcurrentLinkedQueue<Record> records;
+    private final Thread writerThread;
+    private volatile boolean running;
+    private volatile boolean failed;
+    private DataOutputStream journal;
+    private FileOutputStream journalFile;
+    private long journalId;
+    private volatile long checkpointCount;
+
+    /**
+     * Receives the state stored in a snapshot.
+     */
+    public interface StateVisitor {
+        /**
+         * Called for a URL that was discovered and already processed.
+         */
+        void visited(String url);
+
+        /**
+         * Called, in discovery order, for a URL still waiting to be crawled.
+         */
+        void queued(String url, int depth);
+
+        /**
+         * Called once with the number of pages crawled.
+         */
+        void crawledCount(int count);
+    }
+
+    /**
+     * Opens a checkpoint for a new crawl, discarding any earlier state in the directory.
+     *
+     * @param directory Directory for the journal and snapshot files
+     * @param intervalSeconds Seconds between compacted snapshots
+     * @return The checkpoint, not yet started
+     */
+    public static CrawlCheckpoint create(Path directory, int intervalSeconds) {
+        try {
+            Files.createDirectories(directory);
+            for (Path file : listCheckpointFiles(directory)) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare checkpoint directory " + directory, e);
+        }
+        return new CrawlCheckpoint(directory, intervalSeconds, 0);
+    }
+
+    /**
+     * Opens a checkpoint that continues from the state saved in another (or the
+     * same) checkpoint directory. The saved state is compacted into a snapshot in
+     * {@code directory}; call {@link #restore(StateVisitor)} to read it back
+     * before {@link #start()}.
+     *
+     * @param directory Directory for the journal and snapshot files
+     * @param intervalSeconds Seconds between compacted snapshots
+     * @param resumeDirectory Directory holding the state to resume from
+     * @return The checkpoint, not yet started
+     */
+    public static CrawlCheckpoint resume(Path directory, int intervalSeconds, Path resumeDirectory) {
+        try {
+            Files.createDirectories(directory);
+            boolean sameDirectory = Files.isSameFile(directory, resumeDirectory);
+            if (!sameDirectory) {
+                for (Path file : listCheckpointFiles(directory)) {
+                    Files.delete(file);
+                }
+            }
+            long lastJournalId = compact(resumeDirectory, directory, Long.MAX_VALUE, sameDirectory);
+            return new CrawlCheckpoint(directory, intervalSeconds, lastJournalId + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot resume from checkpoint " + resumeDirectory, e);
+        }
+    }
+
+    /**
+     * Checks if a directory holds checkpoint files.
+     *
+     * @param directory The directory
+     * @return true if a snapshot or journal exists
+     */
+    public static boolean exists(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        try {
+            return !listCheckpointFiles(directory).isEmpty();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private CrawlCheckpoint(Path directory, int intervalSeconds, long firstJournalId) {
+        this.directory = directory;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+        this.records = new ConcurrentLinkedQueue<>();
+        this.journalId = firstJournalId;
+        this.writerThread = new Thread(this::writeLoop, "crawl-checkpoint");
+        writerThread.setDaemon(true);
+    }
+
+    /**
+     * Passes the state held in the snapshot to a visitor.
+     *
+     * @param visitor Receives the saved state
+     */
+    public void restore(StateVisitor visitor) {
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(snapshot)) {
+            return;
+        }
+        try {
+            readSnapshot(snapshot, visitor);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read checkpoint snapshot " + snapshot, e);
+        }
+    }
+
+    /**
+     * Starts writing records to the journal.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        openJournal();
+        running = true;
+        writerThread.start();
+    }
+
+    /**
+     * Records a URL that was newly discovered and queued.
+     */
+    public void recordQueued(String url, int depth) {
+        if (!failed) {
+            records.offer(new Record(QUEUED, url, depth));
+        }
+    }
+
+    /**
+     * Records that a queued URL has been processed.
+     */
+    public void recordCompleted(String url) {
+        if (!failed) {
+            records.offer(new Record(COMPLETED, url, 0));
+        }
+    }
+
+    /**
+     * Records that a page was crawled successfully.
+     */
+    public void recordCrawled() {
+        if (!failed) {
+            records.offer(new Record(CRAWLED, null, 0));
+        }
+    }
+
+    /**
+     * Checks whether checkpointing stopped after a write failed. Records are
+     * dropped from then on, and the last snapshot is the latest state saved.
+     *
+     * @return true if the writer thread has stopped on an error
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the number of compacted snapshots written so far.
+     *
+     * @return Checkpoint count
+     */
+    public long getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    /**
+     * Writes the remaining records and a final snapshot, then stops the writer thread.
+     */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        long nextCheckpoint = System.nanoTime() + intervalNanos;
+        try {
+            while (running) {
+                LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+                drainRecords();
+                journal.flush();
+                if (System.nanoTime() - nextCheckpoint >= 0) {
+                    checkpoint();
+                    nextCheckpoint = System.nanoTime() + intervalNanos;
+                }
+            }
+            drainRecords();
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            // Nothing drains the queue any more, so stop crawler threads from filling it
+            failed = true;
+            records.clear();
+            logger.error("Checkpointing stopped: {}", e.getMessage());
+        } finally {
+            closeJournal();
+        }
+    }
+
+    private void drainRecords() throws IOException {
+        Record record;
+        while ((record = records.poll()) != null) {
+            if (record.url != null && record.url.length() > MAX_URL_LENGTH) {
+                logger.debug("URL too long to checkpoint: {}...", record.url.substring(0, 100));
+                continue;
+            }
+            journal.writeByte(record.type);
+            if (record.type == QUEUED) {
+                journal.writeInt(record.depth);
+            }
+            if (record.url != null) {
+                journal.writeUTF(record.url);
+            }
+        }
+    }
+
+    /**
+     * Seals the current journal and folds every sealed journal into the snapshot.
+     */
+    private void checkpoint() throws IOException {
+        long sealedId = journalId;
+        closeJournal();
+        journalId++;
+        openJournal();
+
+        long start = System.nanoTime();
+        compact(directory, directory, sealedId, true);
+        // Only the writer thread updates the count
+        checkpointCount++;
+        logger.debug("Checkpoint written in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void openJournal() {
+        Path path = directory.resolve(JOURNAL_PREFIX + journalId + JOURNAL_SUFFIX);
+        try {
+            journalFile = new FileOutputStream(path.toFile());
+            journal = new DataOutputStream(new BufferedOutputStream(journalFile, BUFFER_SIZE));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open checkpoint journal " + path, e);
+        }
+    }
+
+    private void closeJournal() {
+        try {
+            journal.flush();
+            journalFile.getFD().sync();
+            journal.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close checkpoint journal: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Merges the snapshot and the journals up to {@code maxJournalId} in
+     * {@code source} into a new snapshot in {@code target}.
+     *
+     * @return The id of the last journal included in the new snapshot
+     */
+    private static long compact(Path source, Path target, long maxJournalId,
+                                boolean deleteJournals) throws IOException {
+        Path snapshot = source.resolve(SNAPSHOT_FILE);
+        long lastJournalId = Files.exists(snapshot) ? readHeader(snapshot) : -1;
+        List<Path> journals = new ArrayList<>();
+        for (Path journal : listJournals(source)) {
+            long id = journalId(journal);
+            if (id > lastJournalId && id <= maxJournalId) {
+                journals.add(journal);
+            }
+        }
+        if (!journals.isEmpty()) {
+            lastJournalId = journalId(journals.get(journals.size() - 1));
+        }
+
+        int crawledCount = 0;
+        Map<String, Integer> queued = new LinkedHashMap<>();
+        Path temp = target.resolve(SNAPSHOT_FILE + ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, BUFFER_SIZE))) {
+                out.writeByte(HEADER);
+                out.writeLong(lastJournalId);
+
+                // Completed URLs from the old snapshot are copied through without being held in memory
+                if (Files.exists(snapshot)) {
+                    try (DataInputStream in = open(snapshot)) {
+                        in.readByte();
+                        in.readLong();
+                        byte type;
+                        while ((type = readType(in)) != 0) {
+                            if (type == VISITED) {
+                                writeVisited(out, in.readUTF());
+                            } else if (type == QUEUED) {
+                                int depth = in.readInt();
+                                queued.put(in.readUTF(), depth);
+                            } else if (type == CRAWLED_COUNT) {
+                                crawledCount = in.readInt();
+                            } else {
+                                throw new IOException("Unexpected record " + type + " in " + snapshot);
+                            }
+                        }
+                    }
+                }
+
+                for (Path journal : journals) {
+                    crawledCount += replayJournal(journal, queued, out);
+                }
+
+                for (Map.Entry<String, Integer> entry : queued.entrySet()) {
+                    out.writeByte(QUEUED);
+                    out.writeInt(entry.getValue());
+                    out.writeUTF(entry.getKey());
+                }
+                out.writeByte(CRAWLED_COUNT);
+                out.writeInt(crawledCount);
+                out.flush();
+                file.getFD().sync();
+            }
+
+            // The rename is atomic, so a crash leaves either the old or the new snapshot
+            Files.move(temp, target.resolve(SNAPSHOT_FILE),
+                       StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (deleteJournals) {
+                for (Path journal : journals) {
+                    Files.deleteIfExists(journal);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return lastJournalId;
+    }
+
+    private static long readHeader(Path snapshot) throws IOException {
+        try (DataInputStream in = open(snapshot)) {
+            if (in.readByte() != HEADER) {
+                throw new IOException("Not a checkpoint snapshot: " + snapshot);
+            }
+            return in.readLong();
+        }
+    }
+
+    /**
+     * Applies a journal to the queued URLs, writing URLs that completed as visited.
+     *
+     * @return The number of crawled pages recorded in the journal
+     */
+    private static int replayJournal(Path journal, Map<String, Integer> queued,
+                                     DataOutputStream out) throws IOException {
+        int crawled = 0;
+        try (DataInputStream in = open(journal)) {
+            while (true) {
+                try {
+                    byte type = in.readByte();
+                    if (type == QUEUED) {
+                        int depth = in.readInt();
+                        queued.put(in.readUTF(), depth);
+                    } else if (type == COMPLETED) {
+                        String url = in.readUTF();
+                        if (queued.remove(url) != null) {
+                            writeVisited(out, url);
+                        }
+                    } else if (type == CRAWLED) {
+                        crawled++;
+                    } else {
+                        throw new IOException("Unexpected record " + type + " in " + journal);
+                    }
+                } catch (EOFException e) {
+                    // End of journal, or a record torn by a crash
+                    break;
+                }
+            }
+        }
+        return crawled;
+    }
+
+    private static void readSnapshot(Path snapshot, StateVisitor visitor) throws IOException {
+        try (DataInputStream in = open(snapshot)) {
+            if (in.readByte() != HEADER) {
+                throw new IOException("Not a checkpoint snapshot: " + snapshot);
+            }
+            in.readLong();
+            byte type;
+            while ((type = readType(in)) != 0) {
+                if (type == VISITED) {
+                    visitor.visited(in.readUTF());
+                } else if (type == QUEUED) {
+                    int depth = in.readInt();
+                    visitor.queued(in.readUTF(), depth);
+                } else if (type == CRAWLED_COUNT) {
+                    visitor.crawledCount(in.readInt());
+                }
+            }
+        }
+    }
+
+    private static void writeVisited(DataOutputStream out, String url) throws IOException {
+        out.writeByte(VISITED);
+        out.writeUTF(url);
+    }
+
+    private static byte readType(DataInputStream in) throws IOException {
+        int type = in.read();
+        return type < 0 ? 0 : (byte) type;
+    }
+
+    private static DataInputStream open(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        return new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+    }
+
+    private static List<Path> listJournals(Path directory) throws IOException {
+        List<Path> journals = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX)) {
+            for (Path journal : stream) {
+                journals.add(journal);
+            }
+        }
+        journals.sort((a, b) -> Long.compare(journalId(a), journalId(b)));
+        return journals;
+    }
+
+    private static List<Path> listCheckpointFiles(Path directory) throws IOException {
+        List<Path> files = listJournals(directory);
+        Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            files.add(snapshot);
+        }
+        return files;
+    }
+
+    private static long journalId(Path journal) {
+        String name = journal.getFileName().toString();
+        return Long.parseLong(name.substring(JOURNAL_PREFIX.length(), name.length() - JOURNAL_SUFFIX.length()));
+    }
+
+    /**
+     * A state change waiting to be written to the journal.
+     */
+    private static final class Record {
+        private final byte type;
+        private final String url;
+        private final int depth;
+
+        Record(byte type, String url, int depth) {
+            this.type = type;
+            this.url = url;
+            this.depth = depth;
+        }
+    }
+}
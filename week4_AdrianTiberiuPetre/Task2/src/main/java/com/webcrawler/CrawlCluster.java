@@ -0,0 +1,750 @@
+package com.webcrawler;
+
+import com.webcrawler.UrlManager.UrlDepthPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One node of a crawl spread over several WebCrawler processes.
+ *
+ * URLs are partitioned by host and port: every node owns the hosts that
+ * hash to its index and only crawls URLs on them. Links to hosts owned by
+ * another node are remembered as seen, so each is forwarded once, and sent
+ * to their owner in batches over a plain TCP connection per peer.
+ *
+ * Node 0 coordinates termination. It asks every node in turn whether it is
+ * idle and how many URLs it has forwarded and received, and ends the crawl
+ * once two rounds in a row find every node idle, as many URLs received as
+ * forwarded and no counter changed in between (the four-counter method): a
+ * URL still on its way would show as forwarded but not received, and a node
+ * woken between the rounds would have changed a counter. Every node then
+ * reports its totals, which node 0 merges into one {@link Summary}.
+ *
+ * Messages are a type byte followed by the fields of the message, read in
+ * order on each connection, so a status request is always answered after
+ * the URLs sent before it have been queued. A batch of URLs is read in full
+ * before any of it is queued or counted, and carries the sender's index and
+ * a sequence number per sender: a batch whose write failed is sent again
+ * with the same number, and dropped if it had arrived after all.
+ */
+public class CrawlCluster implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CrawlCluster.class);
+    static final int BATCH_SIZE = 512;
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long PROBE_INTERVAL_MILLIS = 50;
+    private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+    private static final int REPLY_TIMEOUT_MILLIS = 10_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    static final byte URLS = 1;
+    static final byte STATUS = 2;
+    private static final byte STOP = 3;
+
+    private final List<InetSocketAddress> nodes;
+    private final int nodeIndex;
+    private final Peer[] peers;
+    private final AtomicLong forwardedCount;
+    private final AtomicLong receivedCount;
+    private final AtomicInteger stopReplies;
+    private final long[] lastBatches;
+    private final Set<Socket> connections;
+    private ServerSocket serverSocket;
+    private UrlManager urlManager;
+    private Thread forwarder;
+    private Thread coordinator;
+    private volatile Summary summary;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a cluster node. Nothing is opened until {@link #start(UrlManager)}.
+     *
+     * @param nodes The address of every node as host:port, in the same order on every node
+     * @param nodeIndex The position of this node in the list
+     */
+    public CrawlCluster(List<String> nodes, int nodeIndex) {
+        if (nodes == null || nodes.isEmpty()) {
+            throw new IllegalArgumentException("Cluster nodes must be specified");
+        }
+        if (nodeIndex < 0 || nodeIndex >= nodes.size()) {
+            throw new IllegalArgumentException("Cluster node index must be between 0 and " + (nodes.size() - 1));
+        }
+        this.nodes = new ArrayList<>();
+        for (String node : nodes) {
+            this.nodes.add(parseAddress(node));
+        }
+        this.nodeIndex = nodeIndex;
+        this.peers = new Peer[nodes.size()];
+        for (int i = 0; i < peers.length; i++) {
+            if (i != nodeIndex) {
+                peers[i] = new Peer(this.nodes.get(i));
+            }
+        }
+        this.forwardedCount = new AtomicLong();
+        this.receivedCount = new AtomicLong();
+        this.stopReplies = new AtomicInteger();
+        this.lastBatches = new long[nodes.size()];
+        this.connections = ConcurrentHashMap.newKeySet();
+    }
+
+    private static InetSocketAddress parseAddress(String node) {
+        int colon = node == null ? -1 : node.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Cluster node must be host:port, got " + node);
+        }
+        try {
+            return new InetSocketAddress(node.substring(0, colon), Integer.parseInt(node.substring(colon + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cluster node must be host:port, got " + node, e);
+        }
+    }
+
+    /**
+     * Gets the node that owns a URL's host.
+     *
+     * @param url The normalized URL
+     * @param nodeCount Number of nodes in the cluster
+     * @return The owning node's index
+     */
+    public static int ownerOf(String url, int nodeCount) {
+        // Spread the bits, since host strings often differ only in the last characters
+        int hash = PolitenessScheduler.hostKey(url).hashCode() * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), nodeCount);
+    }
+
+    /**
+     * Checks whether this node crawls a URL.
+     *
+     * @param url The normalized URL
+     * @return true if the URL's host is owned by this node
+     */
+    public boolean owns(String url) {
+        return ownerOf(url, nodes.size()) == nodeIndex;
+    }
+
+    /**
+     * Sends a URL owned by another node to it with the next batch.
+     *
+     * @param url The normalized URL
+     * @param depth The URL's depth
+     */
+    public void forward(String url, int depth) {
+        Peer peer = peers[ownerOf(url, nodes.size())];
+        forwardedCount.incrementAndGet();
+        int pending;
+        synchronized (peer.pendingLock) {
+            peer.pending.add(new UrlDepthPair(url, depth));
+            pending = peer.pending.size();
+        }
+        if (pending >= BATCH_SIZE) {
+            LockSupport.unpark(forwarder);
+        }
+    }
+
+    /**
+     * Binds this node's address, without accepting connections yet. Call it
+     * before starting anything else, so a port in use fails the crawl
+     * before there is anything to shut down.
+     *
+     * @throws UncheckedIOException if the address cannot be bound
+     */
+    public void listen() {
+        if (serverSocket != null) {
+            return;
+        }
+        InetSocketAddress address = nodes.get(nodeIndex);
+        ServerSocket socket = null;
+        try {
+            socket = new ServerSocket();
+            socket.setReuseAddress(true);
+            socket.bind(address);
+        } catch (IOException e) {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            throw new UncheckedIOException("Cannot listen on " + address, e);
+        }
+        serverSocket = socket;
+    }
+
+    /**
+     * Accepts other nodes and starts forwarding, and on node 0
+     * coordinating, listening first if {@link #listen()} was not called.
+     * URLs received are added to the given manager, which is finished once
+     * the whole cluster is. Call it once the root URL is queued, so the
+     * coordinator cannot find the cluster idle before the crawl has begun.
+     *
+     * @param urlManager The manager of this node's partition
+     */
+    public void start(UrlManager urlManager) {
+        this.urlManager = urlManager;
+        listen();
+        startDaemon(this::acceptLoop, "crawl-cluster-accept");
+        forwarder = startDaemon(this::forwardLoop, "crawl-cluster-forward");
+        if (isCoordinator()) {
+            coordinator = startDaemon(this::coordinateLoop, "crawl-cluster-coordinator");
+        }
+    }
+
+    private static Thread startDaemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    public int getNodeIndex() {
+        return nodeIndex;
+    }
+
+    public int getNodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Checks whether this node detects termination and merges the summary.
+     *
+     * @return true on node 0
+     */
+    public boolean isCoordinator() {
+        return nodeIndex == 0;
+    }
+
+    /**
+     * Gets the number of URLs this node sent to their owners.
+     *
+     * @return Forwarded URL count
+     */
+    public long getForwardedCount() {
+        return forwardedCount.get();
+    }
+
+    /**
+     * Gets the number of URLs other nodes sent to this node.
+     *
+     * @return Received URL count
+     */
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    /**
+     * Gets the totals of every node, merged by the coordinator once the
+     * cluster has finished.
+     *
+     * @return The summary, or null on other nodes and before the end
+     */
+    public Summary getSummary() {
+        return summary;
+    }
+
+    /**
+     * Stops listening and forwarding and closes all connections, once the
+     * totals the coordinator asked for have been sent.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        awaitStopReplies();
+        if (forwarder != null) {
+            LockSupport.unpark(forwarder);
+        }
+        if (coordinator != null) {
+            coordinator.interrupt();
+        }
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to close cluster socket: {}", e.getMessage());
+        }
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+        for (Peer peer : peers) {
+            if (peer != null) {
+                peer.disconnect();
+            }
+        }
+    }
+
+    private void awaitStopReplies() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(REPLY_TIMEOUT_MILLIS);
+        synchronized (stopReplies) {
+            long remaining;
+            while (stopReplies.get() > 0 && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(stopReplies, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                startDaemon(() -> serve(socket), "crawl-cluster-peer");
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.error("Failed to accept cluster connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Handles the messages arriving on one connection, in order.
+     */
+    private void serve(Socket socket) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            int type;
+            while ((type = in.read()) >= 0) {
+                switch (type) {
+                    case URLS:
+                        receiveUrls(in);
+                        break;
+                    case STATUS:
+                        localStatus().write(out);
+                        out.flush();
+                        break;
+                    case STOP:
+                        // Reply before finishing: finishing ends the crawl, which closes this connection
+                        stopReplies.incrementAndGet();
+                        try {
+                            localStats().write(out);
+                            out.flush();
+                        } finally {
+                            synchronized (stopReplies) {
+                                stopReplies.decrementAndGet();
+                                stopReplies.notifyAll();
+                            }
+                        }
+                        urlManager.finish();
+                        break;
+                    default:
+                        throw new IOException("Unknown cluster message " + type);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                logger.warn("Cluster connection from {} failed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            }
+        } finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Reads a whole batch of URLs, then queues and counts it unless it is a
+     * batch from the same sender that arrived before.
+     */
+    private void receiveUrls(DataInputStream in) throws IOException {
+        int sender = in.readInt();
+        long sequence = in.readLong();
+        int count = in.readInt();
+        if (sender < 0 || sender >= lastBatches.length || sender == nodeIndex || count < 0) {
+            throw new IOException("Invalid URL batch from node " + sender + " with " + count + " URLs");
+        }
+        List<UrlDepthPair> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(new UrlDepthPair(in.readUTF(), in.readInt()));
+        }
+        synchronized (lastBatches) {
+            if (sequence <= lastBatches[sender]) {
+                logger.debug("Dropping batch {} from node {}, received before", sequence, sender);
+                return;
+            }
+            lastBatches[sender] = sequence;
+        }
+        for (UrlDepthPair urlDepthPair : batch) {
+            urlManager.addUrl(urlDepthPair.getUrl(), urlDepthPair.getDepth());
+        }
+        receivedCount.addAndGet(count);
+    }
+
+    private void forwardLoop() {
+        while (!closed) {
+            LockSupport.parkNanos(this, FLUSH_INTERVAL_NANOS);
+            for (Peer peer : peers) {
+                if (peer != null && !closed) {
+                    peer.flush();
+                }
+            }
+        }
+    }
+
+    private void coordinateLoop() {
+        long[] previous = null;
+        try {
+            while (!closed) {
+                Thread.sleep(PROBE_INTERVAL_MILLIS);
+                long[] counters = probe();
+                if (counters != null && Arrays.equals(counters, previous) && isBalanced(counters)) {
+                    terminate();
+                    return;
+                }
+                previous = counters;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Asks every node for its status.
+     *
+     * @return Forwarded and received counts of every node in turn, or null if
+     *         a node is busy or cannot be reached
+     */
+    private long[] probe() {
+        long[] counters = new long[2 * nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            Status status;
+            try {
+                status = i == nodeIndex ? localStatus() : peers[i].requestStatus();
+            } catch (IOException e) {
+                logger.debug("Cluster node {} not reachable: {}", i, e.getMessage());
+                return null;
+            }
+            if (!status.idle) {
+                return null;
+            }
+            counters[2 * i] = status.forwarded;
+            counters[2 * i + 1] = status.received;
+        }
+        return counters;
+    }
+
+    private static boolean isBalanced(long[] counters) {
+        long forwarded = 0;
+        long received = 0;
+        for (int i = 0; i < counters.length; i += 2) {
+            forwarded += counters[i];
+            received += counters[i + 1];
+        }
+        return forwarded == received;
+    }
+
+    /**
+     * Tells every node to finish and merges their totals.
+     */
+    private void terminate() {
+        List<NodeStats> stats = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (i == nodeIndex) {
+                stats.add(localStats());
+                continue;
+            }
+            try {
+                stats.add(peers[i].stop());
+            } catch (IOException e) {
+                logger.warn("Cluster node {} did not report its totals: {}", i, e.getMessage());
+            }
+        }
+        summary = new Summary(stats);
+        logger.info("Cluster finished: {} pages crawled on {} nodes", summary.getPagesCrawled(), stats.size());
+        urlManager.finish();
+    }
+
+    /**
+     * Reads the counters before checking for work, so a URL received in
+     * between makes the node look busy rather than idle with a stale count.
+     */
+    private Status localStatus() {
+        long forwarded = forwardedCount.get();
+        long received = receivedCount.get();
+        return new Status(urlManager.isIdle(), forwarded, received);
+    }
+
+    private NodeStats localStats() {
+        return new NodeStats(nodeIndex, urlManager.getCrawledCount(),
+                             urlManager.getTotalDiscoveredUrls() - forwardedCount.get(),
+                             forwardedCount.get(), receivedCount.get());
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close cluster connection: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * The connection to another node, opened when first needed and opened
+     * again after a failure. URLs waiting to be forwarded stay queued until
+     * a batch has been written.
+     */
+    private final class Peer {
+        private final InetSocketAddress address;
+        private final Object pendingLock = new Object();
+        private List<UrlDepthPair> pending = new ArrayList<>();
+        // Only touched by the forwarder thread
+        private long nextSequence = 1;
+        private List<UrlDepthPair> unsent;
+        private long unsentSequence;
+        private Socket socket;
+        private DataInputStream in;
+        private DataOutputStream out;
+
+        Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        /**
+         * Sends the batch whose write failed last time, unchanged and with
+         * its sequence number, then the URLs queued since.
+         */
+        void flush() {
+            if (unsent != null) {
+                if (!trySend(unsentSequence, unsent)) {
+                    return;
+                }
+                unsent = null;
+            }
+            List<UrlDepthPair> batch;
+            synchronized (pendingLock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            long sequence = nextSequence++;
+            if (!trySend(sequence, batch)) {
+                unsent = batch;
+                unsentSequence = sequence;
+            }
+        }
+
+        private boolean trySend(long sequence, List<UrlDepthPair> batch) {
+            try {
+                sendUrls(sequence, batch);
+                return true;
+            } catch (IOException e) {
+                logger.debug("Cannot forward {} URLs to {} yet: {}", batch.size(), address, e.getMessage());
+                return false;
+            }
+        }
+
+        private synchronized void sendUrls(long sequence, List<UrlDepthPair> batch) throws IOException {
+            try {
+                connect();
+                out.writeByte(URLS);
+                out.writeInt(nodeIndex);
+                out.writeLong(sequence);
+                out.writeInt(batch.size());
+                for (UrlDepthPair urlDepthPair : batch) {
+                    out.writeUTF(urlDepthPair.getUrl());
+                    out.writeInt(urlDepthPair.getDepth());
+                }
+                out.flush();
+            } catch (IOException e) {
+                disconnect();
+                throw e;
+            }
+        }
+
+        synchronized Status requestStatus() throws IOException {
+            try {
+                connect();
+                out.writeByte(STATUS);
+                out.flush();
+                return Status.read(in);
+            } catch (IOException e) {
+                disconnect();
+                throw e;
+            }
+        }
+
+        synchronized NodeStats stop() throws IOException {
+            try {
+                connect();
+                out.writeByte(STOP);
+                out.flush();
+                return NodeStats.read(in);
+            } catch (IOException e) {
+                disconnect();
+                throw e;
+            }
+        }
+
+        private void connect() throws IOException {
+            if (socket != null) {
+                return;
+            }
+            Socket connection = new Socket();
+            try {
+                connection.setTcpNoDelay(true);
+                // A node that stops answering must not hang the coordinator
+                connection.setSoTimeout(REPLY_TIMEOUT_MILLIS);
+                connection.connect(address, CONNECT_TIMEOUT_MILLIS);
+                in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), BUFFER_SIZE));
+            } catch (IOException e) {
+                closeQuietly(connection);
+                throw e;
+            }
+            socket = connection;
+        }
+
+        synchronized void disconnect() {
+            if (socket != null) {
+                closeQuietly(socket);
+                socket = null;
+            }
+        }
+    }
+
+    /**
+     * A node's answer to a status request.
+     */
+    private static final class Status {
+        final boolean idle;
+        final long forwarded;
+        final long received;
+
+        Status(boolean idle, long forwarded, long received) {
+            this.idle = idle;
+            this.forwarded = forwarded;
+            this.received = received;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeBoolean(idle);
+            out.writeLong(forwarded);
+            out.writeLong(received);
+        }
+
+        static Status read(DataInputStream in) throws IOException {
+            return new Status(in.readBoolean(), in.readLong(), in.readLong());
+        }
+    }
+
+    /**
+     * The totals of one node at the end of the crawl.
+     */
+    public static final class NodeStats {
+        private final int nodeIndex;
+        private final long pagesCrawled;
+        private final long urlsDiscovered;
+        private final long urlsForwarded;
+        private final long urlsReceived;
+
+        NodeStats(int nodeIndex, long pagesCrawled, long urlsDiscovered, long urlsForwarded, long urlsReceived) {
+            this.nodeIndex = nodeIndex;
+            this.pagesCrawled = pagesCrawled;
+            this.urlsDiscovered = urlsDiscovered;
+            this.urlsForwarded = urlsForwarded;
+            this.urlsReceived = urlsReceived;
+        }
+
+        public int getNodeIndex() {
+            return nodeIndex;
+        }
+
+        public long getPagesCrawled() {
+            return pagesCrawled;
+        }
+
+        /**
+         * Gets the number of distinct URLs on hosts the node owns.
+         *
+         * @return Discovered URL count
+         */
+        public long getUrlsDiscovered() {
+            return urlsDiscovered;
+        }
+
+        public long getUrlsForwarded() {
+            return urlsForwarded;
+        }
+
+        public long getUrlsReceived() {
+            return urlsReceived;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(nodeIndex);
+            out.writeLong(pagesCrawled);
+            out.writeLong(urlsDiscovered);
+            out.writeLong(urlsForwarded);
+            out.writeLong(urlsReceived);
+        }
+
+        static NodeStats read(DataInputStream in) throws IOException {
+            return new NodeStats(in.readInt(), in.readLong(), in.readLong(), in.readLong(), in.readLong());
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Node %d: %d pages crawled, %d URLs discovered, %d forwarded, %d received",
+                                 nodeIndex, pagesCrawled, urlsDiscovered, urlsForwarded, urlsReceived);
+        }
+    }
+
+    /**
+     * The totals of every node that reported at the end of the crawl.
+     */
+    public static final class Summary {
+        private final List<NodeStats> nodes;
+
+        Summary(List<NodeStats> nodes) {
+            this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        }
+
+        public List<NodeStats> getNodes() {
+            return nodes;
+        }
+
+        public long getPagesCrawled() {
+            return nodes.stream().mapToLong(NodeStats::getPagesCrawled).sum();
+        }
+
+        /**
+         * Gets the number of distinct URLs discovered by the whole cluster;
+         * every URL is counted by the node that owns it.
+         *
+         * @return Discovered URL count
+         */
+        public long getUrlsDiscovered() {
+            return nodes.stream().mapToLong(NodeStats::getUrlsDiscovered).sum();
+        }
+
+        public long getUrlsForwarded() {
+            return nodes.stream().mapToLong(NodeStats::getUrlsForwarded).sum();
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.webcrawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Journal with one JSON line per crawled page, in place of per-page log
+ * messages.
+ *
+ * Crawler threads claim a slot in a ring of preallocated entries with one
+ * atomic increment, fill it in and publish it; a single daemon thread turns
+ * published entries into lines in order and writes them to the file. Neither
+ * side takes a lock. A crawler thread only waits if the writer has fallen a
+ * whole ring behind. Every line has the same fields, with the URL last:
+ * <pre>
+ * {"ts":1700000000000,"depth":1,"status":200,"outcome":"fetched","bytes":5120,
+ *  "fetch_us":1830,"parse_us":210,"save_us":95,"links_found":12,"links_added":4,"url":"http://..."}
+ * </pre>
+ */
+public class CrawlJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CrawlJournal.class);
+    public static final int DEFAULT_CAPACITY = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * What became of a page.
+     */
+    public enum Outcome {
+        /** The page was fetched and processed. */
+        FETCHED,
+        /** The server reported the saved copy as unchanged. */
+        NOT_MODIFIED,
+        /** The body was already saved under another URL. */
+        DUPLICATE,
+        /** No usable content was retrieved. */
+        FAILED;
+
+        private final String label = name().toLowerCase(Locale.ROOT);
+    }
+
+    private final Path file;
+    private final Entry[] entries;
+    private final int mask;
+    private final AtomicLong claimed;
+    private final AtomicLongArray published;
+    private final Thread writerThread;
+    private final Writer writer;
+    private final StringBuilder line;
+    private final AtomicLong stallCount;
+    private volatile long consumed;
+    private volatile boolean closed;
+
+    /**
+     * Opens a journal with the default capacity.
+     *
+     * @param file The journal file
+     * @param append Whether to keep the entries of an earlier run
+     */
+    public CrawlJournal(Path file, boolean append) {
+        this(file, append, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens a journal.
+     *
+     * @param file The journal file
+     * @param append Whether to keep the entries of an earlier run
+     * @param capacity Entries the ring holds, rounded up to a power of two
+     */
+    public CrawlJournal(Path file, boolean append, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Journal capacity must be at least 1");
+        }
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.file = file;
+        this.entries = new Entry[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+        }
+        this.mask = size - 1;
+        this.claimed = new AtomicLong();
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        this.line = new StringBuilder(256);
+        this.stallCount = new AtomicLong();
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING),
+                StandardCharsets.UTF_8), BUFFER_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open crawl journal " + file, e);
+        }
+        this.writerThread = new Thread(this::writeLoop, "crawl-journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Records a page. Does not allocate or lock; only waits if the ring is
+     * full. Pages recorded after the journal was closed are dropped.
+     *
+     * @param url The page URL
+     * @param depth The page's depth
+     * @param status The HTTP status code, or 0 if there was no response
+     * @param outcome What became of the page
+     * @param bytes Size of the body
+     * @param fetchNanos Time until the response arrived
+     * @param parseNanos Time to extract title and links, 0 if not parsed
+     * @param saveNanos Time to save the page, 0 if not saved
+     * @param linksFound Links found on the page
+     * @param linksAdded Links that were new and queued
+     */
+    public void record(String url, int depth, int status, Outcome outcome, long bytes,
+                       long fetchNanos, long parseNanos, long saveNanos, int linksFound, int linksAdded) {
+        if (closed) {
+            return;
+        }
+        long sequence = claimed.getAndIncrement();
+        if (sequence - consumed >= entries.length) {
+            stallCount.incrementAndGet();
+            // The writer drains every claimed entry before it stops, even when closing
+            while (sequence - consumed >= entries.length) {
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            }
+        }
+
+        Entry entry = entries[(int) (sequence & mask)];
+        entry.timestamp = System.currentTimeMillis();
+        entry.url = url;
+        entry.depth = depth;
+        entry.status = status;
+        entry.outcome = outcome;
+        entry.bytes = bytes;
+        entry.fetchMicros = TimeUnit.NANOSECONDS.toMicros(fetchNanos);
+        entry.parseMicros = TimeUnit.NANOSECONDS.toMicros(parseNanos);
+        entry.saveMicros = TimeUnit.NANOSECONDS.toMicros(saveNanos);
+        entry.linksFound = linksFound;
+        entry.linksAdded = linksAdded;
+        // The volatile write publishes the fields above to the writer thread
+        published.set((int) (sequence & mask), sequence);
+    }
+
+    /**
+     * Gets how often a crawler thread had to wait for the writer.
+     *
+     * @return Number of records that found the ring full
+     */
+    public long getStallCount() {
+        return stallCount.get();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the entries recorded so far and closes the file.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.error("Failed to close crawl journal {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        boolean dirty = false;
+        while (true) {
+            long next = consumed;
+            int index = (int) (next & mask);
+            if (published.get(index) == next) {
+                Entry entry = entries[index];
+                format(entry);
+                entry.url = null;
+                consumed = next + 1;
+                try {
+                    writer.append(line);
+                    dirty = true;
+                } catch (IOException e) {
+                    logger.error("Failed to write crawl journal {}: {}", file, e.getMessage());
+                }
+                continue;
+            }
+
+            // Nothing published: let readers of the file see what was written, then wait
+            if (dirty) {
+                try {
+                    writer.flush();
+                } catch (IOException e) {
+                    logger.error("Failed to flush crawl journal {}: {}", file, e.getMessage());
+                }
+                dirty = false;
+            }
+            if (closed && claimed.get() == next) {
+                return;
+            }
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+    }
+
+    private void format(Entry entry) {
+        line.setLength(0);
+        line.append("{\"ts\":").append(entry.timestamp)
+            .append(",\"depth\":").append(entry.depth)
+            .append(",\"status\":").append(entry.status)
+            .append(",\"outcome\":\"").append(entry.outcome.label)
+            .append("\",\"bytes\":").append(entry.bytes)
+            .append(",\"fetch_us\":").append(entry.fetchMicros)
+            .append(",\"parse_us\":").append(entry.parseMicros)
+            .append(",\"save_us\":").append(entry.saveMicros)
+            .append(",\"links_found\":").append(entry.linksFound)
+            .append(",\"links_added\":").append(entry.linksAdded)
+            .append(",\"url\":\"");
+        appendEscaped(line, entry.url);
+        line.append("\"}\n");
+    }
+
+    private static void appendEscaped(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Computes crawl totals from a journal file.
+     *
+     * @param file The journal file
+     * @return The totals
+     * @throws IOException if the file cannot be read
+     */
+    public static Summary summarize(Path file) throws IOException {
+        Summary summary = new Summary();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                // A torn last line after a crash is skipped
+                if (text.endsWith("}")) {
+                    summary.add(text);
+                }
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Totals over the entries of a journal.
+     */
+    public static class Summary {
+        private final Map<Outcome, Long> outcomes = new EnumMap<>(Outcome.class);
+        private final Map<Integer, Long> statuses = new TreeMap<>();
+        private final LatencyHistogram fetchLatency = new LatencyHistogram();
+        private long bytes;
+        private long linksFound;
+        private long linksAdded;
+
+        private void add(String text) {
+            Outcome outcome = Outcome.valueOf(stringField(text, "outcome").toUpperCase(Locale.ROOT));
+            outcomes.merge(outcome, 1L, Long::sum);
+            statuses.merge((int) longField(text, "status"), 1L, Long::sum);
+            bytes += longField(text, "bytes");
+            linksFound += longField(text, "links_found");
+            linksAdded += longField(text, "links_added");
+            fetchLatency.recordNanos(TimeUnit.MICROSECONDS.toNanos(longField(text, "fetch_us")));
+        }
+
+        /**
+         * Gets the number of pages that were crawled, whatever became of them
+         * other than failing.
+         *
+         * @return Page count
+         */
+        public long getPagesCrawled() {
+            return getCount(Outcome.FETCHED) + getCount(Outcome.NOT_MODIFIED) + getCount(Outcome.DUPLICATE);
+        }
+
+        public long getCount(Outcome outcome) {
+            return outcomes.getOrDefault(outcome, 0L);
+        }
+
+        /**
+         * Gets the number of entries per HTTP status, with 0 for fetches that
+         * got no response.
+         *
+         * @return Counts by status
+         */
+        public Map<Integer, Long> getStatusCounts() {
+            return statuses;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getLinksFound() {
+            return linksFound;
+        }
+
+        public long getLinksAdded() {
+            return linksAdded;
+        }
+
+        public LatencyHistogram.Snapshot getFetchLatency() {
+            return fetchLatency.snapshot();
+        }
+
+        private static String stringField(String text, String name) {
+            int start = text.indexOf("\"" + name + "\":\"") + name.length() + 4;
+            return text.substring(start, text.indexOf('"', start));
+        }
+
+        private static long longField(String text, String name) {
+            int start = text.indexOf("\"" + name + "\":") + name.length() + 3;
+            int end = start;
+            while (end < text.length() && (Character.isDigit(text.charAt(end)) || text.charAt(end) == '-')) {
+                end++;
+            }
+            return Long.parseLong(text.substring(start, end));
+        }
+    }
+
+    /**
+     * A slot of the ring, reused once the writer has formatted it.
+     */
+    private static final class Entry {
+        long timestamp;
+        String url;
+        int depth;
+        int status;
+        Outcome outcome;
+        long bytes;
+        long fetchMicros;
+        long parseMicros;
+        long saveMicros;
+        int linksFound;
+        int linksAdded;
+    }
+}
@@ -0,0 +1,279 @@
+package com.webcrawler;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Live counters of a running crawl: throughput, fetch, parse, save and
+ * write latency, frontier size, write queue depth, active workers and
+ * responses by HTTP status.
+ *
+ * Recording only touches adders, atomic arrays and lock-free histograms, so
+ * crawler threads never wait for each other or for a reader. Reads see a
+ * slightly stale but never torn view. The frontier size and the write queue
+ * are asked for when they are read rather than recorded.
+ */
+public class CrawlMetrics implements CrawlMetricsMXBean {
+    private static final int MAX_STATUS = 599;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final LatencyHistogram EMPTY_LATENCY = new LatencyHistogram();
+
+    private final IntSupplier frontierSize;
+    private final IntSupplier concurrencyLimit;
+    private final long startNanos;
+    private final LongAdder pages;
+    private final LongAdder bytes;
+    private final AtomicInteger activeWorkers;
+    private final AtomicLongArray responsesByStatus;
+    private final LatencyHistogram fetchLatency;
+    private final LatencyHistogram parseLatency;
+    private final LatencyHistogram saveLatency;
+    private final WriteBehindQueue writeQueue;
+
+    /**
+     * Constructs empty metrics.
+     *
+     * @param frontierSize Reads the number of URLs waiting to be crawled
+     * @param concurrencyLimit Reads the number of URLs allowed to be crawled at once
+     * @param writeQueue The queue pages are written behind from, or null if they are written on the crawler threads
+     */
+    public CrawlMetrics(IntSupplier frontierSize, IntSupplier concurrencyLimit, WriteBehindQueue writeQueue) {
+        this.frontierSize = frontierSize;
+        this.concurrencyLimit = concurrencyLimit;
+        this.writeQueue = writeQueue;
+        this.startNanos = System.nanoTime();
+        this.pages = new LongAdder();
+        this.bytes = new LongAdder();
+        this.activeWorkers = new AtomicInteger();
+        this.responsesByStatus = new AtomicLongArray(MAX_STATUS + 1);
+        this.fetchLatency = new LatencyHistogram();
+        this.parseLatency = new LatencyHistogram();
+        this.saveLatency = new LatencyHistogram();
+    }
+
+    /**
+     * Records that a worker started crawling a URL.
+     */
+    public void workerStarted() {
+        activeWorkers.incrementAndGet();
+    }
+
+    /**
+     * Records that a worker finished crawling a URL.
+     */
+    public void workerFinished() {
+        activeWorkers.decrementAndGet();
+    }
+
+    /**
+     * Records a fetch.
+     *
+     * @param statusCode The HTTP status code, or 0 if the fetch failed
+     * @param nanos Time until the response arrived
+     */
+    public void recordFetch(int statusCode, long nanos) {
+        responsesByStatus.incrementAndGet(statusCode >= 0 && statusCode <= MAX_STATUS ? statusCode : 0);
+        fetchLatency.recordNanos(nanos);
+    }
+
+    /**
+     * Records the time taken to extract the title and links of a page.
+     *
+     * @param nanos Parse time
+     */
+    public void recordParse(long nanos) {
+        parseLatency.recordNanos(nanos);
+    }
+
+    /**
+     * Records the time taken to save a page. With a write queue this is the
+     * time to hand the page over; a streamed page includes reading its body.
+     *
+     * @param nanos Save time
+     */
+    public void recordSave(long nanos) {
+        saveLatency.recordNanos(nanos);
+    }
+
+    /**
+     * Records the body of a fetched page. Pages read into a String are
+     * counted in characters, which is close enough for throughput.
+     *
+     * @param byteCount Size of the body
+     */
+    public void recordBytes(long byteCount) {
+        bytes.add(byteCount);
+    }
+
+    /**
+     * Records a page counted as crawled.
+     */
+    public void recordPage() {
+        pages.increment();
+    }
+
+    @Override
+    public long getPagesCrawled() {
+        return pages.sum();
+    }
+
+    @Override
+    public long getBytesDownloaded() {
+        return bytes.sum();
+    }
+
+    @Override
+    public double getPagesPerSecond() {
+        return perSecond(pages.sum(), System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return perSecond(bytes.sum(), System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public int getFrontierSize() {
+        return frontierSize.getAsInt();
+    }
+
+    @Override
+    public int getConcurrencyLimit() {
+        return concurrencyLimit.getAsInt();
+    }
+
+    @Override
+    public int getWriteQueueDepth() {
+        return writeQueue == null ? 0 : writeQueue.getQueueDepth();
+    }
+
+    @Override
+    public int getActiveWorkers() {
+        return activeWorkers.get();
+    }
+
+    @Override
+    public long getFetchErrors() {
+        long errors = responsesByStatus.get(0);
+        for (int status = 400; status <= MAX_STATUS; status++) {
+            errors += responsesByStatus.get(status);
+        }
+        return errors;
+    }
+
+    @Override
+    public Map<Integer, Long> getResponsesByStatus() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (int status = 0; status <= MAX_STATUS; status++) {
+            long count = responsesByStatus.get(status);
+            if (count > 0) {
+                counts.put(status, count);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getFetchLatency() {
+        return fetchLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getParseLatency() {
+        return parseLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getSaveLatency() {
+        return saveLatency.snapshot();
+    }
+
+    @Override
+    public LatencyHistogram.Snapshot getWriteLatency() {
+        return writeQueue == null ? EMPTY_LATENCY.snapshot() : writeQueue.getLatency();
+    }
+
+    @Override
+    public String report() {
+        long nanos = System.nanoTime() - startNanos;
+        String line = String.format(Locale.ROOT,
+            "%d pages (%.1f/s), %.1f KB/s, frontier %d, %d/%d active workers, %d errors %s; "
+                + "fetch %s; parse %s; save %s",
+            pages.sum(), perSecond(pages.sum(), nanos), perSecond(bytes.sum(), nanos) / 1024,
+            getFrontierSize(), getActiveWorkers(), getConcurrencyLimit(), getFetchErrors(), getResponsesByStatus(),
+            describe(getFetchLatency()), describe(getParseLatency()), describe(getSaveLatency()));
+        if (writeQueue == null) {
+            return line;
+        }
+        return line + String.format(Locale.ROOT, "; write queue %d, write %s",
+                                    getWriteQueueDepth(), describe(getWriteLatency()));
+    }
+
+    /**
+     * Renders all metrics in the Prometheus text exposition format. Rates
+     * are left to the server; latencies are summaries in seconds.
+     *
+     * @return The metrics
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        appendMetric(out, "crawler_pages_total", "counter", "Pages crawled.", pages.sum());
+        appendMetric(out, "crawler_bytes_total", "counter", "Bytes of page bodies fetched.", bytes.sum());
+        appendMetric(out, "crawler_frontier_size", "gauge", "URLs waiting to be crawled.", getFrontierSize());
+        appendMetric(out, "crawler_active_workers", "gauge", "URLs being crawled.", getActiveWorkers());
+        appendMetric(out, "crawler_concurrency_limit", "gauge", "URLs allowed to be crawled at once.",
+                     getConcurrencyLimit());
+        appendMetric(out, "crawler_write_queue_depth", "gauge", "Pages waiting to be written.",
+                     getWriteQueueDepth());
+
+        out.append("# HELP crawler_responses_total Fetches by HTTP status, 0 if there was no response.\n");
+        out.append("# TYPE crawler_responses_total counter\n");
+        for (Map.Entry<Integer, Long> entry : getResponsesByStatus().entrySet()) {
+            out.append("crawler_responses_total{status=\"").append(entry.getKey()).append("\"} ")
+                .append(entry.getValue()).append('\n');
+        }
+
+        appendSummary(out, "crawler_fetch_seconds", "Time until the response arrived.", getFetchLatency());
+        appendSummary(out, "crawler_parse_seconds", "Time to extract title and links.", getParseLatency());
+        appendSummary(out, "crawler_save_seconds", "Time to save a page.", getSaveLatency());
+        appendSummary(out, "crawler_write_seconds", "Time from queueing a page to having written it.",
+                      getWriteLatency());
+        return out.toString();
+    }
+
+    private static void appendMetric(StringBuilder out, String name, String type, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void appendSummary(StringBuilder out, String name, String help,
+                                      LatencyHistogram.Snapshot snapshot) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" summary\n");
+        for (double quantile : QUANTILES) {
+            out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                .append(seconds(snapshot.getQuantileMillis(quantile))).append('\n');
+        }
+        out.append(name).append("_sum ").append(seconds(snapshot.getSumMillis())).append('\n');
+        out.append(name).append("_count ").append(snapshot.getCount()).append('\n');
+    }
+
+    private static String describe(LatencyHistogram.Snapshot snapshot) {
+        return String.format(Locale.ROOT, "p50 %.1f / p99 %.1f / max %.1f ms",
+                             snapshot.getP50Millis(), snapshot.getP99Millis(), snapshot.getMaxMillis());
+    }
+
+    private static String seconds(double millis) {
+        return String.format(Locale.ROOT, "%.6f", millis / 1e3);
+    }
+
+    static double perSecond(long count, long nanos) {
+        return nanos <= 0 ? 0 : count * 1e9 / nanos;
+    }
+}
@@ -0,0 +1,61 @@
+package com.webcrawler;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link CrawlMetrics}, as seen over JMX.
+ */
+public interface CrawlMetricsMXBean {
+
+    long getPagesCrawled();
+
+    long getBytesDownloaded();
+
+    double getPagesPerSecond();
+
+    double getBytesPerSecond();
+
+    int getFrontierSize();
+
+    /**
+     * Gets the number of URLs allowed to be crawled at once, which changes
+     * over time with adaptive concurrency.
+     */
+    int getConcurrencyLimit();
+
+    int getActiveWorkers();
+
+    /**
+     * Gets the number of pages waiting for the writer threads, or 0 if pages
+     * are written on the crawler threads.
+     */
+    int getWriteQueueDepth();
+
+    /**
+     * Gets the number of fetches that failed or got a 4xx or 5xx response.
+     */
+    long getFetchErrors();
+
+    /**
+     * Gets the number of responses per HTTP status, with 0 for fetches that
+     * got no response.
+     */
+    Map<Integer, Long> getResponsesByStatus();
+
+    LatencyHistogram.Snapshot getFetchLatency();
+
+    LatencyHistogram.Snapshot getParseLatency();
+
+    LatencyHistogram.Snapshot getSaveLatency();
+
+    /**
+     * Gets the time from queueing a page to having written it, empty if
+     * pages are written on the crawler threads.
+     */
+    LatencyHistogram.Snapshot getWriteLatency();
+
+    /**
+     * Renders all metrics as one line of text, with rates since the crawl started.
+     */
+    String report();
+}
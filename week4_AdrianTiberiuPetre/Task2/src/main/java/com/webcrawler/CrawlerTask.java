@@ -3,20 +3,32 @@ package com.webcrawler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Runnable task that crawls a single URL and extracts links.
  */
 public class CrawlerTask implements Runnable {
     private static final Logger logger = LoggerFactory.getLogger(CrawlerTask.class);
-    private static final int TIMEOUT_MS = 5000; // 5 seconds
-    private static final String USER_AGENT = "Mozilla/5.0 (WebCrawler/1.0)";
+    private static final int STREAM_BUFFER_SIZE = 8192;
 
     private final String url;
     private final int depth;
@@ -24,6 +36,23 @@ public class CrawlerTask implements Runnable {
     private final UrlManager urlManager;
     private final ContentSaver contentSaver;
     private final LinkExtractor linkExtractor;
+    private final PageFetcher pageFetcher;
+    private final boolean streamToDisk;
+    private final PageMetadataIndex pageIndex;
+    private final ContentDeduplicator contentDedup;
+    private final CrawlMetrics metrics;
+    private final CrawlJournal journal;
+    private final LinkGraphWriter linkGraph;
+
+    // What is journaled about the page, filled in as the task runs
+    private int responseStatus;
+    private CrawlJournal.Outcome outcome = CrawlJournal.Outcome.FAILED;
+    private long bytesFetched;
+    private long fetchNanos;
+    private long parseNanos;
+    private long saveNanos;
+    private int linksFound;
+    private int linksAdded;
 
     /**
      * Constructs a CrawlerTask.
@@ -34,123 +63,618 @@ public class CrawlerTask implements Runnable {
      * @param urlManager The URL manager
      * @param contentSaver The content saver
      * @param linkExtractor The link extractor
+     * @param pageFetcher The fetcher used to retrieve the page
      */
     public CrawlerTask(String url, int depth, int maxDepth, 
                        UrlManager urlManager, ContentSaver contentSaver, 
-                       LinkExtractor linkExtractor) {
-        this.url = url;
-        this.depth = depth;
-        this.maxDepth = maxDepth;
-        this.urlManager = urlManager;
-        this.contentSaver = contentSaver;
-        this.linkExtractor = linkExtractor;
+                       LinkExtractor linkExtractor, PageFetcher pageFetcher) {
+        this(new Builder().url(url).depth(depth).maxDepth(maxDepth).urlManager(urlManager)
+                 .contentSaver(contentSaver).linkExtractor(linkExtractor).pageFetcher(pageFetcher));
+    }
+
+    /**
+     * Private constructor - use Builder for the full set of options.
+     */
+    private CrawlerTask(Builder builder) {
+        this.url = builder.url;
+        this.depth = builder.depth;
+        this.maxDepth = builder.maxDepth;
+        this.urlManager = builder.urlManager;
+        this.contentSaver = builder.contentSaver;
+        this.linkExtractor = builder.linkExtractor;
+        this.pageFetcher = builder.pageFetcher;
+        this.streamToDisk = builder.streamToDisk;
+        this.pageIndex = builder.pageIndex;
+        this.contentDedup = builder.contentDedup;
+        this.metrics = builder.metrics;
+        this.journal = builder.journal;
+        this.linkGraph = builder.linkGraph;
+    }
+
+    /**
+     * Builder for CrawlerTask configuration.
+     */
+    public static class Builder {
+        private String url;
+        private int depth;
+        private int maxDepth;
+        private UrlManager urlManager;
+        private ContentSaver contentSaver;
+        private LinkExtractor linkExtractor;
+        private PageFetcher pageFetcher;
+        private boolean streamToDisk;
+        private PageMetadataIndex pageIndex;
+        private ContentDeduplicator contentDedup;
+        private CrawlMetrics metrics;
+        private CrawlJournal journal;
+        private LinkGraphWriter linkGraph;
+
+        public Builder url(String url) {
+            this.url = url;
+            return this;
+        }
+
+        public Builder depth(int depth) {
+            this.depth = depth;
+            return this;
+        }
+
+        public Builder maxDepth(int maxDepth) {
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        public Builder urlManager(UrlManager urlManager) {
+            this.urlManager = urlManager;
+            return this;
+        }
+
+        public Builder contentSaver(ContentSaver contentSaver) {
+            this.contentSaver = contentSaver;
+            return this;
+        }
+
+        public Builder linkExtractor(LinkExtractor linkExtractor) {
+            this.linkExtractor = linkExtractor;
+            return this;
+        }
+
+        public Builder pageFetcher(PageFetcher pageFetcher) {
+            this.pageFetcher = pageFetcher;
+            return this;
+        }
+
+        /**
+         * Writes the body to disk and scans it for links as it arrives
+         * instead of reading it into a String.
+         */
+        public Builder streamToDisk(boolean streamToDisk) {
+            this.streamToDisk = streamToDisk;
+            return this;
+        }
+
+        /**
+         * Revalidates the saved copy of the page against these validators
+         * instead of always fetching it in full.
+         */
+        public Builder pageIndex(PageMetadataIndex pageIndex) {
+            this.pageIndex = pageIndex;
+            return this;
+        }
+
+        /**
+         * Skips bodies already saved under another URL.
+         */
+        public Builder contentDedup(ContentDeduplicator contentDedup) {
+            this.contentDedup = contentDedup;
+            return this;
+        }
+
+        /**
+         * Records fetch, parse and save times in live crawl metrics.
+         */
+        public Builder metrics(CrawlMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Journals one entry for the page.
+         */
+        public Builder journal(CrawlJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * Records the links of the page in the link graph.
+         */
+        public Builder linkGraph(LinkGraphWriter linkGraph) {
+            this.linkGraph = linkGraph;
+            return this;
+        }
+
+        public CrawlerTask build() {
+            if (url == null || urlManager == null || contentSaver == null || linkExtractor == null
+                || pageFetcher == null) {
+                throw new IllegalArgumentException("URL, URL manager, content saver, link extractor and page fetcher "
+                                                   + "must be specified");
+            }
+            return new CrawlerTask(this);
+        }
     }
 
     @Override
     public void run() {
+        if (metrics != null) {
+            metrics.workerStarted();
+        }
         try {
-            logger.info("Crawling (depth {}): {}", depth, url);
+            logger.debug("Crawling (depth {}): {}", depth, url);
 
             // Fetch the page content
-            String content = fetchContent(url);
-            
-            if (content == null || content.isEmpty()) {
+            PageMetadata cached = findSavedCopy();
+            long fetchStart = System.nanoTime();
+            if (streamToDisk) {
+                StreamedResponse response = pageFetcher.fetchStream(url, cached);
+                recordResponse(response == null ? 0 : response.getStatusCode(), fetchStart);
+                processStream(response, cached);
+            } else {
+                FetchResult result = pageFetcher.fetch(url, cached);
+                recordResponse(result == null ? 0 : result.getStatusCode(), fetchStart);
+                process(result, cached);
+            }
+
+        } catch (Exception e) {
+            logger.error("Error crawling {}: {}", url, e.getMessage(), e);
+        } finally {
+            finish();
+        }
+    }
+
+    /**
+     * Crawls the URL without blocking the calling thread while the page is fetched.
+     *
+     * @param executor Executor that runs extraction and saving once the page arrives
+     * @return Future completed when the page has been processed
+     */
+    public CompletableFuture<Void> runAsync(Executor executor) {
+        logger.debug("Crawling (depth {}): {}", depth, url);
+        if (metrics != null) {
+            metrics.workerStarted();
+        }
+
+        PageMetadata cached = findSavedCopy();
+        long fetchStart = System.nanoTime();
+        CompletableFuture<Void> processed = streamToDisk
+            ? pageFetcher.fetchStreamAsync(url, cached)
+                .whenComplete((response, error) ->
+                    recordResponse(response == null ? 0 : response.getStatusCode(), fetchStart))
+                .thenAcceptAsync(response -> processStream(response, cached), executor)
+            : pageFetcher.fetchAsync(url, cached)
+                .whenComplete((result, error) ->
+                    recordResponse(result == null ? 0 : result.getStatusCode(), fetchStart))
+                .thenAcceptAsync(result -> process(result, cached), executor);
+        return processed
+            .exceptionally(e -> {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.error("Error crawling {}: {}", url, cause.getMessage(), cause);
+                return null;
+            })
+            .whenComplete((ignored, error) -> finish());
+    }
+
+    /**
+     * Gets the status of the response, once the task is done.
+     *
+     * @return The HTTP status code, or 0 if the fetch failed or did not happen
+     */
+    int getResponseStatus() {
+        return responseStatus;
+    }
+
+    /**
+     * Gets the time until the response arrived, once the task is done.
+     *
+     * @return Fetch latency in nanoseconds
+     */
+    long getFetchNanos() {
+        return fetchNanos;
+    }
+
+    /**
+     * Records that the task is done, in the metrics and the journal.
+     */
+    private void finish() {
+        if (metrics != null) {
+            metrics.workerFinished();
+        }
+        if (journal != null) {
+            journal.record(url, depth, responseStatus, outcome, bytesFetched,
+                           fetchNanos, parseNanos, saveNanos, linksFound, linksAdded);
+        }
+    }
+
+    /**
+     * Reports the response status and latency to the UrlManager and metrics.
+     *
+     * @param statusCode The HTTP status code, or 0 if the fetch failed
+     * @param fetchStart System.nanoTime() when the fetch started
+     */
+    private void recordResponse(int statusCode, long fetchStart) {
+        responseStatus = statusCode;
+        fetchNanos = System.nanoTime() - fetchStart;
+        urlManager.recordResponse(url, statusCode, fetchNanos);
+        if (metrics != null) {
+            metrics.recordFetch(statusCode, fetchNanos);
+        }
+    }
+
+    /**
+     * Looks up the saved copy of the page, if it can be revalidated.
+     *
+     * @return Metadata of the saved copy, or null to fetch unconditionally
+     */
+    private PageMetadata findSavedCopy() {
+        if (pageIndex == null) {
+            return null;
+        }
+        PageMetadata cached = pageIndex.get(url);
+        if (cached == null || !cached.hasValidators() || !contentSaver.hasPage(url)) {
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * Saves a fetched page and queues the links found on it.
+     *
+     * @param result The fetch result or null if the fetch failed
+     * @param cached Metadata of the saved copy that was revalidated, or null
+     */
+    private void process(FetchResult result, PageMetadata cached) {
+        // A pooled body goes back to the pool once the page is hashed, parsed and handed to the saver
+        try (result) {
+            if (result != null && result.isNotModified() && cached != null) {
+                processNotModified(cached, result.getEtag(), result.getLastModified());
+                return;
+            }
+            if (result == null || !result.hasContent()) {
                 logger.warn("No content retrieved from: {}", url);
                 return;
             }
+            try (PageBody body = result.getBody() != null ? result.getBody().retain()
+                                                         : PageBody.of(result.getContent())) {
+                process(result, body);
+            }
+        }
+    }
 
-            // Extract title
-            String title = linkExtractor.extractTitle(content);
+    /**
+     * Saves a fetched page body and queues the links found on it.
+     *
+     * @param result The fetch result
+     * @param body The page body, in the charset it was sent in
+     */
+    private void process(FetchResult result, PageBody body) {
+        bytesFetched = body.size();
+        if (metrics != null) {
+            metrics.recordBytes(bytesFetched);
+        }
 
-            // Save content to file
-            contentSaver.saveContent(url, content, depth, title);
+        // Hash the raw bytes before decoding, so a body already saved under another URL is never decoded
+        String contentHash = null;
+        if (pageIndex != null || contentDedup != null) {
+            MessageDigest digest = PageMetadata.newContentDigest();
+            digest.update(body.getBytes());
+            contentHash = PageMetadata.toHex(digest.digest());
+        }
+        if (contentDedup != null) {
+            String originalUrl = contentDedup.register(contentHash, url);
+            if (originalUrl != null) {
+                processDuplicate(originalUrl, body.size());
+                return;
+            }
+        }
 
-            // Increment crawled count
-            int crawledCount = urlManager.incrementCrawledCount();
-            logger.info("Progress: {} pages crawled, {} URLs discovered", 
-                       crawledCount, urlManager.getTotalDiscoveredUrls());
+        // Parse once: links are only needed if we haven't reached max depth
+        String content = body.getText();
+        boolean followLinks = depth < maxDepth;
+        long parseStart = System.nanoTime();
+        ParsedPage page = followLinks
+            ? linkExtractor.parse(content, url)
+            : new ParsedPage(linkExtractor.extractTitle(content), Collections.emptySet());
+        String title = page.getTitle();
 
-            // Extract links if we haven't reached max depth
-            if (depth < maxDepth) {
-                Set<String> links = linkExtractor.extractLinks(content, url);
-                
-                logger.debug("Found {} links on: {}", links.size(), url);
-
-                // Add new links to the queue
-                int addedCount = 0;
-                for (String link : links) {
-                    if (urlManager.addUrl(link, depth + 1)) {
-                        addedCount++;
-                    }
-                }
+        // Save content to file
+        long saveStart = System.nanoTime();
+        boolean saved = contentSaver.saveContent(url, body, depth, title);
+        parseNanos = saveStart - parseStart;
+        saveNanos = System.nanoTime() - saveStart;
+        if (metrics != null) {
+            metrics.recordParse(parseNanos);
+            metrics.recordSave(saveNanos);
+        }
+        if (saved && pageIndex != null) {
+            indexPage(new PageMetadata(url, result.getEtag(), result.getLastModified(), contentHash,
+                                       body.getCharset().name(), System.currentTimeMillis()),
+                      page, followLinks);
+        }
 
-                if (addedCount > 0) {
-                    logger.debug("Added {} new URLs to queue from: {}", addedCount, url);
-                }
-            } else {
-                logger.debug("Max depth reached, not extracting links from: {}", url);
+        outcome = CrawlJournal.Outcome.FETCHED;
+        queueLinks(page, followLinks);
+    }
+
+    /**
+     * Writes a page to disk and scans it for links while the body is read,
+     * so the page is never held on the heap as a whole.
+     *
+     * @param response The streamed response or null if the fetch failed
+     * @param cached Metadata of the saved copy that was revalidated, or null
+     */
+    private void processStream(StreamedResponse response, PageMetadata cached) {
+        if (response != null && response.isNotModified() && cached != null) {
+            processNotModified(cached, response.getEtag(), response.getLastModified());
+            return;
+        }
+        if (response == null || !response.hasBody()) {
+            logger.warn("No content retrieved from: {}", url);
+            return;
+        }
+
+        boolean followLinks = depth < maxDepth;
+        HtmlLinkScanner scanner = linkExtractor.newScanner(url, followLinks);
+        MessageDigest digest = pageIndex == null && contentDedup == null ? null : PageMetadata.newContentDigest();
+        ParsedPage page;
+        long bodyBytes;
+        long saveStart = System.nanoTime();
+        try (StreamedResponse body = response;
+             ContentSaver.PageWriter writer = contentSaver.openPage(url, depth, response.getCharset())) {
+            copyAndScan(body, writer, scanner, digest);
+            page = linkExtractor.toParsedPage(scanner);
+            writer.setTitle(page.getTitle());
+            bodyBytes = writer.getBytesWritten();
+        } catch (IOException e) {
+            logger.error("Failed to stream {} to disk: {}", url, e.getMessage());
+            return;
+        }
+        // Reading, scanning and writing the body interleave, so they are timed together
+        saveNanos = System.nanoTime() - saveStart;
+        bytesFetched = bodyBytes;
+        if (metrics != null) {
+            metrics.recordSave(saveNanos);
+            metrics.recordBytes(bodyBytes);
+        }
+
+        // The hash is only known once the body has been written, so a duplicate is removed again
+        String contentHash = digest == null ? null : PageMetadata.toHex(digest.digest());
+        if (contentDedup != null) {
+            String originalUrl = contentDedup.register(contentHash, url);
+            if (originalUrl != null) {
+                processDuplicate(originalUrl, bodyBytes);
+                return;
             }
+        }
+        if (pageIndex != null) {
+            indexPage(new PageMetadata(url, response.getEtag(), response.getLastModified(),
+                                       contentHash, response.getCharset().name(),
+                                       System.currentTimeMillis()),
+                      page, followLinks);
+        }
+        outcome = CrawlJournal.Outcome.FETCHED;
+        queueLinks(page, followLinks);
+    }
 
-        } catch (Exception e) {
-            logger.error("Error crawling {}: {}", url, e.getMessage(), e);
+    /**
+     * Records a freshly saved page for revalidation, together with its links
+     * so that a later 304 does not need to parse it.
+     *
+     * @param metadata The page's metadata
+     * @param page The parsed page
+     * @param followLinks Whether links were extracted from the page
+     */
+    private void indexPage(PageMetadata metadata, ParsedPage page, boolean followLinks) {
+        contentSaver.saveLinks(url, followLinks ? page.getLinks() : null);
+        pageIndex.put(metadata);
+    }
+
+    /**
+     * Queues the links of a page the server reported as unchanged. The page
+     * is not saved again, and its links come from the previous crawl; it is
+     * only parsed if those were not saved, e.g. because it was at max depth.
+     *
+     * @param cached Metadata of the saved copy
+     * @param etag The ETag sent with the 304, or null to keep the saved one
+     * @param lastModified The Last-Modified sent with the 304, or null to keep the saved one
+     */
+    private void processNotModified(PageMetadata cached, String etag, String lastModified) {
+        logger.debug("Not modified, using saved copy: {}", url);
+        if (contentDedup != null && cached.getContentHash() != null) {
+            String originalUrl = contentDedup.register(cached.getContentHash(), url);
+            if (originalUrl != null) {
+                processDuplicate(originalUrl, 0);
+                return;
+            }
         }
+
+        boolean followLinks = depth < maxDepth;
+        Set<String> savedLinks = followLinks ? contentSaver.readLinks(url) : null;
+        ParsedPage page = new ParsedPage("", savedLinks != null ? savedLinks : Collections.emptySet());
+        if (followLinks && savedLinks == null) {
+            try (InputStream body = contentSaver.openSavedBody(url)) {
+                page = parseSavedCopy(body, Charset.forName(cached.getCharset()));
+            } catch (IOException | IllegalArgumentException e) {
+                logger.error("Failed to read saved copy of {}: {}", url, e.getMessage());
+                return;
+            }
+            contentSaver.saveLinks(url, page.getLinks());
+        }
+
+        pageIndex.revalidated(new PageMetadata(url,
+                                               etag != null ? etag : cached.getEtag(),
+                                               lastModified != null ? lastModified : cached.getLastModified(),
+                                               cached.getContentHash(), cached.getCharset(),
+                                               System.currentTimeMillis()));
+        outcome = CrawlJournal.Outcome.NOT_MODIFIED;
+        queueLinks(page, followLinks);
     }
 
     /**
-     * Fetches the HTML content from a URL.
-     * 
-     * @param urlString The URL to fetch
-     * @return The HTML content or null if failed
+     * Records a page whose body was already saved under another URL. Its own
+     * copy, if any, is removed and its links are not followed.
+     *
+     * @param originalUrl The URL the body was first saved under
+     * @param bodyBytes Size of the body, or 0 if it was not read
      */
-    private String fetchContent(String urlString) {
-        HttpURLConnection connection = null;
-        
-        try {
-            URL url = new URL(urlString);
-            connection = (HttpURLConnection) url.openConnection();
-            
-            // Set connection properties
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(TIMEOUT_MS);
-            connection.setReadTimeout(TIMEOUT_MS);
-            connection.setRequestProperty("User-Agent", USER_AGENT);
-            connection.setInstanceFollowRedirects(true);
-
-            // Check response code
-            int responseCode = connection.getResponseCode();
-            
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                logger.warn("HTTP {} for URL: {}", responseCode, urlString);
-                return null;
+    private void processDuplicate(String originalUrl, long bodyBytes) {
+        logger.debug("Duplicate of {}: {}", originalUrl, url);
+        outcome = CrawlJournal.Outcome.DUPLICATE;
+        contentSaver.deletePage(url);
+        contentDedup.recordAlias(url, originalUrl, bodyBytes);
+        countCrawled();
+    }
+
+    /**
+     * Extracts the links of a saved page body.
+     *
+     * @param body The saved body
+     * @param charset The charset the body was saved in
+     * @return The parsed page
+     * @throws IOException if reading fails
+     */
+    private ParsedPage parseSavedCopy(InputStream body, Charset charset) throws IOException {
+        if (!streamToDisk) {
+            return linkExtractor.parse(new String(body.readAllBytes(), charset), url);
+        }
+
+        HtmlLinkScanner scanner = linkExtractor.newScanner(url, true);
+        Reader reader = new InputStreamReader(body, charset);
+        char[] chars = new char[STREAM_BUFFER_SIZE];
+        int read;
+        while (!scanner.isDone() && (read = reader.read(chars)) >= 0) {
+            scanner.feed(chars, 0, read);
+        }
+        return linkExtractor.toParsedPage(scanner);
+    }
+
+    /**
+     * Copies the response body to the page file and feeds the decoded text to
+     * the scanner, one buffer at a time.
+     *
+     * @param response The response to read
+     * @param writer The page file
+     * @param scanner The scanner for the page
+     * @param digest Digest updated with the body bytes, or null
+     * @throws IOException if reading or writing fails
+     */
+    private void copyAndScan(StreamedResponse response, ContentSaver.PageWriter writer,
+                             HtmlLinkScanner scanner, MessageDigest digest) throws IOException {
+        ReadableByteChannel in = Channels.newChannel(response.getBody());
+        CharsetDecoder decoder = response.getCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(STREAM_BUFFER_SIZE);
+        int carried = 0;
+
+        while (in.read(bytes) >= 0) {
+            bytes.flip();
+            // Bytes carried over from the previous read were already written
+            ByteBuffer fresh = bytes.duplicate();
+            fresh.position(carried);
+            if (digest != null) {
+                digest.update(fresh.duplicate());
             }
+            writer.write(fresh);
 
-            // Check content type
-            String contentType = connection.getContentType();
-            if (contentType != null && !contentType.contains("text/html")) {
-                logger.debug("Skipping non-HTML content: {} ({})", urlString, contentType);
-                return null;
+            if (scanner.isDone()) {
+                bytes.clear();
+                carried = 0;
+            } else {
+                decode(decoder, bytes, chars, scanner, false);
+                carried = bytes.remaining();
+                bytes.compact();
             }
 
-            // Read content
-            StringBuilder content = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
-                
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    content.append(line).append("\n");
-                }
+            if (!writer.isHeaderWritten() && scanner.isTitleComplete()) {
+                writer.setTitle(scanner.getTitle());
             }
+        }
 
-            return content.toString();
+        bytes.flip();
+        decode(decoder, bytes, chars, scanner, true);
+        decoder.flush(chars);
+        chars.flip();
+        scanner.feed(chars.array(), chars.position(), chars.remaining());
+    }
 
-        } catch (Exception e) {
-            logger.error("Failed to fetch content from {}: {}", urlString, e.getMessage());
-            return null;
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
+    /**
+     * Decodes as many bytes as possible and feeds the chars to the scanner.
+     * Bytes of an incomplete character are left in the buffer.
+     */
+    private static void decode(CharsetDecoder decoder, ByteBuffer bytes, CharBuffer chars,
+                               HtmlLinkScanner scanner, boolean endOfInput) {
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, endOfInput);
+            chars.flip();
+            scanner.feed(chars.array(), chars.position(), chars.remaining());
+            chars.clear();
+        } while (result.isOverflow());
+    }
+
+    /**
+     * Counts a crawled page and logs the progress.
+     */
+    private void countCrawled() {
+        int crawledCount = urlManager.incrementCrawledCount();
+        if (metrics != null) {
+            metrics.recordPage();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Progress: {} pages crawled, {} URLs discovered", 
+                       crawledCount, urlManager.getTotalDiscoveredUrls());
+        }
+    }
+
+    /**
+     * Counts a crawled page and queues the links found on it.
+     *
+     * @param page The parsed page
+     * @param followLinks Whether links were extracted from the page
+     */
+    private void queueLinks(ParsedPage page, boolean followLinks) {
+        countCrawled();
+
+        // Extract links if we haven't reached max depth
+        if (followLinks) {
+            Set<String> links = page.getLinks();
+            linksFound = links.size();
+
+            logger.debug("Found {} links on: {}", links.size(), url);
+            // Normalized once for both the link graph and the queue
+            List<String> normalizedLinks = new ArrayList<>(links.size());
+            for (String link : links) {
+                normalizedLinks.add(urlManager.normalize(link));
+            }
+            if (linkGraph != null) {
+                linkGraph.record(url, normalizedLinks);
+            }
+
+            // Add new links to the queue
+            int addedCount = 0;
+            for (String link : normalizedLinks) {
+                if (urlManager.addNormalizedUrl(link, depth + 1)) {
+                    addedCount++;
+                }
+            }
+
+            linksAdded = addedCount;
+            if (addedCount > 0) {
+                logger.debug("Added {} new URLs to queue from: {}", addedCount, url);
             }
+        } else {
+            logger.debug("Max depth reached, not extracting links from: {}", url);
         }
     }
 }
@@ -0,0 +1,24 @@
+package com.webcrawler;
+
+/**
+ * How UrlManager remembers discovered URLs.
+ */
+public enum DedupStrategy {
+    /**
+     * Full URL strings in a concurrent set. Exact, but memory grows with URL length.
+     */
+    EXACT,
+
+    /**
+     * 64-bit URL fingerprints in a primitive open-addressing table, about
+     * 13 bytes per URL. Distinct URLs are only merged on a 64-bit hash
+     * collision, which is negligible below billions of URLs.
+     */
+    FINGERPRINT,
+
+    /**
+     * Scalable Bloom filter with a configurable false-positive rate, about
+     * 3 to 4 bytes per URL as it scales. A false positive means a new URL is skipped.
+     */
+    BLOOM_FILTER
+}
@@ -0,0 +1,55 @@
+package com.webcrawler;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps every discovered URL as a {@link CompactUrl} in a concurrent set.
+ */
+public class ExactUrlDeduplicator implements UrlDeduplicator {
+    // Map node and table slot on a 64-bit JVM with compressed oops
+    private static final int ENTRY_OVERHEAD_BYTES = 32 + 8;
+
+    private final Set<CompactUrl> urls;
+    private final LongAdder urlBytes;
+    private final OriginInterner origins;
+
+    /**
+     * Constructs an ExactUrlDeduplicator with origins of its own.
+     */
+    public ExactUrlDeduplicator() {
+        this(new OriginInterner());
+    }
+
+    /**
+     * Constructs an ExactUrlDeduplicator.
+     *
+     * @param origins Interner shared with the rest of the crawl's URLs
+     */
+    public ExactUrlDeduplicator(OriginInterner origins) {
+        this.urls = ConcurrentHashMap.newKeySet();
+        this.urlBytes = new LongAdder();
+        this.origins = origins;
+    }
+
+    @Override
+    public boolean add(String url) {
+        CompactUrl compact = CompactUrl.of(url, origins);
+        if (urls.add(compact)) {
+            urlBytes.add(compact.estimatedBytes());
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public long size() {
+        return urls.size();
+    }
+
+    @Override
+    public long estimatedMemoryBytes() {
+        return urls.size() * (long) ENTRY_OVERHEAD_BYTES + urlBytes.sum();
+    }
+}
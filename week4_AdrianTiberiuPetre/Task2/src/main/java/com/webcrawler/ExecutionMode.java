@@ -0,0 +1,17 @@
+package com.webcrawler;
+
+/**
+ * How the crawler runs its tasks.
+ */
+public enum ExecutionMode {
+    /**
+     * Fixed pool of platform threads; concurrency is bounded by the pool size.
+     */
+    PLATFORM_THREADS,
+
+    /**
+     * One virtual thread per task; concurrency is bounded by a semaphore
+     * instead of the number of threads. Requires Java 21 at runtime.
+     */
+    VIRTUAL_THREADS
+}
@@ -0,0 +1,29 @@
+package com.webcrawler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip at the fastest level. Crawled HTML still shrinks several times over,
+ * at a fraction of the CPU of the default level.
+ */
+class FastGzipOutputStream extends GZIPOutputStream {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    FastGzipOutputStream(OutputStream out) throws IOException {
+        super(out, BUFFER_SIZE);
+        def.setLevel(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * Gets the number of bytes compressed so far. Must be called before
+     * {@link #close()}, which releases the deflater.
+     *
+     * @return Uncompressed byte count
+     */
+    long getRawBytes() {
+        return def.getBytesRead();
+    }
+}
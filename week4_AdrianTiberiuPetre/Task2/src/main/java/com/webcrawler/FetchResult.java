@@ -0,0 +1,136 @@
+package com.webcrawler;
+
+/**
+ * Result of fetching a single URL.
+ *
+ * The content is either a String or a {@link PageBody} in a pooled buffer,
+ * decoded the first time {@link #getContent()} is called. A result holding a
+ * body must be closed once the body is no longer needed.
+ */
+public class FetchResult implements AutoCloseable {
+    private final String url;
+    private final int statusCode;
+    private final String contentType;
+    private final String content;
+    private final PageBody body;
+    private final String etag;
+    private final String lastModified;
+
+    /**
+     * Constructs a FetchResult.
+     *
+     * @param url The URL that was fetched
+     * @param statusCode The HTTP status code
+     * @param contentType The Content-Type header or null if absent
+     * @param content The HTML content or null if the body was not usable
+     */
+    public FetchResult(String url, int statusCode, String contentType, String content) {
+        this(url, statusCode, contentType, content, null, null);
+    }
+
+    /**
+     * Constructs a FetchResult carrying the response's cache validators.
+     *
+     * @param url The URL that was fetched
+     * @param statusCode The HTTP status code
+     * @param contentType The Content-Type header or null if absent
+     * @param content The HTML content or null if the body was not usable
+     * @param etag The ETag header or null if absent
+     * @param lastModified The Last-Modified header or null if absent
+     */
+    public FetchResult(String url, int statusCode, String contentType, String content,
+                       String etag, String lastModified) {
+        this.url = url;
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.content = content;
+        this.body = null;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Constructs a FetchResult whose body is held in a pooled buffer.
+     *
+     * @param url The URL that was fetched
+     * @param statusCode The HTTP status code
+     * @param contentType The Content-Type header or null if absent
+     * @param body The body, owned by the result from now on, or null if the body was not usable
+     * @param etag The ETag header or null if absent
+     * @param lastModified The Last-Modified header or null if absent
+     */
+    public FetchResult(String url, int statusCode, String contentType, PageBody body,
+                       String etag, String lastModified) {
+        this.url = url;
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.content = null;
+        this.body = body;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getContent() {
+        return body != null ? body.getText() : content;
+    }
+
+    /**
+     * Gets the undecoded body, if the fetcher kept one.
+     *
+     * @return The body, or null if the content is a String or absent
+     */
+    public PageBody getBody() {
+        return body;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Checks if the server confirmed that the cached copy is still current.
+     *
+     * @return true for a 304 Not Modified response
+     */
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+
+    /**
+     * Checks if the response carried HTML content that can be processed.
+     *
+     * @return true if content is present and not empty
+     */
+    public boolean hasContent() {
+        if (body != null) {
+            return body.size() > 0;
+        }
+        return content != null && !content.isEmpty();
+    }
+
+    /**
+     * Returns the body's buffer to its pool, if there is one.
+     */
+    @Override
+    public void close() {
+        if (body != null) {
+            body.close();
+        }
+    }
+}
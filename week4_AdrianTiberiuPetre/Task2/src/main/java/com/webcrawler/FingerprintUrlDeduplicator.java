@@ -0,0 +1,140 @@
+package com.webcrawler;
+
+/**
+ * Stores 64-bit URL fingerprints in primitive long open-addressing tables.
+ *
+ * The table is split into segments selected by the top bits of the
+ * fingerprint, each with its own lock, so concurrent adds rarely contend and
+ * a resize only copies one segment. Each URL costs 8 bytes plus free slots,
+ * about 13 bytes on average, independent of URL length.
+ */
+public class FingerprintUrlDeduplicator implements UrlDeduplicator {
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+
+    private final Segment[] segments;
+
+    /**
+     * Constructs a FingerprintUrlDeduplicator with a small initial table.
+     */
+    public FingerprintUrlDeduplicator() {
+        this(1 << 16);
+    }
+
+    /**
+     * Constructs a FingerprintUrlDeduplicator.
+     * 
+     * @param expectedUrls Number of URLs to size the table for up front
+     */
+    public FingerprintUrlDeduplicator(long expectedUrls) {
+        long perSegment = Math.max(16, (long) (expectedUrls / SEGMENT_COUNT / MAX_LOAD_FACTOR) + 1);
+        int capacity = Integer.highestOneBit((int) Math.min(1 << 30, perSegment - 1)) << 1;
+        this.segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    @Override
+    public boolean add(String url) {
+        return addFingerprint(UrlFingerprint.of(url));
+    }
+
+    /**
+     * Records a precomputed fingerprint.
+     * 
+     * @param fingerprint The URL fingerprint
+     * @return true if the fingerprint was not seen before
+     */
+    public boolean addFingerprint(long fingerprint) {
+        return segments[(int) (fingerprint >>> (64 - SEGMENT_BITS))].add(fingerprint);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long estimatedMemoryBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.capacity() * 8L;
+        }
+        return bytes;
+    }
+
+    /**
+     * One open-addressing table with linear probing. Zero marks a free slot,
+     * so a zero fingerprint is tracked separately.
+     */
+    private static final class Segment {
+        private long[] table;
+        private int size;
+        private boolean containsZero;
+
+        Segment(int capacity) {
+            this.table = new long[capacity];
+        }
+
+        synchronized boolean add(long fingerprint) {
+            if (fingerprint == 0) {
+                if (containsZero) {
+                    return false;
+                }
+                containsZero = true;
+                size++;
+                return true;
+            }
+
+            if (!insert(table, fingerprint)) {
+                return false;
+            }
+            size++;
+            if (size > table.length * MAX_LOAD_FACTOR) {
+                resize();
+            }
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized int capacity() {
+            return table.length;
+        }
+
+        private void resize() {
+            long[] larger = new long[table.length * 2];
+            for (long fingerprint : table) {
+                if (fingerprint != 0) {
+                    insert(larger, fingerprint);
+                }
+            }
+            table = larger;
+        }
+
+        private static boolean insert(long[] table, long fingerprint) {
+            int mask = table.length - 1;
+            // Low bits are independent of the top bits used to pick the segment
+            int slot = (int) fingerprint & mask;
+            while (true) {
+                long existing = table[slot];
+                if (existing == 0) {
+                    table[slot] = fingerprint;
+                    return true;
+                }
+                if (existing == fingerprint) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+    }
+}
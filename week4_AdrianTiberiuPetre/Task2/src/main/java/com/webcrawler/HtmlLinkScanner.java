@@ -0,0 +1,485 @@
+package com.webcrawler;
+
+import org.jsoup.parser.Parser;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental tokenizer that pulls the title and link targets out of HTML
+ * without building a document tree.
+ *
+ * Input may be fed in arbitrary chunks, so the scanner also works on a
+ * response body while it is being read. Comments and the contents of
+ * script and style elements are skipped. Link targets are resolved against
+ * the page URL, or against the first {@code <base href>} once it is seen.
+ */
+public class HtmlLinkScanner {
+    private static final int MAX_NAME_LENGTH = 8;
+
+    private enum State {
+        TEXT,
+        TAG_OPEN,
+        TAG_NAME,
+        BEFORE_ATTR_NAME,
+        ATTR_NAME,
+        AFTER_ATTR_NAME,
+        BEFORE_ATTR_VALUE,
+        ATTR_VALUE_DOUBLE_QUOTED,
+        ATTR_VALUE_SINGLE_QUOTED,
+        ATTR_VALUE_UNQUOTED,
+        MARKUP_DECLARATION,
+        COMMENT,
+        BOGUS,
+        RAW_TEXT
+    }
+
+    private final boolean collectLinks;
+    private final List<String> links;
+    private final StringBuilder tagName;
+    private final StringBuilder attrName;
+    private final StringBuilder attrValue;
+    private final StringBuilder titleText;
+
+    private URL baseUrl;
+    private boolean baseTagSeen;
+    private State state;
+    private boolean endTag;
+    private boolean capturingValue;
+    private String href;
+    private boolean inTitle;
+    private boolean titleComplete;
+    private String rawEndTag;
+    private int rawMatch;
+    private int markupChars;
+    private int commentDashes;
+
+    /**
+     * Constructs an HtmlLinkScanner.
+     *
+     * @param pageUrl The URL of the page, used to resolve relative links
+     * @param collectLinks If false, only the title is extracted and scanning
+     *                     stops as soon as it is complete
+     */
+    public HtmlLinkScanner(String pageUrl, boolean collectLinks) {
+        this.collectLinks = collectLinks;
+        this.links = new ArrayList<>();
+        this.tagName = new StringBuilder(MAX_NAME_LENGTH + 1);
+        this.attrName = new StringBuilder(MAX_NAME_LENGTH + 1);
+        this.attrValue = new StringBuilder(128);
+        this.titleText = new StringBuilder();
+        this.state = State.TEXT;
+        this.baseUrl = toUrl(pageUrl);
+    }
+
+    /**
+     * Feeds the next chunk of the document.
+     *
+     * @param chars Buffer holding the chunk
+     * @param offset Start of the chunk in the buffer
+     * @param length Number of chars in the chunk
+     */
+    public void feed(char[] chars, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end && !isDone(); i++) {
+            process(chars[i]);
+        }
+    }
+
+    /**
+     * Feeds the next chunk of the document.
+     *
+     * @param chars The chunk
+     */
+    public void feed(CharSequence chars) {
+        int length = chars.length();
+        for (int i = 0; i < length && !isDone(); i++) {
+            process(chars.charAt(i));
+        }
+    }
+
+    /**
+     * Signals the end of the document. An unterminated title runs to the end.
+     */
+    public void finish() {
+        if (inTitle) {
+            inTitle = false;
+            titleComplete = true;
+        }
+    }
+
+    /**
+     * Checks if nothing more can be extracted from further input.
+     *
+     * @return true if only the title was requested and it is complete
+     */
+    public boolean isDone() {
+        return !collectLinks && titleComplete;
+    }
+
+    /**
+     * Checks if the end of the first title element has been seen.
+     *
+     * @return true if {@link #getTitle()} will not change any more
+     */
+    public boolean isTitleComplete() {
+        return titleComplete;
+    }
+
+    /**
+     * Gets the text of the first title element with whitespace collapsed.
+     *
+     * @return The page title or empty string
+     */
+    public String getTitle() {
+        String title = normalizeWhitespace(titleText);
+        return title.indexOf('&') >= 0 ? Parser.unescapeEntities(title, false) : title;
+    }
+
+    /**
+     * Gets the resolved targets of all anchors, in document order.
+     *
+     * @return Absolute link targets, possibly with duplicates
+     */
+    public List<String> getLinks() {
+        return links;
+    }
+
+    private void process(char c) {
+        switch (state) {
+            case TEXT:
+                if (c == '<') {
+                    state = State.TAG_OPEN;
+                    endTag = false;
+                }
+                break;
+
+            case TAG_OPEN:
+                if (isAsciiLetter(c)) {
+                    tagName.setLength(0);
+                    appendName(tagName, c);
+                    href = null;
+                    state = State.TAG_NAME;
+                } else if (c == '/' && !endTag) {
+                    endTag = true;
+                } else if (c == '!' && !endTag) {
+                    markupChars = 0;
+                    state = State.MARKUP_DECLARATION;
+                } else if (endTag || c == '?') {
+                    state = c == '>' ? State.TEXT : State.BOGUS;
+                } else {
+                    // A lone '<' is text
+                    state = State.TEXT;
+                    process(c);
+                }
+                break;
+
+            case TAG_NAME:
+                if (isWhitespace(c) || c == '/') {
+                    state = State.BEFORE_ATTR_NAME;
+                } else if (c == '>') {
+                    emitTag();
+                } else {
+                    appendName(tagName, c);
+                }
+                break;
+
+            case BEFORE_ATTR_NAME:
+                if (c == '>') {
+                    emitTag();
+                } else if (!isWhitespace(c) && c != '/') {
+                    startAttribute(c);
+                }
+                break;
+
+            case ATTR_NAME:
+                if (isWhitespace(c)) {
+                    state = State.AFTER_ATTR_NAME;
+                } else if (c == '/') {
+                    state = State.BEFORE_ATTR_NAME;
+                } else if (c == '=') {
+                    startValue();
+                } else if (c == '>') {
+                    emitTag();
+                } else {
+                    appendName(attrName, c);
+                }
+                break;
+
+            case AFTER_ATTR_NAME:
+                if (c == '=') {
+                    startValue();
+                } else if (c == '>') {
+                    emitTag();
+                } else if (c == '/') {
+                    state = State.BEFORE_ATTR_NAME;
+                } else if (!isWhitespace(c)) {
+                    startAttribute(c);
+                }
+                break;
+
+            case BEFORE_ATTR_VALUE:
+                if (c == '"') {
+                    state = State.ATTR_VALUE_DOUBLE_QUOTED;
+                } else if (c == '\'') {
+                    state = State.ATTR_VALUE_SINGLE_QUOTED;
+                } else if (c == '>') {
+                    emitTag();
+                } else if (!isWhitespace(c)) {
+                    state = State.ATTR_VALUE_UNQUOTED;
+                    appendValue(c);
+                }
+                break;
+
+            case ATTR_VALUE_DOUBLE_QUOTED:
+                if (c == '"') {
+                    endValue();
+                } else {
+                    appendValue(c);
+                }
+                break;
+
+            case ATTR_VALUE_SINGLE_QUOTED:
+                if (c == '\'') {
+                    endValue();
+                } else {
+                    appendValue(c);
+                }
+                break;
+
+            case ATTR_VALUE_UNQUOTED:
+                if (isWhitespace(c)) {
+                    endValue();
+                } else if (c == '>') {
+                    endValue();
+                    emitTag();
+                } else {
+                    appendValue(c);
+                }
+                break;
+
+            case MARKUP_DECLARATION:
+                // "<!--" opens a comment, anything else (e.g. DOCTYPE) is skipped to '>'
+                if (c == '-' && markupChars == 0) {
+                    markupChars = 1;
+                } else if (c == '-' && markupChars == 1) {
+                    commentDashes = 0;
+                    state = State.COMMENT;
+                } else {
+                    state = c == '>' ? State.TEXT : State.BOGUS;
+                }
+                break;
+
+            case COMMENT:
+                if (c == '-') {
+                    commentDashes++;
+                } else if (c == '>' && commentDashes >= 2) {
+                    state = State.TEXT;
+                } else {
+                    commentDashes = 0;
+                }
+                break;
+
+            case BOGUS:
+                if (c == '>') {
+                    state = State.TEXT;
+                }
+                break;
+
+            case RAW_TEXT:
+                processRawText(c);
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown state: " + state);
+        }
+    }
+
+    /**
+     * Handles a char inside title, script or style, looking for the matching end tag.
+     */
+    private void processRawText(char c) {
+        if (rawMatch == 0) {
+            if (c == '<') {
+                rawMatch = 1;
+            } else if (inTitle) {
+                titleText.append(c);
+            }
+        } else if (rawMatch == 1) {
+            if (c == '/') {
+                rawMatch = 2;
+            } else {
+                abandonRawMatch(c);
+            }
+        } else if (rawMatch < rawEndTag.length() + 2) {
+            if (Character.toLowerCase(c) == rawEndTag.charAt(rawMatch - 2)) {
+                rawMatch++;
+            } else {
+                abandonRawMatch(c);
+            }
+        } else if (isWhitespace(c) || c == '/' || c == '>') {
+            rawMatch = 0;
+            if (inTitle) {
+                inTitle = false;
+                titleComplete = true;
+            }
+            state = c == '>' ? State.TEXT : State.BOGUS;
+        } else {
+            abandonRawMatch(c);
+        }
+    }
+
+    /**
+     * Treats a partial end tag match as text and reprocesses the current char.
+     */
+    private void abandonRawMatch(char c) {
+        if (inTitle) {
+            titleText.append('<');
+            if (rawMatch > 1) {
+                titleText.append('/').append(rawEndTag, 0, rawMatch - 2);
+            }
+        }
+        rawMatch = 0;
+        processRawText(c);
+    }
+
+    private void startAttribute(char c) {
+        attrName.setLength(0);
+        appendName(attrName, c);
+        state = State.ATTR_NAME;
+    }
+
+    private void startValue() {
+        // Only the first href of an <a> or <base> start tag is kept
+        capturingValue = !endTag && href == null
+            && (nameIs(tagName, "a") || nameIs(tagName, "base"))
+            && nameIs(attrName, "href");
+        attrValue.setLength(0);
+        state = State.BEFORE_ATTR_VALUE;
+    }
+
+    private void appendValue(char c) {
+        if (capturingValue) {
+            attrValue.append(c);
+        }
+    }
+
+    private void endValue() {
+        if (capturingValue) {
+            href = attrValue.toString();
+            capturingValue = false;
+        }
+        state = State.BEFORE_ATTR_NAME;
+    }
+
+    private void emitTag() {
+        state = State.TEXT;
+        if (endTag) {
+            return;
+        }
+
+        if (nameIs(tagName, "a")) {
+            if (href != null && collectLinks) {
+                addLink(href);
+            }
+        } else if (nameIs(tagName, "base")) {
+            if (href != null && !baseTagSeen) {
+                baseTagSeen = true;
+                URL resolved = resolve(unescape(href));
+                if (resolved != null) {
+                    baseUrl = resolved;
+                }
+            }
+        } else if (nameIs(tagName, "title")) {
+            enterRawText("title");
+            if (!titleComplete) {
+                inTitle = true;
+            }
+        } else if (nameIs(tagName, "script")) {
+            enterRawText("script");
+        } else if (nameIs(tagName, "style")) {
+            enterRawText("style");
+        }
+    }
+
+    private void enterRawText(String endTagName) {
+        rawEndTag = endTagName;
+        rawMatch = 0;
+        state = State.RAW_TEXT;
+    }
+
+    private void addLink(String rawHref) {
+        URL resolved = resolve(unescape(rawHref));
+        if (resolved != null) {
+            links.add(resolved.toExternalForm());
+        }
+    }
+
+    private URL resolve(String target) {
+        try {
+            return baseUrl != null ? new URL(baseUrl, target) : new URL(target);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private static String unescape(String value) {
+        String trimmed = value.trim();
+        return trimmed.indexOf('&') >= 0 ? Parser.unescapeEntities(trimmed, true) : trimmed;
+    }
+
+    private static URL toUrl(String url) {
+        try {
+            return url != null ? new URL(url) : null;
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    private static void appendName(StringBuilder name, char c) {
+        // Longer names can never match the tags and attributes we look for
+        if (name.length() <= MAX_NAME_LENGTH) {
+            name.append(Character.toLowerCase(c));
+        }
+    }
+
+    private static boolean nameIs(StringBuilder name, String expected) {
+        if (name.length() != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (name.charAt(i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+
+    private static String normalizeWhitespace(CharSequence text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,495 @@
+package com.webcrawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking fetcher backed by a single shared java.net.http.HttpClient.
+ *
+ * The client negotiates HTTP/2 where the server supports it and keeps
+ * connections alive between requests, so TLS sessions and sockets are reused
+ * across pages of the same host. The number of requests on the wire is capped
+ * by {@code maxInFlight}; further requests wait in a queue without holding a
+ * thread. A streamed response keeps its slot until its body is closed.
+ * Saved copies are revalidated with If-None-Match and If-Modified-Since.
+ * With a buffer pool, bodies are collected into pooled buffers as they
+ * arrive instead of being decoded into Strings.
+ */
+public class HttpClientPageFetcher implements PageFetcher {
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientPageFetcher.class);
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final String USER_AGENT = "Mozilla/5.0 (WebCrawler/1.0)";
+
+    private final HttpClient httpClient;
+    private final ExecutorService ioExecutor;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<PendingRequest> pendingRequests;
+    private final PageBufferPool bufferPool;
+
+    /**
+     * Constructs an HttpClientPageFetcher with one I/O thread per processor.
+     *
+     * @param maxInFlight Maximum number of concurrent requests
+     */
+    public HttpClientPageFetcher(int maxInFlight) {
+        this(maxInFlight, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an HttpClientPageFetcher.
+     *
+     * @param maxInFlight Maximum number of concurrent requests
+     * @param ioThreads Number of threads used by the client for I/O callbacks
+     */
+    public HttpClientPageFetcher(int maxInFlight, int ioThreads) {
+        this(maxInFlight, ioThreads, null);
+    }
+
+    /**
+     * Constructs an HttpClientPageFetcher that collects bodies into pooled buffers.
+     *
+     * @param maxInFlight Maximum number of concurrent requests
+     * @param ioThreads Number of threads used by the client for I/O callbacks
+     * @param bufferPool Pool that bodies are collected into, or null to decode them into Strings
+     */
+    public HttpClientPageFetcher(int maxInFlight, int ioThreads, PageBufferPool bufferPool) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        if (ioThreads < 1) {
+            throw new IllegalArgumentException("ioThreads must be at least 1");
+        }
+
+        this.maxInFlight = maxInFlight;
+        this.bufferPool = bufferPool;
+        this.permits = new Semaphore(maxInFlight);
+        this.pendingRequests = new ConcurrentLinkedQueue<>();
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.ioExecutor = Executors.newFixedThreadPool(ioThreads, runnable -> {
+            Thread thread = new Thread(runnable, "http-io-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .connectTimeout(TIMEOUT)
+            .executor(ioExecutor)
+            .build();
+    }
+
+    @Override
+    public FetchResult fetch(String url) {
+        return fetch(url, null);
+    }
+
+    @Override
+    public FetchResult fetch(String url, PageMetadata cached) {
+        return fetchAsync(url, cached).join();
+    }
+
+    @Override
+    public CompletableFuture<FetchResult> fetchAsync(String url, PageMetadata cached) {
+        CompletableFuture<FetchResult> future = new CompletableFuture<>();
+        pendingRequests.offer(new PendingRequest(url, cached, future, null));
+        dispatchPending();
+        return future;
+    }
+
+    @Override
+    public StreamedResponse fetchStream(String url, PageMetadata cached) {
+        return fetchStreamAsync(url, cached).join();
+    }
+
+    @Override
+    public CompletableFuture<StreamedResponse> fetchStreamAsync(String url, PageMetadata cached) {
+        CompletableFuture<StreamedResponse> future = new CompletableFuture<>();
+        pendingRequests.offer(new PendingRequest(url, cached, null, future));
+        dispatchPending();
+        return future;
+    }
+
+    @Override
+    public boolean isAsync() {
+        return true;
+    }
+
+    /**
+     * Gets the maximum number of concurrent requests.
+     *
+     * @return The in-flight request limit
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Gets the number of requests currently on the wire.
+     *
+     * @return In-flight request count
+     */
+    public int getInFlightCount() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    /**
+     * Gets the number of requests waiting for a free slot.
+     *
+     * @return Pending request count
+     */
+    public int getPendingCount() {
+        return pendingRequests.size();
+    }
+
+    @Override
+    public void close() {
+        ioExecutor.shutdown();
+    }
+
+    /**
+     * Starts as many pending requests as there are free permits.
+     */
+    private void dispatchPending() {
+        while (!pendingRequests.isEmpty() && permits.tryAcquire()) {
+            PendingRequest request = pendingRequests.poll();
+            if (request == null) {
+                permits.release();
+                // Another thread may have queued a request after our poll
+                if (pendingRequests.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            send(request);
+        }
+    }
+
+    /**
+     * Sends a single request and releases its permit on completion.
+     *
+     * @param request The pending request to send
+     */
+    private void send(PendingRequest request) {
+        HttpRequest httpRequest;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.url))
+                .timeout(TIMEOUT)
+                .header("User-Agent", USER_AGENT)
+                .GET();
+            if (request.cached != null && request.cached.getEtag() != null) {
+                builder.header("If-None-Match", request.cached.getEtag());
+            }
+            if (request.cached != null && request.cached.getLastModified() != null) {
+                builder.header("If-Modified-Since", request.cached.getLastModified());
+            }
+            httpRequest = builder.build();
+        } catch (Exception e) {
+            logger.error("Failed to fetch content from {}: {}", request.url, e.getMessage());
+            permits.release();
+            request.fail();
+            dispatchPending();
+            return;
+        }
+
+        if (request.streamFuture != null) {
+            sendStreaming(request, httpRequest);
+            return;
+        }
+
+        CompletableFuture<? extends HttpResponse<?>> sent;
+        if (bufferPool != null) {
+            sent = httpClient.sendAsync(httpRequest, this::handlePooledBody);
+        } else {
+            sent = httpClient.sendAsync(httpRequest, this::handleBody);
+        }
+        sent.whenComplete((response, error) -> {
+            permits.release();
+            try {
+                request.future.complete(toResult(request.url, response, error));
+            } finally {
+                dispatchPending();
+            }
+        });
+    }
+
+    /**
+     * Sends a request whose body is handed to the caller as a stream. The
+     * permit is held until the caller closes the body.
+     *
+     * @param request The pending request
+     * @param httpRequest The request to send
+     */
+    private void sendStreaming(PendingRequest request, HttpRequest httpRequest) {
+        httpClient.sendAsync(httpRequest, this::handleStream)
+            .whenComplete((response, error) -> {
+                StreamedResponse result = null;
+                try {
+                    result = toStreamedResponse(request.url, response, error);
+                } finally {
+                    if (result == null || !result.hasBody()) {
+                        releasePermit();
+                    }
+                }
+                request.streamFuture.complete(result);
+            });
+    }
+
+    /**
+     * Returns a permit and starts the next pending request.
+     */
+    private void releasePermit() {
+        permits.release();
+        dispatchPending();
+    }
+
+    /**
+     * Streams the body only for successful HTML responses and discards it otherwise.
+     *
+     * @param responseInfo Status and headers of the response
+     * @return Body subscriber for the response
+     */
+    private HttpResponse.BodySubscriber<InputStream> handleStream(HttpResponse.ResponseInfo responseInfo) {
+        String contentType = responseInfo.headers().firstValue("Content-Type").orElse(null);
+        if (responseInfo.statusCode() != 200 || (contentType != null && !contentType.contains("text/html"))) {
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        return HttpResponse.BodySubscribers.ofInputStream();
+    }
+
+    /**
+     * Converts a response with a streamed body into a StreamedResponse.
+     *
+     * @param url The requested URL
+     * @param response The response or null if the request failed
+     * @param error The failure cause or null on success
+     * @return The response or null if the request failed
+     */
+    private StreamedResponse toStreamedResponse(String url, HttpResponse<InputStream> response, Throwable error) {
+        if (error != null) {
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            logger.error("Failed to fetch content from {}: {}", url, cause.getMessage());
+            return null;
+        }
+
+        int statusCode = response.statusCode();
+        String contentType = response.headers().firstValue("Content-Type").orElse(null);
+        logStatus(url, statusCode, contentType, response.body() != null);
+
+        InputStream body = response.body() == null ? null : new PermitReleasingStream(response.body());
+        return new StreamedResponse(url, statusCode, contentType, body,
+                                    response.headers().firstValue("ETag").orElse(null),
+                                    response.headers().firstValue("Last-Modified").orElse(null));
+    }
+
+    /**
+     * Reads the body only for successful HTML responses and discards it otherwise.
+     *
+     * @param responseInfo Status and headers of the response
+     * @return Body subscriber for the response
+     */
+    private HttpResponse.BodySubscriber<String> handleBody(HttpResponse.ResponseInfo responseInfo) {
+        String contentType = responseInfo.headers().firstValue("Content-Type").orElse(null);
+        if (responseInfo.statusCode() != 200 || (contentType != null && !contentType.contains("text/html"))) {
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        return HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Collects the body into a pooled buffer only for successful HTML
+     * responses and discards it otherwise.
+     *
+     * @param responseInfo Status and headers of the response
+     * @return Body subscriber for the response
+     */
+    private HttpResponse.BodySubscriber<PageBody> handlePooledBody(HttpResponse.ResponseInfo responseInfo) {
+        String contentType = responseInfo.headers().firstValue("Content-Type").orElse(null);
+        if (responseInfo.statusCode() != 200 || (contentType != null && !contentType.contains("text/html"))) {
+            return HttpResponse.BodySubscribers.replacing(null);
+        }
+        long length = responseInfo.headers().firstValueAsLong("Content-Length").orElse(0);
+        return new PooledBodySubscriber(StreamedResponse.charsetOf(contentType),
+                                        (int) Math.min(length, PageBufferPool.MAX_CLASS_BYTES));
+    }
+
+    /**
+     * Converts a completed response into a FetchResult.
+     *
+     * @param url The requested URL
+     * @param response The response or null if the request failed
+     * @param error The failure cause or null on success
+     * @return The fetch result or null if the request failed
+     */
+    private FetchResult toResult(String url, HttpResponse<?> response, Throwable error) {
+        if (error != null) {
+            Throwable cause = error.getCause() != null ? error.getCause() : error;
+            logger.error("Failed to fetch content from {}: {}", url, cause.getMessage());
+            return null;
+        }
+
+        int statusCode = response.statusCode();
+        String contentType = response.headers().firstValue("Content-Type").orElse(null);
+        logStatus(url, statusCode, contentType, response.body() != null);
+
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        if (response.body() instanceof PageBody) {
+            return new FetchResult(url, statusCode, contentType, (PageBody) response.body(), etag, lastModified);
+        }
+        return new FetchResult(url, statusCode, contentType, (String) response.body(), etag, lastModified);
+    }
+
+    /**
+     * Logs responses whose body will not be processed.
+     *
+     * @param url The requested URL
+     * @param statusCode The HTTP status code
+     * @param contentType The Content-Type header or null if absent
+     * @param hasBody Whether the body was kept
+     */
+    private void logStatus(String url, int statusCode, String contentType, boolean hasBody) {
+        if (statusCode == 304) {
+            logger.debug("Not modified: {}", url);
+        } else if (statusCode != 200) {
+            logger.warn("HTTP {} for URL: {}", statusCode, url);
+        } else if (!hasBody) {
+            logger.debug("Skipping non-HTML content: {} ({})", url, contentType);
+        }
+    }
+
+    /**
+     * A request waiting for an in-flight slot.
+     */
+    private static class PendingRequest {
+        private final String url;
+        private final PageMetadata cached;
+        private final CompletableFuture<FetchResult> future;
+        private final CompletableFuture<StreamedResponse> streamFuture;
+
+        PendingRequest(String url, PageMetadata cached, CompletableFuture<FetchResult> future,
+                       CompletableFuture<StreamedResponse> streamFuture) {
+            this.url = url;
+            this.cached = cached;
+            this.future = future;
+            this.streamFuture = streamFuture;
+        }
+
+        void fail() {
+            if (streamFuture != null) {
+                streamFuture.complete(null);
+            } else {
+                future.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Appends the chunks of a body to a pooled buffer as the client delivers them.
+     */
+    private class PooledBodySubscriber implements HttpResponse.BodySubscriber<PageBody> {
+        private final CompletableFuture<PageBody> result = new CompletableFuture<>();
+        private final Charset charset;
+        private final int expectedBytes;
+        private Flow.Subscription subscription;
+        private PageBody body;
+
+        PooledBodySubscriber(Charset charset, int expectedBytes) {
+            this.charset = charset;
+            this.expectedBytes = expectedBytes;
+        }
+
+        @Override
+        public CompletionStage<PageBody> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            body = PageBody.allocate(bufferPool, charset, expectedBytes);
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> chunks) {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                for (ByteBuffer chunk : chunks) {
+                    body.append(chunk);
+                }
+            } catch (IllegalStateException e) {
+                // Too large to hold: stop reading and fail the fetch
+                subscription.cancel();
+                onError(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (result.isDone()) {
+                return;
+            }
+            if (body != null) {
+                body.close();
+            }
+            result.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            if (result.isDone()) {
+                return;
+            }
+            result.complete(body);
+        }
+    }
+
+    /**
+     * Response body that gives back its in-flight permit when closed.
+     */
+    private class PermitReleasingStream extends FilterInputStream {
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        PermitReleasingStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    super.close();
+                } finally {
+                    releasePermit();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.webcrawler;
+
+import com.webcrawler.UrlManager.UrlDepthPair;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unbounded FIFO frontier held entirely on the heap.
+ */
+public class InMemoryUrlFrontier implements UrlFrontier {
+    private final ConcurrentLinkedQueue<UrlDepthPair> queue;
+    private final AtomicLong size;
+
+    /**
+     * Constructs an InMemoryUrlFrontier.
+     */
+    public InMemoryUrlFrontier() {
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.size = new AtomicLong();
+    }
+
+    @Override
+    public void offer(UrlDepthPair urlDepthPair) {
+        queue.offer(urlDepthPair);
+        size.incrementAndGet();
+    }
+
+    @Override
+    public UrlDepthPair poll() {
+        UrlDepthPair next = queue.poll();
+        if (next != null) {
+            size.decrementAndGet();
+        }
+        return next;
+    }
+
+    @Override
+    public long size() {
+        // ConcurrentLinkedQueue.size() walks the whole queue
+        return size.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+}
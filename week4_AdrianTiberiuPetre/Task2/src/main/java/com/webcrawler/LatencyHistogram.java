@@ -0,0 +1,174 @@
+package com.webcrawler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the style of
+ * HdrHistogram.
+ *
+ * Values are kept in microseconds. Below 64 us every value has its own
+ * bucket; above, each power of two is split into 32 buckets, so a value is
+ * reported within about 3% of what was recorded. Recording is an atomic
+ * increment of one bucket and two adders, with no allocation or locking, and
+ * values beyond the largest bucket (about 19 hours) are counted in it.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 31;
+    private static final int BUCKET_COUNT = (MAX_SHIFT + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts;
+    private final LongAdder count;
+    private final LongAdder sumMicros;
+    private final AtomicLong maxMicros;
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new LongAdder();
+        this.sumMicros = new LongAdder();
+        this.maxMicros = new AtomicLong();
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency in nanoseconds
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.incrementAndGet(bucketOf(micros));
+        count.increment();
+        sumMicros.add(micros);
+        if (micros > maxMicros.get()) {
+            maxMicros.accumulateAndGet(micros, Math::max);
+        }
+    }
+
+    /**
+     * Takes a consistent-enough copy for reporting. Values recorded while the
+     * copy is taken may or may not be included.
+     *
+     * @return The snapshot
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sumMicros.sum(), maxMicros.get());
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < 2 * SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT) {
+            return BUCKET_COUNT - 1;
+        }
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) (micros >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * Gets the highest value that falls into a bucket.
+     */
+    static long highestValueIn(int bucket) {
+        if (bucket < 2 * SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long sub = bucket % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * A copy of the histogram at one point in time. Over JMX its getters
+     * appear as the items of a composite attribute.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumMicros;
+        private final long maxMicros;
+
+        private Snapshot(long[] counts, long count, long sumMicros, long maxMicros) {
+            this.counts = counts;
+            this.count = count;
+            this.sumMicros = sumMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the sum of all recorded values.
+         *
+         * @return Sum in milliseconds
+         */
+        public double getSumMillis() {
+            return sumMicros / 1e3;
+        }
+
+        /**
+         * Gets the mean of the recorded values.
+         *
+         * @return Mean in milliseconds, or 0 if nothing was recorded
+         */
+        public double getMeanMillis() {
+            return count == 0 ? 0 : sumMicros / 1e3 / count;
+        }
+
+        /**
+         * Gets the largest recorded value.
+         *
+         * @return Maximum in milliseconds
+         */
+        public double getMaxMillis() {
+            return maxMicros / 1e3;
+        }
+
+        /**
+         * Gets the value below which a share of the recorded values fall.
+         *
+         * @param quantile Share between 0 and 1, e.g. 0.99
+         * @return Value in milliseconds, or 0 if nothing was recorded
+         */
+        public double getQuantileMillis(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueIn(i), maxMicros) / 1e3;
+                }
+            }
+            return maxMicros / 1e3;
+        }
+
+        public double getP50Millis() {
+            return getQuantileMillis(0.5);
+        }
+
+        public double getP90Millis() {
+            return getQuantileMillis(0.9);
+        }
+
+        public double getP99Millis() {
+            return getQuantileMillis(0.99);
+        }
+    }
+}
@@ -7,16 +7,91 @@ import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.URL;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
- * Extracts links from HTML content using JSoup.
+ * Extracts links from HTML content using JSoup or a streaming scanner.
  */
 public class LinkExtractor {
     private static final Logger logger = LoggerFactory.getLogger(LinkExtractor.class);
 
+    private final ParseMode parseMode;
+    private final UrlFilter urlFilter;
+
+    /**
+     * Constructs a LinkExtractor that builds a full document tree.
+     */
+    public LinkExtractor() {
+        this(ParseMode.DOM);
+    }
+
+    /**
+     * Constructs a LinkExtractor with the default link filter.
+     * 
+     * @param parseMode How pages are parsed
+     */
+    public LinkExtractor(ParseMode parseMode) {
+        this(parseMode, UrlFilter.defaults());
+    }
+
+    /**
+     * Constructs a LinkExtractor.
+     * 
+     * @param parseMode How pages are parsed
+     * @param urlFilter Filter a link must pass to be returned
+     */
+    public LinkExtractor(ParseMode parseMode, UrlFilter urlFilter) {
+        this.parseMode = parseMode;
+        this.urlFilter = urlFilter;
+    }
+
+    /**
+     * Extracts the title and all valid links from HTML content in one pass.
+     * 
+     * @param html The HTML content
+     * @param baseUrl The base URL for resolving relative links
+     * @return The parsed page
+     */
+    public ParsedPage parse(String html, String baseUrl) {
+        if (parseMode == ParseMode.STREAMING) {
+            HtmlLinkScanner scanner = newScanner(baseUrl, true);
+            scanner.feed(html);
+            return toParsedPage(scanner);
+        }
+
+        try {
+            Document doc = Jsoup.parse(html, baseUrl);
+            return new ParsedPage(doc.title(), collectLinks(doc, baseUrl));
+        } catch (Exception e) {
+            logger.error("Failed to parse HTML from {}: {}", baseUrl, e.getMessage());
+            return new ParsedPage("", new HashSet<>());
+        }
+    }
+
+    /**
+     * Creates a scanner for a page that is parsed while it is read.
+     * Finish it with {@link #toParsedPage(HtmlLinkScanner)}.
+     * 
+     * @param baseUrl The base URL for resolving relative links
+     * @param collectLinks If false, only the title is extracted
+     * @return A new scanner
+     */
+    public HtmlLinkScanner newScanner(String baseUrl, boolean collectLinks) {
+        return new HtmlLinkScanner(baseUrl, collectLinks);
+    }
+
+    /**
+     * Finishes a scanner and keeps the valid links it found.
+     * 
+     * @param scanner A scanner that has been fed the whole page
+     * @return The parsed page
+     */
+    public ParsedPage toParsedPage(HtmlLinkScanner scanner) {
+        scanner.finish();
+        return new ParsedPage(scanner.getTitle(), filterLinks(scanner.getLinks()));
+    }
+
     /**
      * Extracts all valid HTTP/HTTPS links from HTML content.
      * 
@@ -25,59 +100,68 @@ public class LinkExtractor {
      * @return Set of absolute URLs
      */
     public Set<String> extractLinks(String html, String baseUrl) {
+        return parse(html, baseUrl).getLinks();
+    }
+
+    /**
+     * Collects valid links from a parsed document.
+     * 
+     * @param doc The parsed document
+     * @param baseUrl The base URL, used for logging
+     * @return Set of absolute URLs
+     */
+    private Set<String> collectLinks(Document doc, String baseUrl) {
         Set<String> links = new HashSet<>();
+        Elements linkElements = doc.select("a[href]");
 
-        try {
-            Document doc = Jsoup.parse(html, baseUrl);
-            Elements linkElements = doc.select("a[href]");
-
-            for (Element link : linkElements) {
-                try {
-                    String href = link.attr("abs:href"); // Get absolute URL
-                    
-                    if (isValidUrl(href)) {
-                        links.add(href);
-                    }
-                } catch (Exception e) {
-                    logger.debug("Failed to process link: {}", e.getMessage());
+        for (Element link : linkElements) {
+            try {
+                String href = link.attr("abs:href"); // Get absolute URL
+                
+                if (isValidUrl(href)) {
+                    links.add(href);
                 }
+            } catch (Exception e) {
+                logger.debug("Failed to process link on {}: {}", baseUrl, e.getMessage());
             }
-        } catch (Exception e) {
-            logger.error("Failed to parse HTML from {}: {}", baseUrl, e.getMessage());
         }
 
         return links;
     }
 
     /**
-     * Validates if a URL is valid for crawling.
+     * Keeps the valid links found by the streaming scanner.
      * 
-     * @param url The URL to validate
-     * @return true if valid HTTP/HTTPS URL
+     * @param candidates Resolved link targets
+     * @return Set of absolute URLs
      */
-    private boolean isValidUrl(String url) {
-        if (url == null || url.isEmpty()) {
-            return false;
-        }
-
-        // Only accept HTTP and HTTPS URLs
-        if (!url.startsWith("http://") && !url.startsWith("https://")) {
-            return false;
+    private Set<String> filterLinks(Iterable<String> candidates) {
+        Set<String> links = new HashSet<>();
+        for (String href : candidates) {
+            if (isValidUrl(href)) {
+                links.add(href);
+            }
         }
+        return links;
+    }
 
-        // Skip common file extensions that are not HTML pages
-        String lowerUrl = url.toLowerCase();
-        if (lowerUrl.matches(".*\\.(jpg|jpeg|png|gif|pdf|zip|exe|dmg|mp4|mp3|css|js|ico|svg)$")) {
-            return false;
-        }
+    /**
+     * Validates if a URL is valid for crawling.
+     * 
+     * @param url The URL to validate
+     * @return true if the URL passes the link filter
+     */
+    boolean isValidUrl(String url) {
+        return urlFilter.accept(url);
+    }
 
-        // Validate URL format
-        try {
-            new URL(url);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+    /**
+     * Gets the filter applied to extracted links.
+     * 
+     * @return The link filter
+     */
+    public UrlFilter getUrlFilter() {
+        return urlFilter;
     }
 
     /**
@@ -87,6 +171,13 @@ public class LinkExtractor {
      * @return The page title or empty string
      */
     public String extractTitle(String html) {
+        if (parseMode == ParseMode.STREAMING) {
+            HtmlLinkScanner scanner = new HtmlLinkScanner(null, false);
+            scanner.feed(html);
+            scanner.finish();
+            return scanner.getTitle();
+        }
+
         try {
             Document doc = Jsoup.parse(html);
             return doc.title();
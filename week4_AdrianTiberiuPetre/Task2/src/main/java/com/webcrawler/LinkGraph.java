@@ -0,0 +1,328 @@
+package com.webcrawler;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only view of a link graph recorded by {@link LinkGraphWriter}, for
+ * link queries and ranking after the crawl without parsing any page.
+ *
+ * Pages are int ids. The out-links and in-links of each page are sorted id
+ * lists stored as varint gaps, and both files are memory-mapped, so a graph
+ * costs little heap beyond its URL list and reading a list only touches the
+ * pages of the file it lies on. Each list file is limited to 2 GiB.
+ * Instances are thread-safe.
+ */
+public final class LinkGraph {
+    static final String URLS_FILE = "urls.txt";
+    static final String EDGES_FILE = "edges.log";
+    static final String OUT_INDEX_FILE = "out.idx";
+    static final String OUT_LINKS_FILE = "out.dat";
+    static final String IN_INDEX_FILE = "in.idx";
+    static final String IN_LINKS_FILE = "in.dat";
+    private static final double CONVERGED = 1e-9;
+
+    private final String[] urls;
+    private final Map<String, Integer> ids;
+    private final AdjacencyFile outLinks;
+    private final AdjacencyFile inLinks;
+    private final long linkCount;
+
+    private LinkGraph(String[] urls, AdjacencyFile outLinks, AdjacencyFile inLinks) {
+        this.urls = urls;
+        this.ids = new HashMap<>(urls.length * 4 / 3 + 1);
+        for (int id = 0; id < urls.length; id++) {
+            ids.put(urls[id], id);
+        }
+        this.outLinks = outLinks;
+        this.inLinks = inLinks;
+        long links = 0;
+        for (int id = 0; id < urls.length; id++) {
+            links += outLinks.degree(id);
+        }
+        this.linkCount = links;
+    }
+
+    /**
+     * Opens a link graph saved by a closed {@link LinkGraphWriter}.
+     *
+     * @param directory Directory of the link graph files
+     * @return The graph
+     * @throws IOException if the files are missing or cannot be mapped
+     */
+    public static LinkGraph open(Path directory) throws IOException {
+        List<String> lines = Files.readAllLines(directory.resolve(URLS_FILE), StandardCharsets.UTF_8);
+        String[] urls = lines.toArray(new String[0]);
+        AdjacencyFile out = AdjacencyFile.map(directory.resolve(OUT_INDEX_FILE), directory.resolve(OUT_LINKS_FILE));
+        AdjacencyFile in = AdjacencyFile.map(directory.resolve(IN_INDEX_FILE), directory.resolve(IN_LINKS_FILE));
+        if (out.pageCount() != urls.length || in.pageCount() != urls.length) {
+            throw new IOException("Link graph index does not match its URL list: " + directory);
+        }
+        return new LinkGraph(urls, out, in);
+    }
+
+    /**
+     * Gets the number of pages, crawled or only linked to.
+     *
+     * @return Page count
+     */
+    public int getPageCount() {
+        return urls.length;
+    }
+
+    /**
+     * Gets the number of distinct links between pages.
+     *
+     * @return Link count
+     */
+    public long getLinkCount() {
+        return linkCount;
+    }
+
+    /**
+     * Gets the URL of a page.
+     *
+     * @param id The page id
+     * @return The normalized URL
+     */
+    public String getUrl(int id) {
+        return urls[id];
+    }
+
+    /**
+     * Gets the id of a page.
+     *
+     * @param url The normalized URL
+     * @return The page id, or -1 if the URL is not in the graph
+     */
+    public int getId(String url) {
+        Integer id = ids.get(url);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Gets the pages a page links to.
+     *
+     * @param id The page id
+     * @return Ids of the linked pages, ascending; empty if the page was not crawled
+     */
+    public int[] getOutLinks(int id) {
+        return outLinks.get(id);
+    }
+
+    /**
+     * Gets the pages linking to a page.
+     *
+     * @param id The page id
+     * @return Ids of the linking pages, ascending
+     */
+    public int[] getInLinks(int id) {
+        return inLinks.get(id);
+    }
+
+    /**
+     * Gets the number of pages a page links to.
+     *
+     * @param id The page id
+     * @return Out-degree
+     */
+    public int getOutDegree(int id) {
+        return outLinks.degree(id);
+    }
+
+    /**
+     * Gets the number of pages linking to a page.
+     *
+     * @param id The page id
+     * @return In-degree
+     */
+    public int getInDegree(int id) {
+        return inLinks.degree(id);
+    }
+
+    /**
+     * Computes PageRank by power iteration over the out-link lists. The rank
+     * of pages without out-links, including pages that were never crawled,
+     * is spread evenly over all pages.
+     *
+     * @param damping Probability of following a link rather than jumping, usually 0.85
+     * @param maxIterations Iterations to run at most; fewer if the ranks converge
+     * @return Rank of each page by id, summing to 1
+     */
+    public double[] pageRank(double damping, int maxIterations) {
+        int pageCount = urls.length;
+        double[] rank = new double[pageCount];
+        double[] next = new double[pageCount];
+        Arrays.fill(rank, 1.0 / pageCount);
+        Cursor cursor = outLinks.cursor();
+
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            Arrays.fill(next, 0);
+            double dangling = 0;
+            for (int page = 0; page < pageCount; page++) {
+                int degree = cursor.seek(page);
+                if (degree == 0) {
+                    dangling += rank[page];
+                    continue;
+                }
+                double share = rank[page] / degree;
+                for (int i = 0; i < degree; i++) {
+                    next[cursor.next()] += share;
+                }
+            }
+
+            double base = (1 - damping + damping * dangling) / pageCount;
+            double change = 0;
+            for (int page = 0; page < pageCount; page++) {
+                next[page] = base + damping * next[page];
+                change += Math.abs(next[page] - rank[page]);
+            }
+            double[] swap = rank;
+            rank = next;
+            next = swap;
+            if (change < CONVERGED) {
+                break;
+            }
+        }
+        return rank;
+    }
+
+    static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    /**
+     * Writes a sorted id list as its length followed by the gaps between ids.
+     */
+    static void writeAdjacency(OutputStream out, int[] ids, int from, int to) throws IOException {
+        writeVarint(out, to - from);
+        int previous = 0;
+        for (int i = from; i < to; i++) {
+            writeVarint(out, ids[i] - previous);
+            previous = ids[i];
+        }
+    }
+
+    /**
+     * One memory-mapped list file and the offsets of its lists.
+     */
+    private static final class AdjacencyFile {
+        private final LongBuffer offsets;
+        private final ByteBuffer lists;
+
+        private AdjacencyFile(LongBuffer offsets, ByteBuffer lists) {
+            this.offsets = offsets;
+            this.lists = lists;
+        }
+
+        static AdjacencyFile map(Path indexFile, Path listFile) throws IOException {
+            // The mappings stay valid once the channels are closed
+            try (FileChannel index = FileChannel.open(indexFile, StandardOpenOption.READ);
+                 FileChannel lists = FileChannel.open(listFile, StandardOpenOption.READ)) {
+                if (lists.size() > Integer.MAX_VALUE || index.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Link graph file too large to map: " + listFile);
+                }
+                return new AdjacencyFile(index.map(FileChannel.MapMode.READ_ONLY, 0, index.size()).asLongBuffer(),
+                                         lists.map(FileChannel.MapMode.READ_ONLY, 0, lists.size()));
+            }
+        }
+
+        int pageCount() {
+            return offsets.limit() - 1;
+        }
+
+        int degree(int page) {
+            return cursor().seek(page);
+        }
+
+        int[] get(int page) {
+            Cursor cursor = cursor();
+            int[] ids = new int[cursor.seek(page)];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = cursor.next();
+            }
+            return ids;
+        }
+
+        Cursor cursor() {
+            return new Cursor(this);
+        }
+    }
+
+    /**
+     * Position in a list file, decoding one id at a time. Only absolute gets
+     * are used, so cursors on the same file do not interfere.
+     */
+    private static final class Cursor {
+        private final AdjacencyFile file;
+        private int position;
+        private int id;
+
+        Cursor(AdjacencyFile file) {
+            this.file = file;
+        }
+
+        /**
+         * Moves to the list of a page.
+         *
+         * @return The length of the list
+         */
+        int seek(int page) {
+            position = (int) file.offsets.get(page);
+            id = 0;
+            return readVarint();
+        }
+
+        /**
+         * Decodes the next id of the list.
+         */
+        int next() {
+            id += readVarint();
+            return id;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = file.lists.get(position++);
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
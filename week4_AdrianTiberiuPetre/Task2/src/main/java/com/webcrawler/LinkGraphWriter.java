@@ -0,0 +1,452 @@
+package com.webcrawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the links between crawled pages as the crawl runs, so the link
+ * graph never has to be rebuilt by parsing the saved pages again.
+ *
+ * Every URL gets an int id, in the order it is first seen, and is appended
+ * to {@code urls.txt}, whose line numbers are the ids. Each crawled page
+ * appends one record to {@code edges.log}: its id and the sorted ids of the
+ * pages it links to, delta-encoded as varints. When closed, the log is
+ * compacted into the out-link and in-link files read by {@link LinkGraph};
+ * a page recorded twice, e.g. in a resumed crawl, keeps its last links.
+ *
+ * The URL list is always written out before the edge records that name its
+ * ids. When a crawl that crashed is resumed, a partial last URL line is
+ * dropped, and the log is cut after its last complete record naming only
+ * listed URLs, so new records and ids continue from a consistent state.
+ */
+public class LinkGraphWriter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LinkGraphWriter.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int[] NO_LINKS = new int[0];
+
+    private final Path directory;
+    private final Map<CompactUrl, Integer> ids;
+    private final OriginInterner origins;
+    private final AtomicLong recordCount;
+    private BufferedWriter urls;
+    private DataOutputStream edges;
+
+    /**
+     * Opens the link graph in a directory, creating it if needed.
+     *
+     * @param directory Directory of the link graph files
+     * @param append Whether to add to a graph recorded earlier, e.g. when resuming a crawl
+     * @return The writer
+     */
+    public static LinkGraphWriter open(Path directory, boolean append) {
+        try {
+            Files.createDirectories(directory);
+            Map<CompactUrl, Integer> ids = new ConcurrentHashMap<>();
+            OriginInterner origins = new OriginInterner();
+            Path urlFile = directory.resolve(LinkGraph.URLS_FILE);
+            if (append && Files.exists(urlFile)) {
+                truncate(urlFile, completeLinesLength(urlFile));
+                try (BufferedReader reader = Files.newBufferedReader(urlFile, StandardCharsets.UTF_8)) {
+                    String url;
+                    while ((url = reader.readLine()) != null) {
+                        ids.put(CompactUrl.of(url, origins), ids.size());
+                    }
+                }
+                Path edgeFile = directory.resolve(LinkGraph.EDGES_FILE);
+                if (Files.exists(edgeFile)) {
+                    truncate(edgeFile, validRecordsLength(edgeFile, ids.size()));
+                }
+            }
+            return new LinkGraphWriter(directory, ids, origins, append);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open link graph " + directory, e);
+        }
+    }
+
+    private LinkGraphWriter(Path directory, Map<CompactUrl, Integer> ids, OriginInterner origins,
+                            boolean append) throws IOException {
+        this.directory = directory;
+        this.ids = ids;
+        this.origins = origins;
+        this.recordCount = new AtomicLong();
+        StandardOpenOption mode = append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        BufferedWriter urlWriter = Files.newBufferedWriter(directory.resolve(LinkGraph.URLS_FILE),
+                                                           StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                                                           StandardOpenOption.WRITE, mode);
+        OutputStream edgeFile = Files.newOutputStream(directory.resolve(LinkGraph.EDGES_FILE),
+                                                      StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode);
+        this.urls = urlWriter;
+        // Whenever records reach the file, the URL lines they name go first
+        this.edges = new DataOutputStream(new BufferedOutputStream(new FilterOutputStream(edgeFile) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                urlWriter.flush();
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                urlWriter.flush();
+                out.flush();
+            }
+        }, BUFFER_SIZE));
+    }
+
+    /**
+     * Gets the length of a file up to the end of its last complete line.
+     */
+    private static long completeLinesLength(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long end = channel.size();
+            while (end > 0) {
+                int length = (int) Math.min(buffer.capacity(), end);
+                buffer.clear().limit(length);
+                channel.read(buffer, end - length);
+                for (int i = length - 1; i >= 0; i--) {
+                    if (buffer.get(i) == '\n') {
+                        return end - length + i + 1;
+                    }
+                }
+                end -= length;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Gets the length of an edge log up to the end of its last record that
+     * is complete and names only ids below the page count.
+     */
+    private static long validRecordsLength(Path edgeFile, int pageCount) throws IOException {
+        try (CountingInputStream in = new CountingInputStream(new BufferedInputStream(
+                 Files.newInputStream(edgeFile), BUFFER_SIZE))) {
+            long valid = 0;
+            while (readRecord(in, pageCount) != null) {
+                valid = in.count;
+            }
+            return valid;
+        }
+    }
+
+    private static void truncate(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > length) {
+                logger.warn("Dropping {} bytes torn by a crash from {}", channel.size() - length, file);
+                channel.truncate(length);
+            }
+        }
+    }
+
+    /**
+     * Reads one edge record.
+     *
+     * @return The source id followed by the target ids, or null at the end of
+     *         the log or at a record that is torn or names an unknown id
+     */
+    private static int[] readRecord(InputStream in, int pageCount) throws IOException {
+        try {
+            int source = LinkGraph.readVarint(in);
+            int count = LinkGraph.readVarint(in);
+            // Targets are distinct pages, so a longer list is garbage
+            if (source < 0 || source >= pageCount || count < 0 || count > pageCount) {
+                return null;
+            }
+            int[] record = new int[count + 1];
+            record[0] = source;
+            int previous = 0;
+            for (int i = 1; i <= count; i++) {
+                previous += LinkGraph.readVarint(in);
+                if (previous < 0 || previous >= pageCount) {
+                    return null;
+                }
+                record[i] = previous;
+            }
+            return record;
+        } catch (EOFException | StreamCorruptedException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Records the links found on a crawled page, replacing any recorded before.
+     *
+     * @param url The page URL, as taken from the frontier
+     * @param links Normalized URLs of the links on the page; links to the page itself are dropped
+     */
+    public void record(String url, Collection<String> links) {
+        try {
+            int source = idOf(url);
+            int[] targets = new int[links.size()];
+            int count = 0;
+            for (String link : links) {
+                int target = idOf(link);
+                if (target != source) {
+                    targets[count++] = target;
+                }
+            }
+            Arrays.sort(targets, 0, count);
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique == 0 || targets[i] != targets[unique - 1]) {
+                    targets[unique++] = targets[i];
+                }
+            }
+
+            synchronized (this) {
+                if (edges == null) {
+                    return;
+                }
+                LinkGraph.writeVarint(edges, source);
+                LinkGraph.writeAdjacency(edges, targets, 0, unique);
+            }
+            recordCount.incrementAndGet();
+        } catch (IOException e) {
+            logger.error("Failed to record links of {}: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the number of URLs given an id so far.
+     *
+     * @return Node count
+     */
+    public int getUrlCount() {
+        return ids.size();
+    }
+
+    /**
+     * Gets the number of pages recorded since the writer was opened.
+     *
+     * @return Record count
+     */
+    public long getRecordCount() {
+        return recordCount.get();
+    }
+
+    /**
+     * Gets the directory the graph is written to.
+     *
+     * @return The directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the id of a URL, giving it the next id if it has none yet.
+     */
+    private int idOf(String url) throws IOException {
+        CompactUrl key = CompactUrl.of(url, origins);
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(key);
+            if (id == null) {
+                // The line number is the id, so ids are handed out and written in one step
+                id = ids.size();
+                if (urls != null) {
+                    urls.write(url);
+                    urls.write('\n');
+                }
+                ids.put(key, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Closes the log and compacts it into the files read by {@link LinkGraph}.
+     */
+    @Override
+    public synchronized void close() {
+        if (edges == null) {
+            return;
+        }
+        try {
+            urls.flush();
+            edges.close();
+            urls.close();
+            edges = null;
+            urls = null;
+            long linkCount = build(directory);
+            logger.info("Saved link graph with {} pages and {} links: {}", ids.size(), linkCount, directory);
+        } catch (IOException e) {
+            logger.error("Failed to save link graph {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Compacts the URL list and edge log in a directory into the out-link
+     * and in-link files. The log is read up to the first record torn by a
+     * crash or naming a URL whose line was lost.
+     *
+     * @param directory Directory of the link graph files
+     * @return The number of links in the compacted graph
+     * @throws IOException if the files cannot be read or written
+     */
+    static long build(Path directory) throws IOException {
+        int pageCount = 0;
+        try (BufferedReader reader = Files.newBufferedReader(directory.resolve(LinkGraph.URLS_FILE),
+                                                             StandardCharsets.UTF_8)) {
+            while (reader.readLine() != null) {
+                pageCount++;
+            }
+        }
+
+        // The last record of each page wins
+        int[][] outLinks = new int[pageCount][];
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(directory.resolve(LinkGraph.EDGES_FILE)),
+                                                      BUFFER_SIZE)) {
+            int[] record;
+            while ((record = readRecord(in, pageCount)) != null) {
+                outLinks[record[0]] = Arrays.copyOfRange(record, 1, record.length);
+            }
+        }
+
+        // Count in-links, then fill them page by page so each list comes out sorted
+        int[] inOffsets = new int[pageCount + 1];
+        long linkCount = 0;
+        for (int[] targets : outLinks) {
+            if (targets != null) {
+                for (int target : targets) {
+                    inOffsets[target + 1]++;
+                }
+                linkCount += targets.length;
+            }
+        }
+        if (linkCount > Integer.MAX_VALUE) {
+            throw new IOException("Too many links to index: " + linkCount);
+        }
+        for (int i = 0; i < pageCount; i++) {
+            inOffsets[i + 1] += inOffsets[i];
+        }
+        int[] inSources = new int[(int) linkCount];
+        int[] fill = Arrays.copyOf(inOffsets, pageCount);
+        for (int source = 0; source < pageCount; source++) {
+            if (outLinks[source] != null) {
+                for (int target : outLinks[source]) {
+                    inSources[fill[target]++] = source;
+                }
+            }
+        }
+
+        writeLists(directory, LinkGraph.OUT_INDEX_FILE, LinkGraph.OUT_LINKS_FILE, pageCount,
+                   (page, out) -> {
+                       int[] targets = outLinks[page] == null ? NO_LINKS : outLinks[page];
+                       LinkGraph.writeAdjacency(out, targets, 0, targets.length);
+                   });
+        writeLists(directory, LinkGraph.IN_INDEX_FILE, LinkGraph.IN_LINKS_FILE, pageCount,
+                   (page, out) -> LinkGraph.writeAdjacency(out, inSources, inOffsets[page], inOffsets[page + 1]));
+        return linkCount;
+    }
+
+    /**
+     * Writes one adjacency list per page, and the offset of each list.
+     */
+    private static void writeLists(Path directory, String indexFile, String listFile, int pageCount,
+                                   ListWriter writer) throws IOException {
+        try (DataOutputStream index = new DataOutputStream(new BufferedOutputStream(
+                 Files.newOutputStream(directory.resolve(indexFile)), BUFFER_SIZE));
+             CountingOutputStream lists = new CountingOutputStream(new BufferedOutputStream(
+                 Files.newOutputStream(directory.resolve(listFile)), BUFFER_SIZE))) {
+            for (int page = 0; page < pageCount; page++) {
+                index.writeLong(lists.count);
+                writer.write(page, lists);
+            }
+            index.writeLong(lists.count);
+        }
+    }
+
+    /**
+     * Writes the adjacency list of one page.
+     */
+    private interface ListWriter {
+        void write(int page, OutputStream out) throws IOException;
+    }
+
+    /**
+     * Input stream that counts the bytes read through it.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Output stream that counts the bytes written through it.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.webcrawler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Publishes {@link CrawlMetrics} while a crawl runs: as an MBean on the
+ * platform MBean server, in the log at a fixed interval, and over HTTP on
+ * the loopback interface, with {@code /metrics} in Prometheus format and
+ * {@code /} as one line of text.
+ */
+public class MetricsReporter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsReporter.class);
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final CrawlMetrics metrics;
+    private final ObjectName objectName;
+    private final ScheduledExecutorService scheduler;
+    private final HttpServer server;
+
+    private long lastReportNanos;
+    private long lastReportPages;
+    private long lastReportBytes;
+
+    /**
+     * Starts publishing metrics.
+     *
+     * @param metrics The metrics to publish
+     * @param crawlName Distinguishes this crawl's MBean from those of other crawls in the JVM
+     * @param reportIntervalSeconds How often to log the metrics, or 0 not to
+     * @param port Port of the HTTP endpoint, 0 for any free port or -1 for none
+     */
+    public MetricsReporter(CrawlMetrics metrics, String crawlName, int reportIntervalSeconds, int port) {
+        this.metrics = metrics;
+        this.objectName = register(metrics, crawlName);
+        this.lastReportNanos = System.nanoTime();
+
+        if (reportIntervalSeconds > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "crawl-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(this::logReport, reportIntervalSeconds, reportIntervalSeconds,
+                                          TimeUnit.SECONDS);
+        } else {
+            scheduler = null;
+        }
+
+        if (port >= 0) {
+            try {
+                server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("Cannot start metrics endpoint on port " + port, e);
+            }
+            server.createContext("/metrics", exchange -> respond(exchange, PROMETHEUS_CONTENT_TYPE,
+                                                                 metrics::toPrometheus));
+            server.createContext("/", exchange -> respond(exchange, "text/plain; charset=utf-8",
+                                                          () -> metrics.report() + "\n"));
+            server.start();
+        } else {
+            server = null;
+        }
+    }
+
+    /**
+     * Gets the port the HTTP endpoint listens on.
+     *
+     * @return The port, or -1 if there is no endpoint
+     */
+    public int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the name the metrics are registered under.
+     *
+     * @return The MBean name, or null if registration failed
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Stops the endpoint and periodic reports and unregisters the MBean.
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                logger.debug("Failed to unregister {}: {}", objectName, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Logs the metrics, with throughput over the last interval in front.
+     */
+    private void logReport() {
+        long now = System.nanoTime();
+        long pages = metrics.getPagesCrawled();
+        long bytes = metrics.getBytesDownloaded();
+        logger.info("Metrics: {} pages/s, {} KB/s now; {}",
+                    String.format(Locale.ROOT, "%.1f", CrawlMetrics.perSecond(pages - lastReportPages,
+                                                                             now - lastReportNanos)),
+                    String.format(Locale.ROOT, "%.1f", CrawlMetrics.perSecond(bytes - lastReportBytes,
+                                                                             now - lastReportNanos) / 1024),
+                    metrics.report());
+        lastReportNanos = now;
+        lastReportPages = pages;
+        lastReportBytes = bytes;
+    }
+
+    private static ObjectName register(CrawlMetrics metrics, String crawlName) {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName("com.webcrawler:type=CrawlMetrics,crawl="
+                                             + ObjectName.quote(crawlName));
+            mbeanServer.registerMBean(metrics, name);
+            return name;
+        } catch (JMException e) {
+            // E.g. another crawl into the same output path in this JVM; the other surfaces still work
+            logger.warn("Failed to register crawl metrics MBean: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, Supplier<String> body)
+            throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.webcrawler;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares one copy of each "scheme://host:port" among the {@link CompactUrl}s
+ * made with it. Each structure that keeps many URLs, such as a
+ * {@link UrlManager}, has its own, so the origins go away with it rather
+ * than staying in the JVM for as long as any crawl runs.
+ */
+public final class OriginInterner {
+    private final ConcurrentHashMap<String, String> origins = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the shared copy of an origin, making this one the shared copy if
+     * there is none yet.
+     *
+     * @param origin The origin
+     * @return An equal origin, the same instance each time
+     */
+    public String intern(String origin) {
+        String interned = origins.putIfAbsent(origin, origin);
+        return interned != null ? interned : origin;
+    }
+
+    /**
+     * Gets the number of distinct origins interned so far.
+     *
+     * @return Origin count
+     */
+    public int size() {
+        return origins.size();
+    }
+}
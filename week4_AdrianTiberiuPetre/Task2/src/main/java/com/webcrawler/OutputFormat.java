@@ -0,0 +1,23 @@
+package com.webcrawler;
+
+/**
+ * How crawled pages are stored in the output directory.
+ */
+public enum OutputFormat {
+    /**
+     * One {@code <md5>.html} file per page with a metadata comment header.
+     */
+    FILES,
+
+    /**
+     * WARC records appended to rolling {@code crawl-NNNNN.warc} segments,
+     * with an index for looking up a URL's record.
+     */
+    WARC,
+
+    /**
+     * Like {@link #WARC}, with every record compressed as its own gzip member
+     * in {@code crawl-NNNNN.warc.gz} segments, as standard WARC tools expect.
+     */
+    WARC_GZIP
+}
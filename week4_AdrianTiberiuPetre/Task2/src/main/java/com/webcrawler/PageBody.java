@@ -0,0 +1,245 @@
+package com.webcrawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Body of a fetched page, held as the bytes it was sent in, in a buffer from
+ * a {@link PageBufferPool}, and decoded to text only when asked.
+ *
+ * Hashing and saving use the bytes directly, so a page that is never parsed,
+ * e.g. a duplicate, is never decoded. A body is reference counted: its
+ * creator holds the first reference and passes more out with
+ * {@link #retain()}, e.g. to a write queue, and every holder closes it once.
+ * The last close returns the buffer to the pool.
+ */
+public final class PageBody implements AutoCloseable {
+    /** Largest body held; the most a heap buffer can take. */
+    public static final int MAX_BYTES = Integer.MAX_VALUE - 8;
+    private static final int COPY_BYTES = 8192;
+    // Decoding copies off-heap bytes through a per-thread array; larger bodies get a one-off array
+    private static final int MAX_SCRATCH_BYTES = 1024 * 1024;
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[COPY_BYTES]);
+
+    private final PageBufferPool pool;
+    private final Charset charset;
+    private final AtomicInteger references;
+    private ByteBuffer buffer;
+    private volatile String text;
+
+    private PageBody(PageBufferPool pool, Charset charset, ByteBuffer buffer, String text) {
+        this.pool = pool;
+        this.charset = charset;
+        this.buffer = buffer;
+        this.text = text;
+        this.references = new AtomicInteger(1);
+    }
+
+    /**
+     * Creates an empty body to be filled with {@link #append(ByteBuffer)}.
+     *
+     * @param pool Pool the buffer comes from
+     * @param charset Charset the body is encoded in
+     * @param expectedBytes Expected body size, e.g. from Content-Length, or 0 if unknown
+     * @return The body
+     */
+    public static PageBody allocate(PageBufferPool pool, Charset charset, int expectedBytes) {
+        return new PageBody(pool, charset, pool.acquire(Math.max(expectedBytes, 1)), null);
+    }
+
+    /**
+     * Reads a whole stream into a pooled body. The stream is not closed.
+     *
+     * @param in The body stream
+     * @param charset Charset the body is encoded in
+     * @param pool Pool the buffer comes from
+     * @return The body
+     * @throws IOException if reading fails; the buffer is then returned to the pool
+     */
+    public static PageBody read(InputStream in, Charset charset, PageBufferPool pool) throws IOException {
+        PageBody body = allocate(pool, charset, 0);
+        try {
+            byte[] chunk = SCRATCH.get();
+            int read;
+            while ((read = in.read(chunk, 0, COPY_BYTES)) >= 0) {
+                body.append(ByteBuffer.wrap(chunk, 0, read));
+            }
+            return body;
+        } catch (IOException | RuntimeException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Wraps text that is already decoded, e.g. from a fetcher without a pool.
+     *
+     * @param text The page content
+     * @return A body holding the text's UTF-8 bytes on the heap
+     */
+    public static PageBody of(String text) {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        bytes.position(bytes.limit());
+        return new PageBody(null, StandardCharsets.UTF_8, bytes, text);
+    }
+
+    /**
+     * Appends bytes, moving to a buffer of the next size class when full.
+     * Past the largest class the buffer at least doubles, so a huge body is
+     * copied only a few times in all. The buffer's remaining bytes are
+     * consumed.
+     *
+     * @param bytes The next chunk of the body
+     * @throws IllegalStateException if the body would exceed {@link #MAX_BYTES}
+     */
+    public void append(ByteBuffer bytes) {
+        ByteBuffer target = buffer();
+        if (target.remaining() < bytes.remaining()) {
+            long needed = (long) target.position() + bytes.remaining();
+            if (needed > MAX_BYTES) {
+                throw new IllegalStateException("Page body larger than " + MAX_BYTES + " bytes");
+            }
+            long capacity = Math.max(needed, target.capacity() + 1L);
+            if (capacity > PageBufferPool.MAX_CLASS_BYTES) {
+                capacity = Math.min(MAX_BYTES, Math.max(capacity, 2L * target.capacity()));
+            }
+            ByteBuffer larger = pool.acquire((int) capacity);
+            target.flip();
+            larger.put(target);
+            pool.release(target);
+            buffer = larger;
+            target = larger;
+        }
+        target.put(bytes);
+    }
+
+    /**
+     * Gets the size of the body.
+     *
+     * @return Body size in bytes
+     */
+    public int size() {
+        return buffer().position();
+    }
+
+    /**
+     * Gets the charset the body is encoded in.
+     *
+     * @return The charset
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Gets the body bytes without copying them.
+     *
+     * @return A read-only view from the first to the last body byte
+     */
+    public ByteBuffer getBytes() {
+        ByteBuffer view = buffer().asReadOnlyBuffer();
+        view.flip();
+        return view;
+    }
+
+    /**
+     * Decodes the body, the first time it is asked for.
+     *
+     * @return The page content
+     */
+    public String getText() {
+        String decoded = text;
+        if (decoded == null) {
+            ByteBuffer bytes = getBytes();
+            int size = bytes.remaining();
+            byte[] array = scratch(size);
+            bytes.get(array, 0, size);
+            decoded = new String(array, 0, size, charset);
+            text = decoded;
+        }
+        return decoded;
+    }
+
+    /**
+     * Writes the body to a channel.
+     *
+     * @param channel The channel
+     * @throws IOException if writing fails
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer bytes = getBytes();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * Writes the body to a stream, a chunk at a time.
+     *
+     * @param out The stream
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        ByteBuffer bytes = getBytes();
+        byte[] chunk = SCRATCH.get();
+        while (bytes.hasRemaining()) {
+            int length = Math.min(COPY_BYTES, bytes.remaining());
+            bytes.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    /**
+     * Adds a reference, to be given up with {@link #close()}.
+     *
+     * @return This body
+     */
+    public PageBody retain() {
+        if (references.getAndIncrement() <= 0) {
+            references.decrementAndGet();
+            throw new IllegalStateException("Page body already released");
+        }
+        return this;
+    }
+
+    /**
+     * Gives up a reference; the last one returns the buffer to the pool.
+     */
+    @Override
+    public void close() {
+        if (references.decrementAndGet() != 0) {
+            return;
+        }
+        ByteBuffer released = buffer;
+        buffer = null;
+        if (pool != null && released != null) {
+            pool.release(released);
+        }
+    }
+
+    private ByteBuffer buffer() {
+        ByteBuffer current = buffer;
+        if (current == null) {
+            throw new IllegalStateException("Page body already released");
+        }
+        return current;
+    }
+
+    private static byte[] scratch(int size) {
+        if (size > MAX_SCRATCH_BYTES) {
+            return new byte[size];
+        }
+        byte[] array = SCRATCH.get();
+        if (array.length < size) {
+            array = new byte[Math.max(size, array.length * 2)];
+            SCRATCH.set(array);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,167 @@
+package com.webcrawler;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of off-heap buffers for page bodies, shared by all worker threads.
+ *
+ * Buffers come in size classes from 16 KiB to 16 MiB, each four times the
+ * one before, so a body wastes at most three quarters of its buffer and a
+ * freed buffer fits the next page of similar size. Direct buffers are
+ * allocated with {@link ByteBuffer#allocateDirect(int)} and never freed by
+ * the pool; released buffers are kept, most recent first, until the pool
+ * holds {@code maxRetainedBytes}, and dropped after that. Bodies larger than
+ * the largest class get a heap buffer that is not pooled.
+ */
+public class PageBufferPool {
+    /** Capacity of the smallest size class. */
+    public static final int MIN_CLASS_BYTES = 16 * 1024;
+    /** Capacity of the largest size class. */
+    public static final int MAX_CLASS_BYTES = 16 * 1024 * 1024;
+    private static final int CLASS_COUNT = 1 + (Integer.numberOfTrailingZeros(MAX_CLASS_BYTES)
+                                                - Integer.numberOfTrailingZeros(MIN_CLASS_BYTES)) / 2;
+
+    private final long maxRetainedBytes;
+    private final ConcurrentLinkedDeque<ByteBuffer>[] free;
+    private final AtomicLong retainedBytes;
+    private final LongAdder acquireCount;
+    private final LongAdder reuseCount;
+    private final LongAdder oversizedCount;
+    private final AtomicLong allocatedBytes;
+
+    /**
+     * Constructs a pool.
+     *
+     * @param maxRetainedBytes Most bytes of free buffers kept for reuse
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public PageBufferPool(long maxRetainedBytes) {
+        if (maxRetainedBytes < 0) {
+            throw new IllegalArgumentException("Retained bytes must not be negative");
+        }
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.free = new ConcurrentLinkedDeque[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            free[i] = new ConcurrentLinkedDeque<>();
+        }
+        this.retainedBytes = new AtomicLong();
+        this.acquireCount = new LongAdder();
+        this.reuseCount = new LongAdder();
+        this.oversizedCount = new LongAdder();
+        this.allocatedBytes = new AtomicLong();
+    }
+
+    /**
+     * Takes a cleared buffer of at least the given capacity.
+     *
+     * @param minCapacity Bytes the buffer must hold
+     * @return A buffer of the smallest fitting size class, or an unpooled heap buffer if none fits
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        acquireCount.increment();
+        int sizeClass = sizeClassOf(minCapacity);
+        if (sizeClass < 0) {
+            oversizedCount.increment();
+            return ByteBuffer.allocate(minCapacity);
+        }
+        ByteBuffer buffer = free[sizeClass].pollFirst();
+        if (buffer != null) {
+            retainedBytes.addAndGet(-buffer.capacity());
+            reuseCount.increment();
+            return buffer;
+        }
+        int capacity = capacityOf(sizeClass);
+        allocatedBytes.addAndGet(capacity);
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Gives back a buffer taken with {@link #acquire(int)}. The caller must
+     * not use it afterwards.
+     *
+     * @param buffer The buffer
+     */
+    public void release(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+        int sizeClass = sizeClassOf(buffer.capacity());
+        if (sizeClass < 0 || capacityOf(sizeClass) != buffer.capacity()) {
+            return;
+        }
+        if (retainedBytes.addAndGet(buffer.capacity()) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-buffer.capacity());
+            return;
+        }
+        buffer.clear();
+        free[sizeClass].offerFirst(buffer);
+    }
+
+    /**
+     * Gets the number of buffers handed out.
+     *
+     * @return Acquire count
+     */
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    /**
+     * Gets the number of buffers handed out again after being released.
+     *
+     * @return Reuse count
+     */
+    public long getReuseCount() {
+        return reuseCount.sum();
+    }
+
+    /**
+     * Gets the number of bodies too large for any size class.
+     *
+     * @return Oversized request count
+     */
+    public long getOversizedCount() {
+        return oversizedCount.sum();
+    }
+
+    /**
+     * Gets the off-heap memory allocated by the pool so far.
+     *
+     * @return Allocated bytes
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    /**
+     * Gets the bytes of free buffers kept for reuse.
+     *
+     * @return Retained bytes
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    /**
+     * Finds the smallest size class holding a capacity.
+     *
+     * @return The class index, or -1 if the capacity exceeds the largest class
+     */
+    static int sizeClassOf(int capacity) {
+        if (capacity > MAX_CLASS_BYTES) {
+            return -1;
+        }
+        int sizeClass = 0;
+        while (capacityOf(sizeClass) < capacity) {
+            sizeClass++;
+        }
+        return sizeClass;
+    }
+
+    static int capacityOf(int sizeClass) {
+        return MIN_CLASS_BYTES << (2 * sizeClass);
+    }
+}
@@ -0,0 +1,149 @@
+package com.webcrawler;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Strategy for retrieving the content of a URL.
+ *
+ * Blocking implementations only need to provide {@link #fetch(String)}.
+ * Non-blocking implementations override {@link #fetchAsync(String)} and
+ * return true from {@link #isAsync()} so the crawler does not tie up a
+ * worker thread for the duration of the request. Fetchers that can hand out
+ * the body as it arrives override {@link #fetchStream(String, PageMetadata)}
+ * and {@link #fetchStreamAsync(String, PageMetadata)}.
+ *
+ * Fetchers that support conditional requests override the variants taking
+ * the {@link PageMetadata} of a saved copy, send its validators, and report
+ * an unchanged page as a 304 without a body.
+ */
+public interface PageFetcher extends AutoCloseable {
+
+    /**
+     * Fetches a URL, blocking the calling thread until the response is read.
+     *
+     * @param url The URL to fetch
+     * @return The fetch result or null if the request failed
+     */
+    FetchResult fetch(String url);
+
+    /**
+     * Fetches a URL without blocking the calling thread.
+     *
+     * The default implementation calls {@link #fetchAsync(String, PageMetadata)}
+     * without a saved copy.
+     *
+     * @param url The URL to fetch
+     * @return Future completed with the fetch result, or null if the request failed
+     */
+    default CompletableFuture<FetchResult> fetchAsync(String url) {
+        return fetchAsync(url, null);
+    }
+
+    /**
+     * Fetches a URL, revalidating a saved copy if the server supports it.
+     *
+     * The default implementation ignores the saved copy and calls {@link #fetch(String)}.
+     *
+     * @param url The URL to fetch
+     * @param cached Metadata of the saved copy, or null to fetch unconditionally
+     * @return The fetch result, a 304 result if the copy is current, or null if the request failed
+     */
+    default FetchResult fetch(String url, PageMetadata cached) {
+        return fetch(url);
+    }
+
+    /**
+     * Fetches a URL without blocking the calling thread, revalidating a saved copy.
+     *
+     * The default implementation runs {@link #fetch(String, PageMetadata)} on the caller.
+     *
+     * @param url The URL to fetch
+     * @param cached Metadata of the saved copy, or null to fetch unconditionally
+     * @return Future completed with the fetch result, or null if the request failed
+     */
+    default CompletableFuture<FetchResult> fetchAsync(String url, PageMetadata cached) {
+        return CompletableFuture.completedFuture(fetch(url, cached));
+    }
+
+    /**
+     * Fetches a URL and returns as soon as the response headers are read,
+     * leaving the body to be streamed by the caller.
+     *
+     * The default implementation calls {@link #fetchStream(String, PageMetadata)}
+     * without a saved copy.
+     *
+     * @param url The URL to fetch
+     * @return The response, which the caller must close, or null if the request failed
+     */
+    default StreamedResponse fetchStream(String url) {
+        return fetchStream(url, null);
+    }
+
+    /**
+     * Fetches a URL for streaming, revalidating a saved copy if the server supports it.
+     *
+     * The default implementation reads the whole body with {@link #fetch(String, PageMetadata)}.
+     *
+     * @param url The URL to fetch
+     * @param cached Metadata of the saved copy, or null to fetch unconditionally
+     * @return The response, which the caller must close, or null if the request failed
+     */
+    default StreamedResponse fetchStream(String url, PageMetadata cached) {
+        try (FetchResult result = fetch(url, cached)) {
+            if (result == null) {
+                return null;
+            }
+            ByteArrayInputStream body = result.hasContent()
+                ? new ByteArrayInputStream(result.getContent().getBytes(StandardCharsets.UTF_8))
+                : null;
+            String contentType = body == null ? result.getContentType() : "text/html; charset=UTF-8";
+            return new StreamedResponse(url, result.getStatusCode(), contentType, body,
+                                        result.getEtag(), result.getLastModified());
+        }
+    }
+
+    /**
+     * Fetches a URL for streaming without blocking the calling thread.
+     *
+     * The default implementation calls {@link #fetchStreamAsync(String, PageMetadata)}
+     * without a saved copy.
+     *
+     * @param url The URL to fetch
+     * @return Future completed with the response, or null if the request failed
+     */
+    default CompletableFuture<StreamedResponse> fetchStreamAsync(String url) {
+        return fetchStreamAsync(url, null);
+    }
+
+    /**
+     * Fetches a URL for streaming without blocking the calling thread,
+     * revalidating a saved copy.
+     *
+     * The default implementation runs {@link #fetchStream(String, PageMetadata)} on the caller.
+     *
+     * @param url The URL to fetch
+     * @param cached Metadata of the saved copy, or null to fetch unconditionally
+     * @return Future completed with the response, or null if the request failed
+     */
+    default CompletableFuture<StreamedResponse> fetchStreamAsync(String url, PageMetadata cached) {
+        return CompletableFuture.completedFuture(fetchStream(url, cached));
+    }
+
+    /**
+     * Indicates whether {@link #fetchAsync(String)} is truly non-blocking.
+     *
+     * @return true if requests complete on the fetcher's own threads
+     */
+    default boolean isAsync() {
+        return false;
+    }
+
+    /**
+     * Releases resources held by the fetcher.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,121 @@
+package com.webcrawler;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * What is remembered about a saved page between crawls: the validators the
+ * server sent with it, a hash of its body and when it was last fetched.
+ */
+public class PageMetadata {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final String url;
+    private final String etag;
+    private final String lastModified;
+    private final String contentHash;
+    private final String charset;
+    private final long fetchTime;
+
+    /**
+     * Constructs a PageMetadata.
+     *
+     * @param url The page URL
+     * @param etag The ETag header or null if absent
+     * @param lastModified The Last-Modified header or null if absent
+     * @param contentHash Hex SHA-256 of the saved body or null if unknown
+     * @param charset Charset the saved body is encoded in
+     * @param fetchTime Epoch milliseconds of the last fetch
+     */
+    public PageMetadata(String url, String etag, String lastModified,
+                        String contentHash, String charset, long fetchTime) {
+        this.url = url;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+        this.charset = charset;
+        this.fetchTime = fetchTime;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public String getCharset() {
+        return charset;
+    }
+
+    public long getFetchTime() {
+        return fetchTime;
+    }
+
+    /**
+     * Checks if a conditional request can be made for the page.
+     *
+     * @return true if an ETag or a Last-Modified date is known
+     */
+    public boolean hasValidators() {
+        return etag != null || lastModified != null;
+    }
+
+    /**
+     * Creates a copy for a page that was revalidated at the given time.
+     *
+     * @param fetchTime Epoch milliseconds of the revalidation
+     * @return The updated metadata
+     */
+    public PageMetadata withFetchTime(long fetchTime) {
+        return new PageMetadata(url, etag, lastModified, contentHash, charset, fetchTime);
+    }
+
+    /**
+     * Creates the digest used for content hashes.
+     *
+     * @return A new SHA-256 digest
+     */
+    static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Computes the content hash of a body.
+     *
+     * @param body The body bytes
+     * @return Hex SHA-256 of the bytes
+     */
+    static String hashOf(byte[] body) {
+        return toHex(newContentDigest().digest(body));
+    }
+
+    /**
+     * Formats a digest as lowercase hex.
+     *
+     * @param digest The digest bytes
+     * @return The hex string
+     */
+    static String toHex(byte[] digest) {
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
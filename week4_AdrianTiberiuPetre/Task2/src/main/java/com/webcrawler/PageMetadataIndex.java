@@ -0,0 +1,221 @@
+package com.webcrawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent index of {@link PageMetadata} keyed by URL, used to revalidate
+ * saved pages with conditional requests on the next crawl.
+ *
+ * Lookups are served from memory. Updates are appended to the index file as
+ * they happen, and the file is compacted to one record per URL when it is
+ * opened and closed. A record torn by a crash is dropped, which only costs an
+ * unconditional fetch of that page next time.
+ */
+public class PageMetadataIndex implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PageMetadataIndex.class);
+
+    private static final int MAGIC = 0x50474d31; // "PGM1"
+    private static final byte ENTRY = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // writeUTF takes at most 65535 bytes, which is 21845 characters in the worst case
+    private static final int MAX_FIELD_LENGTH = 65535 / 3;
+
+    private final Path file;
+    private final Map<String, PageMetadata> entries;
+    private final AtomicLong revalidatedCount;
+    private DataOutputStream out;
+
+    /**
+     * Opens the index stored in a file, creating it if it does not exist.
+     *
+     * @param file The index file
+     * @return The index, ready for lookups and updates
+     */
+    public static PageMetadataIndex open(Path file) {
+        try {
+            Map<String, PageMetadata> entries = new ConcurrentHashMap<>();
+            if (Files.exists(file)) {
+                load(file, entries);
+            }
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            // Rewrite before appending so a torn tail cannot hide the new records
+            compact(file, entries);
+            return new PageMetadataIndex(file, entries);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open page index " + file, e);
+        }
+    }
+
+    private PageMetadataIndex(Path file, Map<String, PageMetadata> entries) throws IOException {
+        this.file = file;
+        this.entries = entries;
+        this.revalidatedCount = new AtomicLong();
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile(), true), BUFFER_SIZE));
+    }
+
+    /**
+     * Gets the metadata stored for a URL.
+     *
+     * @param url The page URL
+     * @return The metadata or null if the page is not indexed
+     */
+    public PageMetadata get(String url) {
+        return entries.get(url);
+    }
+
+    /**
+     * Stores the metadata of a page, replacing any earlier entry.
+     *
+     * @param metadata The metadata
+     */
+    public void put(PageMetadata metadata) {
+        if (!isWritable(metadata)) {
+            return;
+        }
+        synchronized (this) {
+            entries.put(metadata.getUrl(), metadata);
+            if (out == null) {
+                return;
+            }
+            try {
+                writeEntry(out, metadata);
+            } catch (IOException e) {
+                logger.error("Failed to update page index {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stores the metadata of a page the server reported as not modified.
+     *
+     * @param metadata The metadata with the new fetch time
+     */
+    public void revalidated(PageMetadata metadata) {
+        revalidatedCount.incrementAndGet();
+        put(metadata);
+    }
+
+    /**
+     * Gets the number of pages reported as not modified since the index was opened.
+     *
+     * @return Revalidated page count
+     */
+    public long getRevalidatedCount() {
+        return revalidatedCount.get();
+    }
+
+    /**
+     * Gets the number of indexed pages.
+     *
+     * @return Entry count
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Writes the compacted index and closes the file.
+     */
+    @Override
+    public synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+            out = null;
+            compact(file, entries);
+            logger.info("Saved page index with {} entries: {}", entries.size(), file);
+        } catch (IOException e) {
+            logger.error("Failed to save page index {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static void load(Path file, Map<String, PageMetadata> entries) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a page index: " + file);
+            }
+            while (true) {
+                try {
+                    if (in.readByte() != ENTRY) {
+                        throw new IOException("Corrupt page index: " + file);
+                    }
+                    PageMetadata metadata = new PageMetadata(
+                        in.readUTF(), readOptional(in), readOptional(in),
+                        readOptional(in), in.readUTF(), in.readLong());
+                    entries.put(metadata.getUrl(), metadata);
+                } catch (EOFException e) {
+                    // End of index, or a record torn by a crash
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void compact(Path file, Map<String, PageMetadata> entries) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileOutputStream tempFile = new FileOutputStream(temp.toFile());
+                 DataOutputStream data = new DataOutputStream(new BufferedOutputStream(tempFile, BUFFER_SIZE))) {
+                data.writeInt(MAGIC);
+                for (PageMetadata metadata : entries.values()) {
+                    writeEntry(data, metadata);
+                }
+                data.flush();
+                tempFile.getFD().sync();
+            }
+            // The rename is atomic, so a crash leaves either the old or the new index
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, PageMetadata metadata) throws IOException {
+        out.writeByte(ENTRY);
+        out.writeUTF(metadata.getUrl());
+        writeOptional(out, metadata.getEtag());
+        writeOptional(out, metadata.getLastModified());
+        writeOptional(out, metadata.getContentHash());
+        out.writeUTF(metadata.getCharset());
+        out.writeLong(metadata.getFetchTime());
+    }
+
+    private static boolean isWritable(PageMetadata metadata) {
+        return fits(metadata.getUrl()) && fits(metadata.getEtag()) && fits(metadata.getLastModified())
+            && metadata.getCharset() != null;
+    }
+
+    private static boolean fits(String value) {
+        return value == null || value.length() <= MAX_FIELD_LENGTH;
+    }
+
+    private static void writeOptional(DataOutputStream out, String value) throws IOException {
+        out.writeUTF(value == null ? "" : value);
+    }
+
+    private static String readOptional(DataInputStream in) throws IOException {
+        String value = in.readUTF();
+        return value.isEmpty() ? null : value;
+    }
+}
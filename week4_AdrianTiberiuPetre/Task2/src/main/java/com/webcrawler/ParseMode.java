@@ -0,0 +1,18 @@
+package com.webcrawler;
+
+/**
+ * How LinkExtractor reads a page.
+ */
+public enum ParseMode {
+    /**
+     * Build a full Jsoup document tree.
+     */
+    DOM,
+
+    /**
+     * Scan {@code <title>}, {@code <base href>} and {@code <a href>} tokens
+     * without building a tree. Much cheaper on large pages, but does not
+     * repair malformed markup the way a full HTML parser does.
+     */
+    STREAMING
+}
@@ -0,0 +1,30 @@
+package com.webcrawler;
+
+import java.util.Set;
+
+/**
+ * Fields extracted from a page in a single parsing pass.
+ */
+public class ParsedPage {
+    private final String title;
+    private final Set<String> links;
+
+    /**
+     * Constructs a ParsedPage.
+     * 
+     * @param title The page title or empty string
+     * @param links Absolute, valid links found on the page
+     */
+    public ParsedPage(String title, Set<String> links) {
+        this.title = title;
+        this.links = links;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Set<String> getLinks() {
+        return links;
+    }
+}
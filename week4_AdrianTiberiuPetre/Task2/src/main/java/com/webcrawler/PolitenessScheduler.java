@@ -0,0 +1,302 @@
+package com.webcrawler;
+
+import com.webcrawler.UrlManager.UrlDepthPair;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Frontier that keeps one queue per host and only hands out a URL when its
+ * host may be contacted.
+ *
+ * Hosts are served round-robin. A host is ready when it has fewer requests in
+ * flight than its concurrency limit and its delay since the last request has
+ * passed, so a slow or rate-limiting host holds at most its own share of
+ * threads while the others keep working.
+ *
+ * Each host adapts to its responses. A 429, a 503 or a failed request doubles
+ * the host's back-off delay and halves its concurrency limit. Latency rising
+ * to more than twice the host's baseline also halves the limit; the baseline
+ * is the best moving average seen, drifting slowly towards lasting changes.
+ * Normal responses shrink the back-off and raise the limit again, one step
+ * per round of requests, up to the configured maximum.
+ *
+ * A host's Crawl-delay, once reported, raises its delay above the minimum,
+ * capped at the maximum back-off.
+ *
+ * Hosts are identified by host and port, so servers on the same machine are
+ * scheduled independently.
+ */
+public class PolitenessScheduler implements UrlFrontier {
+    private static final long INITIAL_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final double LATENCY_WEIGHT = 0.3;
+    private static final double SLOW_LATENCY_RATIO = 2.0;
+    private static final double BASELINE_DRIFT = 0.02;
+
+    private final int maxRequestsPerHost;
+    private final long minDelayNanos;
+    private final Map<String, HostQueue> hosts;
+    private final Map<String, Long> crawlDelays;
+    private final ArrayDeque<HostQueue> waitingHosts;
+    private long size;
+    private long backoffCount;
+
+    /**
+     * Constructs a PolitenessScheduler.
+     *
+     * @param maxRequestsPerHost Maximum concurrent requests to one host
+     * @param minDelayMillis Minimum delay between starting two requests to one host
+     */
+    public PolitenessScheduler(int maxRequestsPerHost, long minDelayMillis) {
+        if (maxRequestsPerHost < 1) {
+            throw new IllegalArgumentException("Max requests per host must be at least 1");
+        }
+        if (minDelayMillis < 0) {
+            throw new IllegalArgumentException("Host delay must not be negative");
+        }
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.hosts = new HashMap<>();
+        this.crawlDelays = new HashMap<>();
+        this.waitingHosts = new ArrayDeque<>();
+    }
+
+    @Override
+    public synchronized void offer(UrlDepthPair urlDepthPair) {
+        String key = hostKey(urlDepthPair.getCompactUrl().getOrigin());
+        HostQueue host = hosts.get(key);
+        if (host == null) {
+            host = new HostQueue(key, maxRequestsPerHost);
+            host.delayNanos = crawlDelays.getOrDefault(key, minDelayNanos);
+            hosts.put(key, host);
+        }
+        host.urls.add(urlDepthPair);
+        if (!host.waiting) {
+            host.waiting = true;
+            waitingHosts.add(host);
+        }
+        size++;
+    }
+
+    @Override
+    public synchronized UrlDepthPair poll() {
+        long now = System.nanoTime();
+        for (int i = waitingHosts.size(); i > 0; i--) {
+            HostQueue host = waitingHosts.poll();
+            if (!host.isReady(now)) {
+                waitingHosts.add(host);
+                continue;
+            }
+
+            UrlDepthPair next = host.urls.poll();
+            host.inFlight++;
+            host.nextRequestNanos = now + Math.max(host.delayNanos, host.backoffNanos);
+            // Served hosts go to the back of the line
+            if (host.urls.isEmpty()) {
+                host.waiting = false;
+            } else {
+                waitingHosts.add(host);
+            }
+            size--;
+            return next;
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public synchronized long nanosUntilReady() {
+        long now = System.nanoTime();
+        long wait = Long.MAX_VALUE;
+        for (HostQueue host : waitingHosts) {
+            if (host.inFlight < host.limit) {
+                wait = Math.min(wait, Math.max(0, host.nextRequestNanos - now));
+            }
+        }
+        return wait;
+    }
+
+    @Override
+    public synchronized void recordResponse(String url, int statusCode, long latencyNanos) {
+        HostQueue host = hosts.get(hostKey(url));
+        if (host == null) {
+            return;
+        }
+        host.responsesSinceAdjust++;
+
+        if (statusCode == 429 || statusCode == 503 || statusCode == 0) {
+            host.backoffNanos = host.backoffNanos == 0
+                ? INITIAL_BACKOFF_NANOS
+                : Math.min(MAX_BACKOFF_NANOS, host.backoffNanos * 2);
+            host.nextRequestNanos = Math.max(host.nextRequestNanos, System.nanoTime() + host.backoffNanos);
+            host.decreaseLimit(true);
+            backoffCount++;
+            return;
+        }
+
+        host.latencyAverage = host.latencyAverage < 0
+            ? latencyNanos
+            : host.latencyAverage + LATENCY_WEIGHT * (latencyNanos - host.latencyAverage);
+        if (host.bestLatencyAverage < 0 || host.latencyAverage < host.bestLatencyAverage) {
+            host.bestLatencyAverage = host.latencyAverage;
+        } else {
+            // Let the baseline follow a lasting change so the limit can recover
+            host.bestLatencyAverage += BASELINE_DRIFT * (host.latencyAverage - host.bestLatencyAverage);
+        }
+
+        if (host.latencyAverage > SLOW_LATENCY_RATIO * host.bestLatencyAverage) {
+            host.decreaseLimit(false);
+        } else {
+            host.backoffNanos = host.backoffNanos > INITIAL_BACKOFF_NANOS ? host.backoffNanos / 2 : 0;
+            host.increaseLimit(maxRequestsPerHost);
+        }
+    }
+
+    @Override
+    public synchronized void setCrawlDelay(String url, long delayMillis) {
+        String key = hostKey(url);
+        long delayNanos = Math.max(minDelayNanos,
+                                   Math.min(MAX_BACKOFF_NANOS, TimeUnit.MILLISECONDS.toNanos(delayMillis)));
+        if (delayNanos == minDelayNanos) {
+            crawlDelays.remove(key);
+        } else {
+            crawlDelays.put(key, delayNanos);
+        }
+        HostQueue host = hosts.get(key);
+        if (host != null) {
+            host.delayNanos = delayNanos;
+        }
+    }
+
+    @Override
+    public synchronized void completed(UrlDepthPair urlDepthPair) {
+        String key = hostKey(urlDepthPair.getCompactUrl().getOrigin());
+        HostQueue host = hosts.get(key);
+        if (host == null) {
+            return;
+        }
+        host.inFlight--;
+
+        // Forget idle hosts once nothing about them needs remembering
+        if (!host.waiting && host.inFlight == 0 && host.backoffNanos == 0
+                && host.limit == maxRequestsPerHost && System.nanoTime() - host.nextRequestNanos >= 0) {
+            hosts.remove(key);
+        }
+    }
+
+    /**
+     * Gets the number of hosts with queued or in-flight URLs, or with back-off
+     * state still in effect.
+     *
+     * @return Tracked host count
+     */
+    public synchronized int getHostCount() {
+        return hosts.size();
+    }
+
+    /**
+     * Gets the number of responses that made a host back off.
+     *
+     * @return Back-off count
+     */
+    public synchronized long getBackoffCount() {
+        return backoffCount;
+    }
+
+    /**
+     * Gets the current concurrency limit of a host.
+     *
+     * @param url Any URL on the host
+     * @return The limit, or the configured maximum for hosts without state
+     */
+    public synchronized int getHostLimit(String url) {
+        HostQueue host = hosts.get(hostKey(url));
+        return host == null ? maxRequestsPerHost : host.limit;
+    }
+
+    /**
+     * Extracts the host and port of a URL.
+     *
+     * @param url The URL
+     * @return The authority without user info, or the URL itself if it has none
+     */
+    static String hostKey(String url) {
+        int start = url.indexOf("://");
+        if (start < 0) {
+            return url;
+        }
+        start += 3;
+        int end = url.length();
+        for (int i = start; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                end = i;
+                break;
+            }
+        }
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= start) {
+            start = at + 1;
+        }
+        return url.substring(start, end);
+    }
+
+    /**
+     * Queued URLs and adaptive limits for one host.
+     */
+    private static final class HostQueue {
+        private final String key;
+        private final ArrayDeque<UrlDepthPair> urls = new ArrayDeque<>();
+        private boolean waiting;
+        private int inFlight;
+        private int limit;
+        private long nextRequestNanos;
+        private long delayNanos;
+        private long backoffNanos;
+        private double latencyAverage = -1;
+        private double bestLatencyAverage = -1;
+        private int responsesSinceAdjust;
+
+        HostQueue(String key, int limit) {
+            this.key = key;
+            this.limit = limit;
+            this.nextRequestNanos = System.nanoTime();
+        }
+
+        boolean isReady(long now) {
+            return inFlight < limit && now - nextRequestNanos >= 0;
+        }
+
+        /**
+         * Halves the limit, at most once per round of requests unless forced.
+         */
+        void decreaseLimit(boolean force) {
+            if (force || responsesSinceAdjust >= limit) {
+                limit = Math.max(1, limit / 2);
+                responsesSinceAdjust = 0;
+            }
+        }
+
+        /**
+         * Raises the limit by one after a full round of normal responses.
+         */
+        void increaseLimit(int max) {
+            if (limit < max && responsesSinceAdjust >= limit) {
+                limit++;
+                responsesSinceAdjust = 0;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return key + "[queued=" + urls.size() + ", inFlight=" + inFlight + ", limit=" + limit + "]";
+        }
+    }
+}
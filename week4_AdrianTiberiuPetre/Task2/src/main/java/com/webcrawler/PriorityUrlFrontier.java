@@ -0,0 +1,174 @@
+package com.webcrawler;
+
+import com.webcrawler.UrlManager.UrlDepthPair;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Best-first frontier: hands out the URL with the highest score, as given by
+ * a {@link UrlScorer}, instead of the oldest.
+ *
+ * Scores are bucketed into {@link #LEVELS} lock-free FIFO queues, with one bit
+ * per bucket marking those that may hold URLs. A poll goes straight to the
+ * highest marked bucket, so neither offers nor polls take a lock and equal
+ * scores keep their discovery order.
+ *
+ * A URL is scored again each time another link to it is reported. If its
+ * bucket changes, it is queued again in the new bucket and the old entry is
+ * marked moved; polls skip moved entries. Links that cannot change the score,
+ * as told by {@link UrlScorer#rescores(int)}, are only counted. The number of
+ * links found for a waiting URL is only kept until it is handed out.
+ */
+public class PriorityUrlFrontier implements UrlFrontier {
+    public static final int LEVELS = 64;
+
+    private static final int QUEUED = 0;
+    private static final int MOVED = 1;
+    private static final int TAKEN = 2;
+    private static final AtomicIntegerFieldUpdater<Entry> STATE =
+        AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+    private final UrlScorer scorer;
+    private final ConcurrentLinkedQueue<Entry>[] buckets;
+    private final AtomicLong nonEmpty;
+    private final ConcurrentHashMap<CompactUrl, Entry> waiting;
+    private final AtomicLong size;
+    private final LongAdder rescoredCount;
+
+    /**
+     * Constructs a PriorityUrlFrontier.
+     *
+     * @param scorer Scores URLs when they are queued and when links to them are found
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public PriorityUrlFrontier(UrlScorer scorer) {
+        if (scorer == null) {
+            throw new IllegalArgumentException("URL scorer must be specified");
+        }
+        this.scorer = scorer;
+        this.buckets = new ConcurrentLinkedQueue[LEVELS];
+        for (int i = 0; i < LEVELS; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.nonEmpty = new AtomicLong();
+        this.waiting = new ConcurrentHashMap<>();
+        this.size = new AtomicLong();
+        this.rescoredCount = new LongAdder();
+    }
+
+    @Override
+    public void offer(UrlDepthPair urlDepthPair) {
+        AtomicInteger inLinks = new AtomicInteger(1);
+        Entry entry = new Entry(urlDepthPair, inLinks, bucketOf(urlDepthPair, 1));
+        waiting.put(urlDepthPair.getCompactUrl(), entry);
+        size.incrementAndGet();
+        enqueue(entry);
+    }
+
+    @Override
+    public UrlDepthPair poll() {
+        while (true) {
+            long marked = nonEmpty.get();
+            if (marked == 0) {
+                return null;
+            }
+            int level = 63 - Long.numberOfLeadingZeros(marked);
+            ConcurrentLinkedQueue<Entry> bucket = buckets[level];
+            Entry entry;
+            while ((entry = bucket.poll()) != null) {
+                if (STATE.compareAndSet(entry, QUEUED, TAKEN)) {
+                    waiting.remove(entry.urlDepthPair.getCompactUrl(), entry);
+                    size.decrementAndGet();
+                    return entry.urlDepthPair;
+                }
+            }
+            // An offer that raced with the clear either sees the bit gone and sets it, or is seen here
+            long bit = 1L << level;
+            nonEmpty.getAndUpdate(bits -> bits & ~bit);
+            if (!bucket.isEmpty()) {
+                nonEmpty.getAndUpdate(bits -> bits | bit);
+            }
+        }
+    }
+
+    /**
+     * Counts the link and moves the URL to its new bucket if its score
+     * crossed one. Links to URLs no longer waiting are ignored.
+     */
+    @Override
+    public void recordInLink(String url) {
+        CompactUrl key = CompactUrl.of(url);
+        Entry entry = waiting.get(key);
+        if (entry == null) {
+            return;
+        }
+        int inLinks = entry.inLinks.incrementAndGet();
+        if (!scorer.rescores(inLinks)) {
+            return;
+        }
+        int bucket = bucketOf(entry.urlDepthPair, inLinks);
+        if (bucket == entry.bucket) {
+            return;
+        }
+        Entry moved = new Entry(entry.urlDepthPair, entry.inLinks, bucket);
+        // Whoever loses the race to the old entry, another link or a poll, leaves it alone
+        if (STATE.compareAndSet(entry, QUEUED, MOVED)) {
+            waiting.replace(key, entry, moved);
+            enqueue(moved);
+            rescoredCount.increment();
+        }
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Gets the number of times a URL moved bucket after more links to it
+     * were found.
+     *
+     * @return Move count
+     */
+    public long getRescoredCount() {
+        return rescoredCount.sum();
+    }
+
+    private void enqueue(Entry entry) {
+        buckets[entry.bucket].offer(entry);
+        long bit = 1L << entry.bucket;
+        if ((nonEmpty.get() & bit) == 0) {
+            nonEmpty.getAndUpdate(bits -> bits | bit);
+        }
+    }
+
+    private int bucketOf(UrlDepthPair urlDepthPair, int inLinks) {
+        double score = scorer.score(urlDepthPair.getUrl(), urlDepthPair.getDepth(), inLinks);
+        if (!(score > 0)) {
+            return 0;
+        }
+        return (int) Math.min(LEVELS - 1, score);
+    }
+
+    /**
+     * A URL's place in one bucket. Moving the URL leaves the old entry
+     * behind, marked, for a poll to discard.
+     */
+    private static final class Entry {
+        final UrlDepthPair urlDepthPair;
+        final AtomicInteger inLinks;
+        final int bucket;
+        volatile int state;
+
+        Entry(UrlDepthPair urlDepthPair, AtomicInteger inLinks, int bucket) {
+            this.urlDepthPair = urlDepthPair;
+            this.inLinks = inLinks;
+            this.bucket = bucket;
+        }
+    }
+}
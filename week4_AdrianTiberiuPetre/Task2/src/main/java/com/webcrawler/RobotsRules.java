@@ -0,0 +1,381 @@
+package com.webcrawler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Allow and disallow rules from one host's robots.txt, compiled for fast
+ * checks.
+ *
+ * Parsing follows RFC 9309: the groups naming the crawler's product token
+ * apply, or the {@code *} groups if none does, and the longest matching rule
+ * wins, with allow winning a tie. Plain path prefixes are compiled into a
+ * character trie walked once along the path; rules using {@code *} or
+ * {@code $} become precompiled patterns, checked only when present. Paths
+ * are matched case-sensitively, as the RFC asks.
+ */
+public final class RobotsRules {
+    private static final String ROBOTS_PATH = "/robots.txt";
+
+    /** Rules for a host without a usable robots.txt, e.g. one answering 404. */
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(new Trie.Builder().build(), new Wildcard[0],
+                                                                0, Collections.emptyList());
+    /** Rules for a host whose robots.txt could not be fetched. */
+    public static final RobotsRules DISALLOW_ALL = new RobotsRules(
+        new Trie.Builder().add("/", Trie.DISALLOW).build(), new Wildcard[0], 0, Collections.emptyList());
+
+    private final Trie prefixes;
+    private final Wildcard[] wildcards;
+    private final long crawlDelayMillis;
+    private final List<String> sitemaps;
+
+    private RobotsRules(Trie prefixes, Wildcard[] wildcards, long crawlDelayMillis, List<String> sitemaps) {
+        this.prefixes = prefixes;
+        this.wildcards = wildcards;
+        this.crawlDelayMillis = crawlDelayMillis;
+        this.sitemaps = sitemaps;
+    }
+
+    /**
+     * Parses a robots.txt file line by line.
+     *
+     * @param reader The file content
+     * @param productToken The crawler's name as used in User-agent lines, e.g. "WebCrawler"
+     * @return The rules that apply to the crawler
+     * @throws IOException if the content cannot be read
+     */
+    public static RobotsRules parse(BufferedReader reader, String productToken) throws IOException {
+        Group named = new Group();
+        Group wildcard = new Group();
+        List<String> sitemaps = new ArrayList<>();
+        boolean inNamed = false;
+        boolean inWildcard = false;
+        boolean readingAgents = false;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            switch (key) {
+                case "user-agent":
+                    // Consecutive User-agent lines share the group that follows them
+                    if (!readingAgents) {
+                        inNamed = false;
+                        inWildcard = false;
+                        readingAgents = true;
+                    }
+                    if (value.equals("*")) {
+                        inWildcard = true;
+                    } else if (value.equalsIgnoreCase(productToken)) {
+                        inNamed = true;
+                        named.seen = true;
+                    }
+                    break;
+                case "allow":
+                case "disallow":
+                    readingAgents = false;
+                    // An empty Disallow allows everything, which is the default anyway
+                    if (!value.isEmpty()) {
+                        byte verdict = key.equals("allow") ? Trie.ALLOW : Trie.DISALLOW;
+                        if (inNamed) {
+                            named.add(value, verdict);
+                        }
+                        if (inWildcard) {
+                            wildcard.add(value, verdict);
+                        }
+                    }
+                    break;
+                case "crawl-delay":
+                    readingAgents = false;
+                    long delay = parseDelayMillis(value);
+                    if (inNamed) {
+                        named.crawlDelayMillis = delay;
+                    }
+                    if (inWildcard) {
+                        wildcard.crawlDelayMillis = delay;
+                    }
+                    break;
+                case "sitemap":
+                    // Sitemap lines stand outside the groups
+                    if (!value.isEmpty()) {
+                        sitemaps.add(value);
+                    }
+                    break;
+                default:
+                    readingAgents = false;
+                    break;
+            }
+        }
+
+        Group chosen = named.seen ? named : wildcard;
+        return new RobotsRules(chosen.prefixes.build(), chosen.wildcards.toArray(new Wildcard[0]),
+                               chosen.crawlDelayMillis, Collections.unmodifiableList(sitemaps));
+    }
+
+    /**
+     * Checks whether a URL may be fetched.
+     *
+     * @param url An absolute URL on this host
+     * @return true if no rule forbids the URL
+     */
+    public boolean isAllowed(String url) {
+        int start = pathStart(url);
+        if (start < 0) {
+            return isAllowedPath("/", 0);
+        }
+        if (url.length() - start == ROBOTS_PATH.length() && url.startsWith(ROBOTS_PATH, start)) {
+            return true;
+        }
+        return isAllowedPath(url, start);
+    }
+
+    /**
+     * Gets the delay asked for between two requests.
+     *
+     * @return The Crawl-delay in milliseconds, or 0 if none was given
+     */
+    public long getCrawlDelayMillis() {
+        return crawlDelayMillis;
+    }
+
+    /**
+     * Gets the sitemaps the file lists.
+     *
+     * @return Sitemap URLs, in file order
+     */
+    public List<String> getSitemaps() {
+        return sitemaps;
+    }
+
+    /**
+     * Gets the number of rules that apply to the crawler.
+     *
+     * @return Rule count
+     */
+    public int getRuleCount() {
+        return prefixes.ruleCount + wildcards.length;
+    }
+
+    private boolean isAllowedPath(String url, int start) {
+        long match = prefixes.longestMatch(url, start);
+        int length = (int) (match >>> 8);
+        byte verdict = (byte) match;
+        for (Wildcard rule : wildcards) {
+            if (rule.length >= length && rule.pattern.matcher(url).region(start, url.length()).lookingAt()) {
+                if (rule.length > length || rule.verdict == Trie.ALLOW) {
+                    length = rule.length;
+                    verdict = rule.verdict;
+                }
+            }
+        }
+        return verdict != Trie.DISALLOW;
+    }
+
+    /**
+     * Finds where the path of a URL starts.
+     *
+     * @return The index of the path's '/', or -1 if the URL has no path
+     */
+    private static int pathStart(String url) {
+        int scheme = url.indexOf("://");
+        int from = scheme < 0 ? 0 : scheme + 3;
+        for (int i = from; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '/') {
+                return i;
+            }
+            if (c == '?' || c == '#') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static long parseDelayMillis(String value) {
+        try {
+            double seconds = Double.parseDouble(value);
+            return seconds > 0 ? (long) (seconds * 1000) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RobotsRules[" + getRuleCount() + " rules, crawlDelay=" + crawlDelayMillis + "ms, sitemaps="
+            + sitemaps + "]";
+    }
+
+    /**
+     * Rules collected for one kind of group while parsing.
+     */
+    private static final class Group {
+        private final Trie.Builder prefixes = new Trie.Builder();
+        private final List<Wildcard> wildcards = new ArrayList<>();
+        private long crawlDelayMillis;
+        private boolean seen;
+
+        void add(String path, byte verdict) {
+            boolean anchored = path.endsWith("$");
+            if (!anchored && path.indexOf('*') < 0) {
+                prefixes.add(path, verdict);
+            } else {
+                wildcards.add(new Wildcard(path, verdict));
+            }
+        }
+    }
+
+    /**
+     * A rule using {@code *} or {@code $}, compiled to an anchored pattern.
+     */
+    private static final class Wildcard {
+        private final Pattern pattern;
+        private final int length;
+        private final byte verdict;
+
+        Wildcard(String path, byte verdict) {
+            boolean anchored = path.endsWith("$");
+            String body = anchored ? path.substring(0, path.length() - 1) : path;
+            StringBuilder regex = new StringBuilder();
+            int from = 0;
+            for (int star = body.indexOf('*'); star >= 0; star = body.indexOf('*', from)) {
+                if (star > from) {
+                    regex.append(Pattern.quote(body.substring(from, star)));
+                }
+                regex.append(".*");
+                from = star + 1;
+            }
+            if (from < body.length()) {
+                regex.append(Pattern.quote(body.substring(from)));
+            }
+            if (anchored) {
+                regex.append('$');
+            }
+            this.pattern = Pattern.compile(regex.toString(), Pattern.DOTALL);
+            this.length = path.length();
+            this.verdict = verdict;
+        }
+    }
+
+    /**
+     * Character trie of path prefixes, flattened into arrays once built.
+     * Each node's outgoing edges are sorted by character and found by
+     * binary search; a node where a rule ends carries its verdict.
+     */
+    static final class Trie {
+        static final byte NONE = 0;
+        static final byte DISALLOW = 1;
+        static final byte ALLOW = 2;
+
+        private final int[] firstEdge;
+        private final char[] edgeChars;
+        private final int[] edgeTargets;
+        private final byte[] verdicts;
+        private final int ruleCount;
+
+        private Trie(int[] firstEdge, char[] edgeChars, int[] edgeTargets, byte[] verdicts, int ruleCount) {
+            this.firstEdge = firstEdge;
+            this.edgeChars = edgeChars;
+            this.edgeTargets = edgeTargets;
+            this.verdicts = verdicts;
+            this.ruleCount = ruleCount;
+        }
+
+        /**
+         * Walks the trie along the path of a URL.
+         *
+         * @return The length of the longest matching rule shifted left by 8,
+         *         or'ed with its verdict; 0 if no rule matches
+         */
+        long longestMatch(String url, int start) {
+            long match = verdicts[0];
+            int node = 0;
+            for (int i = start; i < url.length(); i++) {
+                char c = url.charAt(i);
+                int edge = Arrays.binarySearch(edgeChars, firstEdge[node], firstEdge[node + 1], c);
+                if (edge < 0) {
+                    break;
+                }
+                node = edgeTargets[edge];
+                if (verdicts[node] != NONE) {
+                    match = ((long) (i - start + 1) << 8) | verdicts[node];
+                }
+            }
+            return match;
+        }
+
+        /**
+         * Collects prefixes into a tree before flattening it.
+         */
+        static final class Builder {
+            private final Node root = new Node();
+            private int nodeCount = 1;
+            private int ruleCount;
+
+            Builder add(String prefix, byte verdict) {
+                Node node = root;
+                for (int i = 0; i < prefix.length(); i++) {
+                    char c = prefix.charAt(i);
+                    Node child = node.children.get(c);
+                    if (child == null) {
+                        child = new Node();
+                        node.children.put(c, child);
+                        nodeCount++;
+                    }
+                    node = child;
+                }
+                // Allow wins over a disallow of the same path
+                node.verdict = (byte) Math.max(node.verdict, verdict);
+                ruleCount++;
+                return this;
+            }
+
+            Trie build() {
+                int[] firstEdge = new int[nodeCount + 1];
+                char[] edgeChars = new char[nodeCount - 1];
+                int[] edgeTargets = new int[nodeCount - 1];
+                byte[] verdicts = new byte[nodeCount];
+
+                // Number nodes breadth-first so each node's edges are contiguous
+                List<Node> order = new ArrayList<>(nodeCount);
+                order.add(root);
+                int edges = 0;
+                for (int id = 0; id < order.size(); id++) {
+                    Node node = order.get(id);
+                    verdicts[id] = node.verdict;
+                    firstEdge[id] = edges;
+                    for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+                        edgeChars[edges] = child.getKey();
+                        edgeTargets[edges] = order.size();
+                        order.add(child.getValue());
+                        edges++;
+                    }
+                }
+                firstEdge[nodeCount] = edges;
+                return new Trie(firstEdge, edgeChars, edgeTargets, verdicts, ruleCount);
+            }
+        }
+
+        private static final class Node {
+            private final TreeMap<Character, Node> children = new TreeMap<>();
+            private byte verdict = NONE;
+        }
+    }
+}
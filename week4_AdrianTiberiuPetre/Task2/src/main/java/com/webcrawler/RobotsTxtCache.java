@@ -0,0 +1,290 @@
+package com.webcrawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Fetches each host's robots.txt once and keeps its compiled rules for a
+ * time-to-live.
+ *
+ * A host's file is fetched by the first thread that needs it; other threads
+ * checking URLs on that host meanwhile wait for the same fetch. Following
+ * RFC 9309, a 4xx answer allows everything and a 5xx answer or a failed
+ * request disallows everything until the entry expires. Redirects are
+ * followed, also from http to https, up to {@link #MAX_REDIRECTS} hops;
+ * after that the file counts as unavailable and everything is allowed. Only
+ * the first {@link #MAX_BYTES} of a file are read. Hosts are identified by
+ * scheme, host and port.
+ *
+ * The fetch runs on the thread that first checks a URL on the host, so a
+ * crawler thread queueing a link to a new host stalls for up to the request
+ * timeout of {@value #TIMEOUT_MS} ms per hop, and threads checking other
+ * URLs on that host wait with it.
+ */
+public class RobotsTxtCache {
+    private static final Logger logger = LoggerFactory.getLogger(RobotsTxtCache.class);
+    /** Largest part of a robots.txt file that is parsed, as in RFC 9309. */
+    public static final int MAX_BYTES = 500 * 1024;
+    /** Redirects followed for one robots.txt, the minimum RFC 9309 asks for. */
+    public static final int MAX_REDIRECTS = 5;
+    private static final int TIMEOUT_MS = 5000;
+    private static final String USER_AGENT = "Mozilla/5.0 (WebCrawler/1.0)";
+    private static final String PRODUCT_TOKEN = "WebCrawler";
+
+    private final long ttlNanos;
+    private final HttpClient httpClient;
+    private final BiConsumer<String, RobotsRules> loadListener;
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final LongAdder fetchCount;
+    private final LongAdder failureCount;
+    private final LongAdder disallowedCount;
+
+    /**
+     * Constructs a RobotsTxtCache.
+     *
+     * @param ttlMillis How long a host's rules are kept before fetching them again
+     * @param loadListener Called with the origin, e.g. "https://example.com",
+     *                     and the rules each time a host's file is fetched;
+     *                     may be null
+     */
+    public RobotsTxtCache(long ttlMillis, BiConsumer<String, RobotsRules> loadListener) {
+        this(ttlMillis, loadListener, HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(TIMEOUT_MS))
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build());
+    }
+
+    /**
+     * Constructs a RobotsTxtCache that fetches with the given client, which
+     * must not follow redirects itself.
+     */
+    RobotsTxtCache(long ttlMillis, BiConsumer<String, RobotsRules> loadListener, HttpClient httpClient) {
+        if (ttlMillis < 1) {
+            throw new IllegalArgumentException("Robots.txt TTL must be at least 1 ms");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.httpClient = httpClient;
+        this.loadListener = loadListener;
+        this.entries = new ConcurrentHashMap<>();
+        this.fetchCount = new LongAdder();
+        this.failureCount = new LongAdder();
+        this.disallowedCount = new LongAdder();
+    }
+
+    /**
+     * Checks whether the robots.txt of a URL's host allows fetching it,
+     * fetching the file first if it is not cached or has expired.
+     *
+     * @param url An absolute, normalized URL
+     * @return true if the URL may be fetched
+     */
+    public boolean isAllowed(String url) {
+        if (rulesFor(url).isAllowed(url)) {
+            return true;
+        }
+        disallowedCount.increment();
+        return false;
+    }
+
+    /**
+     * Gets the rules for a URL's host, fetching them if needed.
+     *
+     * @param url An absolute URL
+     * @return The host's rules
+     */
+    public RobotsRules rulesFor(String url) {
+        String origin = origin(url);
+        while (true) {
+            long now = System.nanoTime();
+            Entry entry = entries.get(origin);
+            if (entry != null && now - entry.expiresAtNanos < 0) {
+                return entry.rules.join();
+            }
+
+            // Whoever installs the new entry fetches; the others wait on it
+            Entry fresh = new Entry(now + ttlNanos);
+            boolean installed = entry == null
+                ? entries.putIfAbsent(origin, fresh) == null
+                : entries.replace(origin, entry, fresh);
+            if (installed) {
+                RobotsRules rules = fetch(origin);
+                fresh.rules.complete(rules);
+                if (loadListener != null) {
+                    loadListener.accept(origin, rules);
+                }
+                return rules;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of hosts with cached rules, expired or not.
+     *
+     * @return Host count
+     */
+    public int getHostCount() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of robots.txt requests made.
+     *
+     * @return Fetch count
+     */
+    public long getFetchCount() {
+        return fetchCount.sum();
+    }
+
+    /**
+     * Gets the number of robots.txt requests that failed or got a 5xx answer.
+     *
+     * @return Failure count
+     */
+    public long getFailureCount() {
+        return failureCount.sum();
+    }
+
+    /**
+     * Gets the number of URLs {@link #isAllowed(String)} refused.
+     *
+     * @return Disallowed URL count
+     */
+    public long getDisallowedCount() {
+        return disallowedCount.sum();
+    }
+
+    /**
+     * Fetches and parses the robots.txt of an origin.
+     *
+     * @param origin Scheme, host and port
+     * @return The rules, or the fallback for the answer received
+     */
+    private RobotsRules fetch(String origin) {
+        fetchCount.increment();
+        String robotsUrl = origin + "/robots.txt";
+        try {
+            URI uri = URI.create(robotsUrl);
+            for (int redirects = 0; ; redirects++) {
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofMillis(TIMEOUT_MS))
+                    .header("User-Agent", USER_AGENT)
+                    .GET()
+                    .build();
+                HttpResponse<InputStream> response = httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                int status = response.statusCode();
+                String location = response.headers().firstValue("Location").orElse(null);
+                if (status >= 300 && status < 400 && location != null && redirects < MAX_REDIRECTS) {
+                    response.body().close();
+                    uri = uri.resolve(location);
+                    continue;
+                }
+                return parse(response, robotsUrl, origin);
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failureCount.increment();
+            logger.warn("Interrupted while fetching {}, disallowing the host", robotsUrl);
+            return RobotsRules.DISALLOW_ALL;
+        } catch (IOException | RuntimeException e) {
+            failureCount.increment();
+            logger.warn("Failed to fetch {}, disallowing the host: {}", robotsUrl, e.getMessage());
+            return RobotsRules.DISALLOW_ALL;
+        }
+    }
+
+    private RobotsRules parse(HttpResponse<InputStream> response, String robotsUrl, String origin) throws IOException {
+        try (InputStream body = new BoundedInputStream(response.body(), MAX_BYTES)) {
+            int status = response.statusCode();
+            if (status >= 500) {
+                failureCount.increment();
+                logger.warn("HTTP {} for {}, disallowing the host", status, robotsUrl);
+                return RobotsRules.DISALLOW_ALL;
+            }
+            if (status < 200 || status >= 300) {
+                logger.debug("HTTP {} for {}, allowing the host", status, robotsUrl);
+                return RobotsRules.ALLOW_ALL;
+            }
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+            RobotsRules rules = RobotsRules.parse(reader, PRODUCT_TOKEN);
+            logger.debug("Loaded {} for {}", rules, origin);
+            return rules;
+        }
+    }
+
+    /**
+     * Extracts the scheme, host and port of a URL.
+     *
+     * @param url An absolute URL
+     * @return The URL up to its path, e.g. "http://localhost:8080"
+     */
+    static String origin(String url) {
+        return url.substring(0, CompactUrl.originEnd(url));
+    }
+
+    /**
+     * Cached rules of one host; completed once its fetch finishes.
+     */
+    private static final class Entry {
+        private final long expiresAtNanos;
+        private final CompletableFuture<RobotsRules> rules = new CompletableFuture<>();
+
+        Entry(long expiresAtNanos) {
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    /**
+     * Stream that ends after a fixed number of bytes.
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
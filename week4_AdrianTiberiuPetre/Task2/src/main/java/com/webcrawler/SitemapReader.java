@@ -0,0 +1,170 @@
+package com.webcrawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streams the page URLs listed in sitemaps to a consumer.
+ *
+ * Sitemaps are parsed with a pull parser as they download, so a sitemap of
+ * any size is read in constant memory and its first URLs reach the consumer
+ * before the rest has arrived. Gzipped sitemaps are recognised by their
+ * magic bytes, whatever their name or Content-Type. Sitemaps listed in a
+ * sitemap index are read after it, one at a time, up to {@code maxSitemaps}
+ * in total. DTDs and external entities are not processed.
+ */
+public class SitemapReader {
+    private static final Logger logger = LoggerFactory.getLogger(SitemapReader.class);
+    private static final int TIMEOUT_MS = 5000;
+    private static final String USER_AGENT = "Mozilla/5.0 (WebCrawler/1.0)";
+
+    private final XMLInputFactory xmlInputFactory;
+    private final int maxSitemaps;
+
+    /**
+     * Constructs a SitemapReader.
+     *
+     * @param maxSitemaps Most sitemaps read per call, counting sitemap indexes
+     */
+    public SitemapReader(int maxSitemaps) {
+        if (maxSitemaps < 1) {
+            throw new IllegalArgumentException("Max sitemaps must be at least 1");
+        }
+        this.maxSitemaps = maxSitemaps;
+        this.xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Fetches a sitemap, and the sitemaps it lists if it is an index, and
+     * passes every page URL to the consumer. Sitemaps that cannot be fetched
+     * or parsed are skipped after logging.
+     *
+     * @param sitemapUrl The sitemap or sitemap index URL
+     * @param consumer Receives each page URL; returning false stops reading
+     * @return The number of page URLs passed to the consumer
+     */
+    public long read(String sitemapUrl, Predicate<String> consumer) {
+        Deque<String> sitemaps = new ArrayDeque<>();
+        sitemaps.add(sitemapUrl);
+        long urls = 0;
+        int read = 0;
+        while (!sitemaps.isEmpty() && read < maxSitemaps) {
+            String url = sitemaps.poll();
+            read++;
+            HttpURLConnection connection = null;
+            try {
+                connection = (HttpURLConnection) new URL(url).openConnection();
+                connection.setConnectTimeout(TIMEOUT_MS);
+                connection.setReadTimeout(TIMEOUT_MS);
+                connection.setRequestProperty("User-Agent", USER_AGENT);
+                int status = connection.getResponseCode();
+                if (status != HttpURLConnection.HTTP_OK) {
+                    logger.debug("HTTP {} for sitemap {}", status, url);
+                    connection.disconnect();
+                    continue;
+                }
+                Result result;
+                try (InputStream body = connection.getInputStream()) {
+                    result = parse(body, consumer, sitemaps::add);
+                }
+                urls += result.urls;
+                logger.debug("Read {} URLs from sitemap {}", result.urls, url);
+                if (result.stopped) {
+                    break;
+                }
+            } catch (IOException | XMLStreamException | RuntimeException e) {
+                logger.warn("Failed to read sitemap {}: {}", url, e.getMessage());
+                if (connection != null) {
+                    connection.disconnect();
+                }
+            }
+        }
+        if (!sitemaps.isEmpty()) {
+            logger.warn("Skipped {} sitemaps listed in {} beyond the limit of {}",
+                        sitemaps.size(), sitemapUrl, maxSitemaps);
+        }
+        return urls;
+    }
+
+    /**
+     * Parses one sitemap or sitemap index from a stream, gzipped or not.
+     *
+     * @param in The sitemap content; not closed
+     * @param pages Receives each page URL of a sitemap; returning false stops parsing
+     * @param sitemaps Receives each sitemap URL of an index
+     * @return The number of page URLs passed on, and whether the consumer stopped
+     * @throws IOException if the stream cannot be read
+     * @throws XMLStreamException if the content is not well-formed XML
+     */
+    Result parse(InputStream in, Predicate<String> pages, Predicate<String> sitemaps)
+            throws IOException, XMLStreamException {
+        InputStream buffered = new BufferedInputStream(in, 16 * 1024);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b) {
+            buffered = new GZIPInputStream(buffered, 16 * 1024);
+        }
+
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(buffered);
+        try {
+            long urls = 0;
+            boolean index = false;
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String name = reader.getLocalName();
+                if (name.equals("sitemapindex")) {
+                    index = true;
+                } else if (name.equals("loc")) {
+                    String loc = reader.getElementText().trim();
+                    if (loc.isEmpty()) {
+                        continue;
+                    }
+                    if (index) {
+                        sitemaps.test(loc);
+                    } else {
+                        urls++;
+                        if (!pages.test(loc)) {
+                            return new Result(urls, true);
+                        }
+                    }
+                }
+            }
+            return new Result(urls, false);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Outcome of parsing one sitemap.
+     */
+    static final class Result {
+        final long urls;
+        final boolean stopped;
+
+        Result(long urls, boolean stopped) {
+            this.urls = urls;
+            this.stopped = stopped;
+        }
+    }
+}
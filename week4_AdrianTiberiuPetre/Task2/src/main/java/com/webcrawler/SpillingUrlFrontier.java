@@ -0,0 +1,443 @@
+package com.webcrawler;
+
+import com.webcrawler.UrlManager.UrlDepthPair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frontier that keeps a bounded number of URLs on the heap and spills the
+ * rest to segment files on disk.
+ *
+ * URLs are kept in one FIFO queue per depth and polled from the shallowest
+ * non-empty depth, so the crawl stays breadth-first. Each queue has an
+ * in-memory head that is polled from and an in-memory tail that is appended
+ * to; when the tail reaches the segment size it is written to a new segment
+ * file, and segments are read back into the head in order once it runs dry.
+ * Heap use is therefore bounded by two segments per depth however large the
+ * frontier grows. Segment files are written and read with a single sequential
+ * channel operation each, outside the frontier's lock, and deleted as soon as
+ * they have been read.
+ */
+public class SpillingUrlFrontier implements UrlFrontier {
+    private static final Logger logger = LoggerFactory.getLogger(SpillingUrlFrontier.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 10_000;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    private final Path spillDirectory;
+    private final int segmentSize;
+    private final List<DepthQueue> depthQueues;
+    private long size;
+    private long nextSegmentId;
+    private long spilledSegmentCount;
+    private long lostUrlCount;
+    private boolean closed;
+
+    /**
+     * Constructs a SpillingUrlFrontier with the default segment size.
+     * 
+     * @param spillDirectory Directory for segment files, created if missing
+     */
+    public SpillingUrlFrontier(Path spillDirectory) {
+        this(spillDirectory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Constructs a SpillingUrlFrontier.
+     * 
+     * @param spillDirectory Directory for segment files, created if missing
+     * @param segmentSize Number of URLs per segment file
+     */
+    public SpillingUrlFrontier(Path spillDirectory, int segmentSize) {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be at least 1");
+        }
+        try {
+            Files.createDirectories(spillDirectory);
+            deleteStaleSegments(spillDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create frontier spill directory " + spillDirectory, e);
+        }
+        this.spillDirectory = spillDirectory;
+        this.segmentSize = segmentSize;
+        this.depthQueues = new ArrayList<>();
+    }
+
+    /**
+     * Deletes segments left behind by a crawl that did not close its
+     * frontier, which would otherwise clash with the names of new ones.
+     */
+    private static void deleteStaleSegments(Path spillDirectory) throws IOException {
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(spillDirectory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stale) {
+                logger.info("Deleting stale frontier segment {}", path);
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Override
+    public void offer(UrlDepthPair urlDepthPair) {
+        Segment full;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Frontier is closed");
+            }
+            int depth = urlDepthPair.getDepth();
+            while (depthQueues.size() <= depth) {
+                depthQueues.add(new DepthQueue());
+            }
+            full = depthQueues.get(depth).offer(urlDepthPair.getUrl());
+            size++;
+        }
+        // Written without the lock, so other threads keep offering and polling meanwhile
+        if (full != null) {
+            writeSegment(full);
+        }
+    }
+
+    /**
+     * Takes the next URL. A segment that cannot be read back is logged,
+     * counted in {@link #getLostUrlCount()} and skipped, so polling never
+     * fails.
+     */
+    @Override
+    public UrlDepthPair poll() {
+        boolean interrupted = false;
+        while (true) {
+            Segment load;
+            int depth;
+            synchronized (this) {
+                while (true) {
+                    if (size == 0) {
+                        return restoreInterrupt(interrupted, null);
+                    }
+                    depth = shallowestDepth();
+                    DepthQueue queue = depthQueues.get(depth);
+                    if (!queue.needsLoad()) {
+                        size--;
+                        return restoreInterrupt(interrupted, dequeued(queue.poll(), depth));
+                    }
+                    load = queue.segments.peek();
+                    if (!load.loading) {
+                        load.loading = true;
+                        break;
+                    }
+                    // Another thread is reading this depth's next segment
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            // Loads the segment into the head, or drops it; either way the next round moves on
+            readSegment(load, depth);
+        }
+    }
+
+    /**
+     * Wraps a URL taken from a depth queue, keeping the String it is stored
+     * as so the crawl does not rebuild it.
+     */
+    private static UrlDepthPair dequeued(String url, int depth) {
+        UrlDepthPair urlDepthPair = new UrlDepthPair(url, depth);
+        urlDepthPair.hold(url);
+        return urlDepthPair;
+    }
+
+    private static UrlDepthPair restoreInterrupt(boolean interrupted, UrlDepthPair result) {
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    private int shallowestDepth() {
+        for (int depth = 0; depth < depthQueues.size(); depth++) {
+            if (!depthQueues.get(depth).isEmpty()) {
+                return depth;
+            }
+        }
+        throw new IllegalStateException("Frontier size is " + size + " but every queue is empty");
+    }
+
+    @Override
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Gets the number of URLs currently held on the heap.
+     * 
+     * @return URLs in the in-memory heads and tails and in segments not yet written
+     */
+    public synchronized long getInMemoryCount() {
+        long count = 0;
+        for (DepthQueue queue : depthQueues) {
+            count += queue.head.size() + queue.tail.size();
+            for (Segment segment : queue.segments) {
+                if (segment.urls != null) {
+                    count += segment.count;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of URLs dropped because their segment file could not
+     * be read back.
+     * 
+     * @return Lost URL count
+     */
+    public synchronized long getLostUrlCount() {
+        return lostUrlCount;
+    }
+
+    /**
+     * Gets the number of segment files written so far.
+     * 
+     * @return Total segments spilled to disk
+     */
+    public synchronized long getSpilledSegmentCount() {
+        return spilledSegmentCount;
+    }
+
+    /**
+     * Deletes any segment files that were not read back.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        notifyAll();
+        for (DepthQueue queue : depthQueues) {
+            for (Segment segment : queue.segments) {
+                if (segment.path != null) {
+                    deleteQuietly(segment.path);
+                }
+            }
+            queue.segments.clear();
+        }
+        depthQueues.clear();
+        size = 0;
+        try {
+            Files.deleteIfExists(spillDirectory);
+        } catch (IOException e) {
+            logger.debug("Spill directory {} not removed: {}", spillDirectory, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes a full tail to its segment file. The URLs stay on the heap until
+     * the file is complete, so a poll that reaches the segment first takes
+     * them from there, and a failed write loses nothing.
+     */
+    private void writeSegment(Segment segment) {
+        byte[][] encoded = new byte[segment.count][];
+        int length = 0;
+        int i = 0;
+        for (String url : segment.urls) {
+            encoded[i] = url.getBytes(StandardCharsets.UTF_8);
+            length += Integer.BYTES + encoded[i].length;
+            i++;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] bytes : encoded) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        buffer.flip();
+
+        Path path;
+        synchronized (this) {
+            path = spillDirectory.resolve(SEGMENT_PREFIX + nextSegmentId++ + SEGMENT_SUFFIX);
+        }
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            deleteQuietly(path);
+            logger.warn("Failed to write frontier segment {}, keeping its {} URLs in memory: {}",
+                        path, segment.count, e.getMessage());
+            return;
+        }
+
+        synchronized (this) {
+            spilledSegmentCount++;
+            if (segment.polled || closed) {
+                deleteQuietly(path);
+            } else {
+                segment.path = path;
+                segment.urls = null;
+            }
+        }
+    }
+
+    /**
+     * Reads a spilled segment into the head of its depth queue, without the
+     * lock. A segment that is missing, short or corrupt is dropped with its
+     * URLs, as reading it again would fail the same way.
+     */
+    private void readSegment(Segment segment, int depth) {
+        ArrayDeque<String> urls = null;
+        Exception failure = null;
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new IOException("Unexpected end of segment");
+                }
+            }
+            buffer.flip();
+            urls = decode(buffer, segment.count);
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+        deleteQuietly(segment.path);
+
+        synchronized (this) {
+            notifyAll();
+            if (closed) {
+                return;
+            }
+            DepthQueue queue = depthQueues.get(depth);
+            queue.segments.poll();
+            segment.loading = false;
+            segment.polled = true;
+            if (failure != null) {
+                size -= segment.count;
+                lostUrlCount += segment.count;
+                logger.error("Failed to read frontier segment {}, dropping its {} URLs: {}",
+                             segment.path, segment.count, failure.toString());
+                return;
+            }
+            queue.head.addAll(urls);
+        }
+    }
+
+    /**
+     * Decodes the length-prefixed URLs of a segment.
+     *
+     * @throws IOException if the segment does not hold the expected URLs
+     */
+    private static ArrayDeque<String> decode(ByteBuffer buffer, int count) throws IOException {
+        ArrayDeque<String> urls = new ArrayDeque<>(count);
+        byte[] array = buffer.array();
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < Integer.BYTES) {
+                throw new IOException("Segment ends after " + i + " of " + count + " URLs");
+            }
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IOException("Corrupt URL length " + length + " in segment");
+            }
+            urls.add(new String(array, buffer.position(), length, StandardCharsets.UTF_8));
+            buffer.position(buffer.position() + length);
+        }
+        return urls;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("Frontier segment {} not removed: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * FIFO queue for a single depth: head, spilled segments, then tail.
+     */
+    private final class DepthQueue {
+        private final ArrayDeque<String> head = new ArrayDeque<>();
+        private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+        private ArrayDeque<String> tail = new ArrayDeque<>();
+
+        /**
+         * Queues a URL.
+         *
+         * @return The segment to write if the tail became full, otherwise null
+         */
+        Segment offer(String url) {
+            // Nothing is queued behind the head yet, so it can take the URL directly
+            if (segments.isEmpty() && tail.isEmpty() && head.size() < segmentSize) {
+                head.add(url);
+                return null;
+            }
+            tail.add(url);
+            if (tail.size() < segmentSize) {
+                return null;
+            }
+            Segment segment = new Segment(tail);
+            segments.add(segment);
+            tail = new ArrayDeque<>();
+            return segment;
+        }
+
+        /**
+         * Checks whether the next URL is in a segment that must be read from
+         * disk first.
+         */
+        boolean needsLoad() {
+            return head.isEmpty() && !segments.isEmpty() && segments.peek().urls == null;
+        }
+
+        String poll() {
+            if (head.isEmpty()) {
+                if (!segments.isEmpty()) {
+                    // Not written yet, or the write failed: the URLs are still here
+                    Segment segment = segments.poll();
+                    segment.polled = true;
+                    head.addAll(segment.urls);
+                } else {
+                    ArrayDeque<String> drained = tail;
+                    tail = new ArrayDeque<>();
+                    head.addAll(drained);
+                }
+            }
+            return head.poll();
+        }
+
+        boolean isEmpty() {
+            return head.isEmpty() && segments.isEmpty() && tail.isEmpty();
+        }
+    }
+
+    /**
+     * A run of URLs behind the head, held on the heap until its file has
+     * been written.
+     */
+    private static final class Segment {
+        private final int count;
+        private ArrayDeque<String> urls;
+        private Path path;
+        private boolean loading;
+        private boolean polled;
+
+        Segment(ArrayDeque<String> urls) {
+            this.count = urls.size();
+            this.urls = urls;
+        }
+    }
+}
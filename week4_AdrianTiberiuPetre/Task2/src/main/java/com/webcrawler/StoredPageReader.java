@@ -0,0 +1,125 @@
+package com.webcrawler;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads stored pages back, decompressing them if needed.
+ *
+ * Usage:
+ * <pre>
+ *   StoredPageReader &lt;file&gt;               prints a page file, summary or WARC segment
+ *   StoredPageReader &lt;output-dir&gt; &lt;url&gt;   prints the stored body of a page
+ * </pre>
+ *
+ * Page bodies are stored in the charset they were served in, which the
+ * page's header records; a printed body is decoded from it.
+ */
+public final class StoredPageReader {
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private StoredPageReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 1) {
+            try (InputStream in = open(Paths.get(args[0]))) {
+                in.transferTo(System.out);
+            }
+        } else if (args.length == 2) {
+            Path outputDirectory = Paths.get(args[0]);
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if (!copyPage(outputDirectory, args[1], body)) {
+                System.err.println("Not stored: " + args[1]);
+                System.exit(1);
+            }
+            System.out.print(body.toString(readCharset(outputDirectory, args[1])));
+        } else {
+            System.err.println("Usage: StoredPageReader <file> | StoredPageReader <output-dir> <url>");
+            System.exit(2);
+        }
+        System.out.flush();
+    }
+
+    /**
+     * Opens a stored file, decompressing it if it is gzipped. A compressed
+     * WARC segment reads as the concatenation of its records.
+     *
+     * @param file The file
+     * @return Stream of the uncompressed content
+     * @throws IOException if the file cannot be read
+     */
+    public static InputStream open(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file));
+        try {
+            in.mark(2);
+            int magic = in.read() | (in.read() << 8);
+            in.reset();
+            return magic == GZIP_MAGIC ? new GZIPInputStream(in) : in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies the stored body of a page from a crawl's output directory,
+     * whichever format and compression it was stored with.
+     *
+     * @param outputDirectory The crawl's output directory
+     * @param url The page URL
+     * @param out Where the body is written
+     * @return false if the page is not stored
+     * @throws IOException if the page cannot be read
+     */
+    public static boolean copyPage(Path outputDirectory, String url, OutputStream out) throws IOException {
+        if (Files.exists(outputDirectory.resolve(WarcStore.INDEX_FILE))) {
+            try (WarcStore store = new WarcStore(outputDirectory, false)) {
+                InputStream body = store.openPage(url);
+                if (body == null) {
+                    return false;
+                }
+                try (InputStream in = body) {
+                    in.transferTo(out);
+                }
+                return true;
+            }
+        }
+
+        ContentSaver saver = new ContentSaver(outputDirectory.toString());
+        if (!saver.hasPage(url)) {
+            return false;
+        }
+        try (InputStream in = saver.openSavedBody(url)) {
+            in.transferTo(out);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the charset the body of a page was stored in.
+     *
+     * @param outputDirectory The crawl's output directory
+     * @param url The page URL
+     * @return The charset, or null if the page is not stored
+     * @throws IOException if the page cannot be read
+     */
+    public static Charset readCharset(Path outputDirectory, String url) throws IOException {
+        if (Files.exists(outputDirectory.resolve(WarcStore.INDEX_FILE))) {
+            try (WarcStore store = new WarcStore(outputDirectory, false)) {
+                return store.readPageCharset(url);
+            }
+        }
+
+        ContentSaver saver = new ContentSaver(outputDirectory.toString());
+        return saver.hasPage(url) ? saver.readSavedCharset(url) : null;
+    }
+}
@@ -0,0 +1,140 @@
+package com.webcrawler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Response whose body is read as a stream of bytes instead of a String.
+ *
+ * The body must be closed once it has been read, which also releases any
+ * connection or in-flight slot the fetcher holds for it.
+ */
+public class StreamedResponse implements Closeable {
+    private final String url;
+    private final int statusCode;
+    private final String contentType;
+    private final InputStream body;
+    private final String etag;
+    private final String lastModified;
+
+    /**
+     * Constructs a StreamedResponse.
+     *
+     * @param url The URL that was fetched
+     * @param statusCode The HTTP status code
+     * @param contentType The Content-Type header or null if absent
+     * @param body The HTML body or null if the body was not usable
+     */
+    public StreamedResponse(String url, int statusCode, String contentType, InputStream body) {
+        this(url, statusCode, contentType, body, null, null);
+    }
+
+    /**
+     * Constructs a StreamedResponse carrying the response's cache validators.
+     *
+     * @param url The URL that was fetched
+     * @param statusCode The HTTP status code
+     * @param contentType The Content-Type header or null if absent
+     * @param body The HTML body or null if the body was not usable
+     * @param etag The ETag header or null if absent
+     * @param lastModified The Last-Modified header or null if absent
+     */
+    public StreamedResponse(String url, int statusCode, String contentType, InputStream body,
+                            String etag, String lastModified) {
+        this.url = url;
+        this.statusCode = statusCode;
+        this.contentType = contentType;
+        this.body = body;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public InputStream getBody() {
+        return body;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Checks if the server confirmed that the cached copy is still current.
+     *
+     * @return true for a 304 Not Modified response
+     */
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+
+    /**
+     * Checks if the response carried an HTML body that can be processed.
+     *
+     * @return true if a body is present
+     */
+    public boolean hasBody() {
+        return body != null;
+    }
+
+    /**
+     * Gets the charset declared in the Content-Type header.
+     *
+     * @return The declared charset, or UTF-8 if none or an unknown one is declared
+     */
+    public Charset getCharset() {
+        return charsetOf(contentType);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (body != null) {
+            body.close();
+        }
+    }
+
+    /**
+     * Parses the charset parameter of a Content-Type header.
+     *
+     * @param contentType The header value, may be null
+     * @return The declared charset, or UTF-8 if none or an unknown one is declared
+     */
+    static Charset charsetOf(String contentType) {
+        if (contentType == null) {
+            return StandardCharsets.UTF_8;
+        }
+        int index = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (index < 0) {
+            return StandardCharsets.UTF_8;
+        }
+        String name = contentType.substring(index + "charset=".length()).trim();
+        int end = name.indexOf(';');
+        if (end >= 0) {
+            name = name.substring(0, end).trim();
+        }
+        name = name.replace("\"", "").replace("'", "");
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.webcrawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Blocking fetcher that opens a new HttpURLConnection for every URL.
+ *
+ * Saved copies are revalidated with If-None-Match and If-Modified-Since.
+ * With a buffer pool, bodies are read into pooled buffers instead of Strings.
+ */
+public class UrlConnectionPageFetcher implements PageFetcher {
+    private static final Logger logger = LoggerFactory.getLogger(UrlConnectionPageFetcher.class);
+    private static final int TIMEOUT_MS = 5000; // 5 seconds
+    private static final String USER_AGENT = "Mozilla/5.0 (WebCrawler/1.0)";
+
+    private final PageBufferPool bufferPool;
+
+    /**
+     * Constructs a UrlConnectionPageFetcher that decodes bodies into Strings.
+     */
+    public UrlConnectionPageFetcher() {
+        this(null);
+    }
+
+    /**
+     * Constructs a UrlConnectionPageFetcher.
+     *
+     * @param bufferPool Pool that bodies are read into, or null to decode them into Strings
+     */
+    public UrlConnectionPageFetcher(PageBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Fetches the HTML content from a URL.
+     *
+     * @param urlString The URL to fetch
+     * @return The fetch result or null if failed
+     */
+    @Override
+    public FetchResult fetch(String urlString) {
+        return fetch(urlString, null);
+    }
+
+    /**
+     * Fetches the HTML content from a URL, revalidating a saved copy.
+     *
+     * @param urlString The URL to fetch
+     * @param cached Metadata of the saved copy, or null to fetch unconditionally
+     * @return The fetch result or null if failed
+     */
+    @Override
+    public FetchResult fetch(String urlString, PageMetadata cached) {
+        try (StreamedResponse response = fetchStream(urlString, cached)) {
+            if (response == null) {
+                return null;
+            }
+            if (bufferPool != null) {
+                PageBody body = response.hasBody()
+                    ? PageBody.read(response.getBody(), response.getCharset(), bufferPool)
+                    : null;
+                return new FetchResult(urlString, response.getStatusCode(), response.getContentType(), body,
+                                       response.getEtag(), response.getLastModified());
+            }
+            String content = null;
+            if (response.hasBody()) {
+                // Decode the body as sent instead of re-joining it line by line
+                byte[] bytes = response.getBody().readAllBytes();
+                content = new String(bytes, response.getCharset());
+            }
+            return new FetchResult(urlString, response.getStatusCode(), response.getContentType(), content,
+                                   response.getEtag(), response.getLastModified());
+
+        } catch (IOException e) {
+            logger.error("Failed to fetch content from {}: {}", urlString, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Opens a connection to a URL and returns once the response headers are read.
+     *
+     * @param urlString The URL to fetch
+     * @param cached Metadata of the saved copy, or null to fetch unconditionally
+     * @return The response or null if failed
+     */
+    @Override
+    public StreamedResponse fetchStream(String urlString, PageMetadata cached) {
+        HttpURLConnection connection = null;
+
+        try {
+            URL url = new URL(urlString);
+            connection = (HttpURLConnection) url.openConnection();
+
+            // Set connection properties
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setRequestProperty("User-Agent", USER_AGENT);
+            connection.setInstanceFollowRedirects(true);
+            if (cached != null && cached.getEtag() != null) {
+                connection.setRequestProperty("If-None-Match", cached.getEtag());
+            }
+            if (cached != null && cached.getLastModified() != null) {
+                connection.setRequestProperty("If-Modified-Since", cached.getLastModified());
+            }
+
+            // Check response code
+            int responseCode = connection.getResponseCode();
+            String contentType = connection.getContentType();
+            String etag = connection.getHeaderField("ETag");
+            String lastModified = connection.getHeaderField("Last-Modified");
+
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                logger.debug("Not modified: {}", urlString);
+                connection.disconnect();
+                return new StreamedResponse(urlString, responseCode, contentType, null, etag, lastModified);
+            }
+
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                logger.warn("HTTP {} for URL: {}", responseCode, urlString);
+                connection.disconnect();
+                return new StreamedResponse(urlString, responseCode, contentType, null);
+            }
+
+            // Check content type
+            if (contentType != null && !contentType.contains("text/html")) {
+                logger.debug("Skipping non-HTML content: {} ({})", urlString, contentType);
+                connection.disconnect();
+                return new StreamedResponse(urlString, responseCode, contentType, null);
+            }
+
+            // Closing the body returns the connection to the keep-alive cache
+            InputStream body = connection.getInputStream();
+            return new StreamedResponse(urlString, responseCode, contentType, body, etag, lastModified);
+
+        } catch (Exception e) {
+            logger.error("Failed to fetch content from {}: {}", urlString, e.getMessage());
+            if (connection != null) {
+                connection.disconnect();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.webcrawler;
+
+/**
+ * Remembers which URLs have already been discovered.
+ *
+ * Implementations must be thread-safe. An implementation may trade exactness
+ * for memory, in which case {@link #add(String)} can occasionally report a
+ * new URL as already seen, but never the other way round.
+ */
+public interface UrlDeduplicator {
+
+    /**
+     * Records a URL.
+     * 
+     * @param url The normalized URL
+     * @return true if the URL was not seen before
+     */
+    boolean add(String url);
+
+    /**
+     * Gets the number of distinct URLs recorded.
+     * 
+     * @return URL count
+     */
+    long size();
+
+    /**
+     * Estimates the heap used by the recorded URLs.
+     * 
+     * @return Approximate size in bytes
+     */
+    long estimatedMemoryBytes();
+}
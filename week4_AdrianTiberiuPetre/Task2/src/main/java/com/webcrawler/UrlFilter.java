@@ -0,0 +1,451 @@
+package com.webcrawler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Ordered chain of URL rules with a rejection counter per rule.
+ *
+ * Rules are evaluated in the order they were added and the first rule that
+ * rejects a URL stops the chain. Patterns are compiled once when the chain is
+ * built and the scheme, extension and syntax rules work on the URL string in
+ * place, so a check does not allocate. Instances are thread-safe and can be
+ * shared between LinkExtractor and UrlManager.
+ */
+public class UrlFilter {
+    private static final String[] DEFAULT_SCHEMES = {"http", "https"};
+    private static final String[] DEFAULT_DENIED_EXTENSIONS = {
+        "jpg", "jpeg", "png", "gif", "pdf", "zip", "exe", "dmg", "mp4", "mp3", "css", "js", "ico", "svg"
+    };
+
+    private final Rule[] rules;
+    private final LongAdder[] rejections;
+
+    /**
+     * A single accept/reject decision on a URL.
+     */
+    public interface Rule {
+        /**
+         * Gets the name under which rejections are reported.
+         *
+         * @return The rule name
+         */
+        String getName();
+
+        /**
+         * Checks a URL.
+         *
+         * @param url The URL to check
+         * @return true if the URL passes this rule
+         */
+        boolean accept(String url);
+    }
+
+    private UrlFilter(List<Rule> rules) {
+        this.rules = rules.toArray(new Rule[0]);
+        this.rejections = new LongAdder[this.rules.length];
+        for (int i = 0; i < rejections.length; i++) {
+            rejections[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Creates the filter for links found on pages: HTTP/HTTPS only, no common
+     * non-HTML file extensions, and a well-formed host.
+     *
+     * @return A new filter with its own counters
+     */
+    public static UrlFilter defaults() {
+        return new Builder()
+            .allowSchemes(DEFAULT_SCHEMES)
+            .denyExtensions(DEFAULT_DENIED_EXTENSIONS)
+            .validateSyntax()
+            .build();
+    }
+
+    /**
+     * Creates a filter that accepts every URL.
+     *
+     * @return A filter without rules
+     */
+    public static UrlFilter acceptAll() {
+        return new Builder().build();
+    }
+
+    /**
+     * Checks a URL against every rule.
+     *
+     * @param url The URL to check
+     * @return true if no rule rejects the URL
+     */
+    public boolean accept(String url) {
+        if (url == null || url.isEmpty()) {
+            return false;
+        }
+
+        for (int i = 0; i < rules.length; i++) {
+            if (!rules[i].accept(url)) {
+                rejections[i].increment();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the chain has no rules.
+     *
+     * @return true if every non-empty URL is accepted
+     */
+    public boolean isEmpty() {
+        return rules.length == 0;
+    }
+
+    /**
+     * Gets the number of URLs each rule has rejected so far.
+     *
+     * @return Rejection counts by rule name, in chain order
+     */
+    public Map<String, Long> getRejectionCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < rules.length; i++) {
+            counts.merge(rules[i].getName(), rejections[i].sum(), Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Builder for UrlFilter chains.
+     */
+    public static class Builder {
+        private final List<Rule> rules = new ArrayList<>();
+
+        public Builder allowSchemes(String... schemes) {
+            rules.add(new SchemeRule(schemes));
+            return this;
+        }
+
+        public Builder denyExtensions(String... extensions) {
+            rules.add(new ExtensionRule(extensions));
+            return this;
+        }
+
+        /**
+         * Adds a rule that only accepts URLs matching at least one of the patterns.
+         */
+        public Builder include(List<String> regexes) {
+            if (!regexes.isEmpty()) {
+                rules.add(new PatternRule("include", compile(regexes), true));
+            }
+            return this;
+        }
+
+        /**
+         * Adds a rule that rejects URLs matching any of the patterns.
+         */
+        public Builder exclude(List<String> regexes) {
+            if (!regexes.isEmpty()) {
+                rules.add(new PatternRule("exclude", compile(regexes), false));
+            }
+            return this;
+        }
+
+        public Builder validateSyntax() {
+            rules.add(new SyntaxRule());
+            return this;
+        }
+
+        public Builder rule(Rule rule) {
+            rules.add(rule);
+            return this;
+        }
+
+        public UrlFilter build() {
+            return new UrlFilter(rules);
+        }
+
+        private static Pattern[] compile(List<String> regexes) {
+            Pattern[] patterns = new Pattern[regexes.size()];
+            for (int i = 0; i < patterns.length; i++) {
+                patterns[i] = Pattern.compile(regexes.get(i));
+            }
+            return patterns;
+        }
+    }
+
+    /**
+     * Accepts URLs whose scheme is in the allow-list, ignoring case.
+     */
+    static final class SchemeRule implements Rule {
+        private final String[] prefixes;
+
+        SchemeRule(String... schemes) {
+            this.prefixes = new String[schemes.length];
+            for (int i = 0; i < schemes.length; i++) {
+                prefixes[i] = schemes[i].toLowerCase(Locale.ROOT) + "://";
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "scheme";
+        }
+
+        @Override
+        public boolean accept(String url) {
+            for (String prefix : prefixes) {
+                if (url.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Rejects URLs whose path ends in a denied file extension.
+     *
+     * Only the path is considered, so {@code photo.jpg?size=large} is rejected
+     * while {@code /view?file=photo.jpg} is not.
+     */
+    static final class ExtensionRule implements Rule {
+        private final String[] extensions;
+        private final int maxLength;
+
+        ExtensionRule(String... extensions) {
+            this.extensions = new String[extensions.length];
+            int longest = 0;
+            for (int i = 0; i < extensions.length; i++) {
+                this.extensions[i] = extensions[i].toLowerCase(Locale.ROOT);
+                longest = Math.max(longest, extensions[i].length());
+            }
+            this.maxLength = longest;
+        }
+
+        @Override
+        public String getName() {
+            return "extension";
+        }
+
+        @Override
+        public boolean accept(String url) {
+            int pathEnd = pathEnd(url);
+            int dot = -1;
+            for (int i = pathEnd - 1; i >= 0 && pathEnd - i <= maxLength + 1; i--) {
+                char c = url.charAt(i);
+                if (c == '.') {
+                    dot = i;
+                    break;
+                }
+                if (c == '/') {
+                    return true;
+                }
+            }
+            if (dot < 0) {
+                return true;
+            }
+
+            int length = pathEnd - dot - 1;
+            for (String extension : extensions) {
+                if (extension.length() == length && url.regionMatches(true, dot + 1, extension, 0, length)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int pathEnd(String url) {
+            for (int i = 0; i < url.length(); i++) {
+                char c = url.charAt(i);
+                if (c == '?' || c == '#') {
+                    return i;
+                }
+            }
+            return url.length();
+        }
+    }
+
+    /**
+     * Include or exclude rule backed by precompiled regular expressions.
+     */
+    static final class PatternRule implements Rule {
+        private final String name;
+        private final Pattern[] patterns;
+        private final boolean include;
+
+        PatternRule(String name, Pattern[] patterns, boolean include) {
+            this.name = name;
+            this.patterns = patterns;
+            this.include = include;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean accept(String url) {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(url).find()) {
+                    return include;
+                }
+            }
+            return !include;
+        }
+
+        @Override
+        public String toString() {
+            return name + Arrays.toString(patterns);
+        }
+    }
+
+    /**
+     * Cheap structural check replacing {@code new URL(url)}: a scheme followed
+     * by "://", a non-empty host, an optional numeric port, and no whitespace
+     * or control characters. The host is a bracketed IPv6 literal or a name
+     * of letters, digits, dots, dashes and underscores; letters outside ASCII
+     * are allowed, so internationalized host names pass as written.
+     */
+    static final class SyntaxRule implements Rule {
+
+        @Override
+        public String getName() {
+            return "syntax";
+        }
+
+        @Override
+        public boolean accept(String url) {
+            int schemeEnd = url.indexOf("://");
+            if (schemeEnd <= 0) {
+                return false;
+            }
+            for (int i = 0; i < schemeEnd; i++) {
+                char c = url.charAt(i);
+                if (!isAsciiLetterOrDigit(c) && c != '+' && c != '-' && c != '.') {
+                    return false;
+                }
+            }
+
+            int hostStart = schemeEnd + 3;
+            int authorityEnd = url.length();
+            for (int i = hostStart; i < url.length(); i++) {
+                char c = url.charAt(i);
+                if (c == '/' || c == '?' || c == '#') {
+                    authorityEnd = i;
+                    break;
+                }
+            }
+
+            // Skip user info
+            int at = url.lastIndexOf('@', authorityEnd - 1);
+            if (at >= hostStart) {
+                hostStart = at + 1;
+            }
+
+            int hostEnd;
+            if (hostStart < authorityEnd && url.charAt(hostStart) == '[') {
+                hostEnd = ipLiteralEnd(url, hostStart, authorityEnd);
+                if (hostEnd < 0) {
+                    return false;
+                }
+            } else {
+                hostEnd = authorityEnd;
+                for (int i = hostStart; i < authorityEnd; i++) {
+                    char c = url.charAt(i);
+                    if (c == ':') {
+                        hostEnd = i;
+                        break;
+                    }
+                    if (!isHostChar(c)) {
+                        return false;
+                    }
+                }
+                if (hostEnd == hostStart) {
+                    return false;
+                }
+            }
+            int portStart = -1;
+            if (hostEnd < authorityEnd) {
+                if (url.charAt(hostEnd) != ':') {
+                    return false;
+                }
+                portStart = hostEnd + 1;
+            }
+            if (portStart >= 0 && !isValidPort(url, portStart, authorityEnd)) {
+                return false;
+            }
+
+            for (int i = authorityEnd; i < url.length(); i++) {
+                if (url.charAt(i) <= ' ' || url.charAt(i) == 0x7f) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Checks an IPv6 literal such as "[::1]" or "[fe80::1%25eth0]".
+         *
+         * @return The index after ']', or -1 if the literal is malformed
+         */
+        private static int ipLiteralEnd(String url, int start, int end) {
+            boolean colon = false;
+            for (int i = start + 1; i < end; i++) {
+                char c = url.charAt(i);
+                if (c == ']') {
+                    return colon ? i + 1 : -1;
+                }
+                if (c == ':') {
+                    colon = true;
+                } else if (!isAsciiLetterOrDigit(c) && c != '.' && c != '%') {
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        private static boolean isHostChar(char c) {
+            if (c < 0x80) {
+                return isAsciiLetterOrDigit(c) || c == '.' || c == '-' || c == '_';
+            }
+            return Character.isLetterOrDigit(c) || Character.getType(c) == Character.NON_SPACING_MARK
+                || Character.getType(c) == Character.COMBINING_SPACING_MARK;
+        }
+
+        private static boolean isValidPort(String url, int start, int end) {
+            if (start == end) {
+                // "host:" with an empty port is allowed and means the default port
+                return true;
+            }
+            if (end - start > 5) {
+                return false;
+            }
+            int port = 0;
+            for (int i = start; i < end; i++) {
+                char c = url.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+                port = port * 10 + (c - '0');
+            }
+            return port <= 65535;
+        }
+
+        private static boolean isAsciiLetterOrDigit(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UrlFilter" + Collections.unmodifiableList(Arrays.asList(rules));
+    }
+}
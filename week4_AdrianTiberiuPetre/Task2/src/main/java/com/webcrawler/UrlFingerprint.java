@@ -0,0 +1,43 @@
+package com.webcrawler;
+
+/**
+ * 64-bit fingerprints of URL strings.
+ */
+public final class UrlFingerprint {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private UrlFingerprint() {
+    }
+
+    /**
+     * Computes the fingerprint of a string: FNV-1a over its chars followed by
+     * the MurmurHash3 finalizer so that all 64 bits are well mixed.
+     * 
+     * @param text The string to hash
+     * @return The fingerprint
+     */
+    public static long of(CharSequence text) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer.
+     * 
+     * @param value The value to mix
+     * @return The mixed value
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,96 @@
+package com.webcrawler;
+
+import com.webcrawler.UrlManager.UrlDepthPair;
+
+/**
+ * Storage for URLs waiting to be crawled.
+ *
+ * Implementations must be thread-safe for concurrent offers and polls.
+ */
+public interface UrlFrontier extends AutoCloseable {
+
+    /**
+     * Adds a URL to the frontier.
+     * 
+     * @param urlDepthPair The URL and its depth
+     */
+    void offer(UrlDepthPair urlDepthPair);
+
+    /**
+     * Removes the next URL to crawl.
+     * 
+     * @return The next URL or null if the frontier is empty
+     */
+    UrlDepthPair poll();
+
+    /**
+     * Gets the number of URLs waiting.
+     * 
+     * @return Frontier size
+     */
+    long size();
+
+    /**
+     * Checks if no URLs are waiting.
+     * 
+     * @return true if the frontier is empty
+     */
+    default boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Gets how long until {@link #poll()} may return a URL.
+     * 
+     * @return 0 if a URL is ready now, or Long.MAX_VALUE if no URL will become
+     *         ready until a URL in progress is completed
+     */
+    default long nanosUntilReady() {
+        return isEmpty() ? Long.MAX_VALUE : 0;
+    }
+
+    /**
+     * Reports another link to a URL that was already discovered, which may
+     * still be waiting in the frontier.
+     * 
+     * @param url The normalized URL
+     */
+    default void recordInLink(String url) {
+    }
+
+    /**
+     * Reports the response received for a URL returned by {@link #poll()}.
+     * 
+     * @param url The URL
+     * @param statusCode The HTTP status code, or 0 if the request failed
+     * @param latencyNanos Time taken by the request
+     */
+    default void recordResponse(String url, int statusCode, long latencyNanos) {
+    }
+
+    /**
+     * Reports the delay a host asks for between two requests, e.g. in the
+     * Crawl-delay of its robots.txt. Frontiers that do not schedule per host
+     * ignore it.
+     * 
+     * @param url Any URL on the host
+     * @param delayMillis The delay, or 0 for none
+     */
+    default void setCrawlDelay(String url, long delayMillis) {
+    }
+
+    /**
+     * Reports that a URL returned by {@link #poll()} has been processed.
+     * 
+     * @param urlDepthPair The completed URL
+     */
+    default void completed(UrlDepthPair urlDepthPair) {
+    }
+
+    /**
+     * Releases resources held by the frontier.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -1,19 +1,45 @@
 package com.webcrawler;
 
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Thread-safe manager for tracking visited URLs and pending URLs to crawl.
+ *
+ * URLs are handed out with {@link #takeNextUrl()}, which blocks until a URL is
+ * queued or the crawl is finished. Every URL taken must be reported back with
+ * {@link #markCompleted(UrlDepthPair)}; the crawl is finished once the queue is
+ * empty and no taken URL is still in progress, or once the page budget is used.
+ *
+ * In a {@link CrawlCluster} the manager holds only the URLs on hosts this
+ * node owns and forwards the others. Going idle does not end the crawl, as
+ * URLs may still arrive from other nodes; it ends when the cluster calls
+ * {@link #finish()}.
+ *
+ * With a {@link RobotsTxtCache}, each new URL is checked against its host's
+ * robots.txt before it is queued. Sources other than crawled pages, such as
+ * sitemaps, hold the crawl open between {@link #openFeed()} and
+ * {@link #closeFeed()} so it does not end while they may still add URLs.
  */
 public class UrlManager {
-    private final Set<String> visitedUrls;
-    private final ConcurrentLinkedQueue<UrlDepthPair> urlQueue;
+    private final OriginInterner origins;
+    private final UrlDeduplicator visitedUrls;
+    private final UrlFrontier urlQueue;
     private final AtomicInteger crawledCount;
     private final String rootDomain;
     private final boolean stayInDomain;
+    private final int maxPages;
+    private final UrlFilter urlFilter;
+    private final UrlNormalizer normalizer;
+    private final CrawlCheckpoint checkpoint;
+    private final CrawlCluster cluster;
+    private final RobotsTxtCache robots;
+    private final ReentrantLock dispatchLock;
+    private final Condition dispatchChanged;
+    private int inProgressCount;
+    private int openFeeds;
+    private boolean finished;
 
     /**
      * Constructs a UrlManager.
@@ -22,11 +48,156 @@ public class UrlManager {
      * @param stayInDomain If true, only crawl URLs within the same domain
      */
     public UrlManager(String rootUrl, boolean stayInDomain) {
-        this.visitedUrls = ConcurrentHashMap.newKeySet();
-        this.urlQueue = new ConcurrentLinkedQueue<>();
+        this(rootUrl, stayInDomain, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a UrlManager with a page budget.
+     * 
+     * @param rootUrl The starting URL
+     * @param stayInDomain If true, only crawl URLs within the same domain
+     * @param maxPages Maximum number of pages to crawl
+     */
+    public UrlManager(String rootUrl, boolean stayInDomain, int maxPages) {
+        this(new Builder().rootUrl(rootUrl).stayInDomain(stayInDomain).maxPages(maxPages));
+    }
+
+    /**
+     * Private constructor - use Builder for the full set of options.
+     */
+    private UrlManager(Builder builder) {
+        this.maxPages = builder.maxPages;
+        this.urlFilter = builder.urlFilter;
+        this.normalizer = builder.normalizer;
+        this.checkpoint = builder.checkpoint;
+        this.cluster = builder.cluster;
+        this.robots = builder.robots;
+        this.dispatchLock = new ReentrantLock();
+        this.dispatchChanged = dispatchLock.newCondition();
+        this.origins = new OriginInterner();
+        this.visitedUrls = builder.createDeduplicator(origins);
+        this.urlQueue = builder.frontier != null ? builder.frontier : new InMemoryUrlFrontier();
         this.crawledCount = new AtomicInteger(0);
-        this.stayInDomain = stayInDomain;
-        this.rootDomain = extractDomain(rootUrl);
+        this.stayInDomain = builder.stayInDomain;
+        this.rootDomain = extractDomain(builder.rootUrl);
+    }
+
+    /**
+     * Builder for UrlManager configuration.
+     */
+    public static class Builder {
+        private String rootUrl;
+        private boolean stayInDomain = true;
+        private int maxPages = Integer.MAX_VALUE;
+        private UrlFilter urlFilter = UrlFilter.acceptAll();
+        private UrlNormalizer normalizer = UrlNormalizer.defaults();
+        private DedupStrategy dedupStrategy = DedupStrategy.EXACT;
+        private double bloomFalsePositiveRate = 0.001;
+        private UrlFrontier frontier;
+        private CrawlCheckpoint checkpoint;
+        private CrawlCluster cluster;
+        private RobotsTxtCache robots;
+
+        public Builder rootUrl(String rootUrl) {
+            this.rootUrl = rootUrl;
+            return this;
+        }
+
+        public Builder stayInDomain(boolean stayInDomain) {
+            this.stayInDomain = stayInDomain;
+            return this;
+        }
+
+        public Builder maxPages(int maxPages) {
+            this.maxPages = maxPages;
+            return this;
+        }
+
+        /**
+         * Sets the filter a normalized URL must pass to be queued.
+         */
+        public Builder urlFilter(UrlFilter urlFilter) {
+            this.urlFilter = urlFilter;
+            return this;
+        }
+
+        /**
+         * Sets how URLs are normalized before they are checked and queued.
+         * Defaults to {@link UrlNormalizer#defaults()}.
+         */
+        public Builder normalizer(UrlNormalizer normalizer) {
+            this.normalizer = normalizer;
+            return this;
+        }
+
+        public Builder dedupStrategy(DedupStrategy dedupStrategy) {
+            this.dedupStrategy = dedupStrategy;
+            return this;
+        }
+
+        /**
+         * Sets the false-positive rate bound for {@link DedupStrategy#BLOOM_FILTER}.
+         */
+        public Builder bloomFalsePositiveRate(double bloomFalsePositiveRate) {
+            this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+            return this;
+        }
+
+        /**
+         * Sets the storage for queued URLs. Defaults to an {@link InMemoryUrlFrontier}.
+         * The caller remains responsible for closing it.
+         */
+        public Builder frontier(UrlFrontier frontier) {
+            this.frontier = frontier;
+            return this;
+        }
+
+        /**
+         * Records queued, completed and crawled URLs to a checkpoint.
+         */
+        public Builder checkpoint(CrawlCheckpoint checkpoint) {
+            this.checkpoint = checkpoint;
+            return this;
+        }
+
+        /**
+         * Only queues URLs on hosts this node owns and forwards the others.
+         * The crawl then ends when the cluster has finished.
+         */
+        public Builder cluster(CrawlCluster cluster) {
+            this.cluster = cluster;
+            return this;
+        }
+
+        /**
+         * Only queues URLs their host's robots.txt allows.
+         */
+        public Builder robots(RobotsTxtCache robots) {
+            this.robots = robots;
+            return this;
+        }
+
+        public UrlManager build() {
+            if (rootUrl == null || rootUrl.isEmpty()) {
+                throw new IllegalArgumentException("Root URL must be specified");
+            }
+            if (urlFilter == null || normalizer == null || dedupStrategy == null) {
+                throw new IllegalArgumentException("URL filter, normalizer and dedup strategy must be specified");
+            }
+            return new UrlManager(this);
+        }
+
+        private UrlDeduplicator createDeduplicator(OriginInterner origins) {
+            switch (dedupStrategy) {
+                case FINGERPRINT:
+                    return new FingerprintUrlDeduplicator();
+                case BLOOM_FILTER:
+                    return new BloomFilterUrlDeduplicator(bloomFalsePositiveRate);
+                case EXACT:
+                default:
+                    return new ExactUrlDeduplicator(origins);
+            }
+        }
     }
 
     /**
@@ -34,42 +205,261 @@ public class UrlManager {
      * 
      * @param url The URL to add
      * @param depth The depth level of this URL
-     * @return true if URL was added, false if already visited or outside domain
+     * @return true if URL was added, or forwarded to the node that owns it,
+     *         false if already visited, outside domain, filtered or
+     *         disallowed by robots.txt
      */
     public boolean addUrl(String url, int depth) {
         if (url == null || url.isEmpty()) {
             return false;
         }
+        return addNormalizedUrl(normalizer.normalize(url), depth);
+    }
 
-        // Normalize URL
-        url = normalizeUrl(url);
+    /**
+     * Normalizes a URL the way {@link #addUrl(String, int)} does.
+     * 
+     * @param url An absolute URL
+     * @return The normalized URL
+     */
+    public String normalize(String url) {
+        return normalizer.normalize(url);
+    }
+
+    /**
+     * Adds a URL already passed through {@link #normalize(String)}, as
+     * {@link #addUrl(String, int)} does.
+     * 
+     * @param url The normalized URL
+     * @param depth The depth level of this URL
+     * @return true if URL was added or forwarded, as for {@link #addUrl(String, int)}
+     */
+    public boolean addNormalizedUrl(String url, int depth) {
+        if (url == null || url.isEmpty()) {
+            return false;
+        }
 
         // Check domain restriction
         if (stayInDomain && !isSameDomain(url)) {
             return false;
         }
 
-        // Check if already visited
-        if (visitedUrls.contains(url)) {
+        // Check crawl scope rules
+        if (!urlFilter.isEmpty() && !urlFilter.accept(url)) {
             return false;
         }
 
-        // Mark as visited and add to queue
+        // Mark as visited and add to queue if not seen before
         if (visitedUrls.add(url)) {
-            urlQueue.offer(new UrlDepthPair(url, depth));
+            // Remembered as visited here too, so each URL is forwarded only once
+            if (cluster != null && !cluster.owns(url)) {
+                cluster.forward(url, depth);
+                return true;
+            }
+            // Checked once per new URL; the owner checks forwarded ones
+            if (robots != null && !robots.isAllowed(url)) {
+                return false;
+            }
+            // Journal before queueing so the completion can never be recorded first
+            if (checkpoint != null) {
+                checkpoint.recordQueued(url, depth);
+            }
+            urlQueue.offer(new UrlDepthPair(CompactUrl.of(url, origins), depth));
+            signalDispatchChanged();
             return true;
         }
 
+        // A link to a URL already seen may raise its priority while it waits
+        urlQueue.recordInLink(url);
         return false;
     }
 
     /**
-     * Gets the next URL to crawl from the queue.
+     * Takes the next URL to crawl, waiting until one is available.
+     * 
+     * A URL is only handed out while pages crawled plus pages in progress
+     * are below the page budget, so the budget is never overshot.
+     * 
+     * @return The next UrlDepthPair, or null when the crawl is finished
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public UrlDepthPair takeNextUrl() throws InterruptedException {
+        dispatchLock.lock();
+        try {
+            while (true) {
+                if (finished || (crawledCount.get() >= maxPages && cluster == null)) {
+                    return null;
+                }
+
+                if (crawledCount.get() + inProgressCount < maxPages) {
+                    UrlDepthPair next = urlQueue.poll();
+                    if (next != null) {
+                        inProgressCount++;
+                        // Built once for the task, the frontier and the checkpoint
+                        next.hold(next.getUrl());
+                        return next;
+                    }
+                }
+
+                // Nothing queued and nothing running that could queue more, unless other nodes can
+                if (inProgressCount == 0 && openFeeds == 0 && urlQueue.isEmpty() && cluster == null) {
+                    return null;
+                }
+
+                // Queued URLs may only be waiting for a per-host delay to pass
+                long readyInNanos = crawledCount.get() + inProgressCount < maxPages
+                    ? urlQueue.nanosUntilReady()
+                    : Long.MAX_VALUE;
+                if (readyInNanos == Long.MAX_VALUE) {
+                    dispatchChanged.await();
+                } else {
+                    dispatchChanged.awaitNanos(readyInNanos);
+                }
+            }
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether this manager has nothing to hand out: no URL in
+     * progress or feed open, and none queued or the page budget used.
      * 
-     * @return The next UrlDepthPair or null if queue is empty
+     * @return true if idle
      */
-    public UrlDepthPair getNextUrl() {
-        return urlQueue.poll();
+    public boolean isIdle() {
+        dispatchLock.lock();
+        try {
+            return inProgressCount == 0 && openFeeds == 0
+                && (urlQueue.isEmpty() || crawledCount.get() >= maxPages);
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * Reports that a source other than crawled pages will add URLs, keeping
+     * the crawl from ending until {@link #closeFeed()} is called.
+     */
+    public void openFeed() {
+        dispatchLock.lock();
+        try {
+            openFeeds++;
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * Reports that a source opened with {@link #openFeed()} has added all its URLs.
+     */
+    public void closeFeed() {
+        dispatchLock.lock();
+        try {
+            openFeeds--;
+            dispatchChanged.signalAll();
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * Ends the crawl: {@link #takeNextUrl()} returns null from now on.
+     */
+    public void finish() {
+        dispatchLock.lock();
+        try {
+            finished = true;
+            dispatchChanged.signalAll();
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * Reports that a URL returned by {@link #takeNextUrl()} has been processed,
+     * whether or not the page was crawled successfully.
+     * 
+     * @param urlDepthPair The completed URL
+     */
+    public void markCompleted(UrlDepthPair urlDepthPair) {
+        if (checkpoint != null) {
+            checkpoint.recordCompleted(urlDepthPair.getUrl());
+        }
+        dispatchLock.lock();
+        try {
+            urlQueue.completed(urlDepthPair);
+            inProgressCount--;
+            dispatchChanged.signalAll();
+        } finally {
+            dispatchLock.unlock();
+        }
+        urlDepthPair.release();
+    }
+
+    /**
+     * Reports the response received for a URL returned by {@link #takeNextUrl()}
+     * so the frontier can adapt how fast it hands out URLs for that host.
+     * 
+     * @param url The URL
+     * @param statusCode The HTTP status code, or 0 if the request failed
+     * @param latencyNanos Time taken by the request
+     */
+    public void recordResponse(String url, int statusCode, long latencyNanos) {
+        urlQueue.recordResponse(url, statusCode, latencyNanos);
+    }
+
+    /**
+     * Gets the number of URLs taken but not yet completed.
+     * 
+     * @return In-progress count
+     */
+    public int getInProgressCount() {
+        dispatchLock.lock();
+        try {
+            return inProgressCount;
+        } finally {
+            dispatchLock.unlock();
+        }
+    }
+
+    /**
+     * Restores the visited URLs, queue and crawled count saved in a checkpoint.
+     * Must be called before crawling starts; restored URLs are not recorded again.
+     * 
+     * @param source The checkpoint to restore from
+     */
+    public void restore(CrawlCheckpoint source) {
+        source.restore(new CrawlCheckpoint.StateVisitor() {
+            @Override
+            public void visited(String url) {
+                visitedUrls.add(url);
+            }
+
+            @Override
+            public void queued(String url, int depth) {
+                if (visitedUrls.add(url)) {
+                    urlQueue.offer(new UrlDepthPair(CompactUrl.of(url, origins), depth));
+                }
+            }
+
+            @Override
+            public void crawledCount(int count) {
+                crawledCount.set(count);
+            }
+        });
+    }
+
+    /**
+     * Wakes up a thread waiting in {@link #takeNextUrl()}.
+     */
+    private void signalDispatchChanged() {
+        dispatchLock.lock();
+        try {
+            dispatchChanged.signalAll();
+        } finally {
+            dispatchLock.unlock();
+        }
     }
 
     /**
@@ -87,6 +477,9 @@ public class UrlManager {
      * @return The new count of crawled pages
      */
     public int incrementCrawledCount() {
+        if (checkpoint != null) {
+            checkpoint.recordCrawled();
+        }
         return crawledCount.incrementAndGet();
     }
 
@@ -105,7 +498,16 @@ public class UrlManager {
      * @return Total discovered URL count
      */
     public int getTotalDiscoveredUrls() {
-        return visitedUrls.size();
+        return (int) Math.min(visitedUrls.size(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Estimates the heap used to remember discovered URLs.
+     * 
+     * @return Approximate size in bytes
+     */
+    public long getDedupMemoryBytes() {
+        return visitedUrls.estimatedMemoryBytes();
     }
 
     /**
@@ -114,28 +516,16 @@ public class UrlManager {
      * @return Queue size
      */
     public int getQueueSize() {
-        return urlQueue.size();
+        return (int) Math.min(urlQueue.size(), Integer.MAX_VALUE);
     }
 
     /**
-     * Normalizes a URL by removing fragments and converting to lowercase.
+     * Gets the filter applied to URLs before they are queued.
      * 
-     * @param url The URL to normalize
-     * @return Normalized URL
+     * @return The scope filter
      */
-    private String normalizeUrl(String url) {
-        // Remove fragment identifier
-        int fragmentIndex = url.indexOf('#');
-        if (fragmentIndex != -1) {
-            url = url.substring(0, fragmentIndex);
-        }
-
-        // Remove trailing slash
-        if (url.endsWith("/") && url.length() > 1) {
-            url = url.substring(0, url.length() - 1);
-        }
-
-        return url.toLowerCase();
+    public UrlFilter getUrlFilter() {
+        return urlFilter;
     }
 
     /**
@@ -183,18 +573,55 @@ public class UrlManager {
     }
 
     /**
-     * Inner class to hold URL and its depth level.
+     * Inner class to hold URL and its depth level. The URL is kept as a
+     * {@link CompactUrl}, as the frontier may hold millions of them.
      */
     public static class UrlDepthPair {
-        private final String url;
+        private final CompactUrl url;
         private final int depth;
+        // The URL as a String while the pair is in hand; queued pairs keep only the compact form
+        private String text;
 
         public UrlDepthPair(String url, int depth) {
+            this(CompactUrl.of(url), depth);
+        }
+
+        public UrlDepthPair(CompactUrl url, int depth) {
             this.url = url;
             this.depth = depth;
         }
 
+        /**
+         * Gets the URL. While the pair is held it is the same String each
+         * time; otherwise it is rebuilt from the compact form.
+         *
+         * @return The URL
+         */
         public String getUrl() {
+            // Strings are immutable, so a stale or missing cached copy only costs a rebuild
+            String cached = text;
+            return cached != null ? cached : url.toString();
+        }
+
+        /**
+         * Keeps the URL as a String until {@link #release()}, for the time
+         * the pair is being crawled. A pair is only held once it has left the
+         * frontier, so a producer can never release a worker's copy.
+         *
+         * @param url The URL of this pair
+         */
+        void hold(String url) {
+            text = url;
+        }
+
+        /**
+         * Drops the String form, once the pair is queued or crawled.
+         */
+        void release() {
+            text = null;
+        }
+
+        public CompactUrl getCompactUrl() {
             return url;
         }
 
@@ -0,0 +1,348 @@
+package com.webcrawler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Rewrites URLs to a canonical form so that variants of the same URL are
+ * crawled once.
+ *
+ * Applies the syntax-based normalizations of RFC 3986 section 6.2.2: the
+ * scheme and host are lowercased, percent-escapes get uppercase hex digits
+ * and unreserved characters are decoded, and "." and ".." path segments are
+ * removed. It then drops the default port, the fragment and query
+ * parameters on the strip list, sorts the remaining parameters by name and
+ * removes a trailing slash from paths other than "/". The path and query
+ * keep their case, as servers may treat it as significant. Spaces, control
+ * and non-ASCII characters are percent-encoded as UTF-8, so normalized URLs
+ * are ASCII. Instances are immutable and thread-safe.
+ */
+public final class UrlNormalizer {
+    private static final String[] DEFAULT_STRIPPED_PARAMETERS = {"utm_*", "gclid", "fbclid"};
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    private static final Comparator<String> BY_PARAMETER_NAME = Comparator.comparing(UrlNormalizer::parameterName);
+
+    private final String[] strippedNames;
+    private final String[] strippedPrefixes;
+    private final boolean sortQuery;
+    private final boolean stripTrailingSlash;
+
+    /**
+     * Private constructor - use Builder.
+     */
+    private UrlNormalizer(Builder builder) {
+        List<String> names = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        for (String parameter : builder.strippedParameters) {
+            String lower = parameter.toLowerCase(Locale.ROOT);
+            if (lower.endsWith("*")) {
+                prefixes.add(lower.substring(0, lower.length() - 1));
+            } else {
+                names.add(lower);
+            }
+        }
+        this.strippedNames = names.toArray(new String[0]);
+        this.strippedPrefixes = prefixes.toArray(new String[0]);
+        this.sortQuery = builder.sortQuery;
+        this.stripTrailingSlash = builder.stripTrailingSlash;
+    }
+
+    /**
+     * Creates the normalizer used by default: strips {@code utm_*},
+     * {@code gclid} and {@code fbclid}, sorts the query and removes trailing
+     * slashes.
+     *
+     * @return A new normalizer
+     */
+    public static UrlNormalizer defaults() {
+        return new Builder().build();
+    }
+
+    /**
+     * Builder for UrlNormalizer configuration.
+     */
+    public static class Builder {
+        private final List<String> strippedParameters = new ArrayList<>(Arrays.asList(DEFAULT_STRIPPED_PARAMETERS));
+        private boolean sortQuery = true;
+        private boolean stripTrailingSlash = true;
+
+        /**
+         * Sets the query parameters to remove, replacing the defaults. Names
+         * are compared ignoring case; a name ending in '*' matches every
+         * parameter starting with the rest, e.g. "utm_*".
+         */
+        public Builder stripParameters(List<String> parameters) {
+            this.strippedParameters.clear();
+            this.strippedParameters.addAll(parameters);
+            return this;
+        }
+
+        /**
+         * Sorts query parameters by name, keeping the order of repeated names.
+         * On by default.
+         */
+        public Builder sortQuery(boolean sortQuery) {
+            this.sortQuery = sortQuery;
+            return this;
+        }
+
+        /**
+         * Removes a trailing slash from paths other than "/". On by default.
+         */
+        public Builder stripTrailingSlash(boolean stripTrailingSlash) {
+            this.stripTrailingSlash = stripTrailingSlash;
+            return this;
+        }
+
+        public UrlNormalizer build() {
+            for (String parameter : strippedParameters) {
+                if (parameter == null || parameter.isEmpty() || parameter.equals("*")) {
+                    throw new IllegalArgumentException("Stripped parameter names must not be empty: " + parameter);
+                }
+            }
+            return new UrlNormalizer(this);
+        }
+    }
+
+    /**
+     * Normalizes an absolute URL.
+     *
+     * @param url The URL
+     * @return The normalized URL, or the URL without its fragment if it has
+     *         no "scheme://" prefix
+     */
+    public String normalize(String url) {
+        url = url.trim();
+        int schemeEnd = url.indexOf("://");
+        int fragment = url.indexOf('#');
+        int end = fragment < 0 ? url.length() : fragment;
+        if (schemeEnd <= 0 || schemeEnd > end) {
+            return url.substring(0, end);
+        }
+
+        StringBuilder out = new StringBuilder(end + 8);
+        String scheme = url.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        out.append(scheme).append("://");
+
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = end;
+        for (int i = authorityStart; i < end; i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?') {
+                authorityEnd = i;
+                break;
+            }
+        }
+        appendAuthority(out, scheme, url, authorityStart, authorityEnd);
+
+        int queryStart = url.indexOf('?', authorityEnd);
+        int pathEnd = queryStart < 0 || queryStart > end ? end : queryStart;
+        int pathStart = out.length();
+        if (pathEnd == authorityEnd) {
+            out.append('/');
+        } else {
+            String path = escape(url, authorityEnd, pathEnd);
+            out.append(removeDotSegments(path));
+        }
+        if (stripTrailingSlash && out.length() - pathStart > 1 && out.charAt(out.length() - 1) == '/') {
+            out.setLength(out.length() - 1);
+        }
+
+        if (pathEnd < end) {
+            appendQuery(out, escape(url, pathEnd + 1, end));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Appends the authority with a lowercase host, without a trailing dot on
+     * the host, and without the scheme's default port.
+     */
+    private static void appendAuthority(StringBuilder out, String scheme, String url, int start, int end) {
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= start) {
+            out.append(url, start, at + 1);
+            start = at + 1;
+        }
+
+        // Skip over an IPv6 literal before looking for the port
+        int hostEnd = end;
+        int searchFrom = start;
+        if (start < end && url.charAt(start) == '[') {
+            int close = url.indexOf(']', start);
+            searchFrom = close < 0 || close >= end ? end : close;
+        }
+        int colon = url.indexOf(':', searchFrom);
+        if (colon >= 0 && colon < end) {
+            hostEnd = colon;
+        }
+
+        int hostLength = hostEnd;
+        if (hostLength > start && url.charAt(hostLength - 1) == '.') {
+            hostLength--;
+        }
+        for (int i = start; i < hostLength; i++) {
+            out.append(Character.toLowerCase(url.charAt(i)));
+        }
+
+        if (hostEnd < end) {
+            String port = url.substring(hostEnd + 1, end);
+            boolean isDefault = port.isEmpty()
+                || (scheme.equals("http") && port.equals("80"))
+                || (scheme.equals("https") && port.equals("443"));
+            if (!isDefault) {
+                out.append(':').append(port);
+            }
+        }
+    }
+
+    /**
+     * Drops empty and stripped parameters, sorts the rest if configured and
+     * appends them after a '?', if any are left.
+     */
+    private void appendQuery(StringBuilder out, String query) {
+        if (query.isEmpty()) {
+            return;
+        }
+        List<String> parameters = new ArrayList<>();
+        int from = 0;
+        while (from <= query.length()) {
+            int amp = query.indexOf('&', from);
+            int to = amp < 0 ? query.length() : amp;
+            if (to > from && !isStripped(query, from, to)) {
+                parameters.add(query.substring(from, to));
+            }
+            from = to + 1;
+        }
+        if (parameters.isEmpty()) {
+            return;
+        }
+        if (sortQuery && parameters.size() > 1) {
+            // List.sort is stable, so repeated names keep their order
+            parameters.sort(BY_PARAMETER_NAME);
+        }
+        out.append('?');
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                out.append('&');
+            }
+            out.append(parameters.get(i));
+        }
+    }
+
+    private boolean isStripped(String query, int from, int to) {
+        int eq = query.indexOf('=', from);
+        int nameEnd = eq < 0 || eq > to ? to : eq;
+        int nameLength = nameEnd - from;
+        for (String name : strippedNames) {
+            if (name.length() == nameLength && query.regionMatches(true, from, name, 0, nameLength)) {
+                return true;
+            }
+        }
+        for (String prefix : strippedPrefixes) {
+            if (prefix.length() <= nameLength && query.regionMatches(true, from, prefix, 0, prefix.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String parameterName(String parameter) {
+        int eq = parameter.indexOf('=');
+        return eq < 0 ? parameter : parameter.substring(0, eq);
+    }
+
+    /**
+     * Normalizes percent-escapes in a part of a URL: uppercase hex digits,
+     * unreserved characters decoded, and spaces, controls and non-ASCII
+     * characters encoded as UTF-8.
+     */
+    static String escape(String url, int from, int to) {
+        StringBuilder out = null;
+        for (int i = from; i < to; i++) {
+            char c = url.charAt(i);
+            if (c == '%' && i + 2 < to && hexValue(url.charAt(i + 1)) >= 0 && hexValue(url.charAt(i + 2)) >= 0) {
+                char decoded = (char) (hexValue(url.charAt(i + 1)) << 4 | hexValue(url.charAt(i + 2)));
+                if (out == null) {
+                    out = new StringBuilder(to - from).append(url, from, i);
+                }
+                if (isUnreserved(decoded)) {
+                    out.append(decoded);
+                } else {
+                    out.append('%').append(HEX[decoded >> 4]).append(HEX[decoded & 0xf]);
+                }
+                i += 2;
+            } else if (c <= ' ' || c >= 0x7f) {
+                if (out == null) {
+                    out = new StringBuilder(to - from + 16).append(url, from, i);
+                }
+                int codePoint = Character.codePointAt(url, i);
+                if (Character.isSupplementaryCodePoint(codePoint)) {
+                    i++;
+                }
+                for (byte b : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+                    out.append('%').append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+                }
+            } else if (out != null) {
+                out.append(c);
+            }
+        }
+        return out == null ? url.substring(from, to) : out.toString();
+    }
+
+    /**
+     * Removes "." and ".." segments from an absolute path, as in RFC 3986
+     * section 5.2.4.
+     */
+    static String removeDotSegments(String path) {
+        if (path.indexOf("/.") < 0) {
+            return path;
+        }
+        StringBuilder out = new StringBuilder(path.length());
+        int i = 0;
+        while (i < path.length()) {
+            int next = path.indexOf('/', i + 1);
+            if (next < 0) {
+                next = path.length();
+            }
+            int length = next - i - 1;
+            boolean last = next == path.length();
+            if (length == 1 && path.charAt(i + 1) == '.') {
+                if (last) {
+                    out.append('/');
+                }
+            } else if (length == 2 && path.charAt(i + 1) == '.' && path.charAt(i + 2) == '.') {
+                out.setLength(Math.max(0, out.lastIndexOf("/")));
+                if (last) {
+                    out.append('/');
+                }
+            } else {
+                out.append(path, i, next);
+            }
+            i = next;
+        }
+        return out.length() == 0 ? "/" : out.toString();
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+            || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,35 @@
+package com.webcrawler;
+
+/**
+ * Decides which queued URLs a {@link PriorityUrlFrontier} hands out first.
+ *
+ * Implementations must be thread-safe and cheap: a URL is scored when it is
+ * queued and again each time another link to it is found while it waits.
+ */
+@FunctionalInterface
+public interface UrlScorer {
+
+    /**
+     * Scores a URL. Higher scores are crawled first; scores are bucketed by
+     * whole numbers between 0 and {@link PriorityUrlFrontier#LEVELS} - 1, and
+     * URLs with scores in the same bucket are crawled in the order queued.
+     *
+     * @param url The normalized URL
+     * @param depth The URL's depth
+     * @param inLinks Links to the URL found so far, at least 1
+     * @return The score
+     */
+    double score(String url, int depth, int inLinks);
+
+    /**
+     * Tells whether reaching this many in-links may change a URL's score.
+     * Returning false lets the frontier count the link without scoring the
+     * URL again.
+     *
+     * @param inLinks Links to the URL found so far
+     * @return true if the URL should be scored again
+     */
+    default boolean rescores(int inLinks) {
+        return true;
+    }
+}
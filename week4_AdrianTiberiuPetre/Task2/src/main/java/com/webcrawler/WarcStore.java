@@ -0,0 +1,944 @@
+package com.webcrawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Stores pages as WARC records appended to large rolling segment files.
+ *
+ * Each page is a {@code resource} record whose block is the body as it was
+ * received; its depth and title are extension header fields. The links
+ * extracted from a page can be stored as a {@code metadata} record of type
+ * {@code text/uri-list}. Records are written sequentially through a large
+ * buffer, and with compression every record is its own gzip member, so a
+ * segment remains a valid {@code .warc.gz} file. Records are compressed by
+ * the calling thread, before the segment lock is taken.
+ *
+ * The index file holds one fixed-width entry per record, sorted by URL
+ * fingerprint: fingerprint, record kind, segment number, offset and length.
+ * It is memory-mapped and binary-searched, so a lookup costs no heap per
+ * stored URL. Records written since the store was opened are looked up in
+ * memory and merged into the index when the store is closed. Until then
+ * their entries are also appended to an index log, so a run that never
+ * closed the store does not lose them: the next open takes them back from
+ * the log, leaving out records that did not reach their segment. A lookup
+ * checks the record's target URI, so a fingerprint collision reads as a miss.
+ *
+ * A new segment is started for every run, and whenever the current one
+ * exceeds the segment size. Nothing is written until the first record, so
+ * opening a store only to read from it leaves the directory untouched.
+ */
+public class WarcStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WarcStore.class);
+
+    /** Segment size at which a new segment is started. */
+    public static final long DEFAULT_SEGMENT_BYTES = 1L << 30;
+
+    static final String INDEX_FILE = "warc-index.idx";
+    static final String INDEX_LOG_FILE = "warc-index.log";
+    private static final String SEGMENT_PREFIX = "crawl-";
+    private static final String SEGMENT_SUFFIX = ".warc";
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int ENTRY_BYTES = 8 + 1 + 4 + 8 + 4;
+    private static final byte[] RECORD_END = "\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte PAGE = 1;
+    private static final byte LINKS = 2;
+    private static final Location REMOVED = new Location(-1, -1, -1);
+
+    private final Path directory;
+    private final boolean compress;
+    private final long maxSegmentBytes;
+    private final Map<Integer, Path> segmentPaths;
+    private final Map<Integer, FileChannel> readChannels;
+    private final Map<Long, Location> newPages;
+    private final Map<Long, Location> newLinks;
+    private final CompressionStats compressionStats;
+    private final MappedByteBuffer index;
+    private final int indexEntries;
+    private int segmentId;
+    private CountingOutputStream segment;
+    private FileOutputStream segmentFile;
+    private FileChannel indexLog;
+    private long recordCount;
+    private boolean closed;
+
+    /**
+     * A record's position in a segment.
+     */
+    private static final class Location {
+        private final int segment;
+        private final long offset;
+        private final int length;
+
+        Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Writes the block of a record.
+     */
+    private interface BlockWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Opens the store in a directory with the default segment size.
+     *
+     * @param directory Directory holding the segments and the index
+     * @param compress Whether new records are gzip-compressed
+     */
+    public WarcStore(Path directory, boolean compress) {
+        this(directory, compress, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Opens the store in a directory.
+     *
+     * @param directory Directory holding the segments and the index
+     * @param compress Whether new records are gzip-compressed
+     * @param maxSegmentBytes Segment size at which a new segment is started
+     */
+    public WarcStore(Path directory, boolean compress, long maxSegmentBytes) {
+        if (maxSegmentBytes < 1) {
+            throw new IllegalArgumentException("Segment size must be at least 1 byte");
+        }
+        this.directory = directory;
+        this.compress = compress;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.readChannels = new ConcurrentHashMap<>();
+        this.newPages = new HashMap<>();
+        this.newLinks = new HashMap<>();
+        this.compressionStats = new CompressionStats();
+        try {
+            Files.createDirectories(directory);
+            this.segmentPaths = new ConcurrentHashMap<>(listSegments(directory));
+            this.segmentId = segmentPaths.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1);
+
+            Path indexFile = directory.resolve(INDEX_FILE);
+            if (Files.exists(indexFile)) {
+                try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+                    this.index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                this.indexEntries = index.capacity() / ENTRY_BYTES;
+            } else {
+                this.index = null;
+                this.indexEntries = 0;
+            }
+
+            Path logFile = directory.resolve(INDEX_LOG_FILE);
+            if (Files.exists(logFile)) {
+                recoverIndexLog(logFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open WARC store in " + directory, e);
+        }
+    }
+
+    /**
+     * Appends a page as a resource record.
+     *
+     * @param url The page URL
+     * @param depth The crawl depth
+     * @param title The page title
+     * @param charset Charset the body is encoded in
+     * @param body The body bytes
+     * @throws IOException if writing fails
+     */
+    public void writePage(String url, int depth, String title, Charset charset, byte[] body) throws IOException {
+        append(url, PAGE, pageHeader(url, depth, title, charset, body.length), out -> out.write(body));
+    }
+
+    /**
+     * Appends a page held in a pooled buffer as a resource record.
+     *
+     * @param url The page URL
+     * @param depth The crawl depth
+     * @param title The page title
+     * @param body The page body, in its own charset
+     * @throws IOException if writing fails
+     */
+    public void writePage(String url, int depth, String title, PageBody body) throws IOException {
+        append(url, PAGE, pageHeader(url, depth, title, body.getCharset(), body.size()), body::writeTo);
+    }
+
+    /**
+     * Appends a page whose body was spooled to a file as a resource record.
+     *
+     * @param url The page URL
+     * @param depth The crawl depth
+     * @param title The page title
+     * @param charset Charset the body is encoded in
+     * @param body Channel holding the body from position 0
+     * @param length Body length in bytes
+     * @throws IOException if reading or writing fails
+     */
+    public void writePage(String url, int depth, String title, Charset charset,
+                          FileChannel body, long length) throws IOException {
+        append(url, PAGE, pageHeader(url, depth, title, charset, length), out -> {
+            ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            long position = 0;
+            while (position < length) {
+                buffer.clear();
+                int read = body.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Spooled body of " + url + " is shorter than " + length + " bytes");
+                }
+                out.write(buffer.array(), 0, read);
+                position += read;
+            }
+        });
+    }
+
+    /**
+     * Appends the links of a page as a metadata record, replacing earlier ones.
+     *
+     * @param url The page URL
+     * @param links The links
+     * @throws IOException if writing fails
+     */
+    public void writeLinks(String url, Collection<String> links) throws IOException {
+        StringBuilder list = new StringBuilder();
+        for (String link : links) {
+            list.append(link).append("\r\n");
+        }
+        byte[] block = list.toString().getBytes(StandardCharsets.UTF_8);
+        String header = recordHeader("metadata", url, "text/uri-list", block.length)
+            .append("\r\n").toString();
+        append(url, LINKS, header, out -> out.write(block));
+    }
+
+    /**
+     * Checks if a page is stored.
+     *
+     * @param url The page URL
+     * @return true if the index has a record for the page
+     */
+    public boolean containsPage(String url) {
+        return locate(url, PAGE) != null;
+    }
+
+    /**
+     * Opens the body of a stored page.
+     *
+     * @param url The page URL
+     * @return The body stream, or null if the page is not stored
+     * @throws IOException if the record cannot be read
+     */
+    public InputStream openPage(String url) throws IOException {
+        return openBlock(url, PAGE, null);
+    }
+
+    /**
+     * Gets the charset a page body was stored in, from its record's
+     * Content-Type.
+     *
+     * @param url The page URL
+     * @return The charset, or null if the page is not stored
+     * @throws IOException if the record cannot be read
+     */
+    public Charset readPageCharset(String url) throws IOException {
+        Map<String, String> header = new HashMap<>();
+        InputStream body = openBlock(url, PAGE, header);
+        if (body == null) {
+            return null;
+        }
+        body.close();
+        return StreamedResponse.charsetOf(header.get("content-type"));
+    }
+
+    /**
+     * Reads the links stored for a page.
+     *
+     * @param url The page URL
+     * @return The links, or null if none are stored
+     * @throws IOException if the record cannot be read
+     */
+    public Set<String> readLinks(String url) throws IOException {
+        InputStream block = openBlock(url, LINKS, null);
+        if (block == null) {
+            return null;
+        }
+        try (InputStream in = block) {
+            String list = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            Set<String> links = new LinkedHashSet<>();
+            for (String link : list.split("\r\n")) {
+                if (!link.isEmpty()) {
+                    links.add(link);
+                }
+            }
+            return links;
+        }
+    }
+
+    /**
+     * Removes a page and its links from the index. The records stay in their
+     * segments, which are never rewritten.
+     *
+     * @param url The page URL
+     */
+    public synchronized void removePage(String url) {
+        long fingerprint = UrlFingerprint.of(url);
+        newPages.put(fingerprint, REMOVED);
+        newLinks.put(fingerprint, REMOVED);
+        logRemoval(fingerprint, PAGE);
+        logRemoval(fingerprint, LINKS);
+    }
+
+    /**
+     * Forces the records written so far to disk. Segments are also synced
+     * when they are finished.
+     *
+     * @throws IOException if syncing fails
+     */
+    public synchronized void sync() throws IOException {
+        if (segment != null) {
+            segment.flush();
+            segmentFile.getFD().sync();
+        }
+        if (indexLog != null) {
+            indexLog.force(false);
+        }
+    }
+
+    /**
+     * Removes the links of a page from the index.
+     *
+     * @param url The page URL
+     */
+    public synchronized void removeLinks(String url) {
+        long fingerprint = UrlFingerprint.of(url);
+        newLinks.put(fingerprint, REMOVED);
+        logRemoval(fingerprint, LINKS);
+    }
+
+    /**
+     * Gets the number of records written since the store was opened.
+     *
+     * @return Record count, excluding segment headers
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Gets what compressing records saved and cost.
+     *
+     * @return Compression statistics, empty if records are not compressed
+     */
+    public CompressionStats getCompressionStats() {
+        return compressionStats;
+    }
+
+    /**
+     * Gets the number of segment files in the directory.
+     *
+     * @return Segment count
+     */
+    public int getSegmentCount() {
+        return segmentPaths.size();
+    }
+
+    /**
+     * Flushes the current segment, merges new records into the index and
+     * closes all files.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            closeSegment();
+            if (!newPages.isEmpty() || !newLinks.isEmpty()) {
+                writeIndex();
+            }
+            // Everything in the log is in the index now
+            if (indexLog != null) {
+                indexLog.close();
+                indexLog = null;
+            }
+            Files.deleteIfExists(directory.resolve(INDEX_LOG_FILE));
+        } catch (IOException e) {
+            logger.error("Failed to close WARC store in {}: {}", directory, e.getMessage());
+        } finally {
+            for (FileChannel channel : readChannels.values()) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.debug("Failed to close segment: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private String pageHeader(String url, int depth, String title, Charset charset, long length) {
+        return recordHeader("resource", url, "text/html; charset=" + charset.name(), length)
+            .append("X-Crawl-Depth: ").append(depth).append("\r\n")
+            .append("X-Page-Title: ").append(headerValue(title)).append("\r\n")
+            .append("\r\n")
+            .toString();
+    }
+
+    private static StringBuilder recordHeader(String type, String url, String contentType, long length) {
+        return new StringBuilder(256)
+            .append("WARC/1.1\r\n")
+            .append("WARC-Type: ").append(type).append("\r\n")
+            .append("WARC-Record-ID: <urn:uuid:").append(UUID.randomUUID()).append(">\r\n")
+            .append("WARC-Date: ").append(now()).append("\r\n")
+            .append("WARC-Target-URI: ").append(headerValue(url)).append("\r\n")
+            .append("Content-Type: ").append(contentType).append("\r\n")
+            .append("Content-Length: ").append(length).append("\r\n");
+    }
+
+    private void append(String url, byte kind, String header, BlockWriter block) throws IOException {
+        // Compress before taking the lock, so writers only queue for the copy into the segment
+        byte[] member = null;
+        if (compress) {
+            long start = CompressionStats.threadCpuNanos();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(COPY_BUFFER_SIZE);
+            long rawBytes;
+            try (FastGzipOutputStream record = new FastGzipOutputStream(compressed)) {
+                writeRecord(record, header, block);
+                record.finish();
+                // Closing releases the deflater, so its count is read first
+                rawBytes = record.getRawBytes();
+            }
+            member = compressed.toByteArray();
+            compressionStats.record(rawBytes, member.length, CompressionStats.threadCpuNanos() - start);
+        }
+        appendRecord(url, kind, header, block, member);
+    }
+
+    private synchronized void appendRecord(String url, byte kind, String header, BlockWriter block,
+                                           byte[] member) throws IOException {
+        if (closed) {
+            throw new IOException("WARC store is closed");
+        }
+        if (segment == null) {
+            openSegment();
+        }
+
+        long offset = segment.count;
+        if (member != null) {
+            segment.write(member);
+        } else {
+            writeRecord(segment, header, block);
+        }
+        long length = segment.count - offset;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Record for " + url + " exceeds 2 GB");
+        }
+
+        Location location = new Location(segmentId, offset, (int) length);
+        long fingerprint = UrlFingerprint.of(url);
+        appendToIndexLog(fingerprint, kind, location);
+        (kind == PAGE ? newPages : newLinks).put(fingerprint, location);
+        recordCount++;
+
+        if (segment.count >= maxSegmentBytes) {
+            closeSegment();
+        }
+    }
+
+    private static void writeRecord(OutputStream out, String header, BlockWriter block) throws IOException {
+        out.write(header.getBytes(StandardCharsets.UTF_8));
+        block.writeTo(out);
+        out.write(RECORD_END);
+    }
+
+    private void openSegment() throws IOException {
+        segmentId++;
+        Path path = directory.resolve(String.format("%s%05d%s%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX,
+                                                    compress ? GZIP_SUFFIX : ""));
+        segmentFile = new FileOutputStream(path.toFile());
+        segment = new CountingOutputStream(new BufferedOutputStream(segmentFile, WRITE_BUFFER_SIZE));
+        segmentPaths.put(segmentId, path);
+
+        byte[] fields = ("software: WebCrawler/1.0\r\n"
+            + "format: WARC File Format 1.1\r\n").getBytes(StandardCharsets.UTF_8);
+        String header = new StringBuilder(256)
+            .append("WARC/1.1\r\n")
+            .append("WARC-Type: warcinfo\r\n")
+            .append("WARC-Record-ID: <urn:uuid:").append(UUID.randomUUID()).append(">\r\n")
+            .append("WARC-Date: ").append(now()).append("\r\n")
+            .append("WARC-Filename: ").append(path.getFileName()).append("\r\n")
+            .append("Content-Type: application/warc-fields\r\n")
+            .append("Content-Length: ").append(fields.length).append("\r\n")
+            .append("\r\n")
+            .toString();
+        if (compress) {
+            try (OutputStream record = new FastGzipOutputStream(new NonClosingStream(segment))) {
+                writeRecord(record, header, out -> out.write(fields));
+            }
+        } else {
+            writeRecord(segment, header, out -> out.write(fields));
+        }
+        logger.info("Started WARC segment: {}", path);
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            // A finished segment is synced once, so a later sync only needs the current one
+            segment.flush();
+            segmentFile.getFD().sync();
+            segment.close();
+            segment = null;
+            segmentFile = null;
+        }
+    }
+
+    /**
+     * Appends an index entry to the log. Entries are written straight to the
+     * file rather than buffered, so after a kill the log is ahead of the
+     * segment rather than behind it; recovery drops what is ahead.
+     */
+    private void appendToIndexLog(long fingerprint, byte kind, Location location) throws IOException {
+        if (indexLog == null) {
+            indexLog = FileChannel.open(directory.resolve(INDEX_LOG_FILE), StandardOpenOption.CREATE,
+                                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES)
+            .putLong(fingerprint)
+            .put(kind)
+            .putInt(location.segment)
+            .putLong(location.offset)
+            .putInt(location.length);
+        entry.flip();
+        while (entry.hasRemaining()) {
+            indexLog.write(entry);
+        }
+    }
+
+    private void logRemoval(long fingerprint, byte kind) {
+        try {
+            appendToIndexLog(fingerprint, kind, REMOVED);
+        } catch (IOException e) {
+            // Only matters after a crash, when the removed record would be found again
+            logger.warn("Failed to log removal from WARC index in {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Takes back the entries of a run that did not close the store. A torn
+     * last entry, and entries of records beyond the end of their segment,
+     * which were still buffered when the run ended, are left out.
+     */
+    private void recoverIndexLog(Path logFile) throws IOException {
+        byte[] log = Files.readAllBytes(logFile);
+        ByteBuffer entries = ByteBuffer.wrap(log);
+        Map<Integer, Long> segmentSizes = new HashMap<>();
+        int recovered = 0;
+        int lost = 0;
+        while (entries.remaining() >= ENTRY_BYTES) {
+            long fingerprint = entries.getLong();
+            byte kind = entries.get();
+            Location location = new Location(entries.getInt(), entries.getLong(), entries.getInt());
+            if (location.segment >= 0) {
+                Path path = segmentPaths.get(location.segment);
+                long size = path == null ? -1 : segmentSizes.computeIfAbsent(location.segment, id -> sizeOf(path));
+                if (location.offset + location.length > size) {
+                    lost++;
+                    continue;
+                }
+            } else {
+                location = REMOVED;
+            }
+            (kind == PAGE ? newPages : newLinks).put(fingerprint, location);
+            recovered++;
+        }
+        logger.warn("WARC store in {} was not closed: recovered {} index entries, {} records incomplete",
+                    directory, recovered, lost);
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Finds the record of a URL, preferring records written since opening.
+     */
+    private Location locate(String url, byte kind) {
+        long fingerprint = UrlFingerprint.of(url);
+        Location location;
+        synchronized (this) {
+            location = (kind == PAGE ? newPages : newLinks).get(fingerprint);
+        }
+        if (location != null) {
+            return location == REMOVED ? null : location;
+        }
+        return searchIndex(fingerprint, kind);
+    }
+
+    private Location searchIndex(long fingerprint, byte kind) {
+        if (index == null) {
+            return null;
+        }
+        ByteBuffer entries = index.duplicate();
+        int low = 0;
+        int high = indexEntries - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int position = mid * ENTRY_BYTES;
+            int cmp = compare(entries.getLong(position), entries.get(position + 8), fingerprint, kind);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return new Location(entries.getInt(position + 9), entries.getLong(position + 13),
+                                    entries.getInt(position + 21));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens the block of a record after checking that it belongs to the URL.
+     */
+    private InputStream openBlock(String url, byte kind, Map<String, String> header) throws IOException {
+        Location location = locate(url, kind);
+        if (location == null) {
+            return null;
+        }
+        synchronized (this) {
+            // The record may still be in the write buffer
+            if (location.segment == segmentId && segment != null) {
+                segment.flush();
+            }
+        }
+
+        InputStream raw = new BufferedInputStream(
+            new ChannelRangeStream(readChannel(location.segment), location.offset, location.length), COPY_BUFFER_SIZE);
+        InputStream record = isCompressed(location.segment) ? new GZIPInputStream(raw, COPY_BUFFER_SIZE) : raw;
+        try {
+            Map<String, String> fields = readHeader(record);
+            if (!url.equals(fields.get("warc-target-uri"))) {
+                record.close();
+                return null;
+            }
+            if (header != null) {
+                header.putAll(fields);
+            }
+            long length = Long.parseLong(fields.getOrDefault("content-length", "0"));
+            return new LimitedStream(record, length);
+        } catch (IOException | RuntimeException e) {
+            record.close();
+            throw e;
+        }
+    }
+
+    private FileChannel readChannel(int segment) throws IOException {
+        FileChannel channel = readChannels.get(segment);
+        if (channel != null) {
+            return channel;
+        }
+        Path path = segmentPaths.get(segment);
+        if (path == null) {
+            throw new IOException("Missing WARC segment " + segment + " in " + directory);
+        }
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        FileChannel existing = readChannels.putIfAbsent(segment, channel);
+        if (existing != null) {
+            channel.close();
+            return existing;
+        }
+        return channel;
+    }
+
+    private boolean isCompressed(int segment) {
+        Path path = segmentPaths.get(segment);
+        return path != null && path.getFileName().toString().endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * Reads the header lines of a record, with field names in lower case.
+     */
+    private static Map<String, String> readHeader(InputStream in) throws IOException {
+        Map<String, String> fields = new HashMap<>();
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        while (true) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Truncated WARC record header");
+            }
+            if (b != '\n') {
+                line.write(b);
+                continue;
+            }
+            String text = line.toString(StandardCharsets.UTF_8).trim();
+            line.reset();
+            if (text.isEmpty()) {
+                return fields;
+            }
+            int colon = text.indexOf(':');
+            if (colon > 0) {
+                fields.put(text.substring(0, colon).trim().toLowerCase(), text.substring(colon + 1).trim());
+            }
+        }
+    }
+
+    /**
+     * Merges the records written since opening into a new sorted index.
+     */
+    private void writeIndex() throws IOException {
+        List<long[]> entries = new ArrayList<>(newPages.size() + newLinks.size());
+        addEntries(entries, newPages, PAGE);
+        addEntries(entries, newLinks, LINKS);
+        entries.sort((a, b) -> compare(a[0], (byte) a[1], b[0], (byte) b[1]));
+
+        Path indexFile = directory.resolve(INDEX_FILE);
+        Path temp = directory.resolve(INDEX_FILE + ".tmp");
+        try {
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, COPY_BUFFER_SIZE))) {
+                ByteBuffer old = index == null ? null : index.duplicate();
+                int oldEntry = 0;
+                int newEntry = 0;
+                while (oldEntry < indexEntries || newEntry < entries.size()) {
+                    int cmp;
+                    if (oldEntry == indexEntries) {
+                        cmp = 1;
+                    } else if (newEntry == entries.size()) {
+                        cmp = -1;
+                    } else {
+                        int position = oldEntry * ENTRY_BYTES;
+                        long[] entry = entries.get(newEntry);
+                        cmp = compare(old.getLong(position), old.get(position + 8), entry[0], (byte) entry[1]);
+                    }
+
+                    if (cmp < 0) {
+                        int position = oldEntry * ENTRY_BYTES;
+                        out.writeLong(old.getLong(position));
+                        out.writeByte(old.get(position + 8));
+                        out.writeInt(old.getInt(position + 9));
+                        out.writeLong(old.getLong(position + 13));
+                        out.writeInt(old.getInt(position + 21));
+                        oldEntry++;
+                    } else {
+                        // A new record replaces the indexed one, and a removal drops it
+                        long[] entry = entries.get(newEntry);
+                        if (entry[2] >= 0) {
+                            out.writeLong(entry[0]);
+                            out.writeByte((byte) entry[1]);
+                            out.writeInt((int) entry[2]);
+                            out.writeLong(entry[3]);
+                            out.writeInt((int) entry[4]);
+                        }
+                        newEntry++;
+                        if (cmp == 0) {
+                            oldEntry++;
+                        }
+                    }
+                }
+                out.flush();
+                file.getFD().sync();
+            }
+            // The rename is atomic, so a crash leaves either the old or the new index
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void addEntries(List<long[]> entries, Map<Long, Location> locations, byte kind) {
+        for (Map.Entry<Long, Location> entry : locations.entrySet()) {
+            Location location = entry.getValue();
+            entries.add(new long[] {entry.getKey(), kind, location.segment, location.offset, location.length});
+        }
+    }
+
+    private static int compare(long fingerprintA, byte kindA, long fingerprintB, byte kindB) {
+        int cmp = Long.compare(fingerprintA, fingerprintB);
+        return cmp != 0 ? cmp : Byte.compare(kindA, kindB);
+    }
+
+    private static Map<Integer, Path> listSegments(Path directory) throws IOException {
+        Map<Integer, Path> segments = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX + "*")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                int end = name.indexOf(SEGMENT_SUFFIX);
+                try {
+                    segments.put(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), end)), path);
+                } catch (NumberFormatException e) {
+                    logger.debug("Ignoring file that is not a segment: {}", path);
+                }
+            }
+        }
+        return segments;
+    }
+
+    private static String now() {
+        return DateTimeFormatter.ISO_INSTANT.format(Instant.now().truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    private static String headerValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    /**
+     * Output stream that counts the bytes written to the segment.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Lets a gzip member be finished without closing the segment beneath it.
+     */
+    private static final class NonClosingStream extends FilterOutputStream {
+        NonClosingStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads a byte range of a segment with positional reads, so several
+     * readers can share one channel.
+     */
+    private static final class ChannelRangeStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        ChannelRangeStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Ends a stream after the given number of bytes.
+     */
+    private static final class LimitedStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        LimitedStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
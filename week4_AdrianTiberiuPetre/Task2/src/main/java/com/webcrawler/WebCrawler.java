@@ -4,16 +4,41 @@ import com.webcrawler.UrlManager.UrlDepthPair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Main orchestrator for the web crawler with thread pool management.
  */
 public class WebCrawler {
     private static final Logger logger = LoggerFactory.getLogger(WebCrawler.class);
+    private static final String CHECKPOINT_DIRECTORY = "checkpoint";
+    private static final String PAGE_INDEX_FILE = "page-index.bin";
+    private static final String ALIAS_FILE = "aliases.tsv";
+    private static final String JOURNAL_FILE = "crawl-journal.jsonl";
+    private static final String LINK_GRAPH_DIRECTORY = "link-graph";
+    private static final int MAX_SITEMAPS_PER_HOST = 100;
+    private static final int SITEMAP_BACKLOG = 10_000;
 
     private final String rootUrl;
     private final int maxDepth;
@@ -21,12 +46,71 @@ public class WebCrawler {
     private final int threadPoolSize;
     private final boolean stayInDomain;
     private final String outputPath;
+    private final int maxInFlightRequests;
+    private final long pageBufferPoolBytes;
+    private final ExecutionMode executionMode;
+    private final int maxConcurrency;
+    private final boolean adaptiveConcurrency;
+    private final int minConcurrency;
+    private final ParseMode parseMode;
+    private final List<String> includePatterns;
+    private final List<String> excludePatterns;
+    private final List<String> strippedParameters;
+    private final boolean sortQueryParameters;
+    private final DedupStrategy dedupStrategy;
+    private final double bloomFalsePositiveRate;
+    private final String frontierSpillDirectory;
+    private final int frontierSegmentSize;
+    private final int checkpointIntervalSeconds;
+    private final int maxRequestsPerHost;
+    private final long minHostDelayMillis;
+    private final boolean bestFirst;
+    private final UrlScorer urlScorer;
+    private final Map<String, Double> urlPatternWeights;
+    private final boolean streamToDisk;
+    private final boolean revalidate;
+    private final boolean dedupContent;
+    private final OutputFormat outputFormat;
+    private final Compression compression;
+    private final int writeQueueCapacity;
+    private final int writerThreads;
+    private final long fsyncIntervalMillis;
+    private final int metricsReportIntervalSeconds;
+    private final int metricsPort;
+    private final boolean journal;
+    private final boolean linkGraph;
+    private final boolean respectRobotsTxt;
+    private final long robotsTtlSeconds;
+    private final boolean sitemaps;
+    private final List<String> clusterNodes;
+    private final int clusterNodeIndex;
+    private final String resumeFrom;
+    private final PageFetcher pageFetcher;
 
     private UrlManager urlManager;
     private ContentSaver contentSaver;
     private LinkExtractor linkExtractor;
     private ExecutorService executorService;
-    private AtomicInteger activeThreads;
+    // The fetcher of the current run: pageFetcher, or one start() created and shutdown() closes
+    private PageFetcher fetcher;
+    private PageBufferPool pageBufferPool;
+    private Semaphore concurrencyPermits;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private Set<CompletableFuture<Void>> pendingFetches;
+    private UrlFrontier frontier;
+    private CrawlCheckpoint checkpoint;
+    private PageMetadataIndex pageIndex;
+    private ContentDeduplicator contentDedup;
+    private volatile CrawlMetrics metrics;
+    private volatile MetricsReporter metricsReporter;
+    private CrawlJournal crawlJournal;
+    private LinkGraphWriter linkGraphWriter;
+    private CrawlCluster cluster;
+    private RobotsTxtCache robotsCache;
+    private ExecutorService sitemapExecutor;
+    private Set<String> sitemapOrigins;
+    private LongAdder sitemapUrlCount;
+    private volatile boolean crawlStopped;
 
     /**
      * Builder for WebCrawler configuration.
@@ -38,6 +122,46 @@ public class WebCrawler {
         private int threadPoolSize = 10;
         private boolean stayInDomain = true;
         private String outputPath = "crawled_data";
+        private int maxInFlightRequests = 64;
+        private long pageBufferPoolBytes = 32L * 1024 * 1024;
+        private PageFetcher pageFetcher;
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM_THREADS;
+        private int maxConcurrency = 256;
+        private boolean adaptiveConcurrency;
+        private int minConcurrency = 1;
+        private ParseMode parseMode = ParseMode.DOM;
+        private final List<String> includePatterns = new ArrayList<>();
+        private final List<String> excludePatterns = new ArrayList<>();
+        private List<String> strippedParameters;
+        private boolean sortQueryParameters = true;
+        private DedupStrategy dedupStrategy = DedupStrategy.EXACT;
+        private double bloomFalsePositiveRate = 0.001;
+        private String frontierSpillDirectory;
+        private int frontierSegmentSize = SpillingUrlFrontier.DEFAULT_SEGMENT_SIZE;
+        private int checkpointIntervalSeconds;
+        private int maxRequestsPerHost;
+        private long minHostDelayMillis;
+        private boolean bestFirst;
+        private UrlScorer urlScorer;
+        private final Map<String, Double> urlPatternWeights = new LinkedHashMap<>();
+        private boolean streamToDisk;
+        private boolean revalidate;
+        private boolean dedupContent;
+        private OutputFormat outputFormat = OutputFormat.FILES;
+        private Compression compression = Compression.NONE;
+        private int writeQueueCapacity;
+        private int writerThreads = 1;
+        private long fsyncIntervalMillis;
+        private int metricsReportIntervalSeconds = 10;
+        private int metricsPort = -1;
+        private boolean journal;
+        private boolean linkGraph;
+        private boolean respectRobotsTxt;
+        private long robotsTtlSeconds = TimeUnit.DAYS.toSeconds(1);
+        private boolean sitemaps;
+        private final List<String> clusterNodes = new ArrayList<>();
+        private int clusterNodeIndex;
+        private String resumeFrom;
 
         public Builder rootUrl(String rootUrl) {
             this.rootUrl = rootUrl;
@@ -69,14 +193,493 @@ public class WebCrawler {
             return this;
         }
 
+        public Builder maxInFlightRequests(int maxInFlightRequests) {
+            this.maxInFlightRequests = maxInFlightRequests;
+            return this;
+        }
+
+        /**
+         * Sets the fetcher used to retrieve pages. The caller remains responsible
+         * for closing it. Defaults to a shared {@link HttpClientPageFetcher}.
+         */
+        public Builder pageFetcher(PageFetcher pageFetcher) {
+            this.pageFetcher = pageFetcher;
+            return this;
+        }
+
+        /**
+         * Sets how many bytes of off-heap page buffers are kept for reuse.
+         * The fetcher the crawler creates then reads each page body into a
+         * pooled direct buffer instead of a String, decodes it only for
+         * parsing and saves the bytes as fetched, in their own charset. 0
+         * reads bodies into Strings. Not used when streaming to disk or with
+         * a fetcher set with {@link #pageFetcher(PageFetcher)}. Defaults to
+         * 32 MiB.
+         */
+        public Builder pageBufferPoolBytes(long pageBufferPoolBytes) {
+            this.pageBufferPoolBytes = pageBufferPoolBytes;
+            return this;
+        }
+
+        public Builder executionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        /**
+         * Sets the number of tasks allowed to run at once in
+         * {@link ExecutionMode#VIRTUAL_THREADS} mode.
+         */
+        public Builder maxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Adapts the number of URLs crawled at once to the latency and errors
+         * seen, between {@link #minConcurrency(int)} and a ceiling: the thread
+         * pool size, {@link #maxConcurrency(int)} with virtual threads, or
+         * {@link #maxInFlightRequests(int)} with an asynchronous fetcher. The
+         * limit is cut when fetches fail, get 429 or 5xx, or slow down to
+         * twice the usual latency, and grows back slowly otherwise.
+         */
+        public Builder adaptiveConcurrency(boolean adaptiveConcurrency) {
+            this.adaptiveConcurrency = adaptiveConcurrency;
+            return this;
+        }
+
+        /**
+         * Sets the lowest number of URLs crawled at once with
+         * {@link #adaptiveConcurrency(boolean)}, which is also where it starts.
+         */
+        public Builder minConcurrency(int minConcurrency) {
+            this.minConcurrency = minConcurrency;
+            return this;
+        }
+
+        public Builder parseMode(ParseMode parseMode) {
+            this.parseMode = parseMode;
+            return this;
+        }
+
+        /**
+         * Only crawls URLs matching the regular expression. May be called
+         * several times; a URL must match at least one include pattern.
+         * Patterns see the URL after normalization.
+         */
+        public Builder includePattern(String regex) {
+            this.includePatterns.add(regex);
+            return this;
+        }
+
+        /**
+         * Skips URLs matching the regular expression. May be called several times.
+         * Patterns see the URL after normalization.
+         */
+        public Builder excludePattern(String regex) {
+            this.excludePatterns.add(regex);
+            return this;
+        }
+
+        /**
+         * Sets the query parameters removed from URLs before they are
+         * deduplicated, replacing the default {@code utm_*}, {@code gclid}
+         * and {@code fbclid}. A name ending in '*' matches as a prefix.
+         */
+        public Builder stripQueryParameters(List<String> parameters) {
+            this.strippedParameters = new ArrayList<>(parameters);
+            return this;
+        }
+
+        /**
+         * Sorts query parameters by name so that reordered queries count as
+         * one URL. On by default.
+         */
+        public Builder sortQueryParameters(boolean sortQueryParameters) {
+            this.sortQueryParameters = sortQueryParameters;
+            return this;
+        }
+
+        public Builder dedupStrategy(DedupStrategy dedupStrategy) {
+            this.dedupStrategy = dedupStrategy;
+            return this;
+        }
+
+        public Builder bloomFalsePositiveRate(double bloomFalsePositiveRate) {
+            this.bloomFalsePositiveRate = bloomFalsePositiveRate;
+            return this;
+        }
+
+        /**
+         * Keeps only a bounded part of the URL frontier on the heap and spills
+         * the rest to segment files in the given directory. The frontier is
+         * held in memory if no directory is set.
+         */
+        public Builder frontierSpillDirectory(String frontierSpillDirectory) {
+            this.frontierSpillDirectory = frontierSpillDirectory;
+            return this;
+        }
+
+        /**
+         * Sets the number of URLs per spilled frontier segment.
+         */
+        public Builder frontierSegmentSize(int frontierSegmentSize) {
+            this.frontierSegmentSize = frontierSegmentSize;
+            return this;
+        }
+
+        /**
+         * Writes each response body to its file as it arrives and scans it for
+         * links on the way, instead of reading the whole page into memory.
+         * Links are then always extracted with the streaming scanner.
+         */
+        public Builder streamToDisk(boolean streamToDisk) {
+            this.streamToDisk = streamToDisk;
+            return this;
+        }
+
+        /**
+         * Remembers the ETag and Last-Modified of saved pages in
+         * {@code <outputPath>/page-index.bin} and, when crawling into the same
+         * output path again, fetches them with conditional requests. Pages the
+         * server reports as not modified are not saved again; their links are
+         * read from the saved copy.
+         */
+        public Builder revalidate(boolean revalidate) {
+            this.revalidate = revalidate;
+            return this;
+        }
+
+        /**
+         * Saves each distinct page body only once. A page whose body matches
+         * one already saved under another URL is listed in
+         * {@code <outputPath>/aliases.tsv} instead, and its links are not
+         * followed. With {@link #streamToDisk(boolean)} the duplicate is only
+         * recognised, and removed, after it has been written.
+         */
+        public Builder dedupContent(boolean dedupContent) {
+            this.dedupContent = dedupContent;
+            return this;
+        }
+
+        /**
+         * Sets how pages are stored. {@link OutputFormat#FILES}, the default,
+         * writes one file per page; the WARC formats append records to
+         * rolling segment files in the output directory.
+         */
+        public Builder outputFormat(OutputFormat outputFormat) {
+            this.outputFormat = outputFormat;
+            return this;
+        }
+
+        /**
+         * Compresses stored pages and the crawl summary. Pages are
+         * compressed by the thread that writes them, so combine with
+         * {@link #writeQueueCapacity(int)} to keep it off the crawler threads.
+         * The summary reports the ratio and CPU time per page.
+         */
+        public Builder compression(Compression compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * Hands fetched pages to dedicated writer threads through a queue of
+         * this many pages, so crawler threads do not wait for the disk. When
+         * the queue is full, crawler threads block until there is room.
+         * Zero, the default, writes pages on the crawler threads. Pages
+         * streamed to disk are always written as they arrive.
+         */
+        public Builder writeQueueCapacity(int writeQueueCapacity) {
+            this.writeQueueCapacity = writeQueueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets the number of writer threads draining the write queue.
+         */
+        public Builder writerThreads(int writerThreads) {
+            this.writerThreads = writerThreads;
+            return this;
+        }
+
+        /**
+         * Forces queued writes to disk at most this often. Zero, the default,
+         * leaves it to the OS.
+         */
+        public Builder fsyncIntervalMillis(long fsyncIntervalMillis) {
+            this.fsyncIntervalMillis = fsyncIntervalMillis;
+            return this;
+        }
+
+        /**
+         * Sets how often live metrics are logged. Zero disables the periodic
+         * report; the metrics are still available over JMX and from
+         * {@link WebCrawler#getMetrics()}.
+         */
+        public Builder metricsReportIntervalSeconds(int metricsReportIntervalSeconds) {
+            this.metricsReportIntervalSeconds = metricsReportIntervalSeconds;
+            return this;
+        }
+
+        /**
+         * Serves live metrics over HTTP on this loopback port while crawling:
+         * {@code /metrics} in Prometheus format and {@code /} as text. Zero
+         * picks a free port; -1, the default, serves nothing.
+         */
+        public Builder metricsPort(int metricsPort) {
+            this.metricsPort = metricsPort;
+            return this;
+        }
+
+        /**
+         * Writes one JSON line per crawled page to
+         * {@code <outputPath>/crawl-journal.jsonl}, with its status, size,
+         * timings and links, and adds totals computed from it to the crawl
+         * summary. A resumed crawl appends to the journal. Off by default.
+         */
+        public Builder journal(boolean journal) {
+            this.journal = journal;
+            return this;
+        }
+
+        /**
+         * Records the links between pages in {@code <outputPath>/link-graph},
+         * compacted when the crawl ends into int-id adjacency lists that
+         * {@link LinkGraph} opens for link queries and PageRank. Pages at max
+         * depth are not parsed for links, so they have no out-links. A resumed
+         * crawl adds to the graph. Off by default.
+         */
+        public Builder linkGraph(boolean linkGraph) {
+            this.linkGraph = linkGraph;
+            return this;
+        }
+
+        /**
+         * Fetches each host's robots.txt before queueing URLs on it and drops
+         * the URLs it disallows. With {@link #maxRequestsPerHost(int)}, a
+         * host's Crawl-delay raises its delay between requests. The file is
+         * fetched by the crawler thread that first finds a link to the host,
+         * which waits for it, so crawls across many slow hosts need more
+         * threads.
+         */
+        public Builder respectRobotsTxt(boolean respectRobotsTxt) {
+            this.respectRobotsTxt = respectRobotsTxt;
+            return this;
+        }
+
+        /**
+         * Sets how long a host's robots.txt is kept before fetching it again.
+         * Defaults to one day.
+         */
+        public Builder robotsTtlSeconds(long robotsTtlSeconds) {
+            this.robotsTtlSeconds = robotsTtlSeconds;
+            return this;
+        }
+
+        /**
+         * Also queues the URLs in each host's sitemaps, as listed in its
+         * robots.txt or else at {@code /sitemap.xml}, as if the root page
+         * linked to them. Sitemaps are streamed in the background while the
+         * crawl runs. Requires {@link #respectRobotsTxt(boolean)}.
+         */
+        public Builder sitemaps(boolean sitemaps) {
+            this.sitemaps = sitemaps;
+            return this;
+        }
+
+        /**
+         * Schedules URLs per host, with at most this many requests to one host
+         * at a time, and backs off hosts that answer 429 or 503 or slow down.
+         * Zero, the default, uses a single FIFO queue.
+         */
+        public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * Sets the minimum delay between two requests to the same host.
+         * Requires {@link #maxRequestsPerHost(int)}.
+         */
+        public Builder minHostDelayMillis(long minHostDelayMillis) {
+            this.minHostDelayMillis = minHostDelayMillis;
+            return this;
+        }
+
+        /**
+         * Crawls the highest-scoring queued URL next instead of the oldest, so
+         * a page budget goes to the most valuable pages first. URLs are scored
+         * by depth, by the number of links to them found so far, by
+         * {@link #urlPatternWeight(String, double)} and, with
+         * {@link #revalidate(boolean)}, by how long ago they were last fetched.
+         */
+        public Builder bestFirst(boolean bestFirst) {
+            this.bestFirst = bestFirst;
+            return this;
+        }
+
+        /**
+         * Crawls best-first with the given scorer in place of the default one.
+         */
+        public Builder urlScorer(UrlScorer urlScorer) {
+            this.urlScorer = urlScorer;
+            return this;
+        }
+
+        /**
+         * Adds the weight to the score of URLs in which the regular expression
+         * is found, e.g. a negative weight for tag or login pages. May be
+         * called several times. Requires {@link #bestFirst(boolean)}.
+         */
+        public Builder urlPatternWeight(String regex, double weight) {
+            this.urlPatternWeights.put(regex, weight);
+            return this;
+        }
+
+        /**
+         * Sets how often crawl state is compacted into a snapshot under
+         * {@code <outputPath>/checkpoint}. Zero, the default, disables
+         * checkpointing.
+         */
+        public Builder checkpointIntervalSeconds(int checkpointIntervalSeconds) {
+            this.checkpointIntervalSeconds = checkpointIntervalSeconds;
+            return this;
+        }
+
+        /**
+         * Crawls as one node of a cluster, given the host:port every node
+         * listens on, in the same order on every node. Each node crawls the
+         * hosts that hash to it and forwards links to other hosts to their
+         * owner; the crawl ends when all nodes are idle, and node 0 then
+         * writes {@code cluster_summary.txt} with the totals of all nodes.
+         * The page budget applies to each node.
+         */
+        public Builder clusterNodes(List<String> clusterNodes) {
+            this.clusterNodes.clear();
+            this.clusterNodes.addAll(clusterNodes);
+            return this;
+        }
+
+        /**
+         * Sets this node's position in {@link #clusterNodes(List)}.
+         */
+        public Builder clusterNodeIndex(int clusterNodeIndex) {
+            this.clusterNodeIndex = clusterNodeIndex;
+            return this;
+        }
+
+        /**
+         * Continues a crawl from the checkpoint saved by an earlier run, given
+         * either that run's output directory or its checkpoint directory.
+         */
+        public Builder resumeFrom(String resumeFrom) {
+            this.resumeFrom = resumeFrom;
+            return this;
+        }
+
         public WebCrawler build() {
             if (rootUrl == null || rootUrl.isEmpty()) {
                 throw new IllegalArgumentException("Root URL must be specified");
             }
+            if (maxInFlightRequests < 1) {
+                throw new IllegalArgumentException("Max in-flight requests must be at least 1");
+            }
+            if (pageBufferPoolBytes < 0) {
+                throw new IllegalArgumentException("Page buffer pool size must not be negative");
+            }
+            if (executionMode == null) {
+                throw new IllegalArgumentException("Execution mode must be specified");
+            }
+            if (parseMode == null) {
+                throw new IllegalArgumentException("Parse mode must be specified");
+            }
+            if (dedupStrategy == null) {
+                throw new IllegalArgumentException("Dedup strategy must be specified");
+            }
+            if (strippedParameters != null && strippedParameters.stream()
+                    .anyMatch(name -> name == null || name.isEmpty() || name.equals("*"))) {
+                throw new IllegalArgumentException("Stripped query parameter names must not be empty");
+            }
+            if (bloomFalsePositiveRate <= 0 || bloomFalsePositiveRate >= 1) {
+                throw new IllegalArgumentException("Bloom false positive rate must be between 0 and 1");
+            }
+            if (maxConcurrency < 1) {
+                throw new IllegalArgumentException("Max concurrency must be at least 1");
+            }
+            if (minConcurrency < 1) {
+                throw new IllegalArgumentException("Min concurrency must be at least 1");
+            }
+            if (frontierSegmentSize < 1) {
+                throw new IllegalArgumentException("Frontier segment size must be at least 1");
+            }
+            if (maxRequestsPerHost < 0 || minHostDelayMillis < 0) {
+                throw new IllegalArgumentException("Per-host limits must not be negative");
+            }
+            if (minHostDelayMillis > 0 && maxRequestsPerHost == 0) {
+                throw new IllegalArgumentException("Host delay requires max requests per host to be set");
+            }
+            if (maxRequestsPerHost > 0 && frontierSpillDirectory != null) {
+                throw new IllegalArgumentException("Per-host scheduling cannot be combined with a spilling frontier");
+            }
+            if (!urlPatternWeights.isEmpty() && (!bestFirst || urlScorer != null)) {
+                throw new IllegalArgumentException("URL pattern weights require best-first crawling with the default scorer");
+            }
+            if ((bestFirst || urlScorer != null) && (maxRequestsPerHost > 0 || frontierSpillDirectory != null)) {
+                throw new IllegalArgumentException(
+                    "Best-first crawling cannot be combined with per-host scheduling or a spilling frontier");
+            }
+            if (outputFormat == null || compression == null) {
+                throw new IllegalArgumentException("Output format and compression must be set");
+            }
+            if (writeQueueCapacity < 0 || fsyncIntervalMillis < 0) {
+                throw new IllegalArgumentException("Write queue settings must not be negative");
+            }
+            if (writerThreads < 1) {
+                throw new IllegalArgumentException("Writer threads must be at least 1");
+            }
+            if (fsyncIntervalMillis > 0 && writeQueueCapacity == 0) {
+                throw new IllegalArgumentException("Fsync interval requires a write queue");
+            }
+            if (metricsReportIntervalSeconds < 0) {
+                throw new IllegalArgumentException("Metrics report interval must not be negative");
+            }
+            if (metricsPort < -1 || metricsPort > 65535) {
+                throw new IllegalArgumentException("Metrics port must be -1, 0 or a valid port");
+            }
+            if (robotsTtlSeconds < 1) {
+                throw new IllegalArgumentException("Robots.txt TTL must be at least 1 second");
+            }
+            if (sitemaps && !respectRobotsTxt) {
+                throw new IllegalArgumentException("Sitemaps require robots.txt support");
+            }
+            if (checkpointIntervalSeconds < 0) {
+                throw new IllegalArgumentException("Checkpoint interval must not be negative");
+            }
+            if (!clusterNodes.isEmpty() && (clusterNodeIndex < 0 || clusterNodeIndex >= clusterNodes.size())) {
+                throw new IllegalArgumentException("Cluster node index must be between 0 and " + (clusterNodes.size() - 1));
+            }
+            if (!clusterNodes.isEmpty() && resumeFrom != null) {
+                throw new IllegalArgumentException("Cluster nodes cannot resume from a checkpoint");
+            }
+            if (resumeFrom != null && !CrawlCheckpoint.exists(resolveCheckpointDirectory(resumeFrom))) {
+                throw new IllegalArgumentException("No checkpoint found in " + resumeFrom);
+            }
             return new WebCrawler(this);
         }
     }
 
+    /**
+     * Finds the checkpoint directory of an earlier crawl.
+     * 
+     * @param path The earlier crawl's output directory or its checkpoint directory
+     * @return The checkpoint directory
+     */
+    private static Path resolveCheckpointDirectory(String path) {
+        Path nested = Paths.get(path, CHECKPOINT_DIRECTORY);
+        return Files.isDirectory(nested) ? nested : Paths.get(path);
+    }
+
     /**
      * Private constructor - use Builder to create instances.
      */
@@ -87,7 +690,48 @@ public class WebCrawler {
         this.threadPoolSize = builder.threadPoolSize;
         this.stayInDomain = builder.stayInDomain;
         this.outputPath = builder.outputPath;
-        this.activeThreads = new AtomicInteger(0);
+        this.maxInFlightRequests = builder.maxInFlightRequests;
+        this.pageBufferPoolBytes = builder.pageBufferPoolBytes;
+        this.pageFetcher = builder.pageFetcher;
+        this.executionMode = builder.executionMode;
+        this.maxConcurrency = builder.maxConcurrency;
+        this.adaptiveConcurrency = builder.adaptiveConcurrency;
+        this.minConcurrency = builder.minConcurrency;
+        this.parseMode = builder.parseMode;
+        this.includePatterns = new ArrayList<>(builder.includePatterns);
+        this.excludePatterns = new ArrayList<>(builder.excludePatterns);
+        this.strippedParameters = builder.strippedParameters == null ? null
+                                                                     : new ArrayList<>(builder.strippedParameters);
+        this.sortQueryParameters = builder.sortQueryParameters;
+        this.dedupStrategy = builder.dedupStrategy;
+        this.bloomFalsePositiveRate = builder.bloomFalsePositiveRate;
+        this.frontierSpillDirectory = builder.frontierSpillDirectory;
+        this.frontierSegmentSize = builder.frontierSegmentSize;
+        this.checkpointIntervalSeconds = builder.checkpointIntervalSeconds;
+        this.maxRequestsPerHost = builder.maxRequestsPerHost;
+        this.minHostDelayMillis = builder.minHostDelayMillis;
+        this.bestFirst = builder.bestFirst || builder.urlScorer != null;
+        this.urlScorer = builder.urlScorer;
+        this.urlPatternWeights = new LinkedHashMap<>(builder.urlPatternWeights);
+        this.streamToDisk = builder.streamToDisk;
+        this.revalidate = builder.revalidate;
+        this.dedupContent = builder.dedupContent;
+        this.outputFormat = builder.outputFormat;
+        this.compression = builder.compression;
+        this.writeQueueCapacity = builder.writeQueueCapacity;
+        this.writerThreads = builder.writerThreads;
+        this.fsyncIntervalMillis = builder.fsyncIntervalMillis;
+        this.metricsReportIntervalSeconds = builder.metricsReportIntervalSeconds;
+        this.metricsPort = builder.metricsPort;
+        this.journal = builder.journal;
+        this.linkGraph = builder.linkGraph;
+        this.respectRobotsTxt = builder.respectRobotsTxt;
+        this.robotsTtlSeconds = builder.robotsTtlSeconds;
+        this.sitemaps = builder.sitemaps;
+        this.clusterNodes = new ArrayList<>(builder.clusterNodes);
+        this.clusterNodeIndex = builder.clusterNodeIndex;
+        this.resumeFrom = builder.resumeFrom;
+        this.pendingFetches = ConcurrentHashMap.newKeySet();
     }
 
     /**
@@ -100,60 +744,229 @@ public class WebCrawler {
         logger.info("Root URL: {}", rootUrl);
         logger.info("Max Depth: {}", maxDepth);
         logger.info("Max Pages: {}", maxPages);
-        logger.info("Thread Pool Size: {}", threadPoolSize);
+        logger.info("Execution Mode: {}", executionMode);
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            logger.info("Max Concurrency: {}", maxConcurrency);
+        } else {
+            logger.info("Thread Pool Size: {}", threadPoolSize);
+        }
         logger.info("Stay in Domain: {}", stayInDomain);
+        if (streamToDisk) {
+            logger.info("Parse Mode: {} (streaming to disk)", ParseMode.STREAMING);
+        } else {
+            logger.info("Parse Mode: {}", parseMode);
+        }
+        if (dedupStrategy == DedupStrategy.BLOOM_FILTER) {
+            logger.info("Dedup Strategy: {} (false positive rate {})", dedupStrategy, bloomFalsePositiveRate);
+        } else {
+            logger.info("Dedup Strategy: {}", dedupStrategy);
+        }
+        if (!includePatterns.isEmpty()) {
+            logger.info("Include Patterns: {}", includePatterns);
+        }
+        if (!excludePatterns.isEmpty()) {
+            logger.info("Exclude Patterns: {}", excludePatterns);
+        }
+        if (strippedParameters != null) {
+            logger.info("Stripped Query Parameters: {}", strippedParameters);
+        }
+        if (!sortQueryParameters) {
+            logger.info("Query Parameters: kept in link order");
+        }
+        if (frontierSpillDirectory != null) {
+            logger.info("Frontier Spill Directory: {} (segments of {} URLs)",
+                        frontierSpillDirectory, frontierSegmentSize);
+        }
+        if (maxRequestsPerHost > 0) {
+            logger.info("Per-Host Limits: {} requests, {} ms delay", maxRequestsPerHost, minHostDelayMillis);
+        }
+        if (bestFirst) {
+            logger.info("Best-First Scorer: {}", urlScorer != null ? urlScorer.getClass().getSimpleName()
+                                                                   : "weighted " + urlPatternWeights);
+        }
+        if (revalidate) {
+            logger.info("Page Index: {}", Paths.get(outputPath, PAGE_INDEX_FILE));
+        }
+        if (dedupContent) {
+            logger.info("Content Aliases: {}", Paths.get(outputPath, ALIAS_FILE));
+        }
+        if (journal) {
+            logger.info("Crawl Journal: {}", Paths.get(outputPath, JOURNAL_FILE));
+        }
+        if (linkGraph) {
+            logger.info("Link Graph: {}", Paths.get(outputPath, LINK_GRAPH_DIRECTORY));
+        }
+        if (respectRobotsTxt) {
+            logger.info("Robots.txt: cached for {} seconds{}", robotsTtlSeconds, sitemaps ? ", with sitemaps" : "");
+        }
+        if (checkpointIntervalSeconds > 0) {
+            logger.info("Checkpoint Interval: {} seconds", checkpointIntervalSeconds);
+        }
+        if (!clusterNodes.isEmpty()) {
+            logger.info("Cluster Node: {} of {} {}", clusterNodeIndex, clusterNodes.size(), clusterNodes);
+        }
+        if (resumeFrom != null) {
+            logger.info("Resume From: {}", resumeFrom);
+        }
         logger.info("Output Path: {}", outputPath);
-        logger.info("=================================================");
+        logger.info("Output Format: {}", outputFormat);
+        if (compression != Compression.NONE) {
+            logger.info("Compression: {}", compression);
+        }
+        if (writeQueueCapacity > 0) {
+            logger.info("Write Queue: {} pages, {} writer threads, fsync every {} ms",
+                        writeQueueCapacity, writerThreads, fsyncIntervalMillis);
+        }
 
-        // Initialize components
-        urlManager = new UrlManager(rootUrl, stayInDomain);
-        contentSaver = new ContentSaver(outputPath);
-        linkExtractor = new LinkExtractor();
-        executorService = Executors.newFixedThreadPool(threadPoolSize);
+        // Initialize components; the cluster port first, as it is the likeliest to be taken
+        if (!clusterNodes.isEmpty()) {
+            cluster = new CrawlCluster(clusterNodes, clusterNodeIndex);
+            cluster.listen();
+        }
+        pageBufferPool = null;
+        fetcher = pageFetcher;
+        if (fetcher == null) {
+            if (pageBufferPoolBytes > 0 && !streamToDisk) {
+                pageBufferPool = new PageBufferPool(pageBufferPoolBytes);
+                logger.info("Page Buffer Pool: {} KB retained", pageBufferPoolBytes / 1024);
+            }
+            fetcher = new HttpClientPageFetcher(maxInFlightRequests, Runtime.getRuntime().availableProcessors(),
+                                                    pageBufferPool);
+            logger.info("Max In-Flight Requests: {}", maxInFlightRequests);
+        }
+        logger.info("Page Fetcher: {}", fetcher.getClass().getSimpleName());
+        if (adaptiveConcurrency) {
+            logger.info("Adaptive Concurrency: {} to {}",
+                        Math.min(minConcurrency, concurrencyCeiling()), concurrencyCeiling());
+        }
+        logger.info("=================================================");
 
-        // Add the root URL to start crawling
-        urlManager.addUrl(rootUrl, 0);
+        // Link validity is checked where links are extracted, crawl scope where they are queued
+        UrlFilter scopeFilter = new UrlFilter.Builder()
+            .include(includePatterns)
+            .exclude(excludePatterns)
+            .build();
+        if (revalidate) {
+            pageIndex = PageMetadataIndex.open(Paths.get(outputPath, PAGE_INDEX_FILE));
+            logger.info("Loaded page index with {} entries", pageIndex.size());
+        }
+        if (maxRequestsPerHost > 0) {
+            frontier = new PolitenessScheduler(maxRequestsPerHost, minHostDelayMillis);
+        } else if (frontierSpillDirectory != null) {
+            frontier = new SpillingUrlFrontier(Paths.get(frontierSpillDirectory), frontierSegmentSize);
+        } else if (bestFirst) {
+            frontier = new PriorityUrlFrontier(urlScorer != null ? urlScorer : createUrlScorer());
+        } else {
+            frontier = new InMemoryUrlFrontier();
+        }
+        Path checkpointDirectory = Paths.get(outputPath, CHECKPOINT_DIRECTORY);
+        if (resumeFrom != null) {
+            checkpoint = CrawlCheckpoint.resume(checkpointDirectory, checkpointIntervalSeconds,
+                                                resolveCheckpointDirectory(resumeFrom));
+        } else if (checkpointIntervalSeconds > 0) {
+            checkpoint = CrawlCheckpoint.create(checkpointDirectory, checkpointIntervalSeconds);
+        }
+        if (respectRobotsTxt) {
+            robotsCache = new RobotsTxtCache(TimeUnit.SECONDS.toMillis(robotsTtlSeconds), this::robotsLoaded);
+        }
+        if (sitemaps) {
+            sitemapOrigins = ConcurrentHashMap.newKeySet();
+            sitemapUrlCount = new LongAdder();
+            sitemapExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "crawl-sitemap");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        urlManager = new UrlManager.Builder()
+            .rootUrl(rootUrl)
+            .stayInDomain(stayInDomain)
+            .maxPages(maxPages)
+            .urlFilter(scopeFilter)
+            .normalizer(createUrlNormalizer())
+            .dedupStrategy(dedupStrategy)
+            .bloomFalsePositiveRate(bloomFalsePositiveRate)
+            .frontier(frontier)
+            .checkpoint(checkpointIntervalSeconds > 0 ? checkpoint : null)
+            .cluster(cluster)
+            .robots(robotsCache)
+            .build();
+        if (resumeFrom != null) {
+            urlManager.restore(checkpoint);
+            logger.info("Resumed with {} pages crawled, {} URLs discovered, {} URLs queued",
+                        urlManager.getCrawledCount(), urlManager.getTotalDiscoveredUrls(),
+                        urlManager.getQueueSize());
+        }
+        if (checkpoint != null && checkpointIntervalSeconds > 0) {
+            checkpoint.start();
+        }
+        contentSaver = new ContentSaver(outputPath, outputFormat, compression, writeQueueCapacity,
+                                        writerThreads, fsyncIntervalMillis);
+        if (adaptiveConcurrency) {
+            concurrencyLimiter = new AdaptiveConcurrencyLimiter(Math.min(minConcurrency, concurrencyCeiling()),
+                                                                concurrencyCeiling());
+            metrics = new CrawlMetrics(urlManager::getQueueSize, concurrencyLimiter::getLimit,
+                                       contentSaver.getWriteBehind());
+        } else {
+            int fixedLimit = concurrencyCeiling();
+            metrics = new CrawlMetrics(urlManager::getQueueSize, () -> fixedLimit, contentSaver.getWriteBehind());
+        }
+        metricsReporter = new MetricsReporter(metrics, outputPath, metricsReportIntervalSeconds, metricsPort);
+        if (metricsReporter.getPort() >= 0) {
+            logger.info("Metrics Endpoint: http://localhost:{}/metrics", metricsReporter.getPort());
+        }
+        if (dedupContent) {
+            contentDedup = new ContentDeduplicator(Paths.get(outputPath, ALIAS_FILE));
+        }
+        if (journal) {
+            crawlJournal = new CrawlJournal(Paths.get(outputPath, JOURNAL_FILE), resumeFrom != null);
+        }
+        if (linkGraph) {
+            linkGraphWriter = LinkGraphWriter.open(Paths.get(outputPath, LINK_GRAPH_DIRECTORY), resumeFrom != null);
+        }
+        linkExtractor = new LinkExtractor(parseMode, UrlFilter.defaults());
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            executorService = VirtualThreads.newThreadPerTaskExecutor();
+        } else {
+            executorService = Executors.newFixedThreadPool(threadPoolSize);
+        }
+        // Best-first keeps URLs in the frontier, not the executor's queue, until they can start
+        if (concurrencyLimiter == null && (executionMode == ExecutionMode.VIRTUAL_THREADS || bestFirst)) {
+            concurrencyPermits = new Semaphore(concurrencyCeiling());
+        }
 
-        // Main crawling loop
         long startTime = System.currentTimeMillis();
-        
-        while (shouldContinueCrawling()) {
-            UrlDepthPair urlDepthPair = urlManager.getNextUrl();
-            
-            if (urlDepthPair != null) {
-                activeThreads.incrementAndGet();
-                
-                CrawlerTask task = new CrawlerTask(
-                    urlDepthPair.getUrl(),
-                    urlDepthPair.getDepth(),
-                    maxDepth,
-                    urlManager,
-                    contentSaver,
-                    linkExtractor
-                );
-
-                executorService.submit(() -> {
-                    try {
-                        task.run();
-                    } finally {
-                        activeThreads.decrementAndGet();
-                    }
-                });
-            } else {
-                // No URLs in queue, wait a bit for active threads to finish
-                try {
-                    Thread.sleep(100);
-                } catch (InterruptedException e) {
-                    logger.warn("Interrupted while waiting: {}", e.getMessage());
-                    Thread.currentThread().interrupt();
+        long gcCountAtStart = garbageCollectionCount();
+        long gcMillisAtStart = garbageCollectionMillis();
+
+        try {
+            // Add the root URL to start crawling; every node does, and only its owner queues it
+            urlManager.addUrl(rootUrl, 0);
+            if (cluster != null) {
+                cluster.start(urlManager);
+            }
+
+            // Main crawling loop: takeNextUrl blocks until a URL is queued or the crawl is done
+            while (true) {
+                // Take a slot before choosing the URL, so the choice sees every URL queued while waiting
+                acquireSlot();
+                UrlDepthPair urlDepthPair = urlManager.takeNextUrl();
+                if (urlDepthPair == null) {
+                    releaseSlot(null);
                     break;
                 }
+                dispatch(urlDepthPair);
             }
+            crawlStopped = true;
+            logStopReason();
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while waiting: {}", e.getMessage());
+            Thread.currentThread().interrupt();
+        } finally {
+            // Also on an unexpected exception, so no worker or endpoint thread outlives the crawl
+            shutdown();
         }
 
-        // Shutdown and wait for completion
-        shutdown();
-
         long endTime = System.currentTimeMillis();
         long duration = (endTime - startTime) / 1000;
 
@@ -161,32 +974,167 @@ public class WebCrawler {
         contentSaver.createSummary(
             urlManager.getCrawledCount(),
             urlManager.getTotalDiscoveredUrls(),
-            rootUrl
+            rootUrl,
+            summarizeJournal()
         );
+        if (cluster != null && cluster.getSummary() != null) {
+            contentSaver.createClusterSummary(rootUrl, cluster.getSummary());
+        }
 
         // Print final statistics
-        printStatistics(duration);
+        printStatistics(duration, garbageCollectionCount() - gcCountAtStart,
+                        garbageCollectionMillis() - gcMillisAtStart);
     }
 
     /**
-     * Determines if crawling should continue.
+     * Gets the live metrics of the crawl, e.g. from another thread while
+     * {@link #start()} runs.
      * 
-     * @return true if should continue crawling
+     * @return The metrics, or null before the crawl has started
      */
-    private boolean shouldContinueCrawling() {
-        // Stop if max pages reached
-        if (urlManager.getCrawledCount() >= maxPages) {
-            logger.info("Max pages limit ({}) reached", maxPages);
-            return false;
+    public CrawlMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the port live metrics are served on, e.g. when
+     * {@link Builder#metricsPort(int)} picked a free one.
+     * 
+     * @return The port, or -1 if metrics are not served over HTTP
+     */
+    public int getMetricsPort() {
+        MetricsReporter reporter = metricsReporter;
+        return reporter == null ? -1 : reporter.getPort();
+    }
+
+    /**
+     * Gets the most URLs that can be crawled at once in the execution mode.
+     * 
+     * @return Concurrency ceiling
+     */
+    private int concurrencyCeiling() {
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            return maxConcurrency;
         }
+        return fetcher.isAsync() ? maxInFlightRequests : threadPoolSize;
+    }
 
-        // Stop if no more URLs and no active threads
-        if (!urlManager.hasMoreUrls() && activeThreads.get() == 0) {
-            logger.info("No more URLs to crawl and no active threads");
-            return false;
+    /**
+     * Runs a crawler task for a URL taken from the frontier. The URL is
+     * reported back to the UrlManager, and its slot released, once the task
+     * has finished.
+     * 
+     * @param urlDepthPair The URL to crawl
+     */
+    private void dispatch(UrlDepthPair urlDepthPair) {
+        CrawlerTask task = new CrawlerTask.Builder()
+            .url(urlDepthPair.getUrl())
+            .depth(urlDepthPair.getDepth())
+            .maxDepth(maxDepth)
+            .urlManager(urlManager)
+            .contentSaver(contentSaver)
+            .linkExtractor(linkExtractor)
+            .pageFetcher(fetcher)
+            .streamToDisk(streamToDisk)
+            .pageIndex(pageIndex)
+            .contentDedup(contentDedup)
+            .metrics(metrics)
+            .journal(crawlJournal)
+            .linkGraph(linkGraphWriter)
+            .build();
+
+        Runnable completion = () -> {
+            releaseSlot(task);
+            urlManager.markCompleted(urlDepthPair);
+        };
+
+        if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+            // Blocking I/O is cheap on virtual threads; the semaphore or the limiter bounds concurrency
+            executorService.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    completion.run();
+                }
+            });
+        } else if (fetcher.isAsync()) {
+            // The fetch holds no thread; only processing runs on the pool
+            CompletableFuture<Void> future = task.runAsync(executorService);
+            pendingFetches.add(future);
+            future.whenComplete((ignored, error) -> {
+                pendingFetches.remove(future);
+                completion.run();
+            });
+        } else {
+            executorService.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    completion.run();
+                }
+            });
         }
+    }
 
-        return true;
+    /**
+     * Waits until another URL may be crawled, if concurrency is bounded
+     * outside the executor.
+     * 
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private void acquireSlot() throws InterruptedException {
+        if (concurrencyLimiter != null) {
+            concurrencyLimiter.acquire();
+        } else if (concurrencyPermits != null) {
+            concurrencyPermits.acquire();
+        }
+    }
+
+    /**
+     * Returns a slot taken with {@link #acquireSlot()}.
+     * 
+     * @param task The task that used the slot, or null if no URL was crawled
+     */
+    private void releaseSlot(CrawlerTask task) {
+        if (concurrencyLimiter != null) {
+            if (task != null) {
+                concurrencyLimiter.release(task.getResponseStatus(), task.getFetchNanos());
+            } else {
+                concurrencyLimiter.release();
+            }
+        } else if (concurrencyPermits != null) {
+            concurrencyPermits.release();
+        }
+    }
+
+    /**
+     * Computes crawl totals from the journal, once it has been closed.
+     * 
+     * @return The totals, or null if there is no journal or it cannot be read
+     */
+    private CrawlJournal.Summary summarizeJournal() {
+        if (crawlJournal == null) {
+            return null;
+        }
+        try {
+            return CrawlJournal.summarize(crawlJournal.getFile());
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to read crawl journal {}: {}", crawlJournal.getFile(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Logs why the main crawling loop ended.
+     */
+    private void logStopReason() {
+        if (cluster != null) {
+            logger.info("All cluster nodes are idle");
+        } else if (urlManager.getCrawledCount() >= maxPages) {
+            logger.info("Max pages limit ({}) reached", maxPages);
+        } else {
+            logger.info("No more URLs to crawl and no active threads");
+        }
     }
 
     /**
@@ -194,7 +1142,10 @@ public class WebCrawler {
      */
     private void shutdown() {
         logger.info("Shutting down crawler...");
-        
+
+        // Let async fetches hand their pages to the pool before it stops accepting work
+        awaitPendingFetches();
+
         executorService.shutdown();
         
         try {
@@ -210,6 +1161,56 @@ public class WebCrawler {
             logger.error("Shutdown interrupted: {}", e.getMessage());
             executorService.shutdownNow();
             Thread.currentThread().interrupt();
+        } finally {
+            metricsReporter.close();
+            if (cluster != null) {
+                cluster.close();
+            }
+            if (sitemapExecutor != null) {
+                crawlStopped = true;
+                sitemapExecutor.shutdownNow();
+            }
+            if (fetcher != pageFetcher) {
+                fetcher.close();
+            }
+            frontier.close();
+            if (checkpoint != null) {
+                checkpoint.close();
+            }
+            if (pageIndex != null) {
+                pageIndex.close();
+            }
+            if (contentDedup != null) {
+                contentDedup.close();
+            }
+            if (crawlJournal != null) {
+                crawlJournal.close();
+            }
+            if (linkGraphWriter != null) {
+                linkGraphWriter.close();
+            }
+            contentSaver.close();
+        }
+    }
+
+    /**
+     * Waits for outstanding asynchronous fetches to complete.
+     */
+    private void awaitPendingFetches() {
+        if (pendingFetches.isEmpty()) {
+            return;
+        }
+
+        try {
+            CompletableFuture.allOf(pendingFetches.toArray(new CompletableFuture<?>[0]))
+                .get(60, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("{} fetches did not complete in time", pendingFetches.size());
+        } catch (ExecutionException e) {
+            logger.debug("Fetch failed during shutdown: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            logger.error("Shutdown interrupted: {}", e.getMessage());
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -217,15 +1218,235 @@ public class WebCrawler {
      * Prints crawling statistics.
      * 
      * @param durationSeconds Duration in seconds
+     * @param gcCount Garbage collections during the crawl
+     * @param gcMillis Time spent in those collections
      */
-    private void printStatistics(long durationSeconds) {
+    private void printStatistics(long durationSeconds, long gcCount, long gcMillis) {
         logger.info("=================================================");
         logger.info("Crawling Completed!");
         logger.info("=================================================");
         logger.info("Total Pages Crawled: {}", urlManager.getCrawledCount());
         logger.info("Total URLs Discovered: {}", urlManager.getTotalDiscoveredUrls());
+        logger.info("Dedup Memory: ~{} KB", urlManager.getDedupMemoryBytes() / 1024);
         logger.info("Duration: {} seconds", durationSeconds);
+        logger.info("Garbage Collections: {} ({} ms)", gcCount, gcMillis);
+        logRejections("Links Rejected", linkExtractor.getUrlFilter());
+        logRejections("URLs Out of Scope", urlManager.getUrlFilter());
+        if (pageIndex != null) {
+            logger.info("Pages Not Modified: {}", pageIndex.getRevalidatedCount());
+        }
+        if (contentDedup != null) {
+            logger.info("Duplicate Pages: {} ({} KB not stored)",
+                        contentDedup.getDuplicateCount(), contentDedup.getDuplicateBytes() / 1024);
+        }
+        CompressionStats compressionStats = contentSaver.getCompressionStats();
+        if (compressionStats.getCount() > 0) {
+            logger.info("Compression: {}x ({} KB -> {} KB), {} us CPU per page",
+                        String.format("%.2f", compressionStats.getRatio()),
+                        compressionStats.getRawBytes() / 1024, compressionStats.getCompressedBytes() / 1024,
+                        String.format("%.0f", compressionStats.getMicrosPerItem()));
+        }
+        WriteBehindQueue writeBehind = contentSaver.getWriteBehind();
+        if (writeBehind != null) {
+            logger.info("Pages Written Behind: {} in {} batches ({} failed, {} syncs)",
+                        writeBehind.getWrittenCount(), writeBehind.getBatchCount(),
+                        writeBehind.getFailedCount(), writeBehind.getSyncCount());
+            logger.info("Write Queue: max depth {}, {} blocked submissions, latency {} ms avg / {} ms max",
+                        writeBehind.getMaxQueueDepth(), writeBehind.getBlockedCount(),
+                        String.format("%.1f", writeBehind.getAverageLatencyMillis()),
+                        String.format("%.1f", writeBehind.getMaxLatencyMillis()));
+        }
+        logLatency("Fetch Latency", metrics.getFetchLatency());
+        logLatency("Parse Latency", metrics.getParseLatency());
+        logLatency("Save Latency", metrics.getSaveLatency());
+        if (metrics.getFetchErrors() > 0) {
+            logger.info("Responses by Status: {}", metrics.getResponsesByStatus());
+        }
+        if (concurrencyLimiter != null) {
+            logger.info("Concurrency Limit: {} at the end, {} at most, cut {} times",
+                        concurrencyLimiter.getLimit(), concurrencyLimiter.getMaxLimit(),
+                        concurrencyLimiter.getDecreaseCount());
+        }
+        if (crawlJournal != null && crawlJournal.getStallCount() > 0) {
+            logger.info("Journal Stalls: {}", crawlJournal.getStallCount());
+        }
+        if (frontier instanceof SpillingUrlFrontier && ((SpillingUrlFrontier) frontier).getLostUrlCount() > 0) {
+            logger.info("Frontier URLs Lost: {} in unreadable segments",
+                        ((SpillingUrlFrontier) frontier).getLostUrlCount());
+        }
+        if (frontier instanceof PolitenessScheduler) {
+            logger.info("Host Back-offs: {}", ((PolitenessScheduler) frontier).getBackoffCount());
+        }
+        if (cluster != null) {
+            logger.info("Cluster URLs: {} forwarded, {} received", cluster.getForwardedCount(),
+                        cluster.getReceivedCount());
+        }
+        if (frontier instanceof PriorityUrlFrontier) {
+            logger.info("URLs Re-Prioritized: {}", ((PriorityUrlFrontier) frontier).getRescoredCount());
+        }
+        if (robotsCache != null) {
+            logger.info("Robots.txt: {} hosts, {} fetch failures, {} URLs disallowed", robotsCache.getHostCount(),
+                        robotsCache.getFailureCount(), robotsCache.getDisallowedCount());
+        }
+        if (sitemapUrlCount != null) {
+            logger.info("Sitemap URLs Queued: {}", sitemapUrlCount.sum());
+        }
+        if (linkGraphWriter != null) {
+            logger.info("Link Graph: {} pages with links recorded, {} URLs", linkGraphWriter.getRecordCount(),
+                        linkGraphWriter.getUrlCount());
+        }
+        if (pageBufferPool != null) {
+            logger.info("Page Buffers: {} acquired, {} reused, {} oversized, {} KB allocated off-heap",
+                        pageBufferPool.getAcquireCount(), pageBufferPool.getReuseCount(),
+                        pageBufferPool.getOversizedCount(), pageBufferPool.getAllocatedBytes() / 1024);
+        }
         logger.info("Output Directory: {}", contentSaver.getOutputDirectory().getAbsolutePath());
         logger.info("=================================================");
     }
+
+    /**
+     * Applies a host's robots.txt once it has been fetched: passes its
+     * Crawl-delay to the frontier and, the first time, starts reading its
+     * sitemaps in the background.
+     * 
+     * @param origin The host's scheme, host and port
+     * @param rules The host's rules
+     */
+    private void robotsLoaded(String origin, RobotsRules rules) {
+        frontier.setCrawlDelay(origin, rules.getCrawlDelayMillis());
+        if (!sitemaps || crawlStopped || !sitemapOrigins.add(origin)) {
+            return;
+        }
+
+        List<String> sitemapUrls = rules.getSitemaps().isEmpty()
+            ? Collections.singletonList(origin + "/sitemap.xml")
+            : rules.getSitemaps();
+        urlManager.openFeed();
+        try {
+            sitemapExecutor.execute(() -> {
+                try {
+                    SitemapReader reader = new SitemapReader(MAX_SITEMAPS_PER_HOST);
+                    for (String sitemapUrl : sitemapUrls) {
+                        if (crawlStopped) {
+                            break;
+                        }
+                        reader.read(sitemapUrl, this::queueSitemapUrl);
+                    }
+                } finally {
+                    urlManager.closeFeed();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            urlManager.closeFeed();
+        }
+    }
+
+    /**
+     * Queues a URL read from a sitemap, waiting while the frontier already
+     * holds plenty of URLs so a large sitemap is not copied into it whole.
+     * 
+     * @param url The URL
+     * @return false once the sitemap need not be read any further
+     */
+    private boolean queueSitemapUrl(String url) {
+        try {
+            while (urlManager.getQueueSize() >= SITEMAP_BACKLOG && !crawlStopped) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        // URLs beyond the page budget would never be crawled
+        if (crawlStopped || (long) urlManager.getCrawledCount() + urlManager.getQueueSize() >= maxPages) {
+            return false;
+        }
+        if (urlManager.addUrl(url, 1)) {
+            sitemapUrlCount.increment();
+        }
+        return true;
+    }
+
+    /**
+     * Creates the URL normalizer from the configured query options.
+     * 
+     * @return The normalizer
+     */
+    private UrlNormalizer createUrlNormalizer() {
+        UrlNormalizer.Builder normalizer = new UrlNormalizer.Builder().sortQuery(sortQueryParameters);
+        if (strippedParameters != null) {
+            normalizer.stripParameters(strippedParameters);
+        }
+        return normalizer.build();
+    }
+
+    /**
+     * Creates the default best-first scorer from the configured pattern
+     * weights, adding freshness from the page index when revalidating.
+     * 
+     * @return The scorer
+     */
+    private UrlScorer createUrlScorer() {
+        WeightedUrlScorer.Builder scorer = new WeightedUrlScorer.Builder();
+        urlPatternWeights.forEach(scorer::patternWeight);
+        if (pageIndex != null) {
+            PageMetadataIndex index = pageIndex;
+            scorer.freshness(url -> {
+                PageMetadata saved = index.get(url);
+                return saved == null ? 0 : saved.getFetchTime();
+            }, TimeUnit.DAYS.toMillis(1), 4);
+        }
+        return scorer.build();
+    }
+
+    /**
+     * Logs a latency histogram, if anything was recorded in it.
+     * 
+     * @param label The label for the log line
+     * @param latency The histogram snapshot
+     */
+    private void logLatency(String label, LatencyHistogram.Snapshot latency) {
+        if (latency.getCount() == 0) {
+            return;
+        }
+        logger.info("{}: {} ms avg, {} ms p50, {} ms p99, {} ms max", label,
+                    String.format("%.1f", latency.getMeanMillis()), String.format("%.1f", latency.getP50Millis()),
+                    String.format("%.1f", latency.getP99Millis()), String.format("%.1f", latency.getMaxMillis()));
+    }
+
+    /**
+     * Logs the per-rule rejection counts of a URL filter.
+     * 
+     * @param label The label for the log line
+     * @param urlFilter The filter
+     */
+    private void logRejections(String label, UrlFilter urlFilter) {
+        if (urlFilter.isEmpty()) {
+            return;
+        }
+        Map<String, Long> counts = urlFilter.getRejectionCounts();
+        logger.info("{}: {}", label, counts);
+    }
+
+    /**
+     * Gets the number of garbage collections since the JVM started, over all collectors.
+     */
+    private static long garbageCollectionCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(collector.getCollectionCount(), 0);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the time spent in garbage collection since the JVM started, over all collectors.
+     */
+    private static long garbageCollectionMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(collector.getCollectionTime(), 0);
+        }
+        return millis;
+    }
 }
@@ -0,0 +1,130 @@
+package com.webcrawler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Scores URLs as a sum of weighted signals around the middle bucket:
+ * <ul>
+ *   <li>depth, at {@code depthWeight} per level (negative by default, so
+ *       shallow pages come first)</li>
+ *   <li>in-links, at {@code inLinkWeight} per doubling of the links found,
+ *       so a page many pages point to moves up</li>
+ *   <li>URL patterns, each adding its weight when it is found in the URL</li>
+ *   <li>freshness, up to {@code freshnessWeight} for a page never fetched or
+ *       fetched at least {@code maxAgeMillis} ago, scaled down for copies
+ *       fetched more recently</li>
+ * </ul>
+ */
+public class WeightedUrlScorer implements UrlScorer {
+    private final double depthWeight;
+    private final double inLinkWeight;
+    private final Pattern[] patterns;
+    private final double[] patternWeights;
+    private final ToLongFunction<String> fetchTimeMillis;
+    private final long maxAgeMillis;
+    private final double freshnessWeight;
+
+    /**
+     * Private constructor - use Builder.
+     */
+    private WeightedUrlScorer(Builder builder) {
+        this.depthWeight = builder.depthWeight;
+        this.inLinkWeight = builder.inLinkWeight;
+        this.patterns = builder.patterns.toArray(new Pattern[0]);
+        this.patternWeights = builder.patternWeights.stream().mapToDouble(Double::doubleValue).toArray();
+        this.fetchTimeMillis = builder.fetchTimeMillis;
+        this.maxAgeMillis = builder.maxAgeMillis;
+        this.freshnessWeight = builder.freshnessWeight;
+    }
+
+    /**
+     * Builder for WeightedUrlScorer configuration.
+     */
+    public static class Builder {
+        private double depthWeight = -4;
+        private double inLinkWeight = 3;
+        private final List<Pattern> patterns = new ArrayList<>();
+        private final List<Double> patternWeights = new ArrayList<>();
+        private ToLongFunction<String> fetchTimeMillis;
+        private long maxAgeMillis;
+        private double freshnessWeight;
+
+        /**
+         * Sets the score added per level of depth. Defaults to -4.
+         */
+        public Builder depthWeight(double depthWeight) {
+            this.depthWeight = depthWeight;
+            return this;
+        }
+
+        /**
+         * Sets the score added each time the number of in-links doubles.
+         * Defaults to 3.
+         */
+        public Builder inLinkWeight(double inLinkWeight) {
+            this.inLinkWeight = inLinkWeight;
+            return this;
+        }
+
+        /**
+         * Adds the weight to URLs in which the regular expression is found.
+         * May be called several times; the weights of all matching patterns
+         * are added.
+         */
+        public Builder patternWeight(String regex, double weight) {
+            this.patterns.add(Pattern.compile(regex));
+            this.patternWeights.add(weight);
+            return this;
+        }
+
+        /**
+         * Favours URLs whose last fetch is old or missing.
+         *
+         * @param fetchTimeMillis Gives the time a URL was last fetched, or 0 if never
+         * @param maxAgeMillis Age at which a copy earns the full weight
+         * @param freshnessWeight Score added for a URL never fetched
+         */
+        public Builder freshness(ToLongFunction<String> fetchTimeMillis, long maxAgeMillis, double freshnessWeight) {
+            this.fetchTimeMillis = fetchTimeMillis;
+            this.maxAgeMillis = maxAgeMillis;
+            this.freshnessWeight = freshnessWeight;
+            return this;
+        }
+
+        public WeightedUrlScorer build() {
+            if (fetchTimeMillis != null && maxAgeMillis < 1) {
+                throw new IllegalArgumentException("Freshness max age must be at least 1 ms");
+            }
+            return new WeightedUrlScorer(this);
+        }
+    }
+
+    /**
+     * Only a doubling of in-links changes the score.
+     */
+    @Override
+    public boolean rescores(int inLinks) {
+        return inLinkWeight != 0 && Integer.bitCount(inLinks) == 1;
+    }
+
+    @Override
+    public double score(String url, int depth, int inLinks) {
+        double score = PriorityUrlFrontier.LEVELS / 2 + depthWeight * depth;
+        // Whole doublings, so a URL only moves bucket a handful of times however popular it gets
+        score += inLinkWeight * (31 - Integer.numberOfLeadingZeros(Math.max(1, inLinks)));
+        for (int i = 0; i < patterns.length; i++) {
+            if (patterns[i].matcher(url).find()) {
+                score += patternWeights[i];
+            }
+        }
+        if (fetchTimeMillis != null) {
+            long fetchTime = fetchTimeMillis.applyAsLong(url);
+            double age = fetchTime == 0 ? 1 : Math.min(1, (System.currentTimeMillis() - fetchTime) / (double) maxAgeMillis);
+            score += freshnessWeight * Math.max(0, age);
+        }
+        return score;
+    }
+}
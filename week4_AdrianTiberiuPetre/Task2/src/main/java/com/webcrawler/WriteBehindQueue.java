@@ -0,0 +1,401 @@
+package com.webcrawler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands pages from crawler threads to dedicated writer threads, so a worker
+ * only pays for queueing a page, not for creating and writing its file.
+ *
+ * The queue is bounded: when the writers fall behind, {@link #submit} blocks
+ * until there is room, which slows fetching to the speed of the disk instead
+ * of buffering pages without limit. Each writer takes up to
+ * {@link #MAX_BATCH_SIZE} queued pages at once and writes them back to back.
+ * With an fsync interval, written data is forced to disk at most that often,
+ * also when the queue runs dry; without one, the OS decides.
+ *
+ * A page that fails to write is counted and logged, and the writer moves on.
+ * Should every writer thread still die, submitters stop waiting and get
+ * false back, and the queued pages are written by {@link #close}.
+ */
+public class WriteBehindQueue implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    /** Most pages a writer takes from the queue at once. */
+    public static final int MAX_BATCH_SIZE = 64;
+
+    private static final long IDLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long CLOSE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final Sink sink;
+    private final BlockingQueue<PendingPage> queue;
+    private final Thread[] writers;
+    private final long fsyncIntervalNanos;
+    private final AtomicLong lastSyncNanos;
+    private final AtomicInteger maxQueueDepth;
+    private final AtomicLong writtenCount;
+    private final AtomicLong failedCount;
+    private final AtomicLong batchCount;
+    private final AtomicLong blockedCount;
+    private final AtomicLong syncCount;
+    private final LatencyHistogram latency;
+    private final AtomicInteger liveWriters;
+    private final AtomicInteger activeSubmitters;
+    private volatile boolean closed;
+
+    /**
+     * Where queued pages are written.
+     */
+    interface Sink {
+        /**
+         * Writes a page. The body is released once this returns.
+         */
+        void write(String url, PageBody body, int depth, String title) throws IOException;
+
+        /**
+         * Forces everything written so far to disk.
+         */
+        void sync() throws IOException;
+    }
+
+    /**
+     * A page waiting to be written.
+     */
+    private static final class PendingPage {
+        private final String url;
+        private final PageBody body;
+        private final int depth;
+        private final String title;
+        private final long enqueuedNanos;
+
+        PendingPage(String url, PageBody body, int depth, String title) {
+            this.url = url;
+            this.body = body;
+            this.depth = depth;
+            this.title = title;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Starts the writer threads.
+     *
+     * @param sink Where pages are written
+     * @param capacity Pages that can wait before submitters block
+     * @param writerThreads Number of writer threads
+     * @param fsyncIntervalMillis Milliseconds between forced syncs, or 0 to never force
+     */
+    public WriteBehindQueue(Sink sink, int capacity, int writerThreads, long fsyncIntervalMillis) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least 1");
+        }
+        if (writerThreads < 1) {
+            throw new IllegalArgumentException("Writer threads must be at least 1");
+        }
+        if (fsyncIntervalMillis < 0) {
+            throw new IllegalArgumentException("Fsync interval must not be negative");
+        }
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.lastSyncNanos = new AtomicLong(System.nanoTime());
+        this.maxQueueDepth = new AtomicInteger();
+        this.writtenCount = new AtomicLong();
+        this.failedCount = new AtomicLong();
+        this.batchCount = new AtomicLong();
+        this.blockedCount = new AtomicLong();
+        this.syncCount = new AtomicLong();
+        this.latency = new LatencyHistogram();
+        this.liveWriters = new AtomicInteger(writerThreads);
+        this.activeSubmitters = new AtomicInteger();
+        this.writers = new Thread[writerThreads];
+        for (int i = 0; i < writerThreads; i++) {
+            writers[i] = new Thread(this::writeLoop, "content-writer-" + (i + 1));
+            writers[i].setDaemon(true);
+            writers[i].start();
+        }
+    }
+
+    /**
+     * Queues a page for writing, blocking while the queue is full.
+     *
+     * @param url The URL of the page
+     * @param content The HTML content
+     * @param depth The crawl depth
+     * @param title The page title
+     * @return true if the page was queued, false if the queue is closed, no writer is running
+     *         or the thread was interrupted while waiting
+     */
+    public boolean submit(String url, String content, int depth, String title) {
+        try (PageBody body = PageBody.of(content)) {
+            return submit(url, body, depth, title);
+        }
+    }
+
+    /**
+     * Queues a page held in a pooled buffer for writing, blocking while the
+     * queue is full. The queue holds its own reference to the body until the
+     * page is written.
+     *
+     * @param url The URL of the page
+     * @param body The page body
+     * @param depth The crawl depth
+     * @param title The page title
+     * @return true if the page was queued, false if the queue is closed, no writer is running
+     *         or the thread was interrupted while waiting
+     */
+    public boolean submit(String url, PageBody body, int depth, String title) {
+        // Registered before checking closed, so close waits for this page
+        activeSubmitters.incrementAndGet();
+        try {
+            if (closed) {
+                logger.error("Failed to save content from {}: writer is closed", url);
+                return false;
+            }
+            if (liveWriters.get() == 0) {
+                failedCount.incrementAndGet();
+                logger.error("Failed to save content from {}: no content writer is running", url);
+                return false;
+            }
+            PendingPage page = new PendingPage(url, body.retain(), depth, title);
+            if (!queue.offer(page)) {
+                blockedCount.incrementAndGet();
+                try {
+                    while (!queue.offer(page, IDLE_POLL_NANOS, TimeUnit.NANOSECONDS)) {
+                        if (liveWriters.get() == 0 && !closed) {
+                            failedCount.incrementAndGet();
+                            logger.error("Failed to save content from {}: no content writer is running", url);
+                            page.body.close();
+                            return false;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.warn("Interrupted while queueing {}", url);
+                    page.body.close();
+                    return false;
+                }
+            }
+            maxQueueDepth.accumulateAndGet(queue.size(), Math::max);
+            return true;
+        } finally {
+            activeSubmitters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the number of pages waiting to be written.
+     *
+     * @return Current queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the largest queue depth seen.
+     *
+     * @return Maximum queue depth
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    /**
+     * Gets the number of pages written.
+     *
+     * @return Written page count, excluding failures
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Gets the number of pages that could not be written.
+     *
+     * @return Failed page count
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Gets the number of batches the writers took from the queue.
+     *
+     * @return Batch count
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Gets the number of submissions that had to wait for room in the queue.
+     *
+     * @return Blocked submission count
+     */
+    public long getBlockedCount() {
+        return blockedCount.get();
+    }
+
+    /**
+     * Gets the number of forced syncs.
+     *
+     * @return Sync count
+     */
+    public long getSyncCount() {
+        return syncCount.get();
+    }
+
+    /**
+     * Gets the distribution of times from queueing a page to having written it.
+     *
+     * @return Write latency so far
+     */
+    public LatencyHistogram.Snapshot getLatency() {
+        return latency.snapshot();
+    }
+
+    /**
+     * Gets the mean time from queueing a page to having written it.
+     *
+     * @return Mean latency in milliseconds
+     */
+    public double getAverageLatencyMillis() {
+        return latency.snapshot().getMeanMillis();
+    }
+
+    /**
+     * Gets the longest time from queueing a page to having written it.
+     *
+     * @return Maximum latency in milliseconds
+     */
+    public double getMaxLatencyMillis() {
+        return latency.snapshot().getMaxMillis();
+    }
+
+    /**
+     * Tells whether any writer thread is still running. Writers only stop on
+     * close, unless something they could not handle killed them.
+     *
+     * @return true if pages are still being taken from the queue
+     */
+    public boolean isWriting() {
+        return liveWriters.get() > 0;
+    }
+
+    /**
+     * Writes the pages still queued, stops the writers and, with an fsync
+     * interval, forces the written data to disk.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while waiting for content writers");
+        }
+
+        // Pages queued by submitters that raced with close, or left by writers that died.
+        // Draining while submitters are still inside submit makes room for the blocked ones.
+        List<PendingPage> remaining = new ArrayList<>();
+        while (true) {
+            // Read before draining: a submitter arriving after this sees closed and queues nothing
+            boolean idle = activeSubmitters.get() == 0;
+            queue.drainTo(remaining);
+            if (!remaining.isEmpty()) {
+                writeBatch(remaining);
+                remaining.clear();
+            } else if (idle) {
+                break;
+            } else {
+                LockSupport.parkNanos(CLOSE_POLL_NANOS);
+            }
+        }
+        if (fsyncIntervalNanos > 0) {
+            sync();
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingPage> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        long pollNanos = fsyncIntervalNanos > 0 ? Math.min(fsyncIntervalNanos, IDLE_POLL_NANOS) : IDLE_POLL_NANOS;
+        try {
+            while (true) {
+                PendingPage first = queue.poll(pollNanos, TimeUnit.NANOSECONDS);
+                if (first == null && closed) {
+                    return;
+                }
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                    writeBatch(batch);
+                    batch.clear();
+                }
+                if (fsyncIntervalNanos > 0 && System.nanoTime() - lastSyncNanos.get() >= fsyncIntervalNanos) {
+                    sync();
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Content writer interrupted");
+        } finally {
+            if (liveWriters.decrementAndGet() == 0 && !closed) {
+                logger.error("All content writers stopped; pages are no longer saved until close");
+            }
+        }
+    }
+
+    private void writeBatch(List<PendingPage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (PendingPage page : batch) {
+            try {
+                sink.write(page.url, page.body, page.depth, page.title);
+                writtenCount.incrementAndGet();
+            } catch (IOException e) {
+                failedCount.incrementAndGet();
+                logger.error("Failed to save content from {}: {}", page.url, e.getMessage());
+            } catch (RuntimeException e) {
+                failedCount.incrementAndGet();
+                logger.error("Failed to save content from {}", page.url, e);
+            } finally {
+                page.body.close();
+            }
+            latency.recordNanos(System.nanoTime() - page.enqueuedNanos);
+        }
+        batchCount.incrementAndGet();
+    }
+
+    private void sync() {
+        long last = lastSyncNanos.get();
+        // Only one writer syncs per interval
+        if (!lastSyncNanos.compareAndSet(last, System.nanoTime())) {
+            return;
+        }
+        try {
+            sink.sync();
+            syncCount.incrementAndGet();
+        } catch (IOException e) {
+            logger.error("Failed to sync saved content: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            logger.error("Failed to sync saved content", e);
+        }
+    }
+}
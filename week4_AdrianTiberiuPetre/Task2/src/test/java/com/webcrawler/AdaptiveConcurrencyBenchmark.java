@@ -0,0 +1,66 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Crawl of a server that refuses requests beyond a fixed capacity with a
+ * fixed thread pool sized by hand versus adaptive concurrency with the same
+ * pool as ceiling. A refused page is lost together with the pages only
+ * linked from it.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.webcrawler.AdaptiveConcurrencyBenchmark
+ */
+public class AdaptiveConcurrencyBenchmark {
+    private static final int PAGE_COUNT = 2000;
+    private static final int SERVER_CAPACITY = 8;
+    private static final long LATENCY_MILLIS = 20;
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.ERROR);
+
+        System.out.printf("%d pages, server serves %d requests at once with %d ms latency%n",
+            PAGE_COUNT, SERVER_CAPACITY, LATENCY_MILLIS);
+        for (int round = 0; round < 2; round++) {
+            run("Fixed 4 threads", 4, false);
+            run("Fixed 8 threads", 8, false);
+            run("Fixed 32 threads", 32, false);
+            run("Adaptive, up to 32", 32, true);
+        }
+    }
+
+    private static void run(String name, int threads, boolean adaptive) throws Exception {
+        Path outputDir = Files.createTempDirectory("adaptive-concurrency-bench");
+        try (LocalSiteServer server = new LocalSiteServer(PAGE_COUNT, 8, LATENCY_MILLIS, 1024);
+             PageFetcher fetcher = new UrlConnectionPageFetcher()) {
+            server.overloadAbove(SERVER_CAPACITY);
+            WebCrawler crawler = new WebCrawler.Builder()
+                .rootUrl(server.getRootUrl())
+                .maxDepth(Integer.MAX_VALUE)
+                .maxPages(Integer.MAX_VALUE)
+                .threadPoolSize(threads)
+                .pageFetcher(fetcher)
+                .adaptiveConcurrency(adaptive)
+                .checkpointIntervalSeconds(0)
+                .journal(false)
+                .outputPath(outputDir.toString())
+                .build();
+
+            long start = System.nanoTime();
+            crawler.start();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            CrawlMetrics metrics = crawler.getMetrics();
+            System.out.printf("%-20s %6.2f s  %5d pages  %5d refused  %6.1f pages/s  final limit %d%n",
+                name, seconds, metrics.getResponsesByStatus().getOrDefault(200, 0L),
+                server.getThrottledCount(), metrics.getResponsesByStatus().getOrDefault(200, 0L) / seconds,
+                metrics.getConcurrencyLimit());
+        } finally {
+            BenchmarkSupport.deleteRecursively(outputDir);
+        }
+    }
+}
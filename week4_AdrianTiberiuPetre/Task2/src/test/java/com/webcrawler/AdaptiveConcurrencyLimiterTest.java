@@ -0,0 +1,88 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for AdaptiveConcurrencyLimiter.
+ */
+public class AdaptiveConcurrencyLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void growsToTheCeilingAndBacksOffOncePerRoundTrip() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 8);
+        for (int i = 0; i < 20; i++) {
+            limiter.acquire();
+            limiter.release(200, SECOND);
+        }
+        assertEquals(8, limiter.getLimit());
+
+        // Responses to requests sent before the cut do not cut it again
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire();
+            limiter.release(503, SECOND);
+        }
+        assertEquals(5, limiter.getLimit());
+        assertEquals(1, limiter.getDecreaseCount());
+
+        // After slow start the limit grows by one per round trip
+        for (int i = 0; i < 6; i++) {
+            limiter.acquire();
+            limiter.release(200, SECOND);
+        }
+        assertEquals(6, limiter.getLimit());
+        assertEquals(8, limiter.getMaxLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void backsOffWhenLatencyRises() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 16);
+        for (int i = 0; i < 14; i++) {
+            limiter.acquire();
+            limiter.release(200, SECOND / 100);
+        }
+        assertEquals(16, limiter.getLimit());
+
+        for (int i = 0; i < 20 && limiter.getDecreaseCount() == 0; i++) {
+            limiter.acquire();
+            limiter.release(200, SECOND);
+        }
+        assertEquals(1, limiter.getDecreaseCount());
+        assertEquals(11, limiter.getLimit());
+
+        // A 404 is the page's problem, not the server's
+        limiter.acquire();
+        limiter.release(404, SECOND / 100);
+        assertEquals(1, limiter.getDecreaseCount());
+    }
+
+    @Test
+    public void acquireWaitsForASlotBelowTheLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 2);
+        limiter.acquire();
+        limiter.acquire();
+
+        Thread waiter = new Thread(() -> {
+            try {
+                limiter.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        waiter.join(200);
+        assertTrue("Third acquire should wait at the limit", waiter.isAlive());
+
+        limiter.release();
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+        assertEquals(2, limiter.getInFlight());
+    }
+}
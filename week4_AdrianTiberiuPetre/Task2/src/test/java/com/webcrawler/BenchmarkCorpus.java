@@ -0,0 +1,48 @@
+package com.webcrawler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads the fixed HTML and URL corpora from src/test/resources/corpus.
+ */
+final class BenchmarkCorpus {
+    static final String PAGE_URL = "https://www.example.edu/study/programmes/index.html";
+    static final String[] PAGE_NAMES = {"small", "medium", "large"};
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Reads a saved HTML page.
+     *
+     * @param name One of {@link #PAGE_NAMES}
+     * @return The page content
+     */
+    static String html(String name) {
+        return read("/corpus/html/" + name + ".html");
+    }
+
+    /**
+     * Reads the URL corpus: links as they appear in crawled pages, including
+     * duplicates, fragments, tracking parameters, mixed-case hosts and assets.
+     *
+     * @return One URL per element
+     */
+    static String[] urls() {
+        return read("/corpus/urls.txt").split("\n");
+    }
+
+    private static String read(String resource) {
+        try (InputStream in = BenchmarkCorpus.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Missing corpus resource: " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
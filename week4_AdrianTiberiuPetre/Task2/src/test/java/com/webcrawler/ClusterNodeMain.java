@@ -0,0 +1,30 @@
+package com.webcrawler;
+
+import java.util.Arrays;
+
+/**
+ * Runs one cluster node in its own JVM, for tests that start several nodes
+ * as local processes.
+ *
+ * Arguments: root URL, output path, node index, comma-separated host:port of
+ * every node.
+ */
+public class ClusterNodeMain {
+
+    public static void main(String[] args) {
+        new WebCrawler.Builder()
+            .rootUrl(args[0])
+            .outputPath(args[1])
+            .clusterNodeIndex(Integer.parseInt(args[2]))
+            .clusterNodes(Arrays.asList(args[3].split(",")))
+            .stayInDomain(false)
+            .maxDepth(10)
+            .maxPages(Integer.MAX_VALUE)
+            .threadPoolSize(4)
+            .metricsReportIntervalSeconds(0)
+            .journal(true)
+            .build()
+            .start();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,46 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the compact URL representation.
+ */
+public class CompactUrlTest {
+
+    @Test
+    public void roundTripsAndSharesOrigin() {
+        OriginInterner origins = new OriginInterner();
+        CompactUrl first = CompactUrl.of("https://a.com:8443/x/y?q=1", origins);
+        CompactUrl second = CompactUrl.of("https://a.com:8443/z", origins);
+
+        assertEquals("https://a.com:8443/x/y?q=1", first.toString());
+        assertEquals("https://a.com:8443", first.getOrigin());
+        assertSame(first.getOrigin(), second.getOrigin());
+        assertEquals(1, origins.size());
+        assertEquals("https://a.com:8443", CompactUrl.of("https://a.com:8443").toString());
+    }
+
+    @Test
+    public void equalUrlsAreEqualKeys() {
+        CompactUrl url = CompactUrl.of("http://a.com/café?x=1");
+
+        assertEquals(CompactUrl.of("http://a.com/café?x=1"), url);
+        assertEquals(CompactUrl.of("http://a.com/café?x=1").hashCode(), url.hashCode());
+        assertEquals("http://a.com/café?x=1", url.toString());
+        assertNotEquals(CompactUrl.of("http://b.com/café?x=1"), url);
+        assertNotEquals(CompactUrl.of("http://a.com/Café?x=1"), url);
+    }
+
+    @Test
+    public void staysEqualAcrossInterners() {
+        CompactUrl shared = CompactUrl.of("https://other.example/a", new OriginInterner());
+        CompactUrl own = CompactUrl.of("https://other.example/a");
+
+        assertEquals(shared, own);
+        assertEquals(shared.hashCode(), own.hashCode());
+    }
+}
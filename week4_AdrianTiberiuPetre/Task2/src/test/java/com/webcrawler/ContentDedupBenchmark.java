@@ -0,0 +1,84 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Crawl of a site that links every page under several session URLs, with
+ * and without content deduplication. CPU time is that of the whole process,
+ * so it includes the embedded server. This is a wall-clock run of the whole
+ * crawl; the per-page cost of hashing is measured by ContentHashBenchmark.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.webcrawler.ContentDedupBenchmark
+ */
+public class ContentDedupBenchmark {
+    private static final int PAGE_COUNT = 500;
+    private static final int VARIANTS = 4;
+    private static final int PAGE_BYTES = 100 * 1024;
+    private static final int THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.ERROR);
+
+        System.out.printf("%d pages of %d KB, each linked under %d URLs, %d threads%n",
+            PAGE_COUNT, PAGE_BYTES / 1024, VARIANTS, THREADS);
+        for (int round = 0; round < 2; round++) {
+            run("Without dedup", false, false);
+            run("Content dedup", true, false);
+            run("Without dedup, streamed", false, true);
+            run("Content dedup, streamed", true, true);
+        }
+    }
+
+    private static void run(String name, boolean dedupContent, boolean streamToDisk) throws Exception {
+        Path outputDir = Files.createTempDirectory("content-dedup-bench");
+        try (LocalSiteServer server = new LocalSiteServer(PAGE_COUNT, 8, 0, PAGE_BYTES)) {
+            server.linkVariants(VARIANTS);
+            WebCrawler crawler = new WebCrawler.Builder()
+                .rootUrl(server.getRootUrl())
+                .maxDepth(Integer.MAX_VALUE)
+                .maxPages(Integer.MAX_VALUE)
+                .threadPoolSize(THREADS)
+                .dedupContent(dedupContent)
+                .streamToDisk(streamToDisk)
+                .checkpointIntervalSeconds(0)
+                .outputPath(outputDir.toString())
+                .build();
+
+            long cpuBefore = processCpuNanos();
+            long start = System.nanoTime();
+            crawler.start();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double cpuSeconds = (processCpuNanos() - cpuBefore) / 1e9;
+
+            System.out.printf("%-26s %6.2f s  %6.2f s CPU  %5d requests  %5d pages on disk (%6.1f MB)%n",
+                name, seconds, cpuSeconds, server.getRequestCount(), countPages(outputDir), diskBytes(outputDir) / 1e6);
+        } finally {
+            BenchmarkSupport.deleteRecursively(outputDir);
+        }
+    }
+
+    private static long countPages(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(".html")).count();
+        }
+    }
+
+    private static long diskBytes(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(".html")).mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+            .getProcessCpuTime();
+    }
+}
@@ -0,0 +1,52 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Unit tests for ContentDeduplicator.
+ */
+public class ContentDeduplicatorTest {
+    private Path tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("content-dedup-test");
+    }
+
+    @After
+    public void tearDown() {
+        BenchmarkSupport.deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void laterUrlsWithSameBodyAreAliasesOfTheFirst() throws IOException {
+        Path aliasFile = tempDir.resolve("aliases.tsv");
+        try (ContentDeduplicator dedup = new ContentDeduplicator(aliasFile)) {
+            String hash = PageMetadata.hashOf("<html>same</html>".getBytes());
+
+            assertNull(dedup.register(hash, "http://example.com/a"));
+            assertEquals("http://example.com/a", dedup.register(hash, "http://example.com/a?session=1"));
+            assertNull(dedup.register(PageMetadata.hashOf("<html>other</html>".getBytes()), "http://example.com/b"));
+            // Registering the original again does not make it a duplicate of itself
+            assertNull(dedup.register(hash, "http://example.com/a"));
+
+            dedup.recordAlias("http://example.com/a?session=1", "http://example.com/a", 17);
+            assertEquals(2, dedup.getUniqueCount());
+            assertEquals(1, dedup.getDuplicateCount());
+            assertEquals(17, dedup.getDuplicateBytes());
+        }
+
+        assertEquals(Arrays.asList("http://example.com/a?session=1\thttp://example.com/a"),
+            Files.readAllLines(aliasFile));
+    }
+}
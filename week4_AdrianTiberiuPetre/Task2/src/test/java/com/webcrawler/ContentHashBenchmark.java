@@ -0,0 +1,66 @@
+package com.webcrawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What content deduplication adds to each crawled page on the crawler
+ * thread: hashing the body, and looking the hash up when the body is
+ * already saved under another URL. ContentDedupBenchmark measures the
+ * whole crawl, where the saved writes make up for it.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="ContentHashBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentHashBenchmark {
+    @Param({"small", "medium", "large"})
+    private String page;
+
+    private byte[] body;
+    private Path dir;
+    private ContentDeduplicator contentDedup;
+
+    @Setup
+    public void setUp() throws Exception {
+        body = BenchmarkCorpus.html(page).getBytes(StandardCharsets.UTF_8);
+        dir = Files.createTempDirectory("content-hash-bench");
+        contentDedup = new ContentDeduplicator(dir.resolve("aliases.tsv"));
+        contentDedup.register(PageMetadata.hashOf(body), BenchmarkCorpus.PAGE_URL);
+    }
+
+    @TearDown
+    public void tearDown() {
+        contentDedup.close();
+        BenchmarkSupport.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public String hash() {
+        return PageMetadata.hashOf(body);
+    }
+
+    @Benchmark
+    public String hashAndRegisterDuplicate() {
+        return contentDedup.register(PageMetadata.hashOf(body), BenchmarkCorpus.PAGE_URL + "?session=1");
+    }
+}
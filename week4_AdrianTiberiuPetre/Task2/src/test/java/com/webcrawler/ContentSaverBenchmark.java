@@ -0,0 +1,86 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ContentSaver filename generation and page write throughput.
+ *
+ * Pages are written under a temporary directory, cycling through a fixed
+ * set of URLs so the directory size stays bounded. Per-page INFO logging
+ * is switched off so the numbers reflect the file I/O.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="ContentSaverBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContentSaverBenchmark {
+    private static final int DISTINCT_FILES = 1000;
+
+    private String[] urls;
+    private Path outputDir;
+    private ContentSaver contentSaver;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.WARN);
+
+        urls = BenchmarkCorpus.urls();
+        outputDir = Files.createTempDirectory("saver-bench");
+        contentSaver = new ContentSaver(outputDir.toString());
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkSupport.deleteRecursively(outputDir);
+    }
+
+    /**
+     * The page written by saveContent; kept separate so that
+     * generateFilename is not repeated for every page size.
+     */
+    @State(Scope.Benchmark)
+    public static class Page {
+        @Param({"small", "medium", "large"})
+        private String name;
+
+        private String html;
+
+        @Setup
+        public void load() {
+            html = BenchmarkCorpus.html(name);
+        }
+    }
+
+    @Benchmark
+    public String generateFilename() {
+        return contentSaver.generateFilename(urls[next++ % urls.length]);
+    }
+
+    @Benchmark
+    public boolean saveContent(Page page) {
+        String url = BenchmarkCorpus.PAGE_URL + "?page=" + (next++ % DISTINCT_FILES);
+        return contentSaver.saveContent(url, page.html, 1, "Benchmark page");
+    }
+}
@@ -0,0 +1,182 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Unit tests for ContentSaver's streaming page writer and compression.
+ */
+public class ContentSaverTest {
+    private static final String URL = "http://example.com/page";
+
+    private Path outputDir;
+    private ContentSaver contentSaver;
+
+    @Before
+    public void setUp() throws IOException {
+        outputDir = Files.createTempDirectory("saver-test");
+        contentSaver = new ContentSaver(outputDir.toString());
+    }
+
+    @After
+    public void tearDown() {
+        BenchmarkSupport.deleteRecursively(outputDir);
+    }
+
+    @Test
+    public void holdsBodyUntilTitleIsKnown() throws IOException {
+        byte[] body = "<html><head><title>Café</title></head><body>über</body></html>"
+            .getBytes(StandardCharsets.UTF_8);
+
+        try (ContentSaver.PageWriter writer = contentSaver.openPage(URL, 2)) {
+            writer.write(ByteBuffer.wrap(body, 0, 10));
+            assertFalse(writer.isHeaderWritten());
+            writer.setTitle("Café");
+            assertTrue(writer.isHeaderWritten());
+            writer.write(ByteBuffer.wrap(body, 10, body.length - 10));
+            assertEquals(body.length, writer.getBytesWritten());
+        }
+
+        String saved = readSaved();
+        assertTrue(saved.contains("<!-- Page Title: Café -->"));
+        assertTrue(saved.contains("<!-- Depth Level: 2 -->"));
+        assertArrayEquals(body, savedBody());
+    }
+
+    @Test
+    public void writesHeaderOnceHeldBytesRunOut() throws IOException {
+        byte[] body = new byte[ContentSaver.PageWriter.MAX_HELD_BYTES * 3];
+        Arrays.fill(body, (byte) 'x');
+
+        try (ContentSaver.PageWriter writer = contentSaver.openPage(URL, 0)) {
+            for (int offset = 0; offset < body.length; offset += 1000) {
+                writer.write(ByteBuffer.wrap(body, offset, Math.min(1000, body.length - offset)));
+            }
+            assertTrue(writer.isHeaderWritten());
+            writer.setTitle("Too late");
+        }
+
+        assertTrue(readSaved().contains("<!-- Page Title:  -->"));
+        assertArrayEquals(body, savedBody());
+    }
+
+    @Test
+    public void writesHeaderOnCloseForShortPages() throws IOException {
+        try (ContentSaver.PageWriter writer = contentSaver.openPage(URL, 1)) {
+            writer.write(ByteBuffer.wrap("<p>hi</p>".getBytes(StandardCharsets.UTF_8)));
+        }
+
+        String saved = readSaved();
+        assertTrue(saved.startsWith("<!-- Crawled URL: " + URL + " -->"));
+        assertTrue(saved.endsWith("-->\n\n<p>hi</p>"));
+    }
+
+    @Test
+    public void compressedPagesReadBackWithAndWithoutTheSaver() throws IOException {
+        String content = "<html><body>" + "<p>compressible</p>".repeat(200) + "</body></html>";
+        byte[] streamed = content.replace("compressible", "streamed").getBytes(StandardCharsets.UTF_8);
+        String streamedUrl = URL + "/streamed";
+
+        try (ContentSaver saver = new ContentSaver(outputDir.toString(), OutputFormat.FILES, Compression.GZIP, 0, 1, 0)) {
+            assertTrue(saver.saveContent(URL, content, 1, "Compressed"));
+            try (ContentSaver.PageWriter writer = saver.openPage(streamedUrl, 1)) {
+                writer.write(ByteBuffer.wrap(streamed));
+                writer.setTitle("Streamed");
+            }
+
+            CompressionStats stats = saver.getCompressionStats();
+            assertEquals(2, stats.getCount());
+            assertTrue(stats.getRatio() > 10);
+            try (InputStream body = saver.openSavedBody(streamedUrl)) {
+                assertArrayEquals(streamed, body.readAllBytes());
+            }
+        }
+
+        Path file = outputDir.resolve(contentSaver.generateFilename(URL) + ".gz");
+        assertFalse(Files.exists(savedFile()));
+        try (InputStream in = StoredPageReader.open(file)) {
+            String saved = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(saved.contains("<!-- Page Title: Compressed -->"));
+            assertTrue(saved.endsWith(content));
+        }
+        // A saver without compression still finds the compressed copy
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        assertTrue(StoredPageReader.copyPage(outputDir, URL, body));
+        assertEquals(content, body.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void recordsTheCharsetBodiesAreSavedIn() throws IOException {
+        Charset latin1 = StandardCharsets.ISO_8859_1;
+        String content = "<html><body>Café über</body></html>";
+        String streamedUrl = URL + "/streamed";
+
+        try (PageBody body = PageBody.read(new ByteArrayInputStream(content.getBytes(latin1)), latin1,
+                                           new PageBufferPool(1024 * 1024))) {
+            assertTrue(contentSaver.saveContent(URL, body, 0, "Café"));
+        }
+        try (ContentSaver.PageWriter writer = contentSaver.openPage(streamedUrl, 0, latin1)) {
+            writer.write(ByteBuffer.wrap(content.getBytes(latin1)));
+        }
+
+        assertTrue(readSaved().contains("<!-- Charset: ISO-8859-1 -->"));
+        assertArrayEquals(content.getBytes(latin1), savedBody());
+        assertEquals(latin1, contentSaver.readSavedCharset(URL));
+        assertEquals(latin1, contentSaver.readSavedCharset(streamedUrl));
+        assertNull(StoredPageReader.readCharset(outputDir, URL + "/other"));
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        assertTrue(StoredPageReader.copyPage(outputDir, streamedUrl, copy));
+        assertEquals(content, copy.toString(StoredPageReader.readCharset(outputDir, streamedUrl)));
+
+        // Pages saved before the header recorded a charset were UTF-8; latin1 keeps every byte as it is
+        String file = new String(Files.readAllBytes(savedFile()), latin1);
+        Files.write(savedFile(), file.replace("<!-- Charset: ISO-8859-1 -->\n", "").getBytes(latin1));
+        assertEquals(StandardCharsets.UTF_8, contentSaver.readSavedCharset(URL));
+    }
+
+    private String readSaved() throws IOException {
+        return new String(Files.readAllBytes(savedFile()), StandardCharsets.UTF_8);
+    }
+
+    private byte[] savedBody() throws IOException {
+        byte[] file = Files.readAllBytes(savedFile());
+        byte[] separator = "================================================ -->\n\n".getBytes(StandardCharsets.UTF_8);
+        int start = indexOf(file, separator) + separator.length;
+        return Arrays.copyOfRange(file, start, file.length);
+    }
+
+    private Path savedFile() {
+        return outputDir.resolve(contentSaver.generateFilename(URL));
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        outer:
+        for (int i = 0; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,182 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for CrawlCheckpoint journaling, compaction and restore.
+ */
+public class CrawlCheckpointTest {
+    private Path tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("checkpoint-test");
+    }
+
+    @After
+    public void tearDown() {
+        BenchmarkSupport.deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void closeWritesSnapshotOfFinalState() {
+        Path directory = tempDir.resolve("run");
+        CrawlCheckpoint checkpoint = CrawlCheckpoint.create(directory, 60);
+        checkpoint.start();
+        checkpoint.recordQueued("http://example.com", 0);
+        checkpoint.recordQueued("http://example.com/a", 1);
+        checkpoint.recordQueued("http://example.com/b", 1);
+        checkpoint.recordCrawled();
+        checkpoint.recordCompleted("http://example.com");
+        checkpoint.close();
+
+        RecordingVisitor state = restore(CrawlCheckpoint.resume(directory, 60, directory));
+
+        assertEquals(Arrays.asList("http://example.com"), state.visited);
+        assertEquals(Arrays.asList("1 http://example.com/a", "1 http://example.com/b"), state.queued);
+        assertEquals(1, state.crawledCount);
+    }
+
+    @Test
+    public void periodicCheckpointsCarryStateForward() throws Exception {
+        Path directory = tempDir.resolve("run");
+        CrawlCheckpoint checkpoint = CrawlCheckpoint.create(directory, 1);
+        checkpoint.start();
+        checkpoint.recordQueued("http://example.com", 0);
+        checkpoint.recordQueued("http://example.com/a", 1);
+        checkpoint.recordCrawled();
+        checkpoint.recordCompleted("http://example.com");
+        waitForCheckpoints(checkpoint, 1);
+
+        checkpoint.recordQueued("http://example.com/b", 1);
+        checkpoint.recordCrawled();
+        checkpoint.recordCompleted("http://example.com/a");
+        checkpoint.close();
+
+        RecordingVisitor state = restore(CrawlCheckpoint.resume(tempDir.resolve("copy"), 60, directory));
+
+        assertEquals(Arrays.asList("http://example.com", "http://example.com/a"), state.visited);
+        assertEquals(Arrays.asList("1 http://example.com/b"), state.queued);
+        assertEquals(2, state.crawledCount);
+    }
+
+    @Test
+    public void resumesFromJournalOfUnclosedCheckpoint() throws Exception {
+        Path directory = tempDir.resolve("run");
+        CrawlCheckpoint crashed = CrawlCheckpoint.create(directory, 3600);
+        crashed.start();
+        try {
+            crashed.recordQueued("http://example.com", 0);
+            crashed.recordQueued("http://example.com/a", 1);
+            crashed.recordCrawled();
+            crashed.recordCompleted("http://example.com");
+            // Let the journal be flushed, as if the JVM died afterwards
+            Thread.sleep(1000);
+
+            RecordingVisitor state = restore(CrawlCheckpoint.resume(tempDir.resolve("copy"), 60, directory));
+
+            assertEquals(Arrays.asList("http://example.com"), state.visited);
+            assertEquals(Arrays.asList("1 http://example.com/a"), state.queued);
+            assertEquals(1, state.crawledCount);
+        } finally {
+            crashed.close();
+        }
+    }
+
+    @Test
+    public void stopsRecordingWhenWriterFails() throws Exception {
+        Path directory = tempDir.resolve("run");
+        CrawlCheckpoint checkpoint = CrawlCheckpoint.create(directory, 1);
+        checkpoint.start();
+        try {
+            checkpoint.recordQueued("http://example.com", 0);
+            // The next checkpoint cannot open a new journal
+            BenchmarkSupport.deleteRecursively(directory);
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!checkpoint.isFailed() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            assertTrue(checkpoint.isFailed());
+            checkpoint.recordQueued("http://example.com/a", 1);
+            checkpoint.recordCrawled();
+        } finally {
+            checkpoint.close();
+        }
+    }
+
+    @Test
+    public void urlManagerRestoresVisitedQueueAndCount() throws Exception {
+        Path directory = tempDir.resolve("run");
+        CrawlCheckpoint checkpoint = CrawlCheckpoint.create(directory, 60);
+        checkpoint.start();
+        UrlManager first = new UrlManager.Builder()
+            .rootUrl("http://example.com/")
+            .checkpoint(checkpoint)
+            .build();
+        first.addUrl("http://example.com/", 0);
+        UrlManager.UrlDepthPair root = first.takeNextUrl();
+        first.incrementCrawledCount();
+        first.addUrl("http://example.com/a", 1);
+        first.addUrl("http://example.com/b", 1);
+        first.markCompleted(root);
+        checkpoint.close();
+
+        CrawlCheckpoint resumed = CrawlCheckpoint.resume(directory, 60, directory);
+        UrlManager second = new UrlManager.Builder().rootUrl("http://example.com/").build();
+        second.restore(resumed);
+
+        assertEquals(1, second.getCrawledCount());
+        assertEquals(3, second.getTotalDiscoveredUrls());
+        assertTrue(!second.addUrl("http://example.com/", 0));
+        assertEquals("http://example.com/a", second.takeNextUrl().getUrl());
+        assertEquals("http://example.com/b", second.takeNextUrl().getUrl());
+    }
+
+    private static RecordingVisitor restore(CrawlCheckpoint checkpoint) {
+        RecordingVisitor visitor = new RecordingVisitor();
+        checkpoint.restore(visitor);
+        return visitor;
+    }
+
+    private static void waitForCheckpoints(CrawlCheckpoint checkpoint, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (checkpoint.getCheckpointCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(checkpoint.getCheckpointCount() >= count);
+    }
+
+    private static final class RecordingVisitor implements CrawlCheckpoint.StateVisitor {
+        private final List<String> visited = new ArrayList<>();
+        private final List<String> queued = new ArrayList<>();
+        private int crawledCount;
+
+        @Override
+        public void visited(String url) {
+            visited.add(url);
+        }
+
+        @Override
+        public void queued(String url, int depth) {
+            queued.add(depth + " " + url);
+        }
+
+        @Override
+        public void crawledCount(int count) {
+            crawledCount = count;
+        }
+    }
+}
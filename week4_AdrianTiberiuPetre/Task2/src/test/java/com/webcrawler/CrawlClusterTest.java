@@ -0,0 +1,251 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crawls spread over several cluster nodes, in threads and in processes,
+ * against local sites on different ports.
+ */
+public class CrawlClusterTest {
+    private static final int SITES = 5;
+    private static final int PAGES_PER_SITE = 12;
+    private static final int NODES = 3;
+
+    private final List<LocalSiteServer> sites = new ArrayList<>();
+    private Path tempDir;
+
+    @Before
+    public void setUp() throws Exception {
+        tempDir = Files.createTempDirectory("cluster-test");
+        for (int i = 0; i < SITES; i++) {
+            sites.add(new LocalSiteServer(PAGES_PER_SITE, 3, 0, 64));
+        }
+        // Every other site hangs off the first one's root page
+        for (int i = 1; i < SITES; i++) {
+            sites.get(0).addRootLink(sites.get(i).getRootUrl());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        sites.forEach(LocalSiteServer::close);
+        BenchmarkSupport.deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void partitionsUrlsByHostAndPort() {
+        Set<Integer> owners = new HashSet<>();
+        for (int port = 8000; port < 8030; port++) {
+            int owner = CrawlCluster.ownerOf("http://localhost:" + port + "/", NODES);
+            assertEquals(owner, CrawlCluster.ownerOf("http://localhost:" + port + "/page/7?q=1", NODES));
+            owners.add(owner);
+        }
+        assertEquals(NODES, owners.size());
+    }
+
+    @Test
+    public void portInUseFailsBeforeAnythingStarts() throws Exception {
+        List<String> nodes = freeNodeAddresses();
+        String[] node = nodes.get(0).split(":");
+        Set<Thread> before = Thread.getAllStackTraces().keySet();
+        try (ServerSocket taken = new ServerSocket(Integer.parseInt(node[1]))) {
+            WebCrawler crawler = new WebCrawler.Builder()
+                .rootUrl(sites.get(0).getRootUrl())
+                .outputPath(nodeDir(0).toString())
+                .clusterNodes(nodes)
+                .clusterNodeIndex(0)
+                .metricsPort(0)
+                .build();
+            try {
+                crawler.start();
+                fail("Crawl should not start on a port in use");
+            } catch (UncheckedIOException e) {
+                assertTrue(e.getMessage().contains(nodes.get(0)));
+            }
+            assertNull(crawler.getMetrics());
+        }
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            assertTrue("Left running: " + thread.getName(), before.contains(thread) || thread.isDaemon());
+        }
+    }
+
+    @Test
+    public void countsEachBatchOnceWhenResentOrCutShort() throws Exception {
+        List<String> nodes = freeNodeAddresses();
+        UrlManager urlManager = new UrlManager("http://example.com/", false, Integer.MAX_VALUE);
+        try (CrawlCluster cluster = new CrawlCluster(nodes, 1)) {
+            cluster.start(urlManager);
+            String[] node = nodes.get(1).split(":");
+
+            // A batch that arrived although its sender saw the write fail, sent again
+            try (Socket socket = new Socket(node[0], Integer.parseInt(node[1]))) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                writeBatch(out, 1, "http://a.test/1", "http://a.test/2");
+                writeBatch(out, 1, "http://a.test/1", "http://a.test/2");
+                awaitStatus(socket, out);
+            }
+            assertEquals(2, cluster.getReceivedCount());
+
+            // A batch cut off by a broken connection, then sent in full
+            try (Socket socket = new Socket(node[0], Integer.parseInt(node[1]))) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeByte(CrawlCluster.URLS);
+                out.writeInt(0);
+                out.writeLong(2);
+                out.writeInt(2);
+                out.writeUTF("http://a.test/3");
+                out.writeInt(1);
+                out.flush();
+            }
+            try (Socket socket = new Socket(node[0], Integer.parseInt(node[1]))) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                writeBatch(out, 2, "http://a.test/3", "http://a.test/4");
+                awaitStatus(socket, out);
+            }
+            assertEquals(4, cluster.getReceivedCount());
+            assertEquals(4, urlManager.getQueueSize());
+        }
+    }
+
+    private static void writeBatch(DataOutputStream out, long sequence, String... urls) throws IOException {
+        out.writeByte(CrawlCluster.URLS);
+        out.writeInt(0);
+        out.writeLong(sequence);
+        out.writeInt(urls.length);
+        for (String url : urls) {
+            out.writeUTF(url);
+            out.writeInt(1);
+        }
+    }
+
+    /**
+     * Waits until the node has handled everything sent before on the connection.
+     */
+    private static void awaitStatus(Socket socket, DataOutputStream out) throws IOException {
+        out.writeByte(CrawlCluster.STATUS);
+        out.flush();
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        in.readBoolean();
+        in.readLong();
+        in.readLong();
+    }
+
+    @Test
+    public void crawlsEveryPageOnceAcrossNodeThreads() throws Exception {
+        List<String> nodes = freeNodeAddresses();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            WebCrawler crawler = new WebCrawler.Builder()
+                .rootUrl(sites.get(0).getRootUrl())
+                .outputPath(nodeDir(i).toString())
+                .clusterNodes(nodes)
+                .clusterNodeIndex(i)
+                .stayInDomain(false)
+                .maxDepth(10)
+                .maxPages(Integer.MAX_VALUE)
+                .threadPoolSize(2)
+                .journal(true)
+                .build();
+            Thread thread = new Thread(crawler::start);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join(60_000);
+            assertFalse("Cluster node did not finish", thread.isAlive());
+        }
+
+        assertCrawledOnceByOwners();
+    }
+
+    @Test
+    public void crawlsEveryPageOnceAcrossNodeProcesses() throws Exception {
+        List<String> nodes = freeNodeAddresses();
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<Process> processes = new ArrayList<>();
+        try {
+            for (int i = 0; i < NODES; i++) {
+                Files.createDirectories(nodeDir(i));
+                ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    ClusterNodeMain.class.getName(), sites.get(0).getRootUrl(), nodeDir(i).toString(),
+                    String.valueOf(i), String.join(",", nodes));
+                // Each node logs into its own directory
+                builder.directory(nodeDir(i).toFile());
+                builder.redirectErrorStream(true);
+                builder.redirectOutput(tempDir.resolve("node-" + i + ".out").toFile());
+                processes.add(builder.start());
+            }
+            for (Process process : processes) {
+                assertTrue("Cluster node did not finish", process.waitFor(60, TimeUnit.SECONDS));
+                assertEquals(0, process.exitValue());
+            }
+        } finally {
+            processes.forEach(Process::destroyForcibly);
+        }
+
+        assertCrawledOnceByOwners();
+    }
+
+    /**
+     * Checks the journals of all nodes together hold every page exactly
+     * once, each on the node that owns its host, and that node 0 merged
+     * the totals.
+     */
+    private void assertCrawledOnceByOwners() throws IOException {
+        Set<String> crawled = new HashSet<>();
+        for (int i = 0; i < NODES; i++) {
+            for (String line : Files.readAllLines(nodeDir(i).resolve("crawl-journal.jsonl"))) {
+                String url = line.substring(line.indexOf("\"url\":\"") + 7, line.length() - 2);
+                assertTrue("Crawled twice: " + url, crawled.add(url));
+                assertEquals(i, CrawlCluster.ownerOf(url, NODES));
+            }
+        }
+        assertEquals(SITES * PAGES_PER_SITE, crawled.size());
+
+        String summary = new String(Files.readAllBytes(nodeDir(0).resolve("cluster_summary.txt")),
+                                    StandardCharsets.UTF_8);
+        assertTrue(summary.contains("Nodes: " + NODES));
+        assertTrue(summary.contains("Total Pages Crawled: " + SITES * PAGES_PER_SITE));
+        assertTrue(summary.contains("Total URLs Discovered: " + SITES * PAGES_PER_SITE));
+        assertFalse(new File(nodeDir(1).toFile(), "cluster_summary.txt").exists());
+    }
+
+    private Path nodeDir(int node) {
+        return tempDir.resolve("node-" + node);
+    }
+
+    private static List<String> freeNodeAddresses() throws IOException {
+        List<String> nodes = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                nodes.add("127.0.0.1:" + socket.getLocalPort());
+            }
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,125 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The three INFO lines crawler threads used to log per page ("Crawling",
+ * "Saved", "Progress") to a log file, versus one journal entry per page,
+ * with eight threads recording pages at once.
+ *
+ * Each iteration every thread records a fixed batch of pages into a fresh
+ * log file and journal, which are deleted afterwards so the disk use stays
+ * bounded. The score is the time per page on one thread; journal stalls,
+ * when the writer fell behind, are printed after the iteration.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="CrawlJournalBenchmark"
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class CrawlJournalBenchmark {
+    private static final int PAGES_PER_THREAD = 50_000;
+
+    private Path dir;
+    private Logger logger;
+    private FileAppender<ILoggingEvent> appender;
+    private CrawlJournal journal;
+
+    /**
+     * Which thread is recording, so threads record different URLs.
+     */
+    @State(Scope.Thread)
+    public static class Recorder {
+        private int thread;
+
+        @Setup
+        public void setUp(ThreadParams threadParams) {
+            thread = threadParams.getThreadIndex();
+        }
+    }
+
+    @Setup(org.openjdk.jmh.annotations.Level.Iteration)
+    public void open() throws Exception {
+        dir = Files.createTempDirectory("crawl-journal-bench");
+
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} [%thread] %-5level %logger{36} - %msg%n");
+        encoder.start();
+        appender = new FileAppender<>();
+        appender.setContext(context);
+        appender.setFile(dir.resolve("pages.log").toString());
+        appender.setEncoder(encoder);
+        appender.start();
+        logger = context.getLogger("com.webcrawler.benchmark.PageLog");
+        logger.setAdditive(false);
+        logger.setLevel(Level.INFO);
+        logger.addAppender(appender);
+
+        journal = new CrawlJournal(dir.resolve("crawl-journal.jsonl"), false);
+    }
+
+    @TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+    public void close() {
+        logger.detachAppender(appender);
+        appender.stop();
+        journal.close();
+        if (journal.getStallCount() > 0) {
+            System.out.printf("%n%,d journal stalls%n", journal.getStallCount());
+        }
+        BenchmarkSupport.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGES_PER_THREAD)
+    public void infoLogging(Recorder recorder) {
+        for (int page = 0; page < PAGES_PER_THREAD; page++) {
+            String url = url(recorder.thread, page);
+            logger.info("Crawling (depth {}): {}", 2, url);
+            logger.info("Saved: {} (depth: {}) -> {}", url, 2, "page_" + page + ".html");
+            logger.info("Progress: {} pages crawled, {} URLs discovered", page, page * 4);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGES_PER_THREAD)
+    public void journal(Recorder recorder) {
+        for (int page = 0; page < PAGES_PER_THREAD; page++) {
+            journal.record(url(recorder.thread, page), 2, 200, CrawlJournal.Outcome.FETCHED,
+                           5120, 1_830_000, 210_000, 95_000, 12, 4);
+        }
+    }
+
+    private static String url(int thread, int page) {
+        return BenchmarkCorpus.PAGE_URL + "?thread=" + thread + "&page=" + page;
+    }
+}
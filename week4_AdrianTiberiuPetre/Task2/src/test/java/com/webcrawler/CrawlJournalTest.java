@@ -0,0 +1,92 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for CrawlJournal.
+ */
+public class CrawlJournalTest {
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("crawl-journal-test");
+    }
+
+    @After
+    public void tearDown() {
+        BenchmarkSupport.deleteRecursively(dir);
+    }
+
+    @Test
+    public void concurrentRecordsThroughASmallRingAreAllWrittenInOrder() throws Exception {
+        Path file = dir.resolve("journal.jsonl");
+        int threads = 4;
+        int perThread = 2000;
+        CrawlJournal journal = new CrawlJournal(file, false, 8);
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    journal.record("http://example.com/" + thread + "?page=" + i, 1, i % 10 == 0 ? 404 : 200,
+                                   i % 10 == 0 ? CrawlJournal.Outcome.FAILED : CrawlJournal.Outcome.FETCHED,
+                                   100, 2_000_000, 0, 0, 3, 1);
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        journal.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(threads * perThread, lines.size());
+        Map<String, Integer> lastPage = new HashMap<>();
+        for (String line : lines) {
+            String url = line.substring(line.indexOf("\"url\":\"") + 7, line.length() - 2);
+            String thread = url.substring(0, url.indexOf('?'));
+            int page = Integer.parseInt(url.substring(url.indexOf('=') + 1));
+            assertEquals("Entries of one thread stay in order", lastPage.getOrDefault(thread, -1) + 1, page);
+            lastPage.put(thread, page);
+        }
+
+        CrawlJournal.Summary summary = CrawlJournal.summarize(file);
+        assertEquals(threads * perThread / 10, summary.getCount(CrawlJournal.Outcome.FAILED));
+        assertEquals(threads * perThread * 9 / 10, summary.getPagesCrawled());
+        assertEquals(Long.valueOf(threads * perThread / 10), summary.getStatusCounts().get(404));
+        assertEquals(threads * perThread * 100L, summary.getBytes());
+        assertEquals(threads * perThread, summary.getLinksAdded());
+        assertEquals(2.0, summary.getFetchLatency().getP50Millis(), 0.1);
+    }
+
+    @Test
+    public void escapesUrlsAndAppendsWhenResuming() throws Exception {
+        Path file = dir.resolve("journal.jsonl");
+        try (CrawlJournal journal = new CrawlJournal(file, false)) {
+            journal.record("http://example.com/a\"b\\c", 0, 200, CrawlJournal.Outcome.FETCHED, 10, 0, 0, 0, 0, 0);
+        }
+        try (CrawlJournal journal = new CrawlJournal(file, true)) {
+            journal.record("http://example.com/d", 1, 304, CrawlJournal.Outcome.NOT_MODIFIED, 0, 0, 0, 0, 0, 0);
+        }
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).endsWith(",\"url\":\"http://example.com/a\\\"b\\\\c\"}"));
+        assertEquals(2, CrawlJournal.summarize(file).getPagesCrawled());
+    }
+}
@@ -0,0 +1,105 @@
+package com.webcrawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of adding a URL to each dedup strategy, when the URL is new and when
+ * it was seen before, with a million synthetic URLs.
+ *
+ * addNew fills an empty deduplicator with every URL once per iteration;
+ * addDuplicate adds them again to one filled when the trial starts. While
+ * filling that one, the heap it retains after a full GC and the URLs it
+ * wrongly reports as seen are printed, as they are not a timing.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="DedupBenchmark"
+ * and e.g. -p bloomFalsePositiveRate=0.01 for a coarser Bloom filter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class DedupBenchmark {
+    private static final int URL_COUNT = 1_000_000;
+
+    @Param({"FINGERPRINT", "BLOOM_FILTER", "EXACT"})
+    private DedupStrategy strategy;
+
+    @Param({"0.001"})
+    private double bloomFalsePositiveRate;
+
+    private String[] urls;
+    private UrlDeduplicator filled;
+    private UrlDeduplicator empty;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        urls = new String[URL_COUNT];
+        for (int i = 0; i < URL_COUNT; i++) {
+            urls[i] = "https://www.example.edu/faculty-" + (i % 211) + "/news/article-" + i + ".html?lang=en";
+        }
+
+        long before = BenchmarkSupport.usedHeapAfterGc();
+        filled = create();
+        long falsePositives = 0;
+        for (String url : urls) {
+            if (!filled.add(url)) {
+                falsePositives++;
+            }
+        }
+        long retained = BenchmarkSupport.usedHeapAfterGc() - before;
+        System.out.printf("%n%s: %,d URLs, %.1f MB heap, %.1f bytes/URL, %,d false positives%n",
+            strategy, URL_COUNT, retained / 1e6, (double) retained / URL_COUNT, falsePositives);
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        empty = create();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OperationsPerInvocation(URL_COUNT)
+    public long addNew() {
+        long added = 0;
+        for (String url : urls) {
+            if (empty.add(url)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Benchmark
+    public boolean addDuplicate() {
+        return filled.add(urls[next++ % URL_COUNT]);
+    }
+
+    private UrlDeduplicator create() {
+        switch (strategy) {
+            case FINGERPRINT:
+                return new FingerprintUrlDeduplicator();
+            case BLOOM_FILTER:
+                return new BloomFilterUrlDeduplicator(bloomFalsePositiveRate);
+            case EXACT:
+            default:
+                return new ExactUrlDeduplicator();
+        }
+    }
+}
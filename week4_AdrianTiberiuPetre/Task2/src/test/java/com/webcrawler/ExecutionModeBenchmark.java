@@ -0,0 +1,60 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.UnaryOperator;
+
+/**
+ * Compares fixed platform pools with the virtual-thread execution mode
+ * against a local stub whose responses are slow.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.webcrawler.ExecutionModeBenchmark
+ */
+public class ExecutionModeBenchmark {
+    private static final int PAGE_COUNT = 1500;
+    private static final int FAN_OUT = 30;
+    private static final long LATENCY_MS = 200;
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.WARN);
+
+        try (LocalSiteServer server = new LocalSiteServer(PAGE_COUNT, FAN_OUT, LATENCY_MS, 1024)) {
+            System.out.printf("Site: %d pages, fan-out %d, %d ms latency, virtual threads %s%n",
+                PAGE_COUNT, FAN_OUT, LATENCY_MS,
+                VirtualThreads.isSupported() ? "available" : "unavailable (platform fallback)");
+
+            run("Platform pool, 10 threads", server,
+                builder -> builder.executionMode(ExecutionMode.PLATFORM_THREADS).threadPoolSize(10));
+            run("Platform pool, 50 threads", server,
+                builder -> builder.executionMode(ExecutionMode.PLATFORM_THREADS).threadPoolSize(50));
+            run("Virtual threads, 500 permits", server,
+                builder -> builder.executionMode(ExecutionMode.VIRTUAL_THREADS).maxConcurrency(500));
+        }
+    }
+
+    private static void run(String name, LocalSiteServer server,
+                            UnaryOperator<WebCrawler.Builder> configure) throws Exception {
+        Path outputDir = Files.createTempDirectory("mode-bench");
+        try (PageFetcher fetcher = new UrlConnectionPageFetcher()) {
+            WebCrawler crawler = configure.apply(new WebCrawler.Builder()
+                .rootUrl(server.getRootUrl())
+                .maxDepth(Integer.MAX_VALUE)
+                .maxPages(PAGE_COUNT)
+                .outputPath(outputDir.toString())
+                .pageFetcher(fetcher))
+                .build();
+
+            long start = System.nanoTime();
+            crawler.start();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%-30s %7.1f pages/sec (%.2f s)%n", name, PAGE_COUNT / seconds, seconds);
+        } finally {
+            BenchmarkSupport.deleteRecursively(outputDir);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+/**
+ * Wall-clock comparison of page fetchers against a local embedded HTTP server.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.webcrawler.FetcherBenchmark
+ */
+public class FetcherBenchmark {
+    private static final int PAGE_COUNT = 2000;
+    private static final int FAN_OUT = 8;
+    private static final long LATENCY_MS = 20;
+    private static final int THREADS = 10;
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.WARN);
+
+        try (LocalSiteServer server = new LocalSiteServer(PAGE_COUNT, FAN_OUT, LATENCY_MS, 2048)) {
+            System.out.printf("Site: %d pages, fan-out %d, %d ms latency, %d worker threads%n",
+                PAGE_COUNT, FAN_OUT, LATENCY_MS, THREADS);
+
+            run("HttpURLConnection (blocking)", server, UrlConnectionPageFetcher::new);
+            run("HttpClient, 64 in flight", server, () -> new HttpClientPageFetcher(64, 2));
+            run("HttpClient, 256 in flight", server, () -> new HttpClientPageFetcher(256, 2));
+        }
+    }
+
+    private static void run(String name, LocalSiteServer server, Supplier<PageFetcher> fetcherFactory)
+            throws Exception {
+        Path outputDir = Files.createTempDirectory("fetcher-bench");
+        try (PageFetcher fetcher = fetcherFactory.get()) {
+            WebCrawler crawler = new WebCrawler.Builder()
+                .rootUrl(server.getRootUrl())
+                .maxDepth(Integer.MAX_VALUE)
+                .maxPages(PAGE_COUNT)
+                .threadPoolSize(THREADS)
+                .outputPath(outputDir.toString())
+                .pageFetcher(fetcher)
+                .build();
+
+            long start = System.nanoTime();
+            crawler.start();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%-32s %6.1f pages/sec (%.2f s)%n", name, PAGE_COUNT / seconds, seconds);
+        } finally {
+            BenchmarkSupport.deleteRecursively(outputDir);
+        }
+    }
+}
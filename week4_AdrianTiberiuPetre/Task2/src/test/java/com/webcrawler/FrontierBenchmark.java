@@ -0,0 +1,58 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Wall-clock time of crawls made of many small, fast pages, where dispatch
+ * latency between depth levels dominates.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.webcrawler.FrontierBenchmark
+ */
+public class FrontierBenchmark {
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.WARN);
+
+        // Narrow fan-out gives a deep site with many depth transitions
+        run(3000, 2, 3000);
+        run(3000, 20, 3000);
+        // Page budget below the site size shows how many requests overshoot maxPages
+        run(3000, 20, 500);
+    }
+
+    private static void run(int pageCount, int fanOut, int maxPages) throws Exception {
+        try (LocalSiteServer server = new LocalSiteServer(pageCount, fanOut, 0, 256)) {
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < RUNS; i++) {
+                best = Math.min(best, crawl(server, maxPages));
+            }
+            System.out.printf("%d pages, fan-out %2d, max %4d: best of %d runs %5d ms, %d requests per run%n",
+                pageCount, fanOut, maxPages, RUNS, best, server.getRequestCount() / RUNS);
+        }
+    }
+
+    private static long crawl(LocalSiteServer server, int maxPages) throws Exception {
+        Path outputDir = Files.createTempDirectory("frontier-bench");
+        try {
+            WebCrawler crawler = new WebCrawler.Builder()
+                .rootUrl(server.getRootUrl())
+                .maxDepth(Integer.MAX_VALUE)
+                .maxPages(maxPages)
+                .threadPoolSize(8)
+                .outputPath(outputDir.toString())
+                .build();
+
+            long start = System.nanoTime();
+            crawler.start();
+            return (System.nanoTime() - start) / 1_000_000;
+        } finally {
+            BenchmarkSupport.deleteRecursively(outputDir);
+        }
+    }
+}
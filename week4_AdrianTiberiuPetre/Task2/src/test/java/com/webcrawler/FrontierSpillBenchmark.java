@@ -0,0 +1,68 @@
+package com.webcrawler;
+
+import com.webcrawler.UrlManager.UrlDepthPair;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Supplier;
+
+/**
+ * Retained heap and throughput of the in-memory and spilling frontiers when
+ * millions of URLs are queued before any is polled, as on a wide site where
+ * discovery runs far ahead of fetching.
+ *
+ * Run with:
+ * MAVEN_OPTS=-Xmx2g mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.webcrawler.FrontierSpillBenchmark -Dexec.args=5000000
+ */
+public class FrontierSpillBenchmark {
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int urlCount = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        System.out.printf("%,d queued URLs over 4 depths%n", urlCount);
+
+        Path spillDir = Files.createTempDirectory("frontier-benchmark");
+        try {
+            run("SPILLING", urlCount, () -> new SpillingUrlFrontier(spillDir.resolve("spill")));
+            run("IN_MEMORY", urlCount, InMemoryUrlFrontier::new);
+        } finally {
+            BenchmarkSupport.deleteRecursively(spillDir);
+        }
+    }
+
+    private static void run(String name, int urlCount, Supplier<UrlFrontier> factory) {
+        long before = usedHeapAfterGc();
+        try (UrlFrontier frontier = factory.get()) {
+            long start = System.nanoTime();
+            for (int i = 0; i < urlCount; i++) {
+                frontier.offer(new UrlDepthPair(url(i), i & 3));
+            }
+            double nanosPerOffer = (double) (System.nanoTime() - start) / urlCount;
+            long retained = usedHeapAfterGc() - before;
+
+            start = System.nanoTime();
+            long polled = 0;
+            while (frontier.poll() != null) {
+                polled++;
+            }
+            double nanosPerPoll = (double) (System.nanoTime() - start) / polled;
+
+            System.out.printf("%-10s %6.0f ns/offer  %6.0f ns/poll  %8.1f MB heap when full%n",
+                name, nanosPerOffer, nanosPerPoll, retained / 1e6);
+        }
+    }
+
+    private static String url(int i) {
+        return "https://www.example.edu/faculty-" + (i % 211) + "/news/article-" + i + ".html?lang=en";
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
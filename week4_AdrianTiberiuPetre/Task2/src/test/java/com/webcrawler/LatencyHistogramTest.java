@@ -0,0 +1,52 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for LatencyHistogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsKeepValuesWithinThreePercent() {
+        for (long micros = 0; micros < 100_000_000L; micros = micros * 11 / 10 + 1) {
+            long highest = LatencyHistogram.highestValueIn(LatencyHistogram.bucketOf(micros));
+            assertTrue(micros + " -> " + highest, highest >= micros);
+            assertTrue(micros + " -> " + highest, highest - micros <= micros / 32);
+        }
+    }
+
+    @Test
+    public void quantilesOfConcurrentRecordings() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int ms = 1; ms <= 1000; ms++) {
+                    histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(ms));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(4000, snapshot.getCount());
+        assertEquals(500.5, snapshot.getMeanMillis(), 0.001);
+        assertEquals(1000.0, snapshot.getMaxMillis(), 0.001);
+        assertEquals(500, snapshot.getP50Millis(), 500 * 0.03);
+        assertEquals(990, snapshot.getP99Millis(), 990 * 0.03);
+        assertEquals(1000.0, snapshot.getQuantileMillis(1.0), 0.001);
+        assertEquals(0, new LatencyHistogram().snapshot().getP99Millis(), 0);
+    }
+}
@@ -0,0 +1,64 @@
+package com.webcrawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-page parsing cost over the saved HTML corpus in src/test/resources/corpus/html.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="LinkExtractorBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinkExtractorBenchmark {
+    private static final String PAGE_URL = BenchmarkCorpus.PAGE_URL;
+
+    @Param({"small", "medium", "large"})
+    private String page;
+
+    private String html;
+    private LinkExtractor domExtractor;
+    private LinkExtractor streamingExtractor;
+
+    @Setup
+    public void setUp() {
+        html = BenchmarkCorpus.html(page);
+        domExtractor = new LinkExtractor(ParseMode.DOM);
+        streamingExtractor = new LinkExtractor(ParseMode.STREAMING);
+    }
+
+    /**
+     * The previous pipeline: one parse for the title and another for the links.
+     */
+    @Benchmark
+    public void domTwoParses(Blackhole blackhole) {
+        blackhole.consume(domExtractor.extractTitle(html));
+        blackhole.consume(domExtractor.extractLinks(html, PAGE_URL));
+    }
+
+    @Benchmark
+    public ParsedPage domSingleParse() {
+        return domExtractor.parse(html, PAGE_URL);
+    }
+
+    @Benchmark
+    public ParsedPage streaming() {
+        return streamingExtractor.parse(html, PAGE_URL);
+    }
+}
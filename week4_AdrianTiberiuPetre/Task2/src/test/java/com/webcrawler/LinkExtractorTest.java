@@ -0,0 +1,73 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Set;
+
+/**
+ * Unit tests for LinkExtractor in both parse modes.
+ */
+public class LinkExtractorTest {
+    private static final String PAGE_URL = BenchmarkCorpus.PAGE_URL;
+
+    private final LinkExtractor domExtractor = new LinkExtractor(ParseMode.DOM);
+    private final LinkExtractor streamingExtractor = new LinkExtractor(ParseMode.STREAMING);
+
+    @Test
+    public void streamingModeMatchesDomOnCorpus() throws Exception {
+        for (String name : BenchmarkCorpus.PAGE_NAMES) {
+            String html = BenchmarkCorpus.html(name);
+
+            ParsedPage dom = domExtractor.parse(html, PAGE_URL);
+            ParsedPage streaming = streamingExtractor.parse(html, PAGE_URL);
+
+            assertFalse(name, dom.getLinks().isEmpty());
+            assertEquals(name, dom.getTitle(), streaming.getTitle());
+            assertEquals(name, dom.getLinks(), streaming.getLinks());
+            assertEquals(name, dom.getTitle(), streamingExtractor.extractTitle(html));
+        }
+    }
+
+    @Test
+    public void streamingModeSkipsCommentsAndScripts() {
+        String html = "<html><head><title>A &lt;b&gt; title</title>"
+            + "<script>document.write('<a href=\"/in-script\">x</a>');</script></head>"
+            + "<body><!-- <a href=\"/in-comment\">x</a> -->"
+            + "<a href='/kept'>kept</a><a name=x>no href</a></body></html>";
+
+        ParsedPage page = streamingExtractor.parse(html, "http://example.com/dir/page");
+
+        assertEquals("A <b> title", page.getTitle());
+        assertEquals(Set.of("http://example.com/kept"), page.getLinks());
+    }
+
+    @Test
+    public void streamingModeHonoursBaseHref() {
+        String html = "<head><base href=\"http://cdn.example.com/root/\"></head>"
+            + "<body><a href=\"page\">p</a></body>";
+
+        Set<String> links = streamingExtractor.extractLinks(html, "http://example.com/");
+
+        assertTrue(links.contains("http://cdn.example.com/root/page"));
+    }
+
+    @Test
+    public void scannerHandlesChunkBoundaries() throws Exception {
+        String html = BenchmarkCorpus.html("medium");
+        ParsedPage whole = streamingExtractor.parse(html, PAGE_URL);
+
+        HtmlLinkScanner scanner = new HtmlLinkScanner(PAGE_URL, true);
+        char[] chars = html.toCharArray();
+        for (int offset = 0; offset < chars.length; offset += 7) {
+            scanner.feed(chars, offset, Math.min(7, chars.length - offset));
+        }
+        scanner.finish();
+
+        assertEquals(whole.getTitle(), scanner.getTitle());
+        assertTrue(scanner.getLinks().containsAll(whole.getLinks()));
+    }
+}
@@ -0,0 +1,71 @@
+package com.webcrawler;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Cost of recording a synthetic site's link graph during a crawl, the size
+ * of the compacted adjacency files per link, and the time of a PageRank run
+ * over the memory-mapped graph.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.webcrawler.LinkGraphBenchmark -Dexec.args=200000
+ */
+public class LinkGraphBenchmark {
+    private static final int LINKS_PER_PAGE = 30;
+    private static final int NAVIGATION_LINKS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int pageCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        Path directory = Files.createTempDirectory("link-graph-benchmark");
+        try {
+            Random random = new Random(42);
+            long start = System.nanoTime();
+            try (LinkGraphWriter writer = LinkGraphWriter.open(directory, false)) {
+                for (int page = 0; page < pageCount; page++) {
+                    // Site navigation shared by every page, plus links to nearby and random pages
+                    List<String> links = new ArrayList<>(LINKS_PER_PAGE);
+                    for (int i = 0; i < NAVIGATION_LINKS; i++) {
+                        links.add(url(i));
+                    }
+                    for (int i = NAVIGATION_LINKS; i < LINKS_PER_PAGE; i++) {
+                        int target = random.nextBoolean()
+                            ? Math.floorMod(page + random.nextInt(200) - 100, pageCount)
+                            : random.nextInt(pageCount);
+                        links.add(url(target));
+                    }
+                    writer.record(url(page), links);
+                }
+            }
+            double recordMillis = (System.nanoTime() - start) / 1e6;
+
+            LinkGraph graph = LinkGraph.open(directory);
+            long listBytes = Files.size(directory.resolve(LinkGraph.OUT_LINKS_FILE))
+                + Files.size(directory.resolve(LinkGraph.IN_LINKS_FILE));
+            long indexBytes = Files.size(directory.resolve(LinkGraph.OUT_INDEX_FILE))
+                + Files.size(directory.resolve(LinkGraph.IN_INDEX_FILE));
+            System.out.printf("%,d pages, %,d links%n", graph.getPageCount(), graph.getLinkCount());
+            System.out.printf("Record and compact: %.0f ms (%.0f ns/link)%n",
+                              recordMillis, recordMillis * 1e6 / graph.getLinkCount());
+            System.out.printf("Adjacency lists: %.2f bytes/link per direction (int arrays: 4), offsets %.1f MB%n",
+                              listBytes / 2.0 / graph.getLinkCount(), indexBytes / 1e6);
+
+            graph.pageRank(0.85, 5);
+            start = System.nanoTime();
+            graph.pageRank(0.85, 20);
+            double pageRankMillis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("PageRank: %.0f ms for 20 iterations (%.1f ns/link/iteration)%n",
+                              pageRankMillis, pageRankMillis * 1e6 / 20 / graph.getLinkCount());
+        } finally {
+            BenchmarkSupport.deleteRecursively(directory);
+        }
+    }
+
+    private static String url(int page) {
+        return "https://www.example.edu/section-" + (page % 97) + "/page-" + page + ".html";
+    }
+}
@@ -0,0 +1,146 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Unit tests for recording, compacting and querying the link graph.
+ */
+public class LinkGraphTest {
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("link-graph-test");
+    }
+
+    @After
+    public void tearDown() {
+        BenchmarkSupport.deleteRecursively(directory);
+    }
+
+    @Test
+    public void recordsLinksAndAnswersBothDirections() throws Exception {
+        try (LinkGraphWriter writer = LinkGraphWriter.open(directory, false)) {
+            writer.record("http://a.com/", Arrays.asList("http://a.com/x", "http://a.com/y",
+                                                          "http://a.com/x", "http://a.com/"));
+            writer.record("http://a.com/x", Arrays.asList("http://a.com/y", "http://b.com/"));
+            writer.record("http://a.com/y", Collections.singletonList("http://a.com/"));
+        }
+
+        LinkGraph graph = LinkGraph.open(directory);
+        int root = graph.getId("http://a.com/");
+        int x = graph.getId("http://a.com/x");
+        int y = graph.getId("http://a.com/y");
+        int b = graph.getId("http://b.com/");
+        assertEquals(4, graph.getPageCount());
+        assertEquals(5, graph.getLinkCount());
+        assertEquals(-1, graph.getId("http://a.com/z"));
+        assertEquals("http://a.com/y", graph.getUrl(y));
+        assertArrayEquals(sorted(x, y), graph.getOutLinks(root));
+        assertArrayEquals(sorted(root, x), graph.getInLinks(y));
+        assertArrayEquals(new int[] {x}, graph.getInLinks(b));
+        assertEquals(0, graph.getOutDegree(b));
+        assertEquals(1, graph.getInDegree(root));
+    }
+
+    @Test
+    public void keepsLastRecordOfPageAndAddsToGraphWhenAppending() throws Exception {
+        try (LinkGraphWriter writer = LinkGraphWriter.open(directory, false)) {
+            writer.record("http://a.com/", Arrays.asList("http://a.com/1", "http://a.com/2"));
+        }
+        try (LinkGraphWriter writer = LinkGraphWriter.open(directory, true)) {
+            writer.record("http://a.com/", Collections.singletonList("http://a.com/3"));
+            assertEquals(4, writer.getUrlCount());
+        }
+
+        LinkGraph graph = LinkGraph.open(directory);
+        assertArrayEquals(new int[] {graph.getId("http://a.com/3")}, graph.getOutLinks(graph.getId("http://a.com/")));
+        assertEquals(0, graph.getInDegree(graph.getId("http://a.com/1")));
+    }
+
+    @Test
+    public void dropsRecordTornByCrash() throws Exception {
+        try (LinkGraphWriter writer = LinkGraphWriter.open(directory, false)) {
+            writer.record("http://a.com/", Collections.singletonList("http://a.com/1"));
+        }
+        // A record announcing three links, cut off after the first
+        try (OutputStream log = Files.newOutputStream(directory.resolve(LinkGraph.EDGES_FILE),
+                                                      StandardOpenOption.APPEND)) {
+            log.write(new byte[] {1, 3, 0});
+        }
+
+        assertEquals(1, LinkGraphWriter.build(directory));
+        assertEquals(1, LinkGraph.open(directory).getLinkCount());
+    }
+
+    @Test
+    public void resumesAfterTailTornByCrash() throws Exception {
+        try (LinkGraphWriter writer = LinkGraphWriter.open(directory, false)) {
+            writer.record("http://a.com/", Arrays.asList("http://a.com/1", "http://a.com/2"));
+        }
+        // The crash left half a URL line, a record naming an id never listed, and half a record
+        try (OutputStream urls = Files.newOutputStream(directory.resolve(LinkGraph.URLS_FILE),
+                                                       StandardOpenOption.APPEND)) {
+            urls.write("http://a.com/to".getBytes(StandardCharsets.UTF_8));
+        }
+        try (OutputStream log = Files.newOutputStream(directory.resolve(LinkGraph.EDGES_FILE),
+                                                      StandardOpenOption.APPEND)) {
+            log.write(new byte[] {1, 1, 7, 2, 3, 0});
+        }
+
+        try (LinkGraphWriter writer = LinkGraphWriter.open(directory, true)) {
+            assertEquals(3, writer.getUrlCount());
+            writer.record("http://a.com/1", Arrays.asList("http://a.com/3", "http://a.com/"));
+        }
+
+        LinkGraph graph = LinkGraph.open(directory);
+        assertEquals(4, graph.getPageCount());
+        assertEquals("http://a.com/3", graph.getUrl(3));
+        assertEquals(4, graph.getLinkCount());
+        assertArrayEquals(new int[] {0, 3}, graph.getOutLinks(graph.getId("http://a.com/1")));
+        assertArrayEquals(new int[] {1, 2}, graph.getOutLinks(graph.getId("http://a.com/")));
+        assertEquals(0, graph.getOutDegree(graph.getId("http://a.com/2")));
+    }
+
+    @Test
+    public void ranksPagesByTheirInLinks() throws Exception {
+        // Every leaf links back to the hub, which links to all of them
+        try (LinkGraphWriter writer = LinkGraphWriter.open(directory, false)) {
+            writer.record("http://a.com/hub", Arrays.asList("http://a.com/1", "http://a.com/2", "http://a.com/3"));
+            for (int i = 1; i <= 3; i++) {
+                writer.record("http://a.com/" + i, Collections.singletonList("http://a.com/hub"));
+            }
+        }
+
+        LinkGraph graph = LinkGraph.open(directory);
+        double[] rank = graph.pageRank(0.85, 100);
+        int hub = graph.getId("http://a.com/hub");
+
+        assertEquals(1.0, Arrays.stream(rank).sum(), 1e-9);
+        // The hub gets all the followed rank of the leaves: r = 0.15 / 4 + 0.85 * (1 - r)
+        assertEquals((0.15 / 4 + 0.85) / 1.85, rank[hub], 1e-6);
+        for (int i = 1; i <= 3; i++) {
+            assertEquals((1 - rank[hub]) / 3, rank[graph.getId("http://a.com/" + i)], 1e-6);
+            assertTrue(rank[hub] > rank[graph.getId("http://a.com/" + i)]);
+        }
+    }
+
+    private static int[] sorted(int... ids) {
+        Arrays.sort(ids);
+        return ids;
+    }
+}
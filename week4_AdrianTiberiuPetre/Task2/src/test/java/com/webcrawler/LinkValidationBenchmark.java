@@ -0,0 +1,51 @@
+package com.webcrawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of LinkExtractor.isValidUrl per link over the URL corpus.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="LinkValidationBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LinkValidationBenchmark {
+    private static final int CORPUS_SIZE = 5000;
+
+    private String[] urls;
+    private LinkExtractor linkExtractor;
+
+    @Setup
+    public void setUp() {
+        urls = BenchmarkCorpus.urls();
+        if (urls.length != CORPUS_SIZE) {
+            throw new IllegalStateException("Expected " + CORPUS_SIZE + " URLs, found " + urls.length);
+        }
+        linkExtractor = new LinkExtractor();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void isValidUrl(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(linkExtractor.isValidUrl(url));
+        }
+    }
+}
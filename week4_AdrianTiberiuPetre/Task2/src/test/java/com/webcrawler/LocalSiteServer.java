@@ -0,0 +1,317 @@
+package com.webcrawler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded HTTP server serving a synthetic tree of linked pages for tests and benchmarks.
+ *
+ * Page {@code /page/n} links to pages {@code n * fanOut + 1} to {@code n * fanOut + fanOut},
+ * so a crawl from {@code /page/0} visits the site breadth-first. The root page can
+ * also link to other servers, and every n-th request can be refused with a 429.
+ * Pages carry an ETag for the current content version and are answered with
+ * 304 Not Modified when a request presents it. A robots.txt and other
+ * files such as sitemaps can be served next to the pages.
+ */
+public class LocalSiteServer implements AutoCloseable {
+    private static final byte[] PAGE_END = "</p></body></html>\n".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int pageCount;
+    private final int fanOut;
+    private final long latencyMillis;
+    private final byte[] padding;
+    private final AtomicLong requestCount;
+    private final AtomicLong throttledCount;
+    private final AtomicLong notModifiedCount;
+    private final AtomicLong bytesSent;
+    private final AtomicInteger activeRequests;
+    private final AtomicInteger maxActiveRequests;
+    private final List<String> rootLinks;
+    private final Map<String, byte[]> files;
+    private final AtomicLong robotsRequestCount;
+    private volatile int throttleEvery;
+    private volatile int capacity;
+    private volatile int linkVariants = 1;
+    private volatile int contentVersion;
+
+    /**
+     * Constructs and starts a LocalSiteServer on an ephemeral port.
+     *
+     * @param pageCount Number of pages in the site
+     * @param fanOut Number of child links per page
+     * @param latencyMillis Artificial delay before each response
+     * @param paddingBytes Filler text added to each page body
+     * @throws IOException if the server socket cannot be bound
+     */
+    public LocalSiteServer(int pageCount, int fanOut, long latencyMillis, int paddingBytes) throws IOException {
+        this.pageCount = pageCount;
+        this.fanOut = fanOut;
+        this.latencyMillis = latencyMillis;
+        // Shared by every response so large pages cost the server no allocation
+        this.padding = createPadding(paddingBytes);
+        this.requestCount = new AtomicLong();
+        this.throttledCount = new AtomicLong();
+        this.notModifiedCount = new AtomicLong();
+        this.bytesSent = new AtomicLong();
+        this.activeRequests = new AtomicInteger();
+        this.maxActiveRequests = new AtomicInteger();
+        this.rootLinks = new CopyOnWriteArrayList<>();
+        this.files = new ConcurrentHashMap<>();
+        this.robotsRequestCount = new AtomicLong();
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * Gets the URL of the first page.
+     *
+     * @return The root URL
+     */
+    public String getRootUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/page/0";
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    public long getNotModifiedCount() {
+        return notModifiedCount.get();
+    }
+
+    /**
+     * Gets the number of page body bytes sent, excluding headers.
+     *
+     * @return Body bytes sent
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Gets the number of times /robots.txt was requested.
+     *
+     * @return robots.txt request count
+     */
+    public long getRobotsRequestCount() {
+        return robotsRequestCount.get();
+    }
+
+    /**
+     * Gets the highest number of requests that were handled at the same time.
+     *
+     * @return Peak concurrent requests
+     */
+    public int getMaxActiveRequests() {
+        return maxActiveRequests.get();
+    }
+
+    /**
+     * Adds an absolute link to the root page, e.g. to another server.
+     *
+     * @param url The link target
+     */
+    public void addRootLink(String url) {
+        rootLinks.add(url);
+    }
+
+    /**
+     * Serves a robots.txt; without one, /robots.txt is answered with 404.
+     *
+     * @param content The file content
+     */
+    public void setRobotsTxt(String content) {
+        addFile("/robots.txt", content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Serves fixed content at a path, e.g. a sitemap.
+     *
+     * @param path The path, starting with '/'
+     * @param content The response body
+     */
+    public void addFile(String path, byte[] content) {
+        files.put(path, content);
+    }
+
+    /**
+     * Answers every n-th request with 429 Too Many Requests.
+     *
+     * @param n Request interval, or 0 to serve every request
+     */
+    public void throttleEvery(int n) {
+        this.throttleEvery = n;
+    }
+
+    /**
+     * Answers requests beyond this many at once with 503 Service Unavailable,
+     * like a server with a fixed number of workers. They count as throttled.
+     *
+     * @param capacity Requests served at once, or 0 for no limit
+     */
+    public void overloadAbove(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Links every child page under this many URLs, the extra ones with a
+     * {@code ?session=} parameter, like a CMS that puts session ids in links.
+     *
+     * @param variants URLs per child page, 1 for plain links only
+     */
+    public void linkVariants(int variants) {
+        this.linkVariants = variants;
+    }
+
+    /**
+     * Changes the ETag of every page, as if the whole site had been edited.
+     *
+     * @param version The new content version
+     */
+    public void setContentVersion(int version) {
+        this.contentVersion = version;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long request = requestCount.incrementAndGet();
+        int active = activeRequests.incrementAndGet();
+        maxActiveRequests.accumulateAndGet(active, Math::max);
+        try {
+            int limit = capacity;
+            if (limit > 0 && active > limit) {
+                throttledCount.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+
+            int n = throttleEvery;
+            if (n > 0 && request % n == 0) {
+                throttledCount.incrementAndGet();
+                exchange.sendResponseHeaders(429, -1);
+                return;
+            }
+
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/robots.txt")) {
+                robotsRequestCount.incrementAndGet();
+            }
+            byte[] file = files.get(path);
+            if (file != null) {
+                exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+                exchange.sendResponseHeaders(200, file.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(file);
+                }
+                return;
+            }
+
+            int id = parsePageId(path);
+            if (id < 0 || id >= pageCount) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            String etag = "\"page-" + id + "-v" + contentVersion + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModifiedCount.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            byte[] head = renderHead(id).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            long length = head.length + padding.length + PAGE_END.length;
+            bytesSent.addAndGet(length);
+            exchange.sendResponseHeaders(200, length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(head);
+                out.write(padding);
+                out.write(PAGE_END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            activeRequests.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private int parsePageId(String path) {
+        if (!path.startsWith("/page/")) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(path.substring("/page/".length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String renderHead(int id) {
+        StringBuilder html = new StringBuilder();
+        html.append("<html><head><title>Page ").append(id).append("</title></head><body>\n");
+        for (int i = 1; i <= fanOut; i++) {
+            long child = (long) id * fanOut + i;
+            if (child < pageCount) {
+                html.append("<a href=\"/page/").append(child).append("\">child ").append(child).append("</a>\n");
+                for (int v = 1; v < linkVariants; v++) {
+                    html.append("<a href=\"/page/").append(child).append("?session=").append(v)
+                        .append("\">child ").append(child).append("</a>\n");
+                }
+            }
+        }
+        html.append("<a href=\"/page/0\">home</a>\n");
+        if (id == 0) {
+            for (String link : rootLinks) {
+                html.append("<a href=\"").append(link).append("\">external</a>\n");
+            }
+        }
+        html.append("<p>");
+        return html.toString();
+    }
+
+    private static byte[] createPadding(int length) {
+        byte[] padding = new byte[length];
+        for (int i = 0; i < length; i++) {
+            padding[i] = (byte) ('a' + i % 26);
+        }
+        return padding;
+    }
+}
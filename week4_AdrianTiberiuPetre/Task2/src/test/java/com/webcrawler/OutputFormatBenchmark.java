@@ -0,0 +1,97 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Saving pages as one file each versus appending them to WARC segments,
+ * with and without compression, and reading random pages back. The store
+ * is reopened before the lookups, so WARC lookups go through the on-disk
+ * index.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.webcrawler.OutputFormatBenchmark
+ */
+public class OutputFormatBenchmark {
+    private static final int PAGE_COUNT = 20_000;
+    private static final int LOOKUPS = 5_000;
+    private static final int THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.ERROR);
+
+        String html = BenchmarkCorpus.html("medium");
+        System.out.printf("%d pages of %d KB, %d threads, %d random lookups%n",
+            PAGE_COUNT, html.length() / 1024, THREADS, LOOKUPS);
+        for (int round = 0; round < 2; round++) {
+            run(OutputFormat.FILES, Compression.NONE, html);
+            run(OutputFormat.FILES, Compression.GZIP, html);
+            run(OutputFormat.WARC, Compression.NONE, html);
+            run(OutputFormat.WARC, Compression.GZIP, html);
+        }
+    }
+
+    private static void run(OutputFormat format, Compression compression, String html) throws Exception {
+        Path outputDir = Files.createTempDirectory("output-format-bench");
+        try {
+            long start = System.nanoTime();
+            CompressionStats stats;
+            try (ContentSaver saver = new ContentSaver(outputDir.toString(), format, compression, 0, 1, 0)) {
+                stats = saver.getCompressionStats();
+                ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+                for (int i = 0; i < PAGE_COUNT; i++) {
+                    String url = url(i);
+                    pool.submit(() -> saver.saveContent(url, html, 1, "Benchmark page"));
+                }
+                pool.shutdown();
+                pool.awaitTermination(10, TimeUnit.MINUTES);
+            }
+            double writeSeconds = (System.nanoTime() - start) / 1e9;
+
+            Random random = new Random(42);
+            long bytesRead = 0;
+            start = System.nanoTime();
+            try (ContentSaver saver = new ContentSaver(outputDir.toString(), format, compression, 0, 1, 0)) {
+                for (int i = 0; i < LOOKUPS; i++) {
+                    try (InputStream body = saver.openSavedBody(url(random.nextInt(PAGE_COUNT)))) {
+                        bytesRead += body.readAllBytes().length;
+                    }
+                }
+            }
+            double lookupMicros = (System.nanoTime() - start) / 1e3 / LOOKUPS;
+
+            System.out.printf("%-5s %-4s write %6.2f s  %6d files (%7.1f MB)  ratio %4.1fx  %5.0f us CPU/page"
+                    + "  lookup %6.1f us  (%d MB read)%n",
+                format, compression, writeSeconds, countFiles(outputDir), diskBytes(outputDir) / 1e6,
+                stats.getRatio(), stats.getMicrosPerItem(), lookupMicros, bytesRead >> 20);
+        } finally {
+            BenchmarkSupport.deleteRecursively(outputDir);
+        }
+    }
+
+    private static String url(int i) {
+        return BenchmarkCorpus.PAGE_URL + "?page=" + i;
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    private static long diskBytes(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.slf4j.LoggerFactory;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Heap and GC cost of crawling with page bodies read into Strings versus
+ * pooled off-heap buffers, without streaming to disk. Allocation is what the
+ * collections reclaimed plus the growth left at the end.
+ *
+ * Run with:
+ * MAVEN_OPTS=-Xmx1g mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.webcrawler.PageBufferPoolBenchmark
+ */
+public class PageBufferPoolBenchmark {
+    private static final int PAGE_COUNT = 400;
+    private static final int PAGE_BYTES = 256 * 1024;
+    private static final int THREADS = 8;
+    private static final long POOL_BYTES = 32L * 1024 * 1024;
+
+    private static final AtomicLong RECLAIMED = new AtomicLong();
+    private static final AtomicLong GC_COUNT = new AtomicLong();
+    private static final AtomicLong GC_MILLIS = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.WARN);
+        listenForCollections();
+
+        try (LocalSiteServer server = new LocalSiteServer(PAGE_COUNT, 8, 0, PAGE_BYTES)) {
+            System.out.printf("%d pages of %d KB, %d threads%n", PAGE_COUNT, PAGE_BYTES / 1024, THREADS);
+            for (int round = 0; round < 2; round++) {
+                run("HttpClient, String", server, false, pool -> new HttpClientPageFetcher(16, 2));
+                run("HttpClient, pooled", server, true, pool -> new HttpClientPageFetcher(16, 2, pool));
+                run("URLConnection, String", server, false, pool -> new UrlConnectionPageFetcher());
+                run("URLConnection, pooled", server, true, UrlConnectionPageFetcher::new);
+            }
+        }
+    }
+
+    private static void run(String name, LocalSiteServer server, boolean pooled,
+                            Function<PageBufferPool, PageFetcher> fetcherFactory) throws Exception {
+        Path outputDir = Files.createTempDirectory("pool-bench");
+        PageBufferPool pool = pooled ? new PageBufferPool(POOL_BYTES) : null;
+        try (PageFetcher fetcher = fetcherFactory.apply(pool)) {
+            WebCrawler crawler = new WebCrawler.Builder()
+                .rootUrl(server.getRootUrl())
+                .maxDepth(Integer.MAX_VALUE)
+                .maxPages(PAGE_COUNT)
+                .threadPoolSize(THREADS)
+                .parseMode(ParseMode.STREAMING)
+                .checkpointIntervalSeconds(0)
+                .linkGraph(false)
+                .pageFetcher(fetcher)
+                .outputPath(outputDir.toString())
+                .build();
+
+            System.gc();
+            long usedBefore = usedHeap();
+            RECLAIMED.set(0);
+            GC_COUNT.set(0);
+            GC_MILLIS.set(0);
+            long start = System.nanoTime();
+            crawler.start();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long allocated = RECLAIMED.get() + usedHeap() - usedBefore;
+
+            System.out.printf("%-24s %6.2f s  %7.0f MB allocated  %6.1f MB/s  %4d GCs  %5d ms in GC%s%n",
+                name, seconds, allocated / 1e6, allocated / 1e6 / seconds, GC_COUNT.get(), GC_MILLIS.get(),
+                pool == null ? "" : String.format("  %d/%d buffers reused, %d KB off-heap",
+                                                  pool.getReuseCount(), pool.getAcquireCount(),
+                                                  pool.getAllocatedBytes() / 1024));
+        } finally {
+            BenchmarkSupport.deleteRecursively(outputDir);
+        }
+    }
+
+    private static void listenForCollections() {
+        NotificationListener listener = (notification, handback) -> {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            long before = sum(info.getGcInfo().getMemoryUsageBeforeGc().values());
+            long after = sum(info.getGcInfo().getMemoryUsageAfterGc().values());
+            RECLAIMED.addAndGet(Math.max(0, before - after));
+            GC_COUNT.incrementAndGet();
+            GC_MILLIS.addAndGet(info.getGcInfo().getDuration());
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+        }
+    }
+
+    private static long sum(Iterable<MemoryUsage> usages) {
+        long total = 0;
+        for (MemoryUsage usage : usages) {
+            total += usage.getUsed();
+        }
+        return total;
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,115 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Unit tests for pooled page buffers and the page bodies held in them.
+ */
+public class PageBufferPoolTest {
+
+    @Test
+    public void reusesReleasedBuffersOfTheSameSizeClass() {
+        PageBufferPool pool = new PageBufferPool(1024 * 1024);
+
+        ByteBuffer small = pool.acquire(1);
+        assertTrue(small.isDirect());
+        assertEquals(PageBufferPool.MIN_CLASS_BYTES, small.capacity());
+        assertEquals(4 * PageBufferPool.MIN_CLASS_BYTES, pool.acquire(PageBufferPool.MIN_CLASS_BYTES + 1).capacity());
+
+        small.put((byte) 1);
+        pool.release(small);
+        assertEquals(PageBufferPool.MIN_CLASS_BYTES, pool.getRetainedBytes());
+        ByteBuffer again = pool.acquire(100);
+        assertSame(small, again);
+        assertEquals(0, again.position());
+        assertEquals(1, pool.getReuseCount());
+        assertEquals(3, pool.getAcquireCount());
+        assertEquals(5L * PageBufferPool.MIN_CLASS_BYTES, pool.getAllocatedBytes());
+    }
+
+    @Test
+    public void keepsAtMostTheRetainedBytesAndDoesNotPoolOversizedBodies() {
+        PageBufferPool pool = new PageBufferPool(PageBufferPool.MIN_CLASS_BYTES);
+        ByteBuffer first = pool.acquire(1);
+        ByteBuffer second = pool.acquire(1);
+        pool.release(first);
+        pool.release(second);
+        assertEquals(PageBufferPool.MIN_CLASS_BYTES, pool.getRetainedBytes());
+
+        ByteBuffer oversized = pool.acquire(PageBufferPool.MAX_CLASS_BYTES + 1);
+        assertFalse(oversized.isDirect());
+        assertEquals(1, pool.getOversizedCount());
+        pool.release(oversized);
+        pool.release(ByteBuffer.allocateDirect(1000));
+        assertEquals(PageBufferPool.MIN_CLASS_BYTES, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void bodyGrowsAcrossSizeClassesAndDecodesLazily() throws IOException {
+        PageBufferPool pool = new PageBufferPool(1024 * 1024);
+        StringBuilder html = new StringBuilder("<html><title>Café</title>");
+        while (html.length() < 3 * PageBufferPool.MIN_CLASS_BYTES) {
+            html.append("<p>déjà vu</p>");
+        }
+        byte[] latin1 = html.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        try (PageBody body = PageBody.read(new ByteArrayInputStream(latin1), StandardCharsets.ISO_8859_1, pool)) {
+            assertEquals(latin1.length, body.size());
+            assertEquals(html.toString(), body.getText());
+            assertSame(body.getText(), body.getText());
+
+            ByteArrayOutputStream saved = new ByteArrayOutputStream();
+            body.writeTo(saved);
+            assertEquals(new String(latin1, StandardCharsets.ISO_8859_1),
+                         new String(saved.toByteArray(), StandardCharsets.ISO_8859_1));
+        }
+        // The smaller buffers were handed back as the body grew, and the last one on close
+        assertEquals(PageBufferPool.MIN_CLASS_BYTES + 4 * PageBufferPool.MIN_CLASS_BYTES, pool.getRetainedBytes());
+    }
+
+    @Test
+    public void oversizedBodyGrowsGeometrically() throws IOException {
+        PageBufferPool pool = new PageBufferPool(0);
+        byte[] page = new byte[PageBufferPool.MAX_CLASS_BYTES + PageBufferPool.MAX_CLASS_BYTES / 2];
+        page[page.length - 1] = 42;
+
+        try (PageBody body = PageBody.read(new ByteArrayInputStream(page), StandardCharsets.ISO_8859_1, pool)) {
+            assertEquals(page.length, body.size());
+            assertEquals(42, body.getBytes().get(page.length - 1));
+        }
+        // One copy past the largest class, not one per chunk read
+        assertEquals(1, pool.getOversizedCount());
+    }
+
+    @Test
+    public void bodyReturnsItsBufferWhenTheLastReferenceIsClosed() {
+        PageBufferPool pool = new PageBufferPool(1024 * 1024);
+        PageBody body = PageBody.allocate(pool, StandardCharsets.UTF_8, 10);
+        body.append(ByteBuffer.wrap("<html></html>".getBytes(StandardCharsets.UTF_8)));
+
+        PageBody queued = body.retain();
+        body.close();
+        assertEquals(0, pool.getRetainedBytes());
+        assertEquals("<html></html>", queued.getText());
+        queued.close();
+        assertEquals(PageBufferPool.MIN_CLASS_BYTES, pool.getRetainedBytes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releasedBodyCannotBeRetained() {
+        PageBody body = PageBody.allocate(new PageBufferPool(0), StandardCharsets.UTF_8, 0);
+        body.close();
+        body.retain();
+    }
+}
@@ -0,0 +1,73 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Unit tests for PageMetadataIndex persistence.
+ */
+public class PageMetadataIndexTest {
+    private Path tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("page-index-test");
+    }
+
+    @After
+    public void tearDown() {
+        BenchmarkSupport.deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void reopenedIndexKeepsLatestEntryPerUrl() {
+        Path file = tempDir.resolve("index.bin");
+        try (PageMetadataIndex index = PageMetadataIndex.open(file)) {
+            index.put(new PageMetadata("http://example.com/a", "\"v1\"", null, "aa", "UTF-8", 1));
+            index.put(new PageMetadata("http://example.com/b", null, "Mon, 01 Jan 2024 00:00:00 GMT", null, "ISO-8859-1", 2));
+            index.put(new PageMetadata("http://example.com/a", "\"v2\"", null, "bb", "UTF-8", 3));
+        }
+
+        try (PageMetadataIndex index = PageMetadataIndex.open(file)) {
+            assertEquals(2, index.size());
+            PageMetadata a = index.get("http://example.com/a");
+            assertEquals("\"v2\"", a.getEtag());
+            assertNull(a.getLastModified());
+            assertEquals("bb", a.getContentHash());
+            assertEquals(3, a.getFetchTime());
+            PageMetadata b = index.get("http://example.com/b");
+            assertNull(b.getEtag());
+            assertEquals("Mon, 01 Jan 2024 00:00:00 GMT", b.getLastModified());
+            assertEquals("ISO-8859-1", b.getCharset());
+        }
+    }
+
+    @Test
+    public void tornRecordIsDroppedAndLaterUpdatesSurvive() throws IOException {
+        Path file = tempDir.resolve("index.bin");
+        try (PageMetadataIndex index = PageMetadataIndex.open(file)) {
+            index.put(new PageMetadata("http://example.com/a", "\"v1\"", null, "aa", "UTF-8", 1));
+        }
+        // The start of a record cut off by a crash
+        Files.write(file, new byte[] {1, 0, 20, 'h', 't'}, StandardOpenOption.APPEND);
+
+        try (PageMetadataIndex index = PageMetadataIndex.open(file)) {
+            assertEquals(1, index.size());
+            index.revalidated(index.get("http://example.com/a").withFetchTime(5));
+            assertEquals(1, index.getRevalidatedCount());
+        }
+
+        try (PageMetadataIndex index = PageMetadataIndex.open(file)) {
+            assertEquals(5, index.get("http://example.com/a").getFetchTime());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Crawl throughput across several local hosts with different behaviour: a
+ * slow host with a wide link tree that floods a FIFO queue, a host that
+ * refuses every other request with a 429, and a few fast hosts. The single
+ * FIFO queue is compared with per-host scheduling.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.webcrawler.PolitenessBenchmark
+ */
+public class PolitenessBenchmark {
+    private static final int PAGES_PER_HOST = 1000;
+    private static final int FAST_HOSTS = 6;
+    private static final int MAX_PAGES = 1000;
+    private static final int THREADS = 16;
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.ERROR);
+
+        System.out.printf("%d-page budget, %d threads; hosts: slow (300 ms), throttling (5 ms, 50%% 429), %d fast (5 ms)%n",
+            MAX_PAGES, THREADS, FAST_HOSTS);
+        run("FIFO", 0);
+        run("Per host, max 4", 4);
+        run("Per host, max 2", 2);
+    }
+
+    private static void run(String name, int maxRequestsPerHost) throws Exception {
+        Path outputDir = Files.createTempDirectory("politeness-bench");
+        List<LocalSiteServer> fastHosts = new ArrayList<>();
+        try (LocalSiteServer slow = new LocalSiteServer(PAGES_PER_HOST, 20, 300, 1024);
+             LocalSiteServer throttling = new LocalSiteServer(PAGES_PER_HOST, 8, 5, 1024);
+             PageFetcher fetcher = new UrlConnectionPageFetcher()) {
+            throttling.throttleEvery(2);
+            // The slow host is the entry point, so its URLs fill most of a FIFO queue
+            slow.addRootLink(throttling.getRootUrl());
+            for (int i = 0; i < FAST_HOSTS; i++) {
+                LocalSiteServer fast = new LocalSiteServer(PAGES_PER_HOST, 8, 5, 1024);
+                fastHosts.add(fast);
+                slow.addRootLink(fast.getRootUrl());
+            }
+
+            WebCrawler crawler = new WebCrawler.Builder()
+                .rootUrl(slow.getRootUrl())
+                .maxDepth(Integer.MAX_VALUE)
+                .maxPages(MAX_PAGES)
+                .stayInDomain(false)
+                .threadPoolSize(THREADS)
+                .maxRequestsPerHost(maxRequestsPerHost)
+                .checkpointIntervalSeconds(0)
+                .pageFetcher(fetcher)
+                .outputPath(outputDir.toString())
+                .build();
+
+            long start = System.nanoTime();
+            crawler.start();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long fastRequests = fastHosts.stream().mapToLong(LocalSiteServer::getRequestCount).sum();
+            System.out.printf("%-16s %6.1f pages/sec (%5.2f s)  requests slow %d, throttling %d (%d refused), fast %d%n",
+                name, MAX_PAGES / seconds, seconds, slow.getRequestCount(), throttling.getRequestCount(),
+                throttling.getThrottledCount(), fastRequests);
+        } finally {
+            fastHosts.forEach(LocalSiteServer::close);
+            BenchmarkSupport.deleteRecursively(outputDir);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.webcrawler.UrlManager.UrlDepthPair;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for PolitenessScheduler ordering, limits and back-off.
+ */
+public class PolitenessSchedulerTest {
+
+    @Test
+    public void servesHostsRoundRobin() {
+        PolitenessScheduler scheduler = new PolitenessScheduler(10, 0);
+        offer(scheduler, "http://a.com/1", "http://a.com/2", "http://a.com/3",
+              "http://b.com/1", "http://b.com/2", "http://c.com:8080/1");
+
+        assertEquals("http://a.com/1", scheduler.poll().getUrl());
+        assertEquals("http://b.com/1", scheduler.poll().getUrl());
+        assertEquals("http://c.com:8080/1", scheduler.poll().getUrl());
+        assertEquals("http://a.com/2", scheduler.poll().getUrl());
+        assertEquals("http://b.com/2", scheduler.poll().getUrl());
+        assertEquals("http://a.com/3", scheduler.poll().getUrl());
+        assertNull(scheduler.poll());
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void limitsConcurrentRequestsPerHost() {
+        PolitenessScheduler scheduler = new PolitenessScheduler(1, 0);
+        offer(scheduler, "http://a.com/1", "http://a.com/2", "http://b.com/1");
+
+        UrlDepthPair first = scheduler.poll();
+        assertEquals("http://a.com/1", first.getUrl());
+        assertEquals("http://b.com/1", scheduler.poll().getUrl());
+        assertNull(scheduler.poll());
+        assertEquals(Long.MAX_VALUE, scheduler.nanosUntilReady());
+
+        scheduler.completed(first);
+
+        assertEquals("http://a.com/2", scheduler.poll().getUrl());
+    }
+
+    @Test
+    public void waitsMinimumDelayBetweenRequestsToHost() throws Exception {
+        PolitenessScheduler scheduler = new PolitenessScheduler(5, 200);
+        offer(scheduler, "http://a.com/1", "http://a.com/2");
+
+        scheduler.completed(scheduler.poll());
+        assertNull(scheduler.poll());
+        long wait = scheduler.nanosUntilReady();
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(200));
+
+        TimeUnit.NANOSECONDS.sleep(wait);
+        assertEquals("http://a.com/2", scheduler.poll().getUrl());
+    }
+
+    @Test
+    public void waitsCrawlDelayOfHost() {
+        PolitenessScheduler scheduler = new PolitenessScheduler(5, 0);
+        scheduler.setCrawlDelay("http://a.com/robots.txt", 10_000);
+        offer(scheduler, "http://a.com/1", "http://a.com/2", "http://b.com/1", "http://b.com/2");
+
+        assertEquals("http://a.com/1", scheduler.poll().getUrl());
+        assertEquals("http://b.com/1", scheduler.poll().getUrl());
+        assertEquals("http://b.com/2", scheduler.poll().getUrl());
+        assertNull(scheduler.poll());
+        assertTrue(scheduler.nanosUntilReady() > TimeUnit.SECONDS.toNanos(9));
+    }
+
+    @Test
+    public void backsOffHostOnTooManyRequests() {
+        PolitenessScheduler scheduler = new PolitenessScheduler(8, 0);
+        offer(scheduler, "http://a.com/1", "http://a.com/2", "http://b.com/1");
+
+        UrlDepthPair throttled = scheduler.poll();
+        scheduler.recordResponse(throttled.getUrl(), 429, TimeUnit.MILLISECONDS.toNanos(5));
+        scheduler.completed(throttled);
+
+        assertEquals(4, scheduler.getHostLimit("http://a.com/"));
+        assertEquals(1, scheduler.getBackoffCount());
+        // a.com must wait out its back-off; b.com is still served
+        assertEquals("http://b.com/1", scheduler.poll().getUrl());
+        assertNull(scheduler.poll());
+        assertTrue(scheduler.nanosUntilReady() > TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void lowersLimitWhenLatencyRises() {
+        PolitenessScheduler scheduler = new PolitenessScheduler(4, 0);
+        for (int i = 0; i < 20; i++) {
+            offer(scheduler, "http://a.com/" + i);
+        }
+
+        for (int i = 0; i < 8; i++) {
+            respond(scheduler, TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(4, scheduler.getHostLimit("http://a.com/"));
+
+        for (int i = 0; i < 8; i++) {
+            respond(scheduler, TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertTrue(scheduler.getHostLimit("http://a.com/") < 4);
+    }
+
+    @Test
+    public void extractsHostAndPort() {
+        assertEquals("example.com", PolitenessScheduler.hostKey("http://example.com"));
+        assertEquals("example.com:8080", PolitenessScheduler.hostKey("https://example.com:8080/a?b"));
+        assertEquals("example.com", PolitenessScheduler.hostKey("http://user@example.com/a"));
+    }
+
+    private static void respond(PolitenessScheduler scheduler, long latencyNanos) {
+        UrlDepthPair next = scheduler.poll();
+        scheduler.recordResponse(next.getUrl(), 200, latencyNanos);
+        scheduler.completed(next);
+    }
+
+    private static void offer(PolitenessScheduler scheduler, String... urls) {
+        for (String url : urls) {
+            scheduler.offer(new UrlDepthPair(url, 0));
+        }
+    }
+}
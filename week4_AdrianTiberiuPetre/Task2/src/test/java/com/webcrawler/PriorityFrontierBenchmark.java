@@ -0,0 +1,155 @@
+package com.webcrawler;
+
+import com.webcrawler.UrlManager.UrlDepthPair;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Offers, polls and in-link reports from several threads against the FIFO
+ * frontier, the bucketed priority frontier and the same best-first order
+ * kept in a heap behind one lock. The FIFO frontier ignores in-links.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.webcrawler.PriorityFrontierBenchmark
+ */
+public class PriorityFrontierBenchmark {
+    private static final int URLS_PER_THREAD = 200_000;
+    private static final int THREADS = 4;
+    private static final int LINKS_PER_URL = 4;
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%d URLs on each of %d threads, %d links per URL%n", URLS_PER_THREAD, THREADS, LINKS_PER_URL);
+        UrlScorer scorer = new WeightedUrlScorer.Builder().patternWeight("/docs/", 8).build();
+        for (int round = 0; round < 3; round++) {
+            report("FIFO", run(new InMemoryUrlFrontier()));
+            report("Bucketed priority", run(new PriorityUrlFrontier(scorer)));
+            report("Locked heap", run(new LockedHeapFrontier(scorer)));
+        }
+    }
+
+    private static long run(UrlFrontier frontier) throws InterruptedException {
+        AtomicLong polled = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < URLS_PER_THREAD; i++) {
+                    frontier.offer(new UrlDepthPair(url(thread, i), i % 5));
+                    for (int link = 1; link <= LINKS_PER_URL; link++) {
+                        frontier.recordInLink(url((thread + link) % THREADS, i / (link + 1)));
+                    }
+                    // Crawlers take URLs about as fast as pages add them
+                    if (i % 2 == 1 && frontier.poll() != null) {
+                        polled.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        while (frontier.poll() != null) {
+            polled.incrementAndGet();
+        }
+        if (polled.get() != (long) THREADS * URLS_PER_THREAD) {
+            throw new IllegalStateException("Polled " + polled.get() + " URLs");
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.printf("%-20s %6.2f s  %6.0f ns/URL%n", name, nanos / 1e9,
+            (double) nanos / (THREADS * URLS_PER_THREAD));
+    }
+
+    private static String url(int thread, int i) {
+        return BenchmarkCorpus.PAGE_URL + (i % 7 == 0 ? "/docs/" : "/") + thread + "/" + i;
+    }
+
+    /**
+     * The same lazy re-prioritisation on a heap and a map behind one lock.
+     */
+    private static final class LockedHeapFrontier implements UrlFrontier {
+        private final UrlScorer scorer;
+        private final PriorityQueue<Scored> heap;
+        private final Map<String, Scored> waiting = new HashMap<>();
+        private long sequence;
+
+        LockedHeapFrontier(UrlScorer scorer) {
+            this.scorer = scorer;
+            this.heap = new PriorityQueue<>(Comparator.comparingInt((Scored s) -> -s.bucket)
+                .thenComparingLong(s -> s.sequence));
+        }
+
+        @Override
+        public synchronized void offer(UrlDepthPair urlDepthPair) {
+            Scored scored = new Scored(urlDepthPair, 1, bucketOf(urlDepthPair, 1), sequence++);
+            waiting.put(urlDepthPair.getUrl(), scored);
+            heap.offer(scored);
+        }
+
+        @Override
+        public synchronized UrlDepthPair poll() {
+            Scored next;
+            while ((next = heap.poll()) != null) {
+                if (!next.moved) {
+                    waiting.remove(next.urlDepthPair.getUrl());
+                    return next.urlDepthPair;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public synchronized void recordInLink(String url) {
+            Scored scored = waiting.get(url);
+            if (scored == null) {
+                return;
+            }
+            int inLinks = ++scored.inLinks;
+            if (!scorer.rescores(inLinks)) {
+                return;
+            }
+            int bucket = bucketOf(scored.urlDepthPair, inLinks);
+            if (bucket != scored.bucket) {
+                scored.moved = true;
+                Scored moved = new Scored(scored.urlDepthPair, inLinks, bucket, scored.sequence);
+                waiting.put(url, moved);
+                heap.offer(moved);
+            }
+        }
+
+        @Override
+        public synchronized long size() {
+            return waiting.size();
+        }
+
+        private int bucketOf(UrlDepthPair urlDepthPair, int inLinks) {
+            double score = scorer.score(urlDepthPair.getUrl(), urlDepthPair.getDepth(), inLinks);
+            return (int) Math.max(0, Math.min(PriorityUrlFrontier.LEVELS - 1, score));
+        }
+    }
+
+    private static final class Scored {
+        final UrlDepthPair urlDepthPair;
+        final int bucket;
+        final long sequence;
+        int inLinks;
+        boolean moved;
+
+        Scored(UrlDepthPair urlDepthPair, int inLinks, int bucket, long sequence) {
+            this.urlDepthPair = urlDepthPair;
+            this.inLinks = inLinks;
+            this.bucket = bucket;
+            this.sequence = sequence;
+        }
+    }
+}
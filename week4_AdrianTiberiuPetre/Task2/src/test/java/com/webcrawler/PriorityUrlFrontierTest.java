@@ -0,0 +1,121 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.webcrawler.UrlManager.UrlDepthPair;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Unit tests for PriorityUrlFrontier ordering and re-prioritisation.
+ */
+public class PriorityUrlFrontierTest {
+
+    @Test
+    public void handsOutHighestScoreFirstAndFifoWithinABucket() {
+        UrlScorer scorer = new WeightedUrlScorer.Builder()
+            .patternWeight("/docs/", 10)
+            .patternWeight("/login", -20)
+            .build();
+        PriorityUrlFrontier frontier = new PriorityUrlFrontier(scorer);
+        frontier.offer(new UrlDepthPair("http://example.com/login", 1));
+        frontier.offer(new UrlDepthPair("http://example.com/a", 1));
+        frontier.offer(new UrlDepthPair("http://example.com/docs/deep", 4));
+        frontier.offer(new UrlDepthPair("http://example.com/b", 1));
+        frontier.offer(new UrlDepthPair("http://example.com/docs/intro", 1));
+
+        assertEquals(5, frontier.size());
+        assertEquals("http://example.com/docs/intro", frontier.poll().getUrl());
+        assertEquals("http://example.com/a", frontier.poll().getUrl());
+        assertEquals("http://example.com/b", frontier.poll().getUrl());
+        assertEquals("http://example.com/docs/deep", frontier.poll().getUrl());
+        assertEquals("http://example.com/login", frontier.poll().getUrl());
+        assertNull(frontier.poll());
+        assertTrue(frontier.isEmpty());
+    }
+
+    @Test
+    public void movesUrlUpAsLinksToItAreFound() {
+        PriorityUrlFrontier frontier = new PriorityUrlFrontier(new WeightedUrlScorer.Builder().build());
+        frontier.offer(new UrlDepthPair("http://example.com/a", 1));
+        frontier.offer(new UrlDepthPair("http://example.com/b", 2));
+        frontier.offer(new UrlDepthPair("http://example.com/c", 1));
+
+        // Three more links double b's in-links twice, outweighing one level of depth
+        for (int i = 0; i < 3; i++) {
+            frontier.recordInLink("http://example.com/b");
+        }
+        frontier.recordInLink("http://example.com/unknown");
+
+        assertEquals(2, frontier.getRescoredCount());
+        assertEquals(3, frontier.size());
+        UrlDepthPair first = frontier.poll();
+        assertEquals("http://example.com/b", first.getUrl());
+        assertEquals(2, first.getDepth());
+        assertEquals("http://example.com/a", frontier.poll().getUrl());
+
+        // Links to a URL already handed out change nothing
+        frontier.recordInLink("http://example.com/b");
+        assertEquals("http://example.com/c", frontier.poll().getUrl());
+        assertNull(frontier.poll());
+        assertEquals(0, frontier.size());
+    }
+
+    @Test
+    public void handsOutEachUrlOnceUnderConcurrentRescoring() throws Exception {
+        PriorityUrlFrontier frontier = new PriorityUrlFrontier((url, depth, inLinks) -> inLinks % PriorityUrlFrontier.LEVELS);
+        int producers = 4;
+        int urlsPerProducer = 5_000;
+        Set<String> polled = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(producers + 2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < urlsPerProducer; i++) {
+                        frontier.offer(new UrlDepthPair("http://example.com/" + producer + "/" + i, 1));
+                        // Links to earlier URLs of any producer, some of them already polled
+                        frontier.recordInLink("http://example.com/" + ((producer + 1) % producers) + "/" + (i / 2));
+                    }
+                }));
+            }
+            for (int c = 0; c < 2; c++) {
+                futures.add(executor.submit(() -> {
+                    int idle = 0;
+                    while (idle < 1000) {
+                        UrlDepthPair next = frontier.poll();
+                        if (next == null) {
+                            idle++;
+                            Thread.yield();
+                        } else {
+                            idle = 0;
+                            assertTrue("Handed out twice: " + next.getUrl(), polled.add(next.getUrl()));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        UrlDepthPair next;
+        while ((next = frontier.poll()) != null) {
+            assertTrue("Handed out twice: " + next.getUrl(), polled.add(next.getUrl()));
+        }
+        assertEquals(producers * urlsPerProducer, polled.size());
+        assertEquals(0, frontier.size());
+    }
+}
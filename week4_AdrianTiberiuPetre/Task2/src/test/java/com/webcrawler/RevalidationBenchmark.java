@@ -0,0 +1,70 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Cost of recrawling an unchanged site into the same output directory, with
+ * and without conditional requests. CPU time is that of the whole process,
+ * so it includes the embedded server.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.webcrawler.RevalidationBenchmark
+ */
+public class RevalidationBenchmark {
+    private static final int PAGE_COUNT = 2000;
+    private static final int PAGE_BYTES = 100 * 1024;
+    private static final int THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.ERROR);
+
+        System.out.printf("%d pages of %d KB, %d threads%n", PAGE_COUNT, PAGE_BYTES / 1024, THREADS);
+        for (int round = 0; round < 2; round++) {
+            run(false);
+            run(true);
+        }
+    }
+
+    private static void run(boolean revalidate) throws Exception {
+        Path outputDir = Files.createTempDirectory("revalidation-bench");
+        try (LocalSiteServer server = new LocalSiteServer(PAGE_COUNT, 8, 0, PAGE_BYTES)) {
+            crawl(server, outputDir, revalidate);
+            long bytesBefore = server.getBytesSent();
+
+            long cpuBefore = processCpuNanos();
+            long start = System.nanoTime();
+            crawl(server, outputDir, revalidate);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double cpuSeconds = (processCpuNanos() - cpuBefore) / 1e9;
+
+            System.out.printf("Recrawl, %-14s %6.2f s  %6.2f s CPU  %7.1f MB received  %d not modified%n",
+                revalidate ? "conditional" : "unconditional", seconds, cpuSeconds,
+                (server.getBytesSent() - bytesBefore) / 1e6, server.getNotModifiedCount());
+        } finally {
+            BenchmarkSupport.deleteRecursively(outputDir);
+        }
+    }
+
+    private static void crawl(LocalSiteServer server, Path outputDir, boolean revalidate) {
+        new WebCrawler.Builder()
+            .rootUrl(server.getRootUrl())
+            .maxDepth(Integer.MAX_VALUE)
+            .maxPages(PAGE_COUNT)
+            .threadPoolSize(THREADS)
+            .revalidate(revalidate)
+            .checkpointIntervalSeconds(0)
+            .outputPath(outputDir.toString())
+            .build()
+            .start();
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+            .getProcessCpuTime();
+    }
+}
@@ -0,0 +1,140 @@
+package com.webcrawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Cost of a robots.txt check per URL of the corpus, against a file with a
+ * few hundred rules: the compiled trie of RobotsRules versus one regular
+ * expression per rule scanned for the longest match, as robots.txt parsers
+ * commonly do.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="RobotsMatcherBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RobotsMatcherBenchmark {
+    private static final int CORPUS_SIZE = 5000;
+    private static final int PREFIX_RULES = 300;
+
+    private String[] urls;
+    private RobotsRules compiled;
+    private RegexRule[] regexRules;
+
+    @Setup
+    public void setUp() throws IOException {
+        UrlNormalizer normalizer = UrlNormalizer.defaults();
+        urls = BenchmarkCorpus.urls();
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = normalizer.normalize(urls[i]);
+        }
+
+        // Disallow the first two path segments of corpus URLs, alternating with allows one level deeper
+        Set<String> prefixes = new LinkedHashSet<>();
+        for (String url : urls) {
+            String path = url.substring(Math.max(0, url.indexOf('/', url.indexOf("://") + 3)));
+            int end = path.indexOf('/', path.indexOf('/', 1) + 1);
+            if (path.startsWith("/") && end > 0) {
+                prefixes.add(path.substring(0, end));
+            }
+            if (prefixes.size() == PREFIX_RULES) {
+                break;
+            }
+        }
+        StringBuilder robots = new StringBuilder("User-agent: *\n");
+        List<String> rules = new ArrayList<>();
+        int i = 0;
+        for (String prefix : prefixes) {
+            rules.add((i++ % 3 == 0 ? "Allow: " : "Disallow: ") + prefix);
+        }
+        rules.add("Disallow: /*?sessionid=");
+        rules.add("Disallow: /*.pdf$");
+        rules.add("Allow: /*/public/*");
+        for (String rule : rules) {
+            robots.append(rule).append('\n');
+        }
+
+        compiled = RobotsRules.parse(new BufferedReader(new StringReader(robots.toString())), "WebCrawler");
+        regexRules = new RegexRule[rules.size()];
+        for (int r = 0; r < regexRules.length; r++) {
+            regexRules[r] = new RegexRule(rules.get(r));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void compiledTrie(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(compiled.isAllowed(url));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void regexPerRule(Blackhole blackhole) {
+        for (String url : urls) {
+            int start = url.indexOf('/', url.indexOf("://") + 3);
+            String path = start < 0 ? "/" : url.substring(start);
+            int longest = -1;
+            boolean allowed = true;
+            for (RegexRule rule : regexRules) {
+                if (rule.pattern.matcher(path).lookingAt()
+                        && (rule.length > longest || (rule.length == longest && rule.allow))) {
+                    longest = rule.length;
+                    allowed = rule.allow;
+                }
+            }
+            blackhole.consume(allowed);
+        }
+    }
+
+    /**
+     * One robots.txt rule translated to a regular expression.
+     */
+    private static final class RegexRule {
+        private final Pattern pattern;
+        private final int length;
+        private final boolean allow;
+
+        RegexRule(String line) {
+            int colon = line.indexOf(':');
+            String path = line.substring(colon + 1).trim();
+            this.allow = line.startsWith("Allow");
+            this.length = path.length();
+            boolean anchored = path.endsWith("$");
+            String body = anchored ? path.substring(0, path.length() - 1) : path;
+            StringBuilder regex = new StringBuilder();
+            for (String part : body.split("\\*", -1)) {
+                if (regex.length() > 0) {
+                    regex.append(".*");
+                }
+                regex.append(Pattern.quote(part));
+            }
+            this.pattern = Pattern.compile(anchored ? regex + "$" : regex.toString());
+        }
+    }
+}
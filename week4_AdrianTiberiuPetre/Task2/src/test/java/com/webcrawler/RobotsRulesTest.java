@@ -0,0 +1,93 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+
+/**
+ * Unit tests for robots.txt parsing and rule matching.
+ */
+public class RobotsRulesTest {
+
+    @Test
+    public void appliesNamedGroupInsteadOfWildcardGroup() throws IOException {
+        RobotsRules rules = parse(
+            "User-agent: *\n"
+            + "Disallow: /\n"
+            + "\n"
+            + "User-agent: OtherBot\n"
+            + "User-agent: webcrawler\n"
+            + "Disallow: /private # not for us\n"
+            + "Crawl-delay: 2.5\n");
+
+        assertTrue(rules.isAllowed("http://a.com/public/page"));
+        assertFalse(rules.isAllowed("http://a.com/private/page"));
+        assertEquals(2500, rules.getCrawlDelayMillis());
+        assertEquals(1, rules.getRuleCount());
+    }
+
+    @Test
+    public void longestMatchWinsAndAllowWinsTies() throws IOException {
+        RobotsRules rules = parse(
+            "User-agent: *\n"
+            + "Disallow: /docs\n"
+            + "Allow: /docs/public\n"
+            + "Disallow: /docs/public/drafts\n"
+            + "Disallow: /same\n"
+            + "Allow: /same\n"
+            + "Disallow:\n");
+
+        assertFalse(rules.isAllowed("http://a.com/docs/internal"));
+        assertTrue(rules.isAllowed("http://a.com/docs/public/guide"));
+        assertFalse(rules.isAllowed("http://a.com/docs/public/drafts/1"));
+        assertTrue(rules.isAllowed("http://a.com/same"));
+        assertTrue(rules.isAllowed("http://a.com/"));
+        assertTrue(rules.isAllowed("http://a.com"));
+    }
+
+    @Test
+    public void matchesWildcardsEndAnchorsAndQueries() throws IOException {
+        RobotsRules rules = parse(
+            "User-agent: *\n"
+            + "Disallow: /*.pdf$\n"
+            + "Disallow: /search?\n"
+            + "Disallow: /*/print\n"
+            + "Allow: /shop/*/print/summary\n");
+
+        assertFalse(rules.isAllowed("http://a.com/files/report.pdf"));
+        assertTrue(rules.isAllowed("http://a.com/files/report.pdf?download=1"));
+        assertFalse(rules.isAllowed("http://a.com/search?q=crawler"));
+        assertTrue(rules.isAllowed("http://a.com/search"));
+        assertFalse(rules.isAllowed("http://a.com/shop/42/print"));
+        assertTrue(rules.isAllowed("http://a.com/shop/42/print/summary"));
+    }
+
+    @Test
+    public void matchesPathCaseCollectsSitemapsAndAlwaysAllowsRobotsTxt() throws IOException {
+        RobotsRules rules = parse(
+            "Sitemap: http://a.com/sitemap-1.xml\n"
+            + "USER-AGENT: *\n"
+            + "DISALLOW: /Admin\n"
+            + "Sitemap: http://a.com/sitemap-2.xml.gz\n");
+
+        assertFalse(rules.isAllowed("http://a.com/Admin/users"));
+        assertTrue(rules.isAllowed("http://a.com/admin/users"));
+        assertTrue(RobotsRules.DISALLOW_ALL.isAllowed("http://a.com/robots.txt"));
+        assertEquals(Arrays.asList("http://a.com/sitemap-1.xml", "http://a.com/sitemap-2.xml.gz"),
+                     rules.getSitemaps());
+        assertEquals(0, rules.getCrawlDelayMillis());
+        assertFalse(RobotsRules.DISALLOW_ALL.isAllowed("http://a.com/"));
+        assertTrue(RobotsRules.ALLOW_ALL.isAllowed("http://a.com/anything"));
+    }
+
+    private static RobotsRules parse(String content) throws IOException {
+        return RobotsRules.parse(new BufferedReader(new StringReader(content)), "WebCrawler");
+    }
+}
@@ -0,0 +1,187 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * Tests for fetching and caching robots.txt against a local site.
+ */
+public class RobotsTxtCacheTest {
+    private LocalSiteServer server;
+    private String origin;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalSiteServer(10, 3, 0, 0);
+        origin = "http://localhost:" + server.getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void fetchesOncePerHostUntilExpired() throws Exception {
+        server.setRobotsTxt("User-agent: *\nDisallow: /page/1\nCrawl-delay: 1\n");
+        List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+        RobotsTxtCache cache = new RobotsTxtCache(300, (host, rules) -> {
+            loaded.add(host + " " + rules.getCrawlDelayMillis());
+        });
+
+        assertTrue(cache.isAllowed(origin + "/page/0"));
+        assertFalse(cache.isAllowed(origin + "/page/1"));
+        assertFalse(cache.isAllowed(origin + "/page/12"));
+        assertEquals(1, server.getRobotsRequestCount());
+        assertEquals(Collections.singletonList(origin + " 1000"), loaded);
+        assertEquals(2, cache.getDisallowedCount());
+
+        Thread.sleep(400);
+        assertTrue(cache.isAllowed(origin + "/page/2"));
+        assertEquals(2, server.getRobotsRequestCount());
+        assertEquals(2, loaded.size());
+    }
+
+    @Test
+    public void allowsHostWithoutRobotsTxtAndDisallowsUnreachableHost() throws Exception {
+        RobotsTxtCache cache = new RobotsTxtCache(60_000, null);
+        assertTrue(cache.isAllowed(origin + "/page/1"));
+        assertEquals(0, cache.getFailureCount());
+
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        assertFalse(cache.isAllowed("http://localhost:" + closedPort + "/page/1"));
+        assertEquals(1, cache.getFailureCount());
+        assertEquals(2, cache.getHostCount());
+    }
+
+    @Test
+    public void followsRedirectFromHttpToHttps() throws Exception {
+        Path tempDir = Files.createTempDirectory("robots-tls");
+        HttpsServer https = null;
+        HttpServer http = null;
+        try {
+            SSLContext tls = selfSignedContext(tempDir.resolve("localhost.p12"));
+            https = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            https.setHttpsConfigurator(new HttpsConfigurator(tls));
+            https.createContext("/robots.txt", exchange -> {
+                byte[] body = "User-agent: *\nDisallow: /private\n".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            https.start();
+            String target = "https://localhost:" + https.getAddress().getPort() + "/robots.txt";
+            http = redirectingServer(target, new AtomicInteger());
+
+            HttpClient client = HttpClient.newBuilder()
+                .sslContext(tls)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+            RobotsTxtCache cache = new RobotsTxtCache(60_000, null, client);
+            String httpOrigin = "http://localhost:" + http.getAddress().getPort();
+
+            assertTrue(cache.isAllowed(httpOrigin + "/public"));
+            assertFalse(cache.isAllowed(httpOrigin + "/private/page"));
+            assertEquals(0, cache.getFailureCount());
+        } finally {
+            if (http != null) {
+                http.stop(0);
+            }
+            if (https != null) {
+                https.stop(0);
+            }
+            BenchmarkSupport.deleteRecursively(tempDir);
+        }
+    }
+
+    @Test
+    public void allowsHostAfterTooManyRedirects() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer http = redirectingServer("/robots.txt", requests);
+        try {
+            RobotsTxtCache cache = new RobotsTxtCache(60_000, null);
+
+            assertTrue(cache.isAllowed("http://localhost:" + http.getAddress().getPort() + "/page/1"));
+            assertEquals(RobotsTxtCache.MAX_REDIRECTS + 1, requests.get());
+            assertEquals(0, cache.getFailureCount());
+        } finally {
+            http.stop(0);
+        }
+    }
+
+    /**
+     * Starts a server that answers /robots.txt with a redirect to the location.
+     */
+    private static HttpServer redirectingServer(String location, AtomicInteger requests) throws Exception {
+        HttpServer http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        http.createContext("/robots.txt", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("Location", location);
+            exchange.sendResponseHeaders(301, -1);
+            exchange.close();
+        });
+        http.start();
+        return http;
+    }
+
+    /**
+     * Creates a TLS context with a self-signed certificate for localhost that
+     * both the server and the client use.
+     */
+    private static SSLContext selfSignedContext(Path keyStoreFile) throws Exception {
+        char[] password = "changeit".toCharArray();
+        String keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool").toString();
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "localhost", "-keyalg", "RSA",
+            "-keysize", "2048", "-validity", "1", "-dname", "CN=localhost",
+            "-ext", "SAN=dns:localhost,ip:127.0.0.1", "-storetype", "PKCS12",
+            "-keystore", keyStoreFile.toString(), "-storepass", "changeit", "-keypass", "changeit")
+            .redirectErrorStream(true)
+            .start();
+        process.getInputStream().readAllBytes();
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+        assertEquals(0, process.exitValue());
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keyStoreFile)) {
+            keyStore.load(in, password);
+        }
+        KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keys.init(keyStore, password);
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(keyStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keys.getKeyManagers(), trust.getTrustManagers(), null);
+        return context;
+    }
+}
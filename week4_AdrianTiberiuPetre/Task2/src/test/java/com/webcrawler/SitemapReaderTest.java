@@ -0,0 +1,85 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests for streaming sitemaps and sitemap indexes from a local site.
+ */
+public class SitemapReaderTest {
+    private LocalSiteServer server;
+    private String origin;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalSiteServer(10, 3, 0, 0);
+        origin = "http://localhost:" + server.getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void readsPlainAndGzippedSitemapsListedInIndex() throws IOException {
+        server.addFile("/sitemap_index.xml", utf8(
+            "<?xml version=\"1.0\"?>\n"
+            + "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+            + "  <sitemap><loc>" + origin + "/a.xml</loc><lastmod>2024-01-01</lastmod></sitemap>\n"
+            + "  <sitemap><loc>" + origin + "/b.xml.gz</loc></sitemap>\n"
+            + "  <sitemap><loc>" + origin + "/missing.xml</loc></sitemap>\n"
+            + "</sitemapindex>\n"));
+        server.addFile("/a.xml", utf8(urlset("/page/1", "/page/2")));
+        server.addFile("/b.xml.gz", gzip(urlset("/page/3")));
+
+        List<String> urls = new ArrayList<>();
+        long count = new SitemapReader(10).read(origin + "/sitemap_index.xml", urls::add);
+
+        assertEquals(3, count);
+        assertEquals(Arrays.asList(origin + "/page/1", origin + "/page/2", origin + "/page/3"), urls);
+    }
+
+    @Test
+    public void stopsWhenConsumerDeclinesAndAtSitemapLimit() throws IOException {
+        server.addFile("/sitemap.xml", utf8(urlset("/page/1", "/page/2", "/page/3")));
+        List<String> urls = new ArrayList<>();
+        long count = new SitemapReader(10).read(origin + "/sitemap.xml", url -> urls.add(url) && urls.size() < 2);
+        assertEquals(2, count);
+
+        server.addFile("/index.xml", utf8(
+            "<sitemapindex><sitemap><loc>" + origin + "/sitemap.xml</loc></sitemap></sitemapindex>"));
+        assertEquals(0, new SitemapReader(1).read(origin + "/index.xml", url -> true));
+    }
+
+    private String urlset(String... paths) {
+        StringBuilder xml = new StringBuilder("<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n");
+        for (String path : paths) {
+            xml.append("  <url>\n    <loc>\n      ").append(origin).append(path).append("\n    </loc>\n  </url>\n");
+        }
+        return xml.append("</urlset>\n").toString();
+    }
+
+    private static byte[] utf8(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(String content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(utf8(content));
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,221 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.webcrawler.UrlManager.UrlDepthPair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Unit tests for SpillingUrlFrontier ordering and disk use.
+ */
+public class SpillingUrlFrontierTest {
+    private Path tempDir;
+    private Path spillDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("frontier-test");
+        spillDir = tempDir.resolve("spill");
+    }
+
+    @After
+    public void tearDown() {
+        BenchmarkSupport.deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void keepsFifoOrderAcrossSegments() {
+        try (SpillingUrlFrontier frontier = new SpillingUrlFrontier(spillDir, 4)) {
+            for (int i = 0; i < 50; i++) {
+                frontier.offer(new UrlDepthPair("http://example.com/" + i, 1));
+            }
+
+            assertEquals(50, frontier.size());
+            assertTrue(frontier.getSpilledSegmentCount() > 0);
+            assertTrue(frontier.getInMemoryCount() <= 8);
+
+            for (int i = 0; i < 50; i++) {
+                UrlDepthPair next = frontier.poll();
+                assertEquals("http://example.com/" + i, next.getUrl());
+                assertEquals(1, next.getDepth());
+            }
+            assertNull(frontier.poll());
+            assertTrue(frontier.isEmpty());
+        }
+    }
+
+    @Test
+    public void pollsShallowestDepthFirst() {
+        try (SpillingUrlFrontier frontier = new SpillingUrlFrontier(spillDir, 3)) {
+            for (int i = 0; i < 10; i++) {
+                frontier.offer(new UrlDepthPair("http://example.com/d2/" + i, 2));
+                frontier.offer(new UrlDepthPair("http://example.com/d1/" + i, 1));
+            }
+
+            for (int i = 0; i < 5; i++) {
+                assertEquals("http://example.com/d1/" + i, frontier.poll().getUrl());
+            }
+            // A shallower URL queued late still comes before the deeper ones
+            frontier.offer(new UrlDepthPair("http://example.com/d0", 0));
+            assertEquals("http://example.com/d0", frontier.poll().getUrl());
+            for (int i = 5; i < 10; i++) {
+                assertEquals("http://example.com/d1/" + i, frontier.poll().getUrl());
+            }
+            for (int i = 0; i < 10; i++) {
+                assertEquals("http://example.com/d2/" + i, frontier.poll().getUrl());
+            }
+        }
+    }
+
+    @Test
+    public void interleavedOffersAndPollsStayInOrder() {
+        try (SpillingUrlFrontier frontier = new SpillingUrlFrontier(spillDir, 5)) {
+            int offered = 0;
+            int polled = 0;
+            for (int round = 0; round < 40; round++) {
+                for (int i = 0; i < 7; i++) {
+                    frontier.offer(new UrlDepthPair("http://example.com/" + offered++, 0));
+                }
+                for (int i = 0; i < 5; i++) {
+                    assertEquals("http://example.com/" + polled++, frontier.poll().getUrl());
+                }
+            }
+            while (!frontier.isEmpty()) {
+                assertEquals("http://example.com/" + polled++, frontier.poll().getUrl());
+            }
+            assertEquals(offered, polled);
+        }
+    }
+
+    @Test
+    public void closeDeletesUnreadSegments() throws IOException {
+        SpillingUrlFrontier frontier = new SpillingUrlFrontier(spillDir, 2);
+        for (int i = 0; i < 20; i++) {
+            frontier.offer(new UrlDepthPair("http://example.com/" + i, 0));
+        }
+        try (Stream<Path> segments = Files.list(spillDir)) {
+            assertTrue(segments.count() > 0);
+        }
+
+        frontier.close();
+
+        assertFalse(Files.exists(spillDir));
+    }
+
+    @Test
+    public void deletesSegmentsLeftByEarlierRun() throws IOException {
+        Files.createDirectories(spillDir);
+        Files.write(spillDir.resolve("segment-0.bin"), new byte[] {1, 2, 3});
+
+        try (SpillingUrlFrontier frontier = new SpillingUrlFrontier(spillDir, 2)) {
+            for (int i = 0; i < 10; i++) {
+                frontier.offer(new UrlDepthPair("http://example.com/" + i, 0));
+            }
+            for (int i = 0; i < 10; i++) {
+                assertEquals("http://example.com/" + i, frontier.poll().getUrl());
+            }
+        }
+    }
+
+    @Test
+    public void failedSpillKeepsUrlsInMemory() throws IOException {
+        try (SpillingUrlFrontier frontier = new SpillingUrlFrontier(spillDir, 2)) {
+            Files.delete(spillDir);
+            for (int i = 0; i < 10; i++) {
+                frontier.offer(new UrlDepthPair("http://example.com/" + i, 0));
+            }
+
+            assertEquals(10, frontier.size());
+            assertEquals(0, frontier.getSpilledSegmentCount());
+            assertEquals(10, frontier.getInMemoryCount());
+            for (int i = 0; i < 10; i++) {
+                assertEquals("http://example.com/" + i, frontier.poll().getUrl());
+            }
+            assertTrue(frontier.isEmpty());
+        }
+    }
+
+    @Test
+    public void unreadableSegmentsAreSkippedAndCounted() throws IOException {
+        try (SpillingUrlFrontier frontier = new SpillingUrlFrontier(spillDir, 2)) {
+            for (int i = 0; i < 9; i++) {
+                frontier.offer(new UrlDepthPair("http://example.com/" + i, 0));
+            }
+            // Head 0-1, segments 2-3, 4-5 and 6-7, tail 8
+            List<Path> segments;
+            try (Stream<Path> files = Files.list(spillDir)) {
+                segments = files.sorted().collect(Collectors.toList());
+            }
+            assertEquals(3, segments.size());
+            Files.delete(segments.get(0));
+            Files.write(segments.get(1), new byte[] {0, 0, 0, 99, 'x'});
+
+            List<String> polled = new ArrayList<>();
+            UrlDepthPair next;
+            while ((next = frontier.poll()) != null) {
+                polled.add(next.getUrl());
+            }
+            assertEquals(List.of("http://example.com/0", "http://example.com/1",
+                                 "http://example.com/6", "http://example.com/7",
+                                 "http://example.com/8"), polled);
+            assertEquals(4, frontier.getLostUrlCount());
+            assertEquals(0, frontier.size());
+        }
+    }
+
+    @Test
+    public void concurrentOffersAndPollsLoseNothing() throws Exception {
+        int producers = 4;
+        int perProducer = 2_000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers + 1);
+        try (SpillingUrlFrontier frontier = new SpillingUrlFrontier(spillDir, 64)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perProducer; i++) {
+                        frontier.offer(new UrlDepthPair("http://example.com/" + producer + "/" + i, i % 3));
+                    }
+                }));
+            }
+
+            Set<String> seen = new HashSet<>();
+            Future<?> consumer = executor.submit(() -> {
+                while (seen.size() < producers * perProducer) {
+                    UrlDepthPair next = frontier.poll();
+                    if (next != null) {
+                        seen.add(next.getUrl());
+                    }
+                }
+            });
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            consumer.get();
+
+            assertEquals(producers * perProducer, seen.size());
+            assertTrue(frontier.isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.slf4j.LoggerFactory;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Heap and GC cost of crawling large pages with and without streaming them
+ * to disk. Allocation is what the collections reclaimed plus the growth left
+ * at the end; live heap is the most still in use right after a collection.
+ *
+ * Run with:
+ * MAVEN_OPTS=-Xmx1g mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.webcrawler.StreamToDiskBenchmark
+ */
+public class StreamToDiskBenchmark {
+    private static final int PAGE_COUNT = 100;
+    private static final int PAGE_BYTES = 2 * 1024 * 1024;
+    private static final int THREADS = 8;
+
+    private static final AtomicLong RECLAIMED = new AtomicLong();
+    private static final AtomicLong MAX_LIVE = new AtomicLong();
+    private static final AtomicLong GC_COUNT = new AtomicLong();
+    private static final AtomicLong GC_MILLIS = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.WARN);
+        listenForCollections();
+
+        try (LocalSiteServer server = new LocalSiteServer(PAGE_COUNT, 8, 0, PAGE_BYTES)) {
+            System.out.printf("%d pages of %d KB, %d threads%n", PAGE_COUNT, PAGE_BYTES / 1024, THREADS);
+            for (int round = 0; round < 2; round++) {
+                run("HttpClient, String", server, false, () -> new HttpClientPageFetcher(16, 2));
+                run("HttpClient, streamed", server, true, () -> new HttpClientPageFetcher(16, 2));
+                run("URLConnection, String", server, false, UrlConnectionPageFetcher::new);
+                run("URLConnection, streamed", server, true, UrlConnectionPageFetcher::new);
+            }
+        }
+    }
+
+    private static void run(String name, LocalSiteServer server, boolean streamToDisk,
+                            Supplier<PageFetcher> fetcherFactory) throws Exception {
+        Path outputDir = Files.createTempDirectory("stream-bench");
+        try (PageFetcher fetcher = fetcherFactory.get()) {
+            WebCrawler crawler = new WebCrawler.Builder()
+                .rootUrl(server.getRootUrl())
+                .maxDepth(Integer.MAX_VALUE)
+                .maxPages(PAGE_COUNT)
+                .threadPoolSize(THREADS)
+                .parseMode(ParseMode.STREAMING)
+                .streamToDisk(streamToDisk)
+                .checkpointIntervalSeconds(0)
+                .pageFetcher(fetcher)
+                .outputPath(outputDir.toString())
+                .build();
+
+            System.gc();
+            long usedBefore = usedHeap();
+            RECLAIMED.set(0);
+            MAX_LIVE.set(0);
+            GC_COUNT.set(0);
+            GC_MILLIS.set(0);
+            long start = System.nanoTime();
+            crawler.start();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long allocated = RECLAIMED.get() + usedHeap() - usedBefore;
+
+            System.out.printf("%-24s %6.2f s  %7.0f MB allocated  %6.1f MB max live  %4d GCs  %5d ms in GC%n",
+                name, seconds, allocated / 1e6, MAX_LIVE.get() / 1e6, GC_COUNT.get(), GC_MILLIS.get());
+        } finally {
+            BenchmarkSupport.deleteRecursively(outputDir);
+        }
+    }
+
+    private static void listenForCollections() {
+        NotificationListener listener = (notification, handback) -> {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            long before = sum(info.getGcInfo().getMemoryUsageBeforeGc().values());
+            long after = sum(info.getGcInfo().getMemoryUsageAfterGc().values());
+            RECLAIMED.addAndGet(Math.max(0, before - after));
+            MAX_LIVE.accumulateAndGet(after, Math::max);
+            GC_COUNT.incrementAndGet();
+            GC_MILLIS.addAndGet(info.getGcInfo().getDuration());
+        };
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+        }
+    }
+
+    private static long sum(Iterable<MemoryUsage> usages) {
+        long total = 0;
+        for (MemoryUsage usage : usages) {
+            total += usage.getUsed();
+        }
+        return total;
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,74 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the URL dedup strategies.
+ */
+public class UrlDeduplicatorTest {
+    private static final int URL_COUNT = 200_000;
+
+    @Test
+    public void exactDeduplicatorIsExact() {
+        assertExact(new ExactUrlDeduplicator());
+    }
+
+    @Test
+    public void fingerprintDeduplicatorIsExactAcrossResizes() {
+        // Tiny initial table forces every segment to grow many times
+        assertExact(new FingerprintUrlDeduplicator(16));
+    }
+
+    @Test
+    public void bloomFilterStaysWithinFalsePositiveRateWhileScaling() {
+        double rate = 0.01;
+        BloomFilterUrlDeduplicator bloom = new BloomFilterUrlDeduplicator(rate, 10_000);
+
+        int falsePositives = 0;
+        for (int i = 0; i < URL_COUNT; i++) {
+            if (!bloom.add(url(i))) {
+                falsePositives++;
+            }
+        }
+        for (int i = 0; i < URL_COUNT; i++) {
+            assertFalse(bloom.add(url(i)));
+        }
+
+        assertTrue("expected several layers", bloom.getLayerCount() > 3);
+        assertTrue("false positives: " + falsePositives, falsePositives < URL_COUNT * rate);
+        assertEquals(URL_COUNT - falsePositives, bloom.size());
+    }
+
+    @Test
+    public void urlManagerCountsDiscoveredUrlsWithEveryStrategy() {
+        for (DedupStrategy strategy : DedupStrategy.values()) {
+            UrlManager urlManager = new UrlManager.Builder()
+                .rootUrl("http://example.com/")
+                .dedupStrategy(strategy)
+                .build();
+
+            assertTrue(urlManager.addUrl("http://example.com/a", 1));
+            assertFalse(urlManager.addUrl("http://example.com/a/", 1));
+            assertTrue(urlManager.addUrl("http://example.com/b", 1));
+            assertEquals(strategy.name(), 2, urlManager.getTotalDiscoveredUrls());
+        }
+    }
+
+    private static void assertExact(UrlDeduplicator deduplicator) {
+        for (int i = 0; i < URL_COUNT; i++) {
+            assertTrue(deduplicator.add(url(i)));
+        }
+        for (int i = 0; i < URL_COUNT; i++) {
+            assertFalse(deduplicator.add(url(i)));
+        }
+        assertEquals(URL_COUNT, deduplicator.size());
+    }
+
+    private static String url(int i) {
+        return "https://www.example.edu/section-" + (i % 97) + "/page-" + i + ".html";
+    }
+}
@@ -0,0 +1,75 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests for UrlFilter rules and counters.
+ */
+public class UrlFilterTest {
+
+    @Test
+    public void defaultsAcceptHttpPages() {
+        UrlFilter filter = UrlFilter.defaults();
+
+        assertTrue(filter.accept("https://www.example.edu/study/index.html"));
+        assertTrue(filter.accept("HTTP://Example.com:8080/a/b?x=1#top"));
+        assertTrue(filter.accept("https://example.com/view?file=photo.jpg"));
+        assertTrue(filter.accept("https://example.com/v1.2/docs"));
+    }
+
+    @Test
+    public void defaultsAcceptIpv6InternationalAndUnderscoreHosts() {
+        UrlFilter filter = UrlFilter.defaults();
+
+        assertTrue(filter.accept("http://[::1]/"));
+        assertTrue(filter.accept("http://[2001:db8::7]:8080/a?b=c"));
+        assertTrue(filter.accept("http://[fe80::1%25eth0]/"));
+        assertTrue(filter.accept("https://bücher.example/katalog"));
+        assertTrue(filter.accept("https://例え.jp/"));
+        assertTrue(filter.accept("https://my_host.example.com/"));
+
+        assertFalse(filter.accept("http://[::1/"));
+        assertFalse(filter.accept("http://[::1]x/"));
+        assertFalse(filter.accept("http://[example.com]/"));
+        assertFalse(filter.accept("https://bücher example/"));
+    }
+
+    @Test
+    public void defaultsRejectAndCountByRule() {
+        UrlFilter filter = UrlFilter.defaults();
+
+        assertFalse(filter.accept("mailto:someone@example.com"));
+        assertFalse(filter.accept("ftp://example.com/file"));
+        assertFalse(filter.accept("https://example.com/images/photo.JPG"));
+        assertFalse(filter.accept("https://example.com/photo.jpg?size=large"));
+        assertFalse(filter.accept("https:///no-host"));
+        assertFalse(filter.accept("https://bad host/"));
+        assertFalse(filter.accept("https://example.com:99999/"));
+
+        Map<String, Long> counts = filter.getRejectionCounts();
+        assertEquals(Long.valueOf(2), counts.get("scheme"));
+        assertEquals(Long.valueOf(2), counts.get("extension"));
+        assertEquals(Long.valueOf(3), counts.get("syntax"));
+    }
+
+    @Test
+    public void includeAndExcludePatterns() {
+        UrlFilter filter = new UrlFilter.Builder()
+            .include(List.of("/study/", "/news/"))
+            .exclude(List.of("[?&]print=1"))
+            .build();
+
+        assertTrue(filter.accept("https://example.edu/study/a"));
+        assertFalse(filter.accept("https://example.edu/study/a?print=1"));
+        assertFalse(filter.accept("https://example.edu/shop/a"));
+        assertEquals(Long.valueOf(1), filter.getRejectionCounts().get("include"));
+        assertEquals(Long.valueOf(1), filter.getRejectionCounts().get("exclude"));
+    }
+}
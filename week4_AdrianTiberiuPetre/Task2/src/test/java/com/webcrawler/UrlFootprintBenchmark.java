@@ -0,0 +1,97 @@
+package com.webcrawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A set of a million normalized URLs on 50 hosts, held as Strings or as
+ * CompactUrls sharing their origins: the cost of adding a new URL and of
+ * looking up a known one.
+ *
+ * add fills an empty set once per iteration; contains looks URLs up in one
+ * filled when the trial starts. While filling that one, the heap it retains
+ * after a full GC is printed, as it is not a timing.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="UrlFootprintBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class UrlFootprintBenchmark {
+    private static final int URL_COUNT = 1_000_000;
+    private static final int HOSTS = 50;
+
+    @Param({"String", "CompactUrl"})
+    private String representation;
+
+    private String[] urls;
+    private Set<Object> filled;
+    private Set<Object> empty;
+    private OriginInterner origins;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        // URLs made one by one, as when parsed from pages, so only a set of Strings keeps them
+        long before = BenchmarkSupport.usedHeapAfterGc();
+        origins = new OriginInterner();
+        filled = new HashSet<>();
+        for (int i = 0; i < URL_COUNT; i++) {
+            filled.add(key(url(i)));
+        }
+        long retained = BenchmarkSupport.usedHeapAfterGc() - before;
+        System.out.printf("%n%s: %,d URLs, %.1f MB heap, %.1f bytes/URL%n",
+            representation, URL_COUNT, retained / 1e6, (double) retained / URL_COUNT);
+
+        urls = new String[URL_COUNT];
+        for (int i = 0; i < URL_COUNT; i++) {
+            urls[i] = url(i);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void clear() {
+        empty = new HashSet<>();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OperationsPerInvocation(URL_COUNT)
+    public int add() {
+        for (String url : urls) {
+            empty.add(key(url));
+        }
+        return empty.size();
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return filled.contains(key(urls[next++ % URL_COUNT]));
+    }
+
+    private Object key(String url) {
+        return representation.equals("String") ? url : CompactUrl.of(url, origins);
+    }
+
+    private static String url(int i) {
+        return "https://www.faculty-" + (i % HOSTS) + ".example.edu/news/article-" + i + ".html?lang=en";
+    }
+}
@@ -0,0 +1,79 @@
+package com.webcrawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UrlManager.addUrl (normalization, domain check, dedup) with several threads
+ * adding links from the URL corpus into one shared manager.
+ *
+ * Threads cycle through the corpus, so only the first pass of an iteration
+ * queues new URLs; after that every add is a duplicate. The 5000 first
+ * sightings are a small part of a two second iteration, so the score is
+ * mostly that of the duplicate path, normalization and a dedup lookup,
+ * which is what most links on a crawled page take.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="UrlManagerBenchmark"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlManagerBenchmark {
+    private String[] urls;
+    private UrlManager urlManager;
+
+    @Setup(Level.Trial)
+    public void loadCorpus() {
+        urls = BenchmarkCorpus.urls();
+    }
+
+    /**
+     * A fresh manager per iteration, so no iteration starts with the corpus
+     * already seen by the one before.
+     */
+    @Setup(Level.Iteration)
+    public void resetManager() {
+        urlManager = new UrlManager("https://www.example.edu/", true);
+    }
+
+    /**
+     * Per-thread position in the corpus; threads start at different offsets.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void reset(ThreadParams threadParams) {
+            next = threadParams.getThreadIndex() * 997;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean addUrlSingleThread(Cursor cursor) {
+        return urlManager.addUrl(urls[cursor.next++ % urls.length], 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean addUrlContended(Cursor cursor) {
+        return urlManager.addUrl(urls[cursor.next++ % urls.length], 1);
+    }
+}
@@ -0,0 +1,114 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.webcrawler.UrlManager.UrlDepthPair;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for UrlManager dispatch and deduplication.
+ */
+public class UrlManagerTest {
+
+    @Test
+    public void takeReturnsNullWhenQueueEmptyAndNothingInProgress() throws Exception {
+        UrlManager urlManager = new UrlManager("http://example.com/", true);
+        urlManager.addUrl("http://example.com/", 0);
+
+        UrlDepthPair root = urlManager.takeNextUrl();
+        assertNotNull(root);
+        urlManager.markCompleted(root);
+
+        assertNull(urlManager.takeNextUrl());
+    }
+
+    @Test
+    public void dequeuedUrlIsBuiltOnceUntilCompleted() throws Exception {
+        UrlManager urlManager = new UrlManager("http://example.com/", true);
+        urlManager.addUrl("http://example.com/", 0);
+
+        UrlDepthPair root = urlManager.takeNextUrl();
+        String url = root.getUrl();
+        assertEquals("http://example.com/", url);
+        assertSame(url, root.getUrl());
+
+        urlManager.markCompleted(root);
+        assertNotSame(url, root.getUrl());
+        assertEquals(url, root.getUrl());
+    }
+
+    @Test
+    public void takeWaitsForUrlsQueuedByInProgressTask() throws Exception {
+        UrlManager urlManager = new UrlManager("http://example.com/", true);
+        urlManager.addUrl("http://example.com/", 0);
+        UrlDepthPair root = urlManager.takeNextUrl();
+
+        CompletableFuture<UrlDepthPair> next = CompletableFuture.supplyAsync(() -> {
+            try {
+                return urlManager.takeNextUrl();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        Thread.sleep(50);
+        assertFalse(next.isDone());
+
+        urlManager.addUrl("http://example.com/child", 1);
+        urlManager.markCompleted(root);
+
+        assertEquals("http://example.com/child", next.get(5, TimeUnit.SECONDS).getUrl());
+    }
+
+    @Test
+    public void pageBudgetLimitsDispatch() throws Exception {
+        UrlManager urlManager = new UrlManager("http://example.com/", true, 2);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(urlManager.addUrl("http://example.com/page" + i, 1));
+        }
+
+        UrlDepthPair first = urlManager.takeNextUrl();
+        UrlDepthPair second = urlManager.takeNextUrl();
+        assertNotNull(first);
+        assertNotNull(second);
+
+        urlManager.incrementCrawledCount();
+        urlManager.markCompleted(first);
+        urlManager.incrementCrawledCount();
+        urlManager.markCompleted(second);
+
+        assertNull(urlManager.takeNextUrl());
+        assertEquals(3, urlManager.getQueueSize());
+    }
+
+    @Test
+    public void duplicatesAndForeignDomainsAreRejected() {
+        UrlManager urlManager = new UrlManager("http://example.com/", true);
+
+        assertTrue(urlManager.addUrl("http://example.com/a", 1));
+        assertFalse(urlManager.addUrl("http://example.com/a#section", 1));
+        assertFalse(urlManager.addUrl("http://other.org/a", 1));
+        assertEquals(1, urlManager.getTotalDiscoveredUrls());
+    }
+
+    @Test
+    public void urlVariantsAreCrawledOnce() throws Exception {
+        UrlManager urlManager = new UrlManager("http://example.com/", true);
+
+        assertTrue(urlManager.addUrl("http://example.com/Docs/page?b=2&a=1", 1));
+        assertFalse(urlManager.addUrl("HTTP://EXAMPLE.com:80/Docs/./page/?a=1&utm_source=mail&b=2", 1));
+        assertTrue(urlManager.addUrl("http://example.com/docs/page?a=1&b=2", 1));
+
+        assertEquals("http://example.com/Docs/page?a=1&b=2", urlManager.takeNextUrl().getUrl());
+        assertEquals(2, urlManager.getTotalDiscoveredUrls());
+    }
+}
@@ -0,0 +1,74 @@
+package com.webcrawler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of normalizing one URL of the corpus: the RFC 3986 normalizer, the
+ * same plus conversion to the compact form stored in the dedup set and
+ * frontier, and the former lowercase-and-trim normalization for reference.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="UrlNormalizerBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UrlNormalizerBenchmark {
+    private static final int CORPUS_SIZE = 5000;
+
+    private String[] urls;
+    private UrlNormalizer normalizer;
+
+    @Setup
+    public void setUp() {
+        urls = BenchmarkCorpus.urls();
+        normalizer = UrlNormalizer.defaults();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void rfc3986(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(normalizer.normalize(url));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void rfc3986Compact(Blackhole blackhole) {
+        for (String url : urls) {
+            blackhole.consume(CompactUrl.of(normalizer.normalize(url)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void lowercase(Blackhole blackhole) {
+        for (String url : urls) {
+            String normalized = url.toLowerCase().trim();
+            int fragment = normalized.indexOf('#');
+            if (fragment > 0) {
+                normalized = normalized.substring(0, fragment);
+            }
+            if (normalized.endsWith("/")) {
+                normalized = normalized.substring(0, normalized.length() - 1);
+            }
+            blackhole.consume(normalized);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Unit tests for URL normalization.
+ */
+public class UrlNormalizerTest {
+    private final UrlNormalizer normalizer = UrlNormalizer.defaults();
+
+    @Test
+    public void lowercasesSchemeAndHostButKeepsPathCase() {
+        assertEquals("http://example.com/Docs/Guide.html?Q=Java",
+                     normalizer.normalize("HTTP://Example.COM./Docs/Guide.html?Q=Java"));
+    }
+
+    @Test
+    public void dropsDefaultPortsButKeepsOthers() {
+        assertEquals("http://a.com/", normalizer.normalize("http://a.com:80"));
+        assertEquals("https://a.com/x", normalizer.normalize("https://a.com:443/x"));
+        assertEquals("https://a.com:8443/x", normalizer.normalize("https://a.com:8443/x"));
+        assertEquals("http://user@[::1]:8080/", normalizer.normalize("http://user@[::1]:8080/"));
+    }
+
+    @Test
+    public void removesDotSegmentsAndTrailingSlash() {
+        assertEquals("http://a.com/b/d", normalizer.normalize("http://a.com/b/./c/../d/"));
+        assertEquals("http://a.com/", normalizer.normalize("http://a.com/../.."));
+        assertEquals("http://a.com/", normalizer.normalize("http://a.com/"));
+    }
+
+    @Test
+    public void normalizesPercentEscapes() {
+        assertEquals("http://a.com/~user/a%2Fb%3F", normalizer.normalize("http://a.com/%7euser/a%2fb%3F"));
+        assertEquals("http://a.com/caf%C3%A9%20menu", normalizer.normalize("http://a.com/café menu"));
+        assertEquals("http://a.com/100%", normalizer.normalize("http://a.com/100%"));
+    }
+
+    @Test
+    public void stripsTrackingParametersSortsQueryAndDropsFragment() {
+        assertEquals("http://a.com/p?b=2&id=7&id=3",
+                     normalizer.normalize("http://a.com/p?utm_source=x&id=7&UTM_Medium=y&b=2&gclid=z&&id=3#top"));
+        assertEquals("http://a.com/p", normalizer.normalize("http://a.com/p?utm_campaign=spring"));
+    }
+
+    @Test
+    public void appliesConfiguredStripListAndOrder() {
+        UrlNormalizer custom = new UrlNormalizer.Builder()
+            .stripParameters(Arrays.asList("session*", "ref"))
+            .sortQuery(false)
+            .stripTrailingSlash(false)
+            .build();
+
+        assertEquals("http://a.com/p/?z=1&utm_source=x&a=2",
+                     custom.normalize("http://a.com/p/?z=1&sessionid=9&utm_source=x&ref=home&a=2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWildcardMatchingEveryParameter() {
+        new UrlNormalizer.Builder().stripParameters(Collections.singletonList("*")).build();
+    }
+
+    @Test
+    public void leavesUrlsWithoutSchemeAloneApartFromFragment() {
+        assertEquals("mailto:someone@a.com", normalizer.normalize("mailto:someone@a.com#x"));
+    }
+}
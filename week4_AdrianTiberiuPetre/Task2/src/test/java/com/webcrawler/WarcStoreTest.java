@@ -0,0 +1,136 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Unit tests for WarcStore.
+ */
+public class WarcStoreTest {
+    private Path tempDir;
+
+    @Before
+    public void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("warc-store-test");
+    }
+
+    @After
+    public void tearDown() {
+        BenchmarkSupport.deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void looksUpRecordsAcrossSegmentsAndRuns() throws IOException {
+        // Small segments so the first run rolls over several times
+        try (WarcStore store = new WarcStore(tempDir, false, 2048)) {
+            for (int i = 0; i < 20; i++) {
+                store.writePage(url(i), 1, "Page " + i, StandardCharsets.UTF_8, body(i, 0));
+            }
+            store.writeLinks(url(3), Arrays.asList(url(4), url(5)));
+            assertEquals("http://example.com/page3 v0", read(store, url(3)));
+            assertTrue(store.getSegmentCount() > 1);
+        }
+
+        try (WarcStore store = new WarcStore(tempDir, true, 2048)) {
+            store.writePage(url(3), 1, "Page 3", StandardCharsets.UTF_8, body(3, 1));
+            store.writePage(url(20), 1, "Page 20", StandardCharsets.UTF_8, body(20, 1));
+            store.removePage(url(7));
+        }
+
+        try (WarcStore store = new WarcStore(tempDir, false)) {
+            for (int i = 0; i < 20; i++) {
+                if (i == 3) {
+                    assertEquals("http://example.com/page3 v1", read(store, url(i)));
+                } else if (i == 7) {
+                    assertFalse(store.containsPage(url(i)));
+                } else {
+                    assertEquals("http://example.com/page" + i + " v0", read(store, url(i)));
+                }
+            }
+            assertEquals("http://example.com/page20 v1", read(store, url(20)));
+            assertEquals(new LinkedHashSet<>(Arrays.asList(url(4), url(5))), store.readLinks(url(3)));
+            assertNull(store.readLinks(url(4)));
+            assertNull(store.openPage("http://example.com/missing"));
+            assertEquals(StandardCharsets.UTF_8, store.readPageCharset(url(3)));
+            assertNull(store.readPageCharset("http://example.com/missing"));
+            assertEquals(0, store.getRecordCount());
+        }
+    }
+
+    @Test
+    public void recoversRecordsOfARunThatWasNotClosed() throws IOException {
+        try (WarcStore store = new WarcStore(tempDir, false)) {
+            store.writePage(url(1), 1, "Page 1", StandardCharsets.UTF_8, body(1, 0));
+        }
+
+        // Never closed, as after a kill: only what was synced reached the segment
+        WarcStore crashed = new WarcStore(tempDir, false);
+        crashed.writePage(url(2), 1, "Page 2", StandardCharsets.UTF_8, body(2, 0));
+        crashed.writeLinks(url(2), Arrays.asList(url(3)));
+        crashed.removePage(url(1));
+        crashed.sync();
+        crashed.writePage(url(4), 1, "Page 4", StandardCharsets.UTF_8, body(4, 0));
+        assertTrue(Files.exists(tempDir.resolve(WarcStore.INDEX_LOG_FILE)));
+
+        try (WarcStore store = new WarcStore(tempDir, false)) {
+            assertEquals("http://example.com/page2 v0", read(store, url(2)));
+            assertEquals(new LinkedHashSet<>(Arrays.asList(url(3))), store.readLinks(url(2)));
+            assertFalse(store.containsPage(url(1)));
+            assertFalse(store.containsPage(url(4)));
+        }
+
+        assertFalse(Files.exists(tempDir.resolve(WarcStore.INDEX_LOG_FILE)));
+        try (WarcStore store = new WarcStore(tempDir, false)) {
+            assertEquals("http://example.com/page2 v0", read(store, url(2)));
+            assertFalse(store.containsPage(url(1)));
+        }
+    }
+
+    @Test
+    public void compressedSegmentsAreStandardGzipStreams() throws IOException {
+        try (WarcStore store = new WarcStore(tempDir, true)) {
+            store.writePage(url(1), 0, "One", StandardCharsets.UTF_8, body(1, 0));
+            store.writePage(url(2), 0, "Two", StandardCharsets.UTF_8, body(2, 0));
+        }
+
+        Path segment = tempDir.resolve("crawl-00000.warc.gz");
+        String content;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(segment))) {
+            content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertTrue(content.startsWith("WARC/1.1\r\nWARC-Type: warcinfo\r\n"));
+        assertTrue(content.contains("WARC-Target-URI: http://example.com/page1\r\n"));
+        assertTrue(content.contains("X-Page-Title: Two\r\n"));
+        assertTrue(content.contains("http://example.com/page2 v0\r\n\r\n"));
+    }
+
+    private static String url(int i) {
+        return "http://example.com/page" + i;
+    }
+
+    private static byte[] body(int i, int version) {
+        return (url(i) + " v" + version).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(WarcStore store, String url) throws IOException {
+        try (InputStream in = store.openPage(url)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
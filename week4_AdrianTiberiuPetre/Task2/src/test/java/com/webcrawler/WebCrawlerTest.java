@@ -0,0 +1,536 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * End-to-end crawls against a local embedded site.
+ */
+public class WebCrawlerTest {
+    private static final int PAGE_COUNT = 40;
+
+    private LocalSiteServer server;
+    private Path outputDir;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new LocalSiteServer(PAGE_COUNT, 3, 0, 64);
+        outputDir = Files.createTempDirectory("crawler-test");
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        BenchmarkSupport.deleteRecursively(outputDir);
+    }
+
+    @Test
+    public void crawlsWholeSiteWithAsyncFetcher() {
+        newBuilder().build().start();
+
+        assertEquals(PAGE_COUNT, countSavedPages());
+    }
+
+    @Test
+    public void crawlsWholeSiteWithBlockingFetcher() {
+        try (PageFetcher fetcher = new UrlConnectionPageFetcher()) {
+            newBuilder().pageFetcher(fetcher).build().start();
+        }
+
+        assertEquals(PAGE_COUNT, countSavedPages());
+    }
+
+    @Test
+    public void startsAgainWithANewFetcher() {
+        WebCrawler crawler = newBuilder().build();
+        crawler.start();
+        BenchmarkSupport.deleteRecursively(outputDir);
+
+        // The first run closed the fetcher it created; the second must not reuse it
+        crawler.start();
+
+        assertEquals(PAGE_COUNT, countSavedPages());
+    }
+
+    @Test
+    public void crawlsWholeSiteOnVirtualThreads() {
+        try (PageFetcher fetcher = new UrlConnectionPageFetcher()) {
+            newBuilder()
+                .pageFetcher(fetcher)
+                .executionMode(ExecutionMode.VIRTUAL_THREADS)
+                .maxConcurrency(8)
+                .build()
+                .start();
+        }
+
+        assertEquals(PAGE_COUNT, countSavedPages());
+    }
+
+    @Test
+    public void crawlsWholeSiteStreamingToDisk() {
+        newBuilder().streamToDisk(true).build().start();
+
+        assertEquals(PAGE_COUNT, countSavedPages());
+    }
+
+    @Test
+    public void crawlsWholeSiteStreamingToDiskWithBlockingFetcher() {
+        try (PageFetcher fetcher = new UrlConnectionPageFetcher()) {
+            newBuilder().pageFetcher(fetcher).streamToDisk(true).build().start();
+        }
+
+        assertEquals(PAGE_COUNT, countSavedPages());
+    }
+
+    @Test
+    public void crawlsWholeSiteWithSpillingFrontier() {
+        Path spillDir = outputDir.resolve("frontier");
+        newBuilder()
+            .frontierSpillDirectory(spillDir.toString())
+            .frontierSegmentSize(2)
+            .build()
+            .start();
+
+        assertEquals(PAGE_COUNT, countSavedPages());
+        assertFalse(Files.exists(spillDir));
+    }
+
+    @Test(timeout = 60_000)
+    public void crawlEndsWhenSpilledSegmentsAreLost() throws Exception {
+        Path spillDir = outputDir.resolve("frontier");
+        try (LocalSiteServer slow = new LocalSiteServer(PAGE_COUNT, 3, 5, 64)) {
+            WebCrawler crawler = newBuilder()
+                .rootUrl(slow.getRootUrl())
+                .threadPoolSize(1)
+                .frontierSpillDirectory(spillDir.toString())
+                .frontierSegmentSize(1)
+                .build();
+            Thread crawl = new Thread(crawler::start);
+            crawl.start();
+            // Deletes segments as soon as they are written, so reading them back fails
+            while (crawl.isAlive()) {
+                try (Stream<Path> segments = Files.list(spillDir)) {
+                    segments.forEach(BenchmarkSupport::deleteRecursively);
+                } catch (IOException e) {
+                    // Not created yet, or already removed by the crawl
+                }
+                crawl.join(1);
+            }
+        }
+
+        int saved = countSavedPages();
+        assertTrue(saved > 0 && saved < PAGE_COUNT);
+    }
+
+    @Test
+    public void resumesCrawlFromCheckpoint() {
+        newBuilder().maxPages(15).checkpointIntervalSeconds(60).build().start();
+        assertEquals(15, countSavedPages());
+
+        newBuilder().resumeFrom(outputDir.toString()).build().start();
+
+        assertEquals(PAGE_COUNT, countSavedPages());
+        assertEquals(PAGE_COUNT, server.getRequestCount());
+    }
+
+    @Test
+    public void revalidatesUnchangedPagesOnRecrawl() throws Exception {
+        newBuilder().revalidate(true).build().start();
+        Map<String, FileTime> saved = savedPageTimes();
+
+        newBuilder().revalidate(true).build().start();
+
+        assertEquals(PAGE_COUNT, server.getNotModifiedCount());
+        assertEquals(2 * PAGE_COUNT, server.getRequestCount());
+        assertEquals(saved, savedPageTimes());
+    }
+
+    @Test
+    public void revalidatesUnchangedPagesStreamingToDisk() throws Exception {
+        try (PageFetcher fetcher = new UrlConnectionPageFetcher()) {
+            newBuilder().pageFetcher(fetcher).streamToDisk(true).revalidate(true).build().start();
+            Map<String, FileTime> saved = savedPageTimes();
+
+            newBuilder().pageFetcher(fetcher).streamToDisk(true).revalidate(true).build().start();
+
+            assertEquals(PAGE_COUNT, server.getNotModifiedCount());
+            assertEquals(2 * PAGE_COUNT, server.getRequestCount());
+            assertEquals(saved, savedPageTimes());
+        }
+    }
+
+    @Test
+    public void refetchesChangedPagesOnRecrawl() {
+        newBuilder().revalidate(true).build().start();
+        server.setContentVersion(1);
+
+        newBuilder().revalidate(true).build().start();
+
+        assertEquals(0, server.getNotModifiedCount());
+        assertEquals(2 * PAGE_COUNT, server.getRequestCount());
+        assertEquals(PAGE_COUNT, countSavedPages());
+    }
+
+    @Test
+    public void savesDuplicateBodiesOnce() throws Exception {
+        addSessionVariants(3);
+
+        newBuilder().maxPages(PAGE_COUNT + 3).dedupContent(true).build().start();
+
+        assertEquals(PAGE_COUNT + 3, server.getRequestCount());
+        assertEquals(PAGE_COUNT, countSavedPages());
+        assertEquals(3, Files.readAllLines(outputDir.resolve("aliases.tsv")).size());
+    }
+
+    @Test
+    public void savesDuplicateBodiesOnceStreamingToDisk() throws Exception {
+        addSessionVariants(3);
+
+        newBuilder().maxPages(PAGE_COUNT + 3).dedupContent(true).streamToDisk(true).build().start();
+
+        assertEquals(PAGE_COUNT + 3, server.getRequestCount());
+        assertEquals(PAGE_COUNT, countSavedPages());
+        assertEquals(3, Files.readAllLines(outputDir.resolve("aliases.tsv")).size());
+    }
+
+    @Test
+    public void writesPagesBehindOnWriterThreads() {
+        newBuilder().writeQueueCapacity(4).writerThreads(2).fsyncIntervalMillis(20).build().start();
+
+        assertEquals(PAGE_COUNT, countSavedPages());
+    }
+
+    @Test
+    public void compressesStoredPagesAndSummary() throws Exception {
+        newBuilder().compression(Compression.GZIP).writeQueueCapacity(8).build().start();
+
+        assertEquals(0, countSavedPages());
+        assertEquals(PAGE_COUNT, outputDir.toFile().listFiles((dir, name) -> name.endsWith(".html.gz")).length);
+        try (InputStream in = StoredPageReader.open(outputDir.resolve("crawl_summary.txt.gz"))) {
+            String summary = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(summary.contains("Compression Ratio: "));
+            assertTrue(summary.contains("Compression CPU: "));
+        }
+    }
+
+    @Test
+    public void journalsEveryPageAndSummarizesFromIt() throws Exception {
+        Path journalFile = outputDir.resolve("crawl-journal.jsonl");
+        newBuilder().revalidate(true).journal(true).build().start();
+
+        CrawlJournal.Summary journal = CrawlJournal.summarize(journalFile);
+        assertEquals(PAGE_COUNT, journal.getCount(CrawlJournal.Outcome.FETCHED));
+        assertEquals(Map.of(200, (long) PAGE_COUNT), journal.getStatusCounts());
+        assertEquals(PAGE_COUNT - 1, journal.getLinksAdded());
+        assertTrue(journal.getLinksFound() >= journal.getLinksAdded());
+        assertTrue(journal.getBytes() > 0);
+
+        // The journal of a new crawl replaces the old one
+        newBuilder().revalidate(true).journal(true).build().start();
+
+        assertEquals(PAGE_COUNT, Files.readAllLines(journalFile).size());
+        journal = CrawlJournal.summarize(journalFile);
+        assertEquals(PAGE_COUNT, journal.getCount(CrawlJournal.Outcome.NOT_MODIFIED));
+        assertEquals(PAGE_COUNT, journal.getPagesCrawled());
+        String summary = new String(Files.readAllBytes(outputDir.resolve("crawl_summary.txt")), StandardCharsets.UTF_8);
+        assertTrue(summary.contains("Pages: 0 fetched, " + PAGE_COUNT + " not modified, 0 duplicates, 0 failed"));
+    }
+
+    @Test
+    public void recordsLinkGraphWhileCrawling() throws Exception {
+        newBuilder().linkGraph(true).build().start();
+
+        LinkGraph graph = LinkGraph.open(outputDir.resolve("link-graph"));
+        int home = graph.getId(pageUrl(0));
+        assertEquals(PAGE_COUNT, graph.getPageCount());
+        // Each page but the first is linked from its parent and links back home
+        assertEquals(2 * (PAGE_COUNT - 1), graph.getLinkCount());
+        assertEquals(pageIds(graph, 1, 2, 3), toSet(graph.getOutLinks(home)));
+        assertEquals(PAGE_COUNT - 1, graph.getInDegree(home));
+        assertEquals(pageIds(graph, 4), toSet(graph.getInLinks(graph.getId(pageUrl(13)))));
+
+        double[] rank = graph.pageRank(0.85, 50);
+        for (int id = 0; id < rank.length; id++) {
+            assertTrue(id == home || rank[id] < rank[home]);
+        }
+    }
+
+    @Test
+    public void storesPagesInWarcSegments() throws Exception {
+        newBuilder().outputFormat(OutputFormat.WARC_GZIP).build().start();
+
+        assertEquals(0, countSavedPages());
+        assertEquals(PAGE_COUNT, countStoredRecords());
+    }
+
+    @Test
+    public void revalidatesWarcRecordsStreamingToDisk() throws Exception {
+        try (PageFetcher fetcher = new UrlConnectionPageFetcher()) {
+            newBuilder().pageFetcher(fetcher).streamToDisk(true).revalidate(true)
+                .outputFormat(OutputFormat.WARC).build().start();
+            // Drop the saved links so the recrawl has to read the pages back from the segment
+            try (WarcStore store = new WarcStore(outputDir, false)) {
+                for (int i = 0; i < PAGE_COUNT; i++) {
+                    store.removeLinks(pageUrl(i));
+                }
+            }
+
+            newBuilder().pageFetcher(fetcher).streamToDisk(true).revalidate(true)
+                .outputFormat(OutputFormat.WARC).build().start();
+
+            assertEquals(PAGE_COUNT, server.getNotModifiedCount());
+            assertEquals(2 * PAGE_COUNT, server.getRequestCount());
+            assertEquals(PAGE_COUNT, countStoredRecords());
+        }
+    }
+
+    @Test
+    public void limitsRequestsPerHostAcrossServers() throws Exception {
+        try (LocalSiteServer slow = new LocalSiteServer(10, 3, 100, 64);
+             LocalSiteServer throttling = new LocalSiteServer(10, 9, 0, 64)) {
+            // Every page links straight from the root, so a refused page hides no others
+            throttling.throttleEvery(4);
+            server.addRootLink(slow.getRootUrl());
+            server.addRootLink(throttling.getRootUrl());
+
+            newBuilder()
+                .stayInDomain(false)
+                .maxPages(Integer.MAX_VALUE)
+                .threadPoolSize(8)
+                .maxRequestsPerHost(2)
+                .build()
+                .start();
+
+            assertEquals(PAGE_COUNT + 10 + 10 - throttling.getThrottledCount(), countSavedPages());
+            assertTrue(server.getMaxActiveRequests() <= 2);
+            assertTrue(slow.getMaxActiveRequests() <= 2);
+            assertTrue(throttling.getMaxActiveRequests() <= 2);
+        }
+    }
+
+    @Test
+    public void publishesLiveMetricsWhileCrawling() throws Exception {
+        try (LocalSiteServer slow = new LocalSiteServer(10, 3, 100, 64)) {
+            WebCrawler crawler = newBuilder()
+                .rootUrl(slow.getRootUrl())
+                .threadPoolSize(2)
+                .writeQueueCapacity(4)
+                .metricsPort(0)
+                .build();
+            Thread crawl = new Thread(crawler::start);
+            crawl.start();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while ((crawler.getMetrics() == null || crawler.getMetrics().getPagesCrawled() == 0)
+                   && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            String prometheus;
+            try (InputStream in = new URL("http://localhost:" + crawler.getMetricsPort() + "/metrics").openStream()) {
+                prometheus = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            assertTrue(prometheus.contains("crawler_responses_total{status=\"200\"}"));
+            assertTrue(prometheus.contains("# TYPE crawler_fetch_seconds summary"));
+            assertTrue(prometheus.contains("crawler_write_queue_depth "));
+            assertTrue(prometheus.contains("# TYPE crawler_write_seconds summary"));
+
+            MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.webcrawler:type=CrawlMetrics,crawl="
+                                             + ObjectName.quote(outputDir.toString()));
+            assertTrue((Long) mbeanServer.getAttribute(name, "PagesCrawled") > 0);
+            CompositeData fetchLatency = (CompositeData) mbeanServer.getAttribute(name, "FetchLatency");
+            assertTrue((Double) fetchLatency.get("p50Millis") >= 100);
+            assertTrue((Integer) mbeanServer.getAttribute(name, "WriteQueueDepth") >= 0);
+
+            crawl.join(30_000);
+            assertFalse(mbeanServer.isRegistered(name));
+            CrawlMetrics metrics = crawler.getMetrics();
+            assertEquals(10, metrics.getPagesCrawled());
+            assertEquals(Map.of(200, 10L), metrics.getResponsesByStatus());
+            assertEquals(10, metrics.getFetchLatency().getCount());
+            assertEquals(10, metrics.getSaveLatency().getCount());
+            assertEquals(10, metrics.getWriteLatency().getCount());
+            assertEquals(0, metrics.getWriteQueueDepth());
+            assertEquals(0, metrics.getActiveWorkers());
+            assertEquals(0, metrics.getFrontierSize());
+        }
+    }
+
+    @Test
+    public void adaptsConcurrencyToThrottling() throws Exception {
+        try (LocalSiteServer throttling = new LocalSiteServer(10, 9, 20, 64)) {
+            throttling.throttleEvery(4);
+            WebCrawler crawler = newBuilder()
+                .rootUrl(throttling.getRootUrl())
+                .threadPoolSize(8)
+                .adaptiveConcurrency(true)
+                .build();
+            crawler.start();
+
+            assertEquals(10 - throttling.getThrottledCount(), countSavedPages());
+            assertTrue(throttling.getThrottledCount() > 0);
+            // Slow start alone would have reached the ceiling of 8 after 10 pages
+            assertTrue(crawler.getMetrics().getConcurrencyLimit() < 8);
+            assertTrue(throttling.getMaxActiveRequests() <= 8);
+        }
+    }
+
+    @Test
+    public void spendsPageBudgetOnHighestScoringPagesFirst() throws Exception {
+        // Page 3 leads to 10-12, and page 10 to 31-33: a FIFO crawl of 8 pages stops at page 7
+        newBuilder()
+            .maxPages(8)
+            .maxInFlightRequests(1)
+            .bestFirst(true)
+            .urlPatternWeight("/page/(3|1[0-2]|3[1-3])$", 20)
+            .journal(true)
+            .build()
+            .start();
+
+        assertEquals(pageUrls(0, 3, 10, 11, 12, 31, 32, 33), crawledUrls());
+    }
+
+    @Test
+    public void skipsDisallowedPagesAndQueuesSitemapUrls() throws Exception {
+        String origin = "http://localhost:" + server.getPort();
+        server.setRobotsTxt("User-agent: *\nDisallow: /page/2\nCrawl-delay: 0.01\n"
+                            + "Sitemap: " + origin + "/sitemap.xml.gz\n");
+        String sitemap = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n"
+            + "<url><loc>" + pageUrl(30) + "</loc></url>\n"
+            + "<url><loc>" + pageUrl(25) + "</loc></url>\n"
+            + "<url><loc>" + pageUrl(35) + "</loc></url>\n"
+            + "</urlset>\n";
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(sitemap.getBytes(StandardCharsets.UTF_8));
+        }
+        server.addFile("/sitemap.xml.gz", gzipped.toByteArray());
+
+        // Links reach pages 1-3 only; the sitemap adds 30 and 35, and robots.txt drops 2 and 25
+        newBuilder()
+            .maxDepth(1)
+            .maxRequestsPerHost(2)
+            .respectRobotsTxt(true)
+            .sitemaps(true)
+            .journal(true)
+            .build()
+            .start();
+
+        assertEquals(pageUrls(0, 1, 3, 30, 35), crawledUrls());
+        assertEquals(1, server.getRobotsRequestCount());
+    }
+
+    /**
+     * Links the root page to copies of its first children that differ only by
+     * a session parameter, so they serve the same body.
+     */
+    private void addSessionVariants(int count) {
+        String base = server.getRootUrl().substring(0, server.getRootUrl().length() - 1);
+        for (int i = 1; i <= count; i++) {
+            server.addRootLink(base + i + "?session=" + i);
+        }
+    }
+
+    private WebCrawler.Builder newBuilder() {
+        return new WebCrawler.Builder()
+            .rootUrl(server.getRootUrl())
+            .maxDepth(10)
+            .maxPages(PAGE_COUNT)
+            .threadPoolSize(4)
+            .outputPath(outputDir.toString());
+    }
+
+    private Map<String, FileTime> savedPageTimes() throws IOException {
+        Map<String, FileTime> times = new HashMap<>();
+        for (File page : outputDir.toFile().listFiles((dir, name) -> name.endsWith(".html"))) {
+            times.put(page.getName(), Files.getLastModifiedTime(page.toPath()));
+        }
+        return times;
+    }
+
+    private Set<String> pageUrls(int... ids) {
+        Set<String> urls = new HashSet<>();
+        for (int id : ids) {
+            urls.add(pageUrl(id));
+        }
+        return urls;
+    }
+
+    private Set<String> crawledUrls() throws IOException {
+        Set<String> crawled = new HashSet<>();
+        for (String line : Files.readAllLines(outputDir.resolve("crawl-journal.jsonl"))) {
+            crawled.add(line.substring(line.indexOf("\"url\":\"") + 7, line.length() - 2));
+        }
+        return crawled;
+    }
+
+    private Set<Integer> pageIds(LinkGraph graph, int... pages) {
+        Set<Integer> ids = new HashSet<>();
+        for (int page : pages) {
+            ids.add(graph.getId(pageUrl(page)));
+        }
+        return ids;
+    }
+
+    private static Set<Integer> toSet(int[] ids) {
+        Set<Integer> set = new HashSet<>();
+        for (int id : ids) {
+            set.add(id);
+        }
+        return set;
+    }
+
+    private String pageUrl(int id) {
+        String root = server.getRootUrl();
+        return root.substring(0, root.length() - 1) + id;
+    }
+
+    /**
+     * Counts the site's pages that can be looked up in the WARC store and
+     * whose stored body is a page.
+     */
+    private int countStoredRecords() throws IOException {
+        int count = 0;
+        try (WarcStore store = new WarcStore(outputDir, false)) {
+            for (int i = 0; i < PAGE_COUNT; i++) {
+                try (InputStream body = store.openPage(pageUrl(i))) {
+                    if (body != null && new String(body.readAllBytes(), StandardCharsets.UTF_8).contains("</html>")) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private int countSavedPages() {
+        File[] pages = outputDir.toFile().listFiles((dir, name) -> name.endsWith(".html"));
+        return pages == null ? 0 : pages.length;
+    }
+}
@@ -0,0 +1,60 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Crawl with pages written by the crawler threads versus handed to writer
+ * threads through the write queue, with and without periodic fsync. The
+ * gain depends on how slow the disk is compared with fetching and parsing.
+ * This is a wall-clock run of the whole crawl; the time a crawler thread
+ * spends saving a page is measured by WriteQueueBenchmark.
+ *
+ * Run with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.webcrawler.WriteBehindBenchmark
+ */
+public class WriteBehindBenchmark {
+    private static final int PAGE_COUNT = 2000;
+    private static final int PAGE_BYTES = 100 * 1024;
+    private static final int THREADS = 8;
+
+    public static void main(String[] args) throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.ERROR);
+
+        System.out.printf("%d pages of %d KB, %d crawler threads%n", PAGE_COUNT, PAGE_BYTES / 1024, THREADS);
+        for (int round = 0; round < 2; round++) {
+            run("Crawler threads write", 0, 0);
+            run("Write queue", 256, 0);
+            run("Write queue, fsync 100 ms", 256, 100);
+            run("Write queue, fsync 1 ms", 256, 1);
+        }
+    }
+
+    private static void run(String name, int queueCapacity, long fsyncIntervalMillis) throws Exception {
+        Path outputDir = Files.createTempDirectory("write-behind-bench");
+        try (LocalSiteServer server = new LocalSiteServer(PAGE_COUNT, 8, 0, PAGE_BYTES)) {
+            WebCrawler crawler = new WebCrawler.Builder()
+                .rootUrl(server.getRootUrl())
+                .maxDepth(Integer.MAX_VALUE)
+                .maxPages(Integer.MAX_VALUE)
+                .threadPoolSize(THREADS)
+                .writeQueueCapacity(queueCapacity)
+                .writerThreads(2)
+                .fsyncIntervalMillis(fsyncIntervalMillis)
+                .checkpointIntervalSeconds(0)
+                .outputPath(outputDir.toString())
+                .build();
+
+            long start = System.nanoTime();
+            crawler.start();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%-28s %6.2f s  %5d requests%n", name, seconds, server.getRequestCount());
+        } finally {
+            BenchmarkSupport.deleteRecursively(outputDir);
+        }
+    }
+}
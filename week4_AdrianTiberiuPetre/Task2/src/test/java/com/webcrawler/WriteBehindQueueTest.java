@@ -0,0 +1,207 @@
+package com.webcrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests for WriteBehindQueue.
+ */
+public class WriteBehindQueueTest {
+
+    @Test
+    public void fullQueueBlocksSubmittersUntilWritersCatchUp() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch diskStalled = new CountDownLatch(1);
+        List<String> written = new CopyOnWriteArrayList<>();
+        AtomicInteger syncs = new AtomicInteger();
+        WriteBehindQueue.Sink sink = new WriteBehindQueue.Sink() {
+            @Override
+            public void write(String url, PageBody body, int depth, String title) throws IOException {
+                writing.countDown();
+                try {
+                    diskStalled.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                written.add(url);
+            }
+
+            @Override
+            public void sync() {
+                syncs.incrementAndGet();
+            }
+        };
+
+        WriteBehindQueue queue = new WriteBehindQueue(sink, 2, 1, 10);
+        // The writer takes the first page and stalls; two more fill the queue
+        assertTrue(queue.submit("page0", "<html></html>", 0, ""));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        assertTrue(queue.submit("page1", "<html></html>", 0, ""));
+        assertTrue(queue.submit("page2", "<html></html>", 0, ""));
+        assertEquals(2, queue.getQueueDepth());
+
+        Thread submitter = new Thread(() -> queue.submit("page3", "<html></html>", 0, ""));
+        submitter.start();
+        submitter.join(200);
+        assertTrue("Submitter should block while the queue is full", submitter.isAlive());
+
+        diskStalled.countDown();
+        submitter.join(5000);
+        assertFalse(submitter.isAlive());
+        queue.close();
+
+        assertEquals(List.of("page0", "page1", "page2", "page3"), written);
+        assertEquals(4, queue.getWrittenCount());
+        assertEquals(1, queue.getBlockedCount());
+        assertEquals(2, queue.getMaxQueueDepth());
+        assertTrue(queue.getMaxLatencyMillis() >= 200);
+        assertTrue(syncs.get() > 0);
+        assertFalse(queue.submit("late", "<html></html>", 0, ""));
+    }
+
+    @Test
+    public void runtimeExceptionFailsOnlyThatPage() {
+        List<String> written = new CopyOnWriteArrayList<>();
+        WriteBehindQueue queue = new WriteBehindQueue(new RecordingSink(written) {
+            @Override
+            public void write(String url, PageBody body, int depth, String title) throws IOException {
+                if (url.equals("bad")) {
+                    throw new IllegalStateException("broken sink");
+                }
+                super.write(url, body, depth, title);
+            }
+        }, 4, 1, 0);
+        assertTrue(queue.submit("bad", "<html></html>", 0, ""));
+        assertTrue(queue.submit("good", "<html></html>", 0, ""));
+        queue.close();
+
+        assertEquals(List.of("good"), written);
+        assertEquals(1, queue.getWrittenCount());
+        assertEquals(1, queue.getFailedCount());
+        assertEquals(2, queue.getLatency().getCount());
+    }
+
+    @Test(timeout = 10_000)
+    public void submittersFailFastOnceWritersDie() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch killWriter = new CountDownLatch(1);
+        List<String> written = new CopyOnWriteArrayList<>();
+        AtomicInteger writes = new AtomicInteger();
+        WriteBehindQueue queue = new WriteBehindQueue(new RecordingSink(written) {
+            @Override
+            public void write(String url, PageBody body, int depth, String title) throws IOException {
+                if (writes.getAndIncrement() == 0) {
+                    writing.countDown();
+                    try {
+                        killWriter.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                    throw new WriterKilled();
+                }
+                super.write(url, body, depth, title);
+            }
+        }, 1, 1, 0);
+        assertTrue(queue.submit("page0", "<html></html>", 0, ""));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        assertTrue(queue.submit("page1", "<html></html>", 0, ""));
+
+        AtomicInteger blockedResult = new AtomicInteger(-1);
+        Thread submitter = new Thread(() -> blockedResult.set(queue.submit("page2", "<html></html>", 0, "") ? 1 : 0));
+        submitter.start();
+        submitter.join(200);
+        assertTrue("Submitter should block while the queue is full", submitter.isAlive());
+
+        killWriter.countDown();
+        submitter.join();
+        assertEquals(0, blockedResult.get());
+        assertFalse(queue.isWriting());
+        assertFalse(queue.submit("page3", "<html></html>", 0, ""));
+
+        // What was queued before the writer died is still written on close
+        queue.close();
+        assertEquals(List.of("page1"), written);
+    }
+
+    @Test(timeout = 10_000)
+    public void blockedSubmitterRacingCloseIsWritten() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch diskStalled = new CountDownLatch(1);
+        List<String> written = new CopyOnWriteArrayList<>();
+        WriteBehindQueue queue = new WriteBehindQueue(new RecordingSink(written) {
+            @Override
+            public void write(String url, PageBody body, int depth, String title) throws IOException {
+                writing.countDown();
+                try {
+                    diskStalled.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                super.write(url, body, depth, title);
+            }
+        }, 1, 1, 0);
+        assertTrue(queue.submit("page0", "<html></html>", 0, ""));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        assertTrue(queue.submit("page1", "<html></html>", 0, ""));
+
+        PageBufferPool pool = new PageBufferPool(PageBufferPool.MIN_CLASS_BYTES);
+        PageBody pooled = PageBody.allocate(pool, StandardCharsets.UTF_8, 16);
+        pooled.append(ByteBuffer.wrap("<html></html>".getBytes(StandardCharsets.UTF_8)));
+        Thread submitter = new Thread(() -> {
+            try (PageBody body = pooled) {
+                queue.submit("page2", body, 0, "");
+            }
+        });
+        submitter.start();
+        // Close only once the submitter waits for room, or it would just be turned away
+        while (submitter.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue("Submitter should block while the queue is full", submitter.isAlive());
+            Thread.sleep(1);
+        }
+        Thread closer = new Thread(queue::close);
+        closer.start();
+        closer.join(200);
+        assertTrue("Close should wait for the blocked submitter", closer.isAlive());
+
+        diskStalled.countDown();
+        closer.join();
+        submitter.join();
+        assertEquals(List.of("page0", "page1", "page2"), written);
+        assertEquals(PageBufferPool.MIN_CLASS_BYTES, pool.getRetainedBytes());
+    }
+
+    private static class RecordingSink implements WriteBehindQueue.Sink {
+        private final List<String> written;
+
+        RecordingSink(List<String> written) {
+            this.written = written;
+        }
+
+        @Override
+        public void write(String url, PageBody body, int depth, String title) throws IOException {
+            written.add(url);
+        }
+
+        @Override
+        public void sync() {
+        }
+    }
+
+    /** Stands in for an error no writer can recover from. */
+    private static class WriterKilled extends Error {
+        private static final long serialVersionUID = 1L;
+    }
+}
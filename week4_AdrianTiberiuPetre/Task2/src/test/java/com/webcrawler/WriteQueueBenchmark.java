@@ -0,0 +1,86 @@
+package com.webcrawler;
+
+import ch.qos.logback.classic.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time eight crawler threads spend saving a page, when they write it
+ * themselves and when they hand it to two writer threads through the write
+ * queue, with and without an fsync every 100 ms.
+ *
+ * Once the queue is full the crawler threads wait for the writers, so in
+ * the long run the score is bounded by the disk either way; the queue helps
+ * where fetching and parsing leave the writers time to catch up, which
+ * WriteBehindBenchmark measures on a whole crawl. Pages cycle through a
+ * fixed set of URLs so the directory size stays bounded.
+ *
+ * Run with: mvn -Pjmh test-compile exec:exec -Djmh.args="WriteQueueBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class WriteQueueBenchmark {
+    private static final int DISTINCT_FILES = 1000;
+
+    @Param({"CRAWLER_THREADS", "WRITE_QUEUE", "WRITE_QUEUE_FSYNC"})
+    private String writer;
+
+    @Param({"medium"})
+    private String page;
+
+    private String html;
+    private Path outputDir;
+    private ContentSaver contentSaver;
+    private final AtomicLong next = new AtomicLong();
+
+    @Setup
+    public void setUp() throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.webcrawler")).setLevel(Level.WARN);
+
+        html = BenchmarkCorpus.html(page);
+        outputDir = Files.createTempDirectory("write-queue-bench");
+        int queueCapacity = writer.equals("CRAWLER_THREADS") ? 0 : 256;
+        long fsyncIntervalMillis = writer.equals("WRITE_QUEUE_FSYNC") ? 100 : 0;
+        contentSaver = new ContentSaver(outputDir.toString(), OutputFormat.FILES, Compression.NONE,
+                                        queueCapacity, 2, fsyncIntervalMillis);
+    }
+
+    @TearDown
+    public void tearDown() {
+        WriteBehindQueue queue = contentSaver.getWriteBehind();
+        contentSaver.close();
+        if (queue != null) {
+            System.out.printf("%n%,d pages written, %,d submits blocked on a full queue%n",
+                queue.getWrittenCount(), queue.getBlockedCount());
+        }
+        BenchmarkSupport.deleteRecursively(outputDir);
+    }
+
+    @Benchmark
+    public boolean saveContent() {
+        String url = BenchmarkCorpus.PAGE_URL + "?page=" + (next.getAndIncrement() % DISTINCT_FILES);
+        return contentSaver.saveContent(url, html, 1, "Benchmark page");
+    }
+}